@@ -0,0 +1,67 @@
+package com.marginallyclever.ro3.mesh;
+
+import com.marginallyclever.convenience.Ray;
+import org.openjdk.jmh.annotations.*;
+
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ray intersection and normal smoothing on generated meshes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeshBenchmark {
+    @Param({"32", "128", "256"})
+    public int size;
+
+    private Mesh mesh;
+    private Ray hitRay;
+    private Ray missRay;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mesh = MeshFixtures.createGrid(size);
+        hitRay = new Ray(new Point3d(size/2.0+0.25,size/2.0+0.25,10),new Vector3d(0,0,-1));
+        missRay = new Ray(new Point3d(-10,-10,10),new Vector3d(0,0,-1));
+    }
+
+    @Benchmark
+    public Object intersectHit() {
+        return mesh.intersect(hitRay);
+    }
+
+    @Benchmark
+    public Object intersectMiss() {
+        return mesh.intersect(missRay);
+    }
+
+    /**
+     * Smoothing changes the mesh, so each call works on a fresh copy.  The largest size is about 400k vertices.
+     */
+    @State(Scope.Thread)
+    public static class SmoothState {
+        @Param({"16", "48", "256"})
+        public int size;
+        public Mesh mesh;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            mesh = MeshFixtures.createGrid(size);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public Mesh smoothNormals(SmoothState state) {
+        MeshSmoother.smoothNormals(state.mesh,0.001f,0.5f);
+        return state.mesh;
+    }
+}
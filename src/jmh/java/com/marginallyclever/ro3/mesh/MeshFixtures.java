@@ -0,0 +1,135 @@
+package com.marginallyclever.ro3.mesh;
+
+import com.marginallyclever.ro3.mesh.save.SaveSTL;
+
+import javax.vecmath.Vector3d;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generated meshes and mesh files for the benchmarks, so that no large files have to live in the repository.
+ */
+public class MeshFixtures {
+    /**
+     * Build a bumpy square grid of triangles.  Vertices are not indexed, so neighbouring triangles repeat their
+     * shared corners, the same as most loaded STL files.
+     * @param size the number of cells along each side.  The mesh has 2*size*size triangles.
+     * @return the mesh.
+     */
+    public static Mesh createGrid(int size) {
+        Mesh mesh = new Mesh();
+        for(int y=0;y<size;++y) {
+            for(int x=0;x<size;++x) {
+                addTriangle(mesh, x,y, x+1,y, x+1,y+1);
+                addTriangle(mesh, x,y, x+1,y+1, x,y+1);
+            }
+        }
+        mesh.updateCuboid();
+        return mesh;
+    }
+
+    private static double height(int x,int y) {
+        return Math.sin(x*0.3) * Math.cos(y*0.2);
+    }
+
+    private static void addTriangle(Mesh mesh,int x0,int y0,int x1,int y1,int x2,int y2) {
+        Vector3d a = new Vector3d(x0,y0,height(x0,y0));
+        Vector3d b = new Vector3d(x1,y1,height(x1,y1));
+        Vector3d c = new Vector3d(x2,y2,height(x2,y2));
+        Vector3d ab = new Vector3d();
+        Vector3d ac = new Vector3d();
+        ab.sub(b,a);
+        ac.sub(c,a);
+        Vector3d n = new Vector3d();
+        n.cross(ab,ac);
+        n.normalize();
+        for(Vector3d v : new Vector3d[]{a,b,c}) {
+            mesh.addVertex((float)v.x,(float)v.y,(float)v.z);
+            mesh.addNormal((float)n.x,(float)n.y,(float)n.z);
+        }
+    }
+
+    public static byte[] toSTL(Mesh mesh) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SaveSTL().save(out,mesh);
+        return out.toByteArray();
+    }
+
+    public static byte[] toOBJ(Mesh mesh) {
+        StringBuilder sb = new StringBuilder();
+        int count = mesh.getNumVertices();
+        for(int i=0;i<count;++i) {
+            Vector3d v = mesh.getVertex(i);
+            sb.append(String.format(Locale.US,"v %f %f %f\n",v.x,v.y,v.z));
+        }
+        for(int i=0;i<count;++i) {
+            Vector3d n = mesh.getNormal(i);
+            sb.append(String.format(Locale.US,"vn %f %f %f\n",n.x,n.y,n.z));
+        }
+        for(int i=0;i<count;i+=3) {
+            sb.append("f ");
+            for(int j=1;j<=3;++j) sb.append(i+j).append("//").append(i+j).append(' ');
+            sb.append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the point cloud format read by {@link com.marginallyclever.ro3.mesh.load.LoadPLY}.
+     */
+    public static byte[] toPLY(Mesh mesh) {
+        StringBuilder sb = new StringBuilder("X,Y,Z,SIGNAL_STRENGTH\n");
+        int count = mesh.getNumVertices();
+        for(int i=0;i<count;++i) {
+            Vector3d v = mesh.getVertex(i);
+            sb.append(String.format(Locale.US,"%f,%f,%f,1\n",v.x,v.y,v.z));
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] to3MF(Mesh mesh) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<model units=\"millimeter\" xmlns:m=\"http://schemas.microsoft.com/3dmanufacturing/material/2015/02\">\n");
+        sb.append("<resources>\n<m:colorgroup id=\"1\"><m:color color=\"#FF8000\"/></m:colorgroup>\n");
+        sb.append("<object id=\"2\" type=\"model\" pid=\"1\" pindex=\"0\"><mesh>\n<vertices>\n");
+        int count = mesh.getNumVertices();
+        for(int i=0;i<count;++i) {
+            Vector3d v = mesh.getVertex(i);
+            sb.append(String.format(Locale.US,"<vertex x=\"%f\" y=\"%f\" z=\"%f\"/>\n",v.x,v.y,v.z));
+        }
+        sb.append("</vertices>\n<triangles>\n");
+        for(int i=0;i<count;i+=3) {
+            sb.append("<triangle v1=\"").append(i).append("\" v2=\"").append(i+1).append("\" v3=\"").append(i+2).append("\"/>\n");
+        }
+        sb.append("</triangles>\n</mesh></object>\n</resources>\n<build><item objectid=\"2\"/></build>\n</model>\n");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("3D/3dmodel.model"));
+            zip.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] toAMF(Mesh mesh) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<amf unit=\"millimeter\">\n<object id=\"0\"><mesh>\n<vertices>\n");
+        int count = mesh.getNumVertices();
+        for(int i=0;i<count;++i) {
+            Vector3d v = mesh.getVertex(i);
+            sb.append(String.format(Locale.US,"<vertex><coordinates><x>%f</x><y>%f</y><z>%f</z></coordinates></vertex>\n",v.x,v.y,v.z));
+        }
+        sb.append("</vertices>\n<volume>\n");
+        for(int i=0;i<count;i+=3) {
+            sb.append("<triangle><v1>").append(i).append("</v1><v2>").append(i+1).append("</v2><v3>").append(i+2).append("</v3></triangle>\n");
+        }
+        sb.append("</volume>\n</mesh></object>\n</amf>\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package com.marginallyclever.ro3.mesh.load;
+
+import com.marginallyclever.ro3.mesh.Mesh;
+import com.marginallyclever.ro3.mesh.MeshFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each {@link MeshLoader} reading a generated file of the same mesh from memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeshLoaderBenchmark {
+    @Param({"64", "256"})
+    public int size;
+
+    private byte[] stl;
+    private byte[] obj;
+    private byte[] ply;
+    private byte[] threeMF;
+    private byte[] amf;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Mesh mesh = MeshFixtures.createGrid(size);
+        stl = MeshFixtures.toSTL(mesh);
+        obj = MeshFixtures.toOBJ(mesh);
+        ply = MeshFixtures.toPLY(mesh);
+        threeMF = MeshFixtures.to3MF(mesh);
+        amf = MeshFixtures.toAMF(mesh);
+    }
+
+    private Mesh load(MeshLoader loader,byte[] data) throws Exception {
+        Mesh mesh = new Mesh();
+        loader.load(new BufferedInputStream(new ByteArrayInputStream(data)),mesh);
+        return mesh;
+    }
+
+    @Benchmark
+    public Mesh loadSTL() throws Exception {
+        return load(new LoadSTL(),stl);
+    }
+
+    @Benchmark
+    public Mesh loadOBJ() throws Exception {
+        return load(new LoadOBJ(),obj);
+    }
+
+    @Benchmark
+    public Mesh loadPLY() throws Exception {
+        return load(new LoadPLY(),ply);
+    }
+
+    @Benchmark
+    public Mesh load3MF() throws Exception {
+        return load(new Load3MF(),threeMF);
+    }
+
+    @Benchmark
+    public Mesh loadAMF() throws Exception {
+        return load(new LoadAMF(),amf);
+    }
+}
@@ -0,0 +1,98 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scene round trips through {@link Node#toJSON()}/{@link Node#fromJSON(JSONObject)}, the streaming JSON format,
+ * and the binary format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SceneSerializationBenchmark {
+    @Param({"100", "10000"})
+    public int nodes;
+
+    private Node scene;
+    private String json;
+    private byte[] streamed;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Registry.start();
+        scene = new Node("Scene");
+        Matrix4d m = new Matrix4d();
+        m.rotX(0.5);
+        m.setTranslation(new Vector3d(1,2,3));
+        // assemblies of ten poses each, five deep.
+        for(int i=0;i<nodes/10;++i) {
+            Node parent = scene;
+            for(int j=0;j<10;++j) {
+                Pose pose = new Pose("p"+j);
+                pose.setLocal(m);
+                parent.addChild(pose);
+                if(j%2==0) parent = pose;
+            }
+        }
+        json = scene.toJSON().toString();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SceneJSONWriter().write(scene,out);
+        streamed = out.toByteArray();
+
+        out = new ByteArrayOutputStream();
+        new SceneBinaryWriter().write(scene,out);
+        binary = out.toByteArray();
+    }
+
+    @Benchmark
+    public String toJSON() {
+        return scene.toJSON().toString();
+    }
+
+    @Benchmark
+    public Node fromJSON() {
+        Node loaded = new Node("Scene");
+        loaded.fromJSON(new JSONObject(json));
+        return loaded;
+    }
+
+    @Benchmark
+    public byte[] writeStreamed() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(streamed.length);
+        new SceneJSONWriter().write(scene,out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Node readStreamed() throws IOException {
+        return new SceneJSONReader().read(new ByteArrayInputStream(streamed));
+    }
+
+    @Benchmark
+    public byte[] writeBinary() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(binary.length);
+        new SceneBinaryWriter().write(scene,out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Node readBinary() throws IOException {
+        return new SceneBinaryReader().read(new ByteArrayInputStream(binary));
+    }
+}
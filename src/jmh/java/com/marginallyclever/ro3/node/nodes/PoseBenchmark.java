@@ -0,0 +1,67 @@
+package com.marginallyclever.ro3.node.nodes;
+
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.NodePath;
+import org.openjdk.jmh.annotations.*;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Pose#getWorld()} and {@link NodePath#getSubject()} at the end of a long chain of poses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoseBenchmark {
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private Pose leaf;
+    private NodePath<Pose> pathFromLeafToRoot;
+    private NodePath<Pose> pathFromRootToLeaf;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Node scene = new Node("Scene");
+        Pose root = new Pose("root");
+        scene.addChild(root);
+        Pose parent = root;
+        Matrix4d m = new Matrix4d();
+        m.rotZ(0.01);
+        m.setTranslation(new Vector3d(0,0,1));
+        for(int i=0;i<depth;++i) {
+            Pose child = new Pose("p"+i);
+            child.setLocal(m);
+            parent.addChild(child);
+            // siblings make path lookups search more than one child per level.
+            parent.addChild(new Node("sibling"));
+            parent = child;
+        }
+        leaf = parent;
+
+        pathFromLeafToRoot = new NodePath<>(leaf,Pose.class);
+        pathFromLeafToRoot.setRelativePath(leaf,root);
+        pathFromRootToLeaf = new NodePath<>(root,Pose.class);
+        pathFromRootToLeaf.setRelativePath(root,leaf);
+    }
+
+    @Benchmark
+    public Matrix4d getWorld() {
+        return leaf.getWorld();
+    }
+
+    @Benchmark
+    public Pose nodePathUp() {
+        return pathFromLeafToRoot.getSubject();
+    }
+
+    @Benchmark
+    public Pose nodePathDown() {
+        return pathFromRootToLeaf.getSubject();
+    }
+}
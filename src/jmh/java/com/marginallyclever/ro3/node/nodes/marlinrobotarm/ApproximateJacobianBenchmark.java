@@ -0,0 +1,51 @@
+package com.marginallyclever.ro3.node.nodes.marlinrobotarm;
+
+import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.apps.actions.LoadScene;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both {@link ApproximateJacobian} implementations on the six axis arm used by the unit tests.
+ * Run from the project root so that the test resources can be found.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApproximateJacobianBenchmark {
+    private MarlinRobotArm arm;
+    private final double[] cartesianVelocity = {1,2,3,0.1,0.2,0.3};
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Registry.start();
+        var load = new LoadScene(null,null);
+        load.commitLoad(new File("src/test/resources/com/marginallyclever/ro3/apps/node/nodes/marlinrobotarm/Sixi3-5.RO"));
+        arm = (MarlinRobotArm) Registry.getScene().get("./Sixi3/MarlinRobotArm");
+    }
+
+    @Benchmark
+    public double[][] finiteDifferences() {
+        return new ApproximateJacobianFiniteDifferences(arm).getJacobian();
+    }
+
+    @Benchmark
+    public double[][] screwTheory() {
+        return new ApproximateJacobianScrewTheory(arm).getJacobian();
+    }
+
+    @Benchmark
+    public double[] finiteDifferencesJointVelocity() throws Exception {
+        return new ApproximateJacobianFiniteDifferences(arm).getJointFromCartesian(cartesianVelocity);
+    }
+
+    @Benchmark
+    public double[] screwTheoryJointVelocity() throws Exception {
+        return new ApproximateJacobianScrewTheory(arm).getJointFromCartesian(cartesianVelocity);
+    }
+}
@@ -0,0 +1,57 @@
+package com.marginallyclever.ro3.raypicking;
+
+import com.marginallyclever.convenience.Ray;
+import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.mesh.Mesh;
+import com.marginallyclever.ro3.mesh.MeshFixtures;
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.MeshInstance;
+import org.openjdk.jmh.annotations.*;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RayPickSystem#getFirstHit(Ray)} in a scene with many copies of a large mesh.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RayPickSystemBenchmark {
+    @Param({"10", "100"})
+    public int instances;
+
+    @Param({"128"})
+    public int size;
+
+    private final RayPickSystem rayPickSystem = new RayPickSystem();
+    private Ray ray;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Registry.start();
+        Mesh mesh = MeshFixtures.createGrid(size);
+        Node scene = new Node("Scene");
+        for(int i=0;i<instances;++i) {
+            MeshInstance meshInstance = new MeshInstance("mesh"+i);
+            meshInstance.setMesh(mesh);
+            Matrix4d m = new Matrix4d();
+            m.setIdentity();
+            m.setTranslation(new Vector3d(0,0,-i*2));
+            meshInstance.setLocal(m);
+            scene.addChild(meshInstance);
+        }
+        Registry.setScene(scene);
+        ray = new Ray(new Point3d(size/2.0+0.25,size/2.0+0.25,10),new Vector3d(0,0,-1),1000);
+    }
+
+    @Benchmark
+    public RayHit getFirstHit() {
+        return rayPickSystem.getFirstHit(ray);
+    }
+}
@@ -0,0 +1,60 @@
+package com.marginallyclever.robotoverlord.components;
+
+import com.marginallyclever.convenience.Ray;
+import com.marginallyclever.robotoverlord.RayHit;
+import com.marginallyclever.robotoverlord.components.shapes.Box;
+import com.marginallyclever.robotoverlord.entity.Entity;
+import org.openjdk.jmh.annotations.*;
+
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LinearPatternComponent#intersect(Ray)} for a long row of boxes, with a ray along the row (every copy is in
+ * the way) and a ray across it (one copy is in the way).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinearPatternComponentBenchmark {
+    @Param({"10000"})
+    public int copies;
+
+    private LinearPatternComponent pattern;
+    private Ray along;
+    private Ray across;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Entity root = new Entity("root");
+        Entity source = new Entity("source");
+        source.addComponent(new Box());
+        root.addEntity(source);
+
+        Entity patternEntity = new Entity("pattern");
+        pattern = new LinearPatternComponent();
+        patternEntity.addComponent(pattern);
+        root.addEntity(patternEntity);
+        pattern.setSource(source);
+        pattern.measure.set(2.0);
+        pattern.quantity.set(copies);
+        pattern.getModel().updateCuboid();
+
+        along = new Ray(new Point3d(copies*2+10,0.1,0.2),new Vector3d(-1,0,0));
+        across = new Ray(new Point3d(copies,10,0.2),new Vector3d(0,-1,0));
+    }
+
+    @Benchmark
+    public RayHit pickAlong() {
+        return pattern.intersect(along);
+    }
+
+    @Benchmark
+    public RayHit pickAcross() {
+        return pattern.intersect(across);
+    }
+}
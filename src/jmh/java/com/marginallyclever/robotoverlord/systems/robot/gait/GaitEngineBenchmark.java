@@ -0,0 +1,73 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+import com.marginallyclever.ro3.workspace.DHChainModel;
+import org.openjdk.jmh.annotations.*;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GaitEngine#step(double)} for a field of six legged robots walking over rolling ground, at 60 steps per
+ * second.  No scene is needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GaitEngineBenchmark {
+    private static final double DT = 1.0/60.0;
+    private static final double [] STANCE = {0,30,-120};
+
+    @Param({"100"})
+    public int robots;
+
+    @Param({"TRIPOD", "RIPPLE"})
+    public GaitPattern pattern;
+
+    private GaitEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = new GaitEngine();
+        engine.setGround((x,y)->2*Math.sin(x*0.1)*Math.cos(y*0.1));
+
+        DHChainModel model = new DHChainModel();
+        model.addLink(0,2,90,0,true,-90,90);
+        model.addLink(0,6,0,0,true,-180,180);
+        model.addLink(0,7,0,0,true,-180,180);
+        Point3d local = new Point3d();
+        model.getEndEffectorPosition(STANCE,local);
+
+        int columns = (int)Math.ceil(Math.sqrt(robots));
+        for(int r=0;r<robots;++r) {
+            Matrix4d pose = new Matrix4d();
+            pose.setIdentity();
+            pose.setTranslation(new Vector3d((r%columns)*40,(r/columns)*40,-local.z));
+            GaitBody body = new GaitBody(pose);
+            body.setPattern(pattern);
+            body.setVelocity(new Vector3d(5,0,0));
+            for(int i=0;i<6;++i) {
+                double angle = 2*Math.PI*(i+0.5)/6;
+                Matrix4d mount = new Matrix4d();
+                mount.rotZ(angle);
+                mount.setTranslation(new Vector3d(4*Math.cos(angle),4*Math.sin(angle),0));
+                Matrix4d legWorld = new Matrix4d();
+                legWorld.mul(pose,mount);
+                Point3d foot = new Point3d(local);
+                legWorld.transform(foot);
+                body.addLeg(new GaitLeg(model,mount,foot,pose,STANCE));
+            }
+            engine.add(body);
+        }
+    }
+
+    @Benchmark
+    public double step() {
+        engine.step(DT);
+        return engine.getBodies().get(0).getSteps();
+    }
+}
@@ -0,0 +1,55 @@
+package com.marginallyclever.robotoverlord.systems.vehicle;
+
+import com.marginallyclever.robotoverlord.components.vehicle.VehicleComponent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link VehicleFleet#step(double)} for a warehouse of differential drive and mecanum vehicles, at 60 steps per
+ * second.  No scene is needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VehicleFleetBenchmark {
+    private static final double DT = 1.0/60.0;
+
+    @Param({"1000", "10000"})
+    public int vehicles;
+
+    @Param({"false", "true"})
+    public boolean collisions;
+
+    private VehicleFleet fleet;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(1234);
+        fleet = new VehicleFleet();
+        fleet.setCollisions(collisions);
+        // about one vehicle per 30x30 square of floor.
+        double side = Math.sqrt(vehicles)*30;
+        for(int i=0;i<vehicles;++i) {
+            int index;
+            if(i%2==0) {
+                index = fleet.add(VehicleComponent.WHEEL_DIFFERENTIAL,random.nextDouble()*side,random.nextDouble()*side,
+                        random.nextDouble()*2*Math.PI,new double[]{0,0},new double[]{5,-5},new double[]{4,4});
+            } else {
+                index = fleet.add(VehicleComponent.WHEEL_MECANUM,random.nextDouble()*side,random.nextDouble()*side,
+                        random.nextDouble()*2*Math.PI,new double[]{5,5,-5,-5},new double[]{5,-5,5,-5},new double[]{4,4,4,4});
+            }
+            fleet.setVelocity(index,random.nextDouble()*20,random.nextDouble()*10-5,random.nextDouble()*40-20);
+        }
+    }
+
+    @Benchmark
+    public double step() {
+        fleet.step(DT);
+        return fleet.getX(0);
+    }
+}
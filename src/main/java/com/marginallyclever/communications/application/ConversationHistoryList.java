@@ -1,27 +1,31 @@
 package com.marginallyclever.communications.application;
 
 import com.marginallyclever.convenience.log.Log;
+import com.marginallyclever.convenience.log.RotatingFileWriter;
+import com.marginallyclever.convenience.swing.BoundedListModel;
+import com.marginallyclever.convenience.swing.VirtualizedList;
 
 import javax.swing.*;
 import javax.swing.border.EtchedBorder;
 import javax.swing.event.ListSelectionListener;
 import java.awt.*;
 import java.io.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * a list of all the events that have happened in a conversation.
+ * <p>a list of all the events that have happened in a conversation.</p>
+ * <p>Only the most recent {@link BoundedListModel#DEFAULT_CAPACITY} events are kept.  Older events can be spilled
+ * to a {@link RotatingFileWriter} with {@link #setSpill(RotatingFileWriter)}.</p>
  *
  * @author Dan Royer
  * @since 1.7.1
  */
 public class ConversationHistoryList extends JPanel {
-	private final DefaultListModel<ConversationEvent> listModel = new DefaultListModel<>();
-	private final JList<ConversationEvent> listView = new JList<>(listModel);
-	private final ConcurrentLinkedQueue<ConversationEvent> inBoundQueue = new ConcurrentLinkedQueue<>();
+	private final BoundedListModel<ConversationEvent> listModel = new BoundedListModel<>();
+	private final VirtualizedList<ConversationEvent> listView = new VirtualizedList<>(listModel);
 	private final JFileChooser chooser = new JFileChooser();
 	private final JButton bClear = new JButton("Clear");
 	private final JButton bSave = new JButton("Save");
+	private final JTextField searchField = new JTextField(10);
 
 	
 	public ConversationHistoryList() {
@@ -46,9 +50,13 @@ public class ConversationHistoryList extends JPanel {
 
 		bar.add(bClear);
 		bar.add(bSave);
+		bar.addSeparator();
+		bar.add(new JLabel("Find "));
+		bar.add(searchField);
 		
 		bClear.addActionListener( (e) -> runNewAction() );
 		bSave.addActionListener( (e) -> runSaveAction() );
+		searchField.addActionListener( (e) -> listView.findNext(searchField.getText(),true) );
 		
 		return bar;
 	}
@@ -93,7 +101,7 @@ public class ConversationHistoryList extends JPanel {
 		try(BufferedWriter fileWriter = new BufferedWriter(new FileWriter(file))) {
 			int size = listModel.getSize();
 			for (int i = 0; i < size; ++i) {
-				String str = listModel.get(i).toString();
+				String str = listModel.getElementAt(i).toString();
 				if (!str.endsWith("\n")) str += "\n";
 				fileWriter.write(str);
 			}
@@ -116,31 +124,20 @@ public class ConversationHistoryList extends JPanel {
 		return listView.getSelectedValue();
 	}
 
+	/**
+	 * Safe to call from any thread.  The event appears in the list at the next flush of the model.
+	 * @param src who spoke
+	 * @param str what was said
+	 */
 	public void addElement(String src,String str) {
-		inBoundQueue.add(new ConversationEvent(src, str));
-		repaint();
-	}
-	
-	@Override
-	public void paint(Graphics g) {
-		boolean isLast = (listView.getLastVisibleIndex() == listModel.getSize()-1);
-		
-		addQueuedMessages();
-		
-		if(isLast) jumpToEnd();
-		
-		super.paint(g);
+		listModel.offer(new ConversationEvent(src, str));
 	}
 
-	private void addQueuedMessages() {
-		while(!inBoundQueue.isEmpty()) {
-			ConversationEvent msg = inBoundQueue.poll();
-			if(msg!=null) listModel.addElement(msg);
-		}
-	}
-		
-	private void jumpToEnd() {
-		listView.ensureIndexIsVisible(listModel.getSize()-1);
+	/**
+	 * @param spill receives events as they are evicted from the list.  May be null.
+	 */
+	public void setSpill(RotatingFileWriter spill) {
+		listModel.setSpill(spill==null ? null : (event)->spill.write(event.toString()));
 	}
 	
 	// TEST
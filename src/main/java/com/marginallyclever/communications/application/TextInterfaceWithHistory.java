@@ -1,17 +1,20 @@
 package com.marginallyclever.communications.application;
 
 import com.marginallyclever.convenience.log.Log;
+import com.marginallyclever.convenience.log.RotatingFileWriter;
 
 import javax.swing.*;
 import javax.swing.border.EtchedBorder;
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.nio.file.Paths;
 
 /**
  * A chat style interface with a history of commands.  The history is a list of commands sent and received.
  * @author Dan Royer
  */
 public class TextInterfaceWithHistory extends JPanel {
+	public static final String SPILL_FILE_NAME = "conversation.txt";
 	private final TextInterfaceToListeners myInterface = new TextInterfaceToListeners();
 	private final ConversationHistoryList myHistory = new ConversationHistoryList();
 	
@@ -25,6 +28,8 @@ public class TextInterfaceWithHistory extends JPanel {
 		c.weighty=1;
 		add(myHistory,c);
 		myHistory.setBorder(BorderFactory.createEtchedBorder(EtchedBorder.LOWERED));
+		// old events go to disk instead of being lost.
+		myHistory.setSpill(RotatingFileWriter.getShared(Paths.get(Log.LOG_FILE_PATH,SPILL_FILE_NAME)));
 
 		c.gridy++;
 		c.fill = GridBagConstraints.HORIZONTAL;
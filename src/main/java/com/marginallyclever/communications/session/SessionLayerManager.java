@@ -4,6 +4,7 @@ import com.marginallyclever.communications.transport.TransportLayer;
 import com.marginallyclever.communications.transport.TransportLayerPanel;
 import com.marginallyclever.communications.transport.serial.SerialTransportLayer;
 import com.marginallyclever.communications.transport.tcp.TCPTransportLayer;
+import com.marginallyclever.communications.transport.virtual.VirtualTransportLayer;
 
 import javax.swing.*;
 import java.awt.*;
@@ -16,6 +17,7 @@ import java.awt.*;
 public class SessionLayerManager {
 	static private final TransportLayer serial = new SerialTransportLayer();
 	static private final TransportLayer tcp = new TCPTransportLayer();
+	static private final TransportLayer virtual = new VirtualTransportLayer();
 	static private int selectedLayer=0;
 	
 	/**
@@ -27,6 +29,7 @@ public class SessionLayerManager {
 		JTabbedPane tabs = new JTabbedPane();
 		tabs.addTab("Local", serial.getTransportLayerPanel());
 		tabs.addTab("Remote", tcp.getTransportLayerPanel());
+		tabs.addTab("Virtual", virtual.getTransportLayerPanel());
 		tabs.setSelectedIndex(selectedLayer);
 		
 		JPanel top = new JPanel(new BorderLayout());
@@ -0,0 +1,471 @@
+package com.marginallyclever.communications.transport.virtual;
+
+import com.marginallyclever.convenience.helpers.StringHelper;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * <p>A pretend <a href="https://github.com/MarlinFirmware/Marlin">Marlin</a> controller, for testing the programs
+ * that talk to one.  It understands G0, G1, G92, M110, M112, M114 and M400, with or without line numbers and
+ * checksums, and answers the way Marlin does.</p>
+ * <p>Lines are read into a command queue of {@link #getCommandQueueDepth()} lines.  A line that arrives when the
+ * queue is full is lost, the same as when the serial buffer of a real board overflows.  Moves wait in a planner
+ * of {@link #getPlannerDepth()} segments.  A command is answered with "ok" once it has been taken from the command
+ * queue, so a full planner holds back the "ok"s.  A command held back for too long is reported with
+ * "echo:busy: processing".</p>
+ * <p>Nothing happens on its own.  Time only passes when {@link #advance(double)} is called, so tests can run as fast
+ * as they like and always get the same answers.</p>
+ * <p>All methods lock the controller so that one thread can send while another advances the clock.  What the controller
+ * says is handed to the output after the lock is let go, in the order it was said, so the output may call back into
+ * the controller or wait on another thread that does.</p>
+ */
+public class VirtualMarlin {
+	// BUFSIZE in Marlin's Configuration_adv.h
+	public static final int DEFAULT_COMMAND_QUEUE_DEPTH = 4;
+	// BLOCK_BUFFER_SIZE in Marlin's Configuration_adv.h
+	public static final int DEFAULT_PLANNER_DEPTH = 16;
+	// DEFAULT_KEEPALIVE_INTERVAL in Marlin's Configuration.h, in seconds.
+	public static final double DEFAULT_BUSY_INTERVAL = 2;
+	// Count in M114 is in steps.
+	public static final double STEPS_PER_UNIT = 100;
+
+	public static final String STR_OK = "ok";
+	public static final String STR_RESEND = "Resend: ";
+	public static final String STR_BUSY = "echo:busy: processing";
+
+	private record Segment(double [] end, double duration) {}
+
+	private final String axes;
+	private final double [] position;
+	private final double [] executed;
+	private final Consumer<String> output;
+
+	private int commandQueueDepth = DEFAULT_COMMAND_QUEUE_DEPTH;
+	private int plannerDepth = DEFAULT_PLANNER_DEPTH;
+	private double segmentTime = 0;
+	private double busyInterval = DEFAULT_BUSY_INTERVAL;
+	private double feedrate = 0;
+
+	private final Deque<String> commands = new ArrayDeque<>();
+	// said but not yet handed to the output.
+	private final Deque<String> said = new ArrayDeque<>();
+	// true while a thread is handing lines to the output.
+	private boolean speaking = false;
+	private final Deque<Segment> planner = new ArrayDeque<>();
+	// when the segment at the head of the planner started.
+	private double segmentStart = 0;
+	private double clock = 0;
+	// when the command at the head of the queue next reports busy, or NaN if it is not blocked.
+	private double nextBusy = Double.NaN;
+	private long lastLine = 0;
+	private boolean killed = false;
+
+	private long linesReceived = 0;
+	private long linesLost = 0;
+	private long resendsRequested = 0;
+	private long segmentsFinished = 0;
+
+	/**
+	 * @param axes one letter per axis, for example "XYZUVW".
+	 * @param output receives every line the controller says, without the newline.
+	 */
+	public VirtualMarlin(String axes,Consumer<String> output) {
+		this.axes = axes.toUpperCase();
+		this.position = new double[axes.length()];
+		this.executed = new double[axes.length()];
+		this.output = output;
+	}
+
+	/**
+	 * Receive one line from the host.  Anything after a ';' is a comment.
+	 * @param line the line, with or without the newline.
+	 */
+	public void receive(String line) {
+		synchronized(this) {
+			receiveLine(line);
+		}
+		speak();
+	}
+
+	private void receiveLine(String line) {
+		if(killed) return;
+		int comment = line.indexOf(';');
+		if(comment>=0) line = line.substring(0,comment);
+		line = line.trim();
+		if(line.isEmpty()) return;
+
+		// like Marlin's EMERGENCY_PARSER, M112 does not wait in line.
+		if(isKill(line)) {
+			kill();
+			return;
+		}
+
+		if(commands.size()>=commandQueueDepth) {
+			linesLost++;
+			return;
+		}
+		linesReceived++;
+
+		if(line.startsWith("N")) {
+			int space = line.indexOf(' ');
+			long n;
+			try {
+				n = Long.parseLong(space<0 ? line.substring(1) : line.substring(1,space));
+			} catch(NumberFormatException e) {
+				requestResend("Line Number is not Last Line Number+1");
+				return;
+			}
+			int star = line.lastIndexOf('*');
+			String body = (space<0) ? "" : line.substring(space+1, star<0 ? line.length() : star).trim();
+			boolean isM110 = body.startsWith("M110");
+			if(n!=lastLine+1 && !isM110) {
+				requestResend("Line Number is not Last Line Number+1");
+				return;
+			}
+			if(star<0) {
+				requestResend("No Checksum with line number");
+				return;
+			}
+			if(!checksumMatches(line.substring(0,star),line.substring(star+1))) {
+				requestResend("checksum mismatch");
+				return;
+			}
+			lastLine = n;
+			line = body;
+			if(line.isEmpty()) return;
+		}
+
+		commands.add(line);
+		process();
+	}
+
+	/**
+	 * @param line a line without comments, with or without a line number and checksum.
+	 * @return true if the command word is M112.
+	 */
+	private static boolean isKill(String line) {
+		int start = 0;
+		if(line.startsWith("N")) {
+			start = line.indexOf(' ');
+			if(start<0) return false;
+		}
+		int star = line.indexOf('*',start);
+		String body = line.substring(start, star<0 ? line.length() : star).trim();
+		String [] words = body.split("\\s+",2);
+		return words[0].equals("M112");
+	}
+
+	/**
+	 * Only the low eight bits are compared, so a sender that prints the checksum as a signed byte is understood too.
+	 */
+	private static boolean checksumMatches(String text,String checksum) {
+		try {
+			return (Integer.parseInt(checksum.trim()) & 0xFF) == (getChecksum(text) & 0xFF);
+		} catch(NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param text a line up to, but not including, the '*'.
+	 * @return the checksum that Marlin expects after the '*', from 0 to 255.
+	 */
+	public static int getChecksum(String text) {
+		byte checksum = 0;
+		for(int i=0;i<text.length();++i) checksum ^= (byte)text.charAt(i);
+		return checksum & 0xFF;
+	}
+
+	private void requestResend(String error) {
+		resendsRequested++;
+		say("Error:"+error+", Last Line: "+lastLine);
+		say(STR_RESEND+(lastLine+1));
+		say(STR_OK);
+	}
+
+	private void say(String message) {
+		said.add(message);
+	}
+
+	/**
+	 * Hand everything said so far to the output, outside the lock.  If another thread is already doing it, that
+	 * thread hands on these lines as well, so the order is kept.
+	 */
+	private void speak() {
+		synchronized(this) {
+			if(speaking || said.isEmpty()) return;
+			speaking = true;
+		}
+		try {
+			while(true) {
+				String message;
+				synchronized(this) {
+					message = said.poll();
+					if(message==null) {
+						speaking = false;
+						return;
+					}
+				}
+				output.accept(message);
+			}
+		} catch(RuntimeException e) {
+			synchronized(this) {
+				speaking = false;
+			}
+			throw e;
+		}
+	}
+
+	private void kill() {
+		killed = true;
+		commands.clear();
+		planner.clear();
+		nextBusy = Double.NaN;
+		say("Error:Printer halted. kill() called!");
+	}
+
+	/**
+	 * Run commands from the head of the queue until one has to wait.
+	 */
+	private void process() {
+		while(!commands.isEmpty() && !killed) {
+			if(!execute(commands.peek())) {
+				if(Double.isNaN(nextBusy)) nextBusy = clock+busyInterval;
+				return;
+			}
+			commands.poll();
+			nextBusy = Double.NaN;
+		}
+	}
+
+	/**
+	 * @param command a line without line number or checksum.
+	 * @return false if the command has to wait.
+	 */
+	private boolean execute(String command) {
+		String [] words = command.split("\\s+");
+		switch(words[0]) {
+			case "G0", "G1" -> {
+				if(planner.size()>=plannerDepth) return false;
+				addSegment(words);
+			}
+			case "G92" -> {
+				// no axis means all axes.
+				if(words.length==1) Arrays.fill(position,0);
+				else setAxes(words,position);
+				System.arraycopy(position,0,executed,0,position.length);
+			}
+			case "M110" -> {
+				// the line number was checked in receive(), this is the one to count from.
+				for(String w : words) {
+					if(w.startsWith("N")) lastLine = (long)parse(w);
+				}
+			}
+			case "M114" -> say(getM114());
+			case "M400" -> {
+				if(!planner.isEmpty()) return false;
+			}
+			default -> say("echo:Unknown command: \""+command+"\"");
+		}
+		say(STR_OK);
+		return true;
+	}
+
+	private void addSegment(String [] words) {
+		double [] start = position.clone();
+		setAxes(words,position);
+		for(String w : words) {
+			if(w.startsWith("F")) feedrate = parse(w);
+		}
+		double sum=0;
+		for(int i=0;i<position.length;++i) {
+			double d = position[i]-start[i];
+			sum += d*d;
+		}
+		double distance = Math.sqrt(sum);
+		double duration = (feedrate>0) ? distance/(feedrate/60.0) : 0;
+		if(planner.isEmpty()) segmentStart = clock;
+		planner.add(new Segment(position.clone(),Math.max(segmentTime,duration)));
+	}
+
+	private void setAxes(String [] words,double [] values) {
+		for(int j=1;j<words.length;++j) {
+			String w = words[j];
+			if(w.isEmpty()) continue;
+			int i = axes.indexOf(Character.toUpperCase(w.charAt(0)));
+			if(i>=0) values[i] = parse(w);
+		}
+	}
+
+	private static double parse(String word) {
+		try {
+			return Double.parseDouble(word.substring(1));
+		} catch(NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * @return the planned position, then "Count" and the position the motors have reached, in steps.
+	 */
+	private String getM114() {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<axes.length();++i) {
+			sb.append(axes.charAt(i)).append(":").append(StringHelper.formatDouble(position[i])).append(" ");
+		}
+		sb.append("Count");
+		for(int i=0;i<axes.length();++i) {
+			sb.append(" ").append(axes.charAt(i)).append(":").append(Math.round(executed[i]*STEPS_PER_UNIT));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Let time pass.  Segments in the planner are finished in order, each one making room for waiting commands.
+	 * @param dt seconds.
+	 */
+	public void advance(double dt) {
+		synchronized(this) {
+			advanceClock(dt);
+		}
+		speak();
+	}
+
+	private void advanceClock(double dt) {
+		double end = clock+dt;
+		while(clock<end && !killed) {
+			double next = end;
+			Segment head = planner.peek();
+			double finish = (head==null) ? Double.NaN : segmentStart+head.duration();
+			if(head!=null) next = Math.min(next,finish);
+			if(!Double.isNaN(nextBusy)) next = Math.min(next,nextBusy);
+			clock = next;
+
+			if(head!=null && clock>=finish) {
+				planner.poll();
+				segmentStart = finish;
+				System.arraycopy(head.end(),0,executed,0,executed.length);
+				segmentsFinished++;
+				process();
+			}
+			if(!Double.isNaN(nextBusy) && clock>=nextBusy) {
+				say(STR_BUSY);
+				nextBusy += busyInterval;
+			}
+		}
+		clock = Math.max(clock,end);
+	}
+
+	/**
+	 * @return true if there is nothing left to do.
+	 */
+	public synchronized boolean isIdle() {
+		return commands.isEmpty() && planner.isEmpty();
+	}
+
+	/**
+	 * @return true after M112, until {@link #reset()}.
+	 */
+	public synchronized boolean isKilled() {
+		return killed;
+	}
+
+	/**
+	 * Power cycle the controller.  Settings are kept.
+	 */
+	public void reset() {
+		synchronized(this) {
+			powerCycle();
+		}
+		speak();
+	}
+
+	private void powerCycle() {
+		commands.clear();
+		planner.clear();
+		Arrays.fill(position,0);
+		Arrays.fill(executed,0);
+		segmentStart = 0;
+		nextBusy = Double.NaN;
+		lastLine = 0;
+		feedrate = 0;
+		killed = false;
+		say("start");
+	}
+
+	public synchronized double getClock() {
+		return clock;
+	}
+
+	public synchronized double [] getPosition() {
+		return position.clone();
+	}
+
+	public synchronized long getLastLine() {
+		return lastLine;
+	}
+
+	public synchronized int getCommandQueueDepth() {
+		return commandQueueDepth;
+	}
+
+	public synchronized void setCommandQueueDepth(int depth) {
+		if(depth<1) throw new IllegalArgumentException("depth must be at least 1.");
+		commandQueueDepth = depth;
+	}
+
+	public synchronized int getPlannerDepth() {
+		return plannerDepth;
+	}
+
+	public synchronized void setPlannerDepth(int depth) {
+		if(depth<1) throw new IllegalArgumentException("depth must be at least 1.");
+		plannerDepth = depth;
+	}
+
+	/**
+	 * @return the least time a move takes, in seconds.
+	 */
+	public synchronized double getSegmentTime() {
+		return segmentTime;
+	}
+
+	/**
+	 * @param seconds the least time a move takes.  A move with a feedrate takes distance/feedrate if that is longer.
+	 */
+	public synchronized void setSegmentTime(double seconds) {
+		if(seconds<0) throw new IllegalArgumentException("time must not be negative.");
+		segmentTime = seconds;
+	}
+
+	public synchronized double getBusyInterval() {
+		return busyInterval;
+	}
+
+	public synchronized void setBusyInterval(double seconds) {
+		if(!(seconds>0)) throw new IllegalArgumentException("interval must be more than zero.");
+		busyInterval = seconds;
+	}
+
+	public synchronized long getLinesReceived() {
+		return linesReceived;
+	}
+
+	/**
+	 * @return the number of lines that arrived when the command queue was full.
+	 */
+	public synchronized long getLinesLost() {
+		return linesLost;
+	}
+
+	public synchronized long getResendsRequested() {
+		return resendsRequested;
+	}
+
+	public synchronized long getSegmentsFinished() {
+		return segmentsFinished;
+	}
+}
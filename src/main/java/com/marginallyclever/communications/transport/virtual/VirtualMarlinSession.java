@@ -0,0 +1,146 @@
+package com.marginallyclever.communications.transport.virtual;
+
+import com.marginallyclever.communications.session.SessionLayer;
+import com.marginallyclever.communications.session.SessionLayerEvent;
+import com.marginallyclever.communications.transport.TransportLayer;
+
+/**
+ * <p>A connection to a {@link VirtualMarlin} in the same program.  Anything that talks to a serial or TCP session
+ * can talk to this instead, without a robot.</p>
+ * <p>With a time scale of 1 the controller runs in real time on its own thread.  Bigger numbers run it faster.
+ * With a time scale of 0 there is no thread and time only passes when {@link #advance(double)} is called.</p>
+ */
+public final class VirtualMarlinSession extends SessionLayer implements Runnable {
+	private final TransportLayer transportLayer;
+	private final VirtualMarlin marlin;
+	private double timeScale = 1;
+	private String connectionName = "";
+	private volatile boolean portOpened = false;
+	private Thread thread;
+
+	// parsing input from the host
+	private final StringBuilder inputBuffer = new StringBuilder();
+
+	/**
+	 * @param layer the layer that made this session.
+	 * @param axes one letter per axis, for example "XYZUVW".
+	 */
+	public VirtualMarlinSession(TransportLayer layer,String axes) {
+		super();
+		transportLayer = layer;
+		marlin = new VirtualMarlin(axes,this::dataAvailable);
+	}
+
+	/**
+	 * @return the controller, to change its settings or read its statistics.
+	 */
+	public VirtualMarlin getFirmware() {
+		return marlin;
+	}
+
+	public double getTimeScale() {
+		return timeScale;
+	}
+
+	/**
+	 * Takes effect the next time the connection is opened.
+	 * @param timeScale seconds of controller time per second of real time, or 0 to only use {@link #advance(double)}.
+	 */
+	public void setTimeScale(double timeScale) {
+		if(timeScale<0) throw new IllegalArgumentException("time scale must not be negative.");
+		this.timeScale = timeScale;
+	}
+
+	/**
+	 * Power up the controller.
+	 */
+	@Override
+	public void openConnection(String connectionName) throws Exception {
+		if(portOpened) return;
+
+		this.connectionName = connectionName;
+		inputBuffer.setLength(0);
+		portOpened = true;
+		marlin.reset();
+
+		if(timeScale>0) {
+			thread = new Thread(this,"VirtualMarlin "+connectionName);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	@Override
+	public void closeConnection() {
+		if(!portOpened) return;
+		portOpened = false;
+		if(thread!=null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		long last = System.nanoTime();
+		while(portOpened) {
+			try {
+				Thread.sleep(1);
+			} catch(InterruptedException e) {
+				break;
+			}
+			long now = System.nanoTime();
+			marlin.advance((now-last)*1e-9*timeScale);
+			last = now;
+		}
+	}
+
+	/**
+	 * Let time pass on the controller.
+	 * @param dt seconds.
+	 */
+	public void advance(double dt) {
+		marlin.advance(dt);
+	}
+
+	// Deal with something the controller has said.
+	private void dataAvailable(String oneLine) {
+		if(!portOpened) return;
+		notifyListeners(new SessionLayerEvent(this, SessionLayerEvent.DATA_AVAILABLE,oneLine+"\n"));
+	}
+
+	@Override
+	public void sendMessage(String msg) throws Exception {
+		if(!portOpened) return;
+
+		inputBuffer.append(msg);
+		// each line ends with a \n.
+		int x;
+		while((x=inputBuffer.indexOf("\n"))!=-1) {
+			String oneLine = inputBuffer.substring(0,x);
+			inputBuffer.delete(0,x+1);
+			marlin.receive(oneLine);
+		}
+	}
+
+	// connect to the last controller
+	@Override
+	public void reconnect() throws Exception {
+		openConnection(connectionName);
+	}
+
+	@Override
+	public boolean isOpen() {
+		return portOpened;
+	}
+
+	@Override
+	public String getName() {
+		return connectionName;
+	}
+
+	@Override
+	public TransportLayer getTransportLayer() {
+		return transportLayer;
+	}
+}
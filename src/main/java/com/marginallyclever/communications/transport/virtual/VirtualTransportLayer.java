@@ -0,0 +1,90 @@
+package com.marginallyclever.communications.transport.virtual;
+
+import com.marginallyclever.communications.session.SessionLayer;
+import com.marginallyclever.communications.transport.TransportLayer;
+import com.marginallyclever.communications.transport.TransportLayerPanel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens connections to {@link VirtualMarlin} controllers, for working without a robot.
+ */
+public class VirtualTransportLayer implements TransportLayer {
+	private static final Logger logger = LoggerFactory.getLogger(VirtualTransportLayer.class);
+	public static final String DEFAULT_AXES = "XYZUVW";
+
+	private String axes = DEFAULT_AXES;
+	private int plannerDepth = VirtualMarlin.DEFAULT_PLANNER_DEPTH;
+	private int commandQueueDepth = VirtualMarlin.DEFAULT_COMMAND_QUEUE_DEPTH;
+	private double segmentTime = 0;
+	private double timeScale = 1;
+
+	public VirtualTransportLayer() {}
+
+	/**
+	 * @return a new session with the current settings, or null on failure.
+	 */
+	@Override
+	public SessionLayer openConnection(String connectionName) {
+		VirtualMarlinSession session = new VirtualMarlinSession(this,axes);
+		VirtualMarlin marlin = session.getFirmware();
+		marlin.setPlannerDepth(plannerDepth);
+		marlin.setCommandQueueDepth(commandQueueDepth);
+		marlin.setSegmentTime(segmentTime);
+		session.setTimeScale(timeScale);
+
+		try {
+			session.openConnection(connectionName);
+		} catch (Exception e) {
+			logger.error("Could not open {}.",connectionName,e);
+			return null;
+		}
+
+		return session;
+	}
+
+	@Override
+	public TransportLayerPanel getTransportLayerPanel() {
+		return new VirtualTransportLayerPanel(this);
+	}
+
+	public String getAxes() {
+		return axes;
+	}
+
+	public void setAxes(String axes) {
+		this.axes = axes;
+	}
+
+	public int getPlannerDepth() {
+		return plannerDepth;
+	}
+
+	public void setPlannerDepth(int plannerDepth) {
+		this.plannerDepth = plannerDepth;
+	}
+
+	public int getCommandQueueDepth() {
+		return commandQueueDepth;
+	}
+
+	public void setCommandQueueDepth(int commandQueueDepth) {
+		this.commandQueueDepth = commandQueueDepth;
+	}
+
+	public double getSegmentTime() {
+		return segmentTime;
+	}
+
+	public void setSegmentTime(double segmentTime) {
+		this.segmentTime = segmentTime;
+	}
+
+	public double getTimeScale() {
+		return timeScale;
+	}
+
+	public void setTimeScale(double timeScale) {
+		this.timeScale = timeScale;
+	}
+}
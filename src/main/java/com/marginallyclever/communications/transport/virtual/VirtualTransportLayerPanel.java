@@ -0,0 +1,48 @@
+package com.marginallyclever.communications.transport.virtual;
+
+import com.marginallyclever.communications.session.SessionLayer;
+import com.marginallyclever.communications.transport.TransportLayerPanel;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+
+/**
+ * Settings for a new {@link VirtualMarlin}.
+ */
+public class VirtualTransportLayerPanel extends TransportLayerPanel {
+	private final VirtualTransportLayer layer;
+	private final JTextField axesField;
+	private final JSpinner plannerField;
+	private final JSpinner queueField;
+	private final JSpinner segmentField;
+	private final JSpinner timeScaleField;
+
+	VirtualTransportLayerPanel(VirtualTransportLayer virtualLayer) {
+		this.layer=virtualLayer;
+
+		this.setBorder(new EmptyBorder(5,5,5,5));
+		this.setLayout(new GridLayout(0, 2));
+		this.add(new JLabel("Axes",JLabel.LEADING));
+		this.add(axesField = new JTextField(layer.getAxes()));
+		this.add(new JLabel("Planner depth",JLabel.LEADING));
+		this.add(plannerField = new JSpinner(new SpinnerNumberModel(layer.getPlannerDepth(),1,1024,1)));
+		this.add(new JLabel("Command queue depth",JLabel.LEADING));
+		this.add(queueField = new JSpinner(new SpinnerNumberModel(layer.getCommandQueueDepth(),1,1024,1)));
+		this.add(new JLabel("Segment time (s)",JLabel.LEADING));
+		this.add(segmentField = new JSpinner(new SpinnerNumberModel(layer.getSegmentTime(),0,60,0.001)));
+		this.add(new JLabel("Time scale",JLabel.LEADING));
+		this.add(timeScaleField = new JSpinner(new SpinnerNumberModel(layer.getTimeScale(),0.01,1000,0.1)));
+	}
+
+	@Override
+	public SessionLayer openConnection() {
+		String axes = axesField.getText().trim();
+		if(!axes.isEmpty()) layer.setAxes(axes);
+		layer.setPlannerDepth((Integer)plannerField.getValue());
+		layer.setCommandQueueDepth((Integer)queueField.getValue());
+		layer.setSegmentTime(((Number)segmentField.getValue()).doubleValue());
+		layer.setTimeScale(((Number)timeScaleField.getValue()).doubleValue());
+		return layer.openConnection("virtual");
+	}
+}
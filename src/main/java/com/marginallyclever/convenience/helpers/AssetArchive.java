@@ -0,0 +1,132 @@
+package com.marginallyclever.convenience.helpers;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * <p>{@link AssetArchive} is one zip file, opened once with {@link ZipFile}.  The central directory is read when the
+ * archive is opened and kept, so finding an entry does not search the file.  Nothing is copied to a temporary
+ * file.</p>
+ * <p>Archives are shared through {@link AssetArchives}.  Many threads may read entries at the same time.</p>
+ */
+public class AssetArchive implements Closeable {
+	private final File file;
+	private final long lastModified;
+	private final long length;
+	private final ZipFile zip;
+	private int openStreams = 0;
+	private boolean closeWhenIdle = false;
+	private boolean closed = false;
+
+	/**
+	 * Open a zip and read its central directory.
+	 * @param file the zip file
+	 * @throws IOException if the file is not a zip or cannot be read.
+	 */
+	public AssetArchive(File file) throws IOException {
+		this.file = file;
+		this.lastModified = file.lastModified();
+		this.length = file.length();
+		this.zip = new ZipFile(file);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return true if the file on disk has changed since it was opened.
+	 */
+	public boolean isStale() {
+		return file.lastModified()!=lastModified || file.length()!=length;
+	}
+
+	/**
+	 * @return every entry in the order they appear in the central directory.
+	 */
+	public synchronized List<ZipEntry> getEntries() {
+		if(closed) return List.of();
+		return List.copyOf(Collections.list(zip.entries()));
+	}
+
+	/**
+	 * @return the number of entries, including folders.
+	 */
+	public synchronized int size() {
+		return closed ? 0 : zip.size();
+	}
+
+	/**
+	 * @param name the entry name.  '\' is treated as '/' and a leading "/" or "./" is ignored.
+	 * @return the entry or null if it is not in the archive.
+	 */
+	public synchronized ZipEntry getEntry(String name) {
+		return closed ? null : zip.getEntry(normalize(name));
+	}
+
+	/**
+	 * Open one entry for reading.  Closing the archive while the stream is open is safe, the file is closed when
+	 * the last stream is closed.
+	 * @param name the entry name
+	 * @return a stream of the entry contents.
+	 * @throws FileNotFoundException if the entry is not in the archive.
+	 * @throws IOException if the entry cannot be read.
+	 */
+	public InputStream open(String name) throws IOException {
+		InputStream in;
+		synchronized(this) {
+			if(closed) throw new IOException(file+" is closed.");
+			ZipEntry entry = zip.getEntry(normalize(name));
+			if(entry==null || entry.isDirectory()) throw new FileNotFoundException(name+" not found in "+file);
+			in = zip.getInputStream(entry);
+			openStreams++;
+		}
+		return new FilterInputStream(in) {
+			private boolean streamClosed = false;
+
+			@Override
+			public void close() throws IOException {
+				if(streamClosed) return;
+				streamClosed = true;
+				super.close();
+				release();
+			}
+		};
+	}
+
+	/**
+	 * Close the file as soon as no entry streams are open.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(this) {
+			closeWhenIdle = true;
+			if(openStreams>0 || closed) return;
+			closed = true;
+		}
+		zip.close();
+	}
+
+	public synchronized boolean isOpen() {
+		return !closeWhenIdle;
+	}
+
+	static String normalize(String name) {
+		String n = name.replace('\\','/');
+		while(n.startsWith("./")) n = n.substring(2);
+		while(n.startsWith("/")) n = n.substring(1);
+		return n;
+	}
+
+	private void release() throws IOException {
+		synchronized(this) {
+			openStreams--;
+			if(openStreams>0 || !closeWhenIdle || closed) return;
+			closed = true;
+		}
+		zip.close();
+	}
+}
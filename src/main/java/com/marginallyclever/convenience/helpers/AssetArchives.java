@@ -0,0 +1,154 @@
+package com.marginallyclever.convenience.helpers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * <p>{@link AssetArchives} keeps the most recently used {@link AssetArchive}s open so that loading many assets
+ * from one zip opens the zip once.  Used by {@link FileHelper#open(String)} for "zipname:filename" paths, which
+ * makes it shared by the mesh and texture factories and by scene loading.</p>
+ * <p>An archive that changes on disk is opened again the next time it is used.</p>
+ */
+public class AssetArchives {
+	private static final Logger logger = LoggerFactory.getLogger(AssetArchives.class);
+	public static final int DEFAULT_MAX_OPEN = 8;
+	private static final byte [] ZIP_MAGIC = {'P','K',3,4};
+
+	private static int maxOpen = DEFAULT_MAX_OPEN;
+	// access order, so the first entry is the least recently used.
+	private static final LinkedHashMap<String,AssetArchive> open = new LinkedHashMap<>(16,0.75f,true);
+
+	private AssetArchives() {}
+
+	/**
+	 * Get an open archive, opening it if needed.
+	 * @param zipPath path to the zip file.
+	 * @return the archive.
+	 * @throws IOException if the file is not a zip or cannot be read.
+	 */
+	public static AssetArchive get(String zipPath) throws IOException {
+		File file = new File(zipPath).getCanonicalFile();
+		String key = file.getPath();
+		synchronized(open) {
+			AssetArchive archive = open.get(key);
+			if(archive!=null && archive.isOpen() && !archive.isStale()) return archive;
+			if(archive!=null) {
+				open.remove(key);
+				closeQuietly(archive);
+			}
+
+			archive = new AssetArchive(file);
+			open.put(key,archive);
+			logger.debug("Opened {} with {} entries.",key,archive.size());
+			trim();
+			return archive;
+		}
+	}
+
+	/**
+	 * Open one entry of a zip.
+	 * @param zipPath path to the zip file.
+	 * @param entryName the entry in the zip.
+	 * @return a stream of the entry contents.
+	 * @throws IOException if the zip or the entry cannot be read.
+	 */
+	public static InputStream open(String zipPath,String entryName) throws IOException {
+		return get(zipPath).open(entryName);
+	}
+
+	/**
+	 * @return true if the zip can be opened and has the entry.
+	 */
+	public static boolean exists(String zipPath,String entryName) {
+		try {
+			return get(zipPath).getEntry(entryName)!=null;
+		} catch(IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Close an archive, for example before it is written.  Does nothing if the archive is not open.
+	 * @param zipPath path to the zip file.
+	 */
+	public static void close(String zipPath) {
+		String key;
+		try {
+			key = new File(zipPath).getCanonicalPath();
+		} catch(IOException e) {
+			key = new File(zipPath).getAbsolutePath();
+		}
+		AssetArchive archive;
+		synchronized(open) {
+			archive = open.remove(key);
+		}
+		if(archive!=null) closeQuietly(archive);
+	}
+
+	/**
+	 * Close every open archive.
+	 */
+	public static void closeAll() {
+		synchronized(open) {
+			for(AssetArchive archive : open.values()) closeQuietly(archive);
+			open.clear();
+		}
+	}
+
+	public static int getMaxOpen() {
+		return maxOpen;
+	}
+
+	/**
+	 * @param max how many archives may be open at once.  The least recently used are closed first.
+	 */
+	public static void setMaxOpen(int max) {
+		if(max<1) throw new IllegalArgumentException("max must be at least 1.");
+		synchronized(open) {
+			maxOpen = max;
+			trim();
+		}
+	}
+
+	public static int getOpenCount() {
+		synchronized(open) {
+			return open.size();
+		}
+	}
+
+	/**
+	 * @param file a file on disk
+	 * @return true if the file starts like a zip.
+	 */
+	public static boolean isZip(File file) {
+		if(!file.isFile()) return false;
+		try(InputStream in = new FileInputStream(file)) {
+			byte [] header = in.readNBytes(ZIP_MAGIC.length);
+			return Arrays.equals(header,ZIP_MAGIC);
+		} catch(IOException e) {
+			return false;
+		}
+	}
+
+	private static void trim() {
+		Iterator<AssetArchive> i = open.values().iterator();
+		while(open.size()>maxOpen && i.hasNext()) {
+			AssetArchive archive = i.next();
+			i.remove();
+			closeQuietly(archive);
+		}
+	}
+
+	private static void closeQuietly(AssetArchive archive) {
+		try {
+			archive.close();
+		} catch(IOException e) {
+			logger.warn("Could not close {}.",archive.getFile(),e);
+		}
+	}
+}
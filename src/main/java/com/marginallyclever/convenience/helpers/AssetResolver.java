@@ -0,0 +1,19 @@
+package com.marginallyclever.convenience.helpers;
+
+/**
+ * {@link AssetResolver} turns the name of an asset, as it is written in a saved file, into a path that
+ * {@link FileHelper#open(String)} can read.  A scene in a zip resolves its assets inside the same zip.
+ */
+@FunctionalInterface
+public interface AssetResolver {
+	/**
+	 * Relative to the current working directory, absolute, or a resource.
+	 */
+	AssetResolver DEFAULT = FileHelper::getAbsolutePathOrFilename;
+
+	/**
+	 * @param filename the asset name as it was saved.
+	 * @return a path that {@link FileHelper#open(String)} can read.
+	 */
+	String resolve(String filename);
+}
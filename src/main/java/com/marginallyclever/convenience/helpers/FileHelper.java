@@ -1,8 +1,6 @@
 package com.marginallyclever.convenience.helpers;
 
 import java.io.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 /**
  * Methods to make loading files from disk or jar resource easier.
@@ -11,7 +9,7 @@ import java.util.zip.ZipFile;
 public class FileHelper {
 	/**
 	 * Open a file.  open() looks in three places:<br>
-	 *  - The file may be contained inside a zip, as indicated by the filename "zipname:filename".<br>
+	 *  - The file may be contained inside a zip, as indicated by the filename "zipname:filename".  See {@link AssetArchives}.<br>
 	 *  - The file may be a resource inside a jar file.
 	 *  - The file may be on disk.
 	 *     
@@ -20,14 +18,26 @@ public class FileHelper {
 	 * @throws IOException file open failure
 	 */
 	public static BufferedInputStream open(String filename) throws IOException {
-		int index = filename.lastIndexOf(":");
-		int index2 = filename.lastIndexOf(":\\");  // hack for windows file system
-		if(index!=-1 && index!=index2) {
+		int index = getArchiveSeparator(filename);
+		if(index!=-1) {
 			return loadFromZip(filename.substring(0, index), filename.substring(index+1));
 		} else {
 			return new BufferedInputStream(getInputStream(filename));
 		}
 	}
+
+	/**
+	 * @param filename a path that might be "zipname:filename"
+	 * @return the index of the ':' between the zip and the entry, or -1 if this is not a path into a zip.
+	 */
+	public static int getArchiveSeparator(String filename) {
+		int index = filename.lastIndexOf(":");
+		int index2 = filename.lastIndexOf(":\\");  // hack for windows file system, also C:/
+		if(index!=-1 && index!=index2 && !(index==1 && filename.length()>2 && filename.charAt(2)=='/')) {
+			return index;
+		}
+		return -1;
+	}
 	
 	
 	private static InputStream getInputStream(String fname) throws IOException {
@@ -39,33 +49,11 @@ public class FileHelper {
 	}
 	
 	
+	/**
+	 * The zip stays open in {@link AssetArchives} so the next asset from the same zip does not open it again.
+	 */
 	private static BufferedInputStream loadFromZip(String zipFilePath,String fileToExtract) throws IOException {
-		try(ZipFile zipFile = new ZipFile(zipFilePath)) {
-			ZipEntry entry = zipFile.getEntry(fileToExtract);
-			if(entry==null) {
-				throw new IOException("file not found in zip");
-			}
-
-			// read buffered stream into temp file.
-			String fnameSuffix = fileToExtract.substring(fileToExtract.lastIndexOf(".")+1);
-			String fnameNoSuffix = fileToExtract.substring(0,fileToExtract.length()-(fnameSuffix.length()+1));
-			File f = File.createTempFile(fnameNoSuffix, fnameSuffix);
-			f.setReadable(true);
-			f.setWritable(true);
-			f.deleteOnExit();
-
-			InputStream inputStream = zipFile.getInputStream(entry);
-			FileOutputStream outputStream = new FileOutputStream(f);
-
-			byte[] buffer = new byte[1024];
-			int bytesRead;
-			while ((bytesRead = inputStream.read(buffer)) != -1) {
-				outputStream.write(buffer, 0, bytesRead);
-			}
-            outputStream.close();
-		    // return temp file as input stream
-            return new BufferedInputStream(new FileInputStream(f));
-	    }
+		return new BufferedInputStream(AssetArchives.open(zipFilePath,fileToExtract));
 	}
 
 	public static String getUserDirectory() {
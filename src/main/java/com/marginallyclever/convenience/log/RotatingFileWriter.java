@@ -0,0 +1,134 @@
+package com.marginallyclever.convenience.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>{@link RotatingFileWriter} appends lines of text to a file.  When the file grows past a size limit it is renamed
+ * to <code>name.1</code>, older files shift up by one, and anything past <code>name.maxFiles</code> is deleted.</p>
+ * <p>Intended as a spill for {@link com.marginallyclever.convenience.swing.BoundedListModel} so that lines evicted
+ * from a view are not lost.</p>
+ */
+public class RotatingFileWriter implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(RotatingFileWriter.class);
+    public static final long DEFAULT_MAX_BYTES = 10L*1024*1024;
+    public static final int DEFAULT_MAX_FILES = 3;
+    private static final int NEWLINE_BYTES = System.lineSeparator().getBytes(StandardCharsets.UTF_8).length;
+    private static final Map<Path,RotatingFileWriter> shared = new HashMap<>();
+    private final Path path;
+    private final long maxBytes;
+    private final int maxFiles;
+    private BufferedWriter writer;
+    private long bytesWritten;
+
+    /**
+     * @param path the file to write.
+     * @param maxBytes the size at which the file is rotated.
+     * @param maxFiles the number of old files to keep.
+     */
+    public RotatingFileWriter(Path path, long maxBytes, int maxFiles) {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * One writer per file for the whole application, so that several views can spill to the same file.  Every
+     * shared writer is closed when the JVM shuts down.
+     * @param path the file to write.
+     * @return the writer for that file, created with the default limits if needed.
+     */
+    public static RotatingFileWriter getShared(Path path) {
+        synchronized (shared) {
+            if(shared.isEmpty()) {
+                Runtime.getRuntime().addShutdownHook(new Thread(RotatingFileWriter::closeShared,"RotatingFileWriter shutdown"));
+            }
+            return shared.computeIfAbsent(path.toAbsolutePath(),(p)->new RotatingFileWriter(p,DEFAULT_MAX_BYTES,DEFAULT_MAX_FILES));
+        }
+    }
+
+    private static void closeShared() {
+        synchronized (shared) {
+            for(RotatingFileWriter w : shared.values()) {
+                try {
+                    w.close();
+                } catch(IOException e) {
+                    logger.error("Failed to close {}.",w.getPath(),e);
+                }
+            }
+            shared.clear();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Append one line to the file, rotating first if needed.  I/O errors are logged and the line is dropped.
+     * @param line the text to write.  A newline is appended.
+     */
+    public synchronized void write(String line) {
+        try {
+            if(writer==null) open();
+            if(bytesWritten >= maxBytes) rotate();
+            writer.write(line);
+            writer.newLine();
+            bytesWritten += line.getBytes(StandardCharsets.UTF_8).length + NEWLINE_BYTES;
+        } catch(IOException e) {
+            logger.error("Failed to write to {}.",path,e);
+        }
+    }
+
+    private void open() throws IOException {
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        bytesWritten = Files.size(path);
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        writer = null;
+        Files.deleteIfExists(sibling(maxFiles));
+        for(int i=maxFiles-1;i>0;--i) {
+            Path from = sibling(i);
+            if(Files.exists(from)) Files.move(from, sibling(i+1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if(maxFiles>0) Files.move(path, sibling(1), StandardCopyOption.REPLACE_EXISTING);
+        else Files.deleteIfExists(path);
+        open();
+    }
+
+    private Path sibling(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    /**
+     * Push buffered lines to disk.
+     */
+    public synchronized void flush() {
+        if(writer==null) return;
+        try {
+            writer.flush();
+        } catch(IOException e) {
+            logger.error("Failed to flush {}.",path,e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(writer==null) return;
+        writer.close();
+        writer = null;
+    }
+}
@@ -0,0 +1,204 @@
+package com.marginallyclever.convenience.swing;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * <p>{@link BoundedListModel} is a {@link ListModel} backed by a fixed size ring buffer.  When the buffer is full the
+ * oldest elements are evicted to make room for new ones.  Evicted elements can optionally be handed to a spill
+ * {@link Consumer} (for example a {@link com.marginallyclever.convenience.log.RotatingFileWriter}).</p>
+ * <p>Any thread may call {@link #offer(Object)}.  Offered elements are queued and moved into the model in one batch
+ * on the Event Dispatch Thread every {@link #getFlushInterval()} milliseconds while the model is started.  Each batch
+ * fires at most one remove and one add event, no matter how many elements arrived.</p>
+ * <p>While the model is stopped the queue is not left to grow.  Once more than {@link #getCapacity()} elements are
+ * waiting, a flush is posted to the EDT so the oldest are still evicted to the spill, in order.</p>
+ * @param <T> the type of element in the list.
+ */
+public class BoundedListModel<T> extends AbstractListModel<T> {
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_FLUSH_INTERVAL_MS = 100;
+
+    private final Object[] buffer;
+    private int head = 0;  // index in buffer of the oldest element
+    private int size = 0;
+    private long totalAdded = 0;
+    private final ConcurrentLinkedQueue<T> inbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inboundSize = new AtomicInteger();
+    private final AtomicBoolean flushPosted = new AtomicBoolean();
+    private final Timer flushTimer;
+    private Consumer<T> spill;
+
+    public BoundedListModel() {
+        this(DEFAULT_CAPACITY, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * @param capacity the maximum number of elements retained.
+     * @param flushIntervalMs how often queued elements are moved into the model, in milliseconds.
+     */
+    public BoundedListModel(int capacity, int flushIntervalMs) {
+        super();
+        if(capacity<1) throw new IllegalArgumentException("capacity must be at least 1.");
+        buffer = new Object[capacity];
+        flushTimer = new Timer(flushIntervalMs, (e)->flush());
+        flushTimer.setCoalesce(true);
+    }
+
+    /**
+     * Start moving queued elements into the model on the EDT.
+     */
+    public void start() {
+        flushTimer.start();
+    }
+
+    /**
+     * Stop the periodic flush.  Queued elements are kept until the next {@link #flush()}.
+     */
+    public void stop() {
+        flushTimer.stop();
+    }
+
+    public int getFlushInterval() {
+        return flushTimer.getDelay();
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * @return the number of elements ever added to this model, including those since evicted.
+     */
+    public long getTotalAdded() {
+        return totalAdded;
+    }
+
+    /**
+     * @param spill receives every element as it is evicted.  May be null.
+     */
+    public void setSpill(Consumer<T> spill) {
+        this.spill = spill;
+    }
+
+    /**
+     * Queue an element to be added to the model.  Safe to call from any thread.
+     * @param element the element to add.
+     */
+    public void offer(T element) {
+        inbound.add(element);
+        // the timer may be stopped.  Don't let the queue grow past the capacity.
+        if(inboundSize.incrementAndGet() > buffer.length && flushPosted.compareAndSet(false,true)) {
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    /**
+     * Move all queued elements into the model.  Must be called on the EDT.
+     */
+    public void flush() {
+        flushPosted.set(false);
+        if(inbound.isEmpty()) return;
+
+        List<T> batch = new ArrayList<>();
+        T item;
+        while((item = inbound.poll()) != null) batch.add(item);
+        inboundSize.addAndGet(-batch.size());
+        totalAdded += batch.size();
+
+        // the oldest go first: the retained elements, then the start of a batch larger than the whole buffer.
+        int overflow = Math.max(0, size + batch.size() - buffer.length);
+        int removed = Math.min(overflow, size);
+        if(removed>0) {
+            for(int i=0;i<removed;++i) {
+                evict(getElementAt(i));
+                buffer[(head + i) % buffer.length] = null;
+            }
+            head = (head + removed) % buffer.length;
+            size -= removed;
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+        int skip = overflow - removed;
+        for(int i=0;i<skip;++i) evict(batch.get(i));
+
+        int first = size;
+        for(int i=skip;i<batch.size();++i) {
+            buffer[(head + size) % buffer.length] = batch.get(i);
+            size++;
+        }
+        fireIntervalAdded(this, first, size - 1);
+    }
+
+    private void evict(T element) {
+        if(spill!=null) spill.accept(element);
+    }
+
+    /**
+     * Remove all elements from the model, including any still queued.  Must be called on the EDT.
+     */
+    public void clear() {
+        while(inbound.poll() != null) inboundSize.decrementAndGet();
+        if(size==0) return;
+        int oldSize = size;
+        for(int i=0;i<buffer.length;++i) buffer[i]=null;
+        head = 0;
+        size = 0;
+        fireIntervalRemoved(this, 0, oldSize - 1);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T getElementAt(int index) {
+        if(index<0 || index>=size) throw new IndexOutOfBoundsException(index);
+        return (T)buffer[(head + index) % buffer.length];
+    }
+
+    /**
+     * Search the retained elements for the first one that matches.
+     * @param test the condition to match.
+     * @param start the index to start searching from, inclusive.
+     * @param forward true to search towards the newest element, false towards the oldest.
+     * @return the index of the match or -1 if none is found.
+     */
+    public int find(Predicate<T> test, int start, boolean forward) {
+        int step = forward ? 1 : -1;
+        for(int i=start; i>=0 && i<size; i+=step) {
+            if(test.test(getElementAt(i))) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Search the retained elements for the first whose {@link Object#toString()} contains the given text,
+     * ignoring case.
+     * @param text the text to find.
+     * @param start the index to start searching from, inclusive.
+     * @param forward true to search towards the newest element, false towards the oldest.
+     * @return the index of the match or -1 if none is found.
+     */
+    public int find(String text, int start, boolean forward) {
+        if(text==null || text.isEmpty()) return -1;
+        return find((element)->containsIgnoreCase(String.valueOf(element), text), start, forward);
+    }
+
+    /**
+     * Case-insensitive {@link String#contains(CharSequence)} that does not allocate.
+     */
+    static boolean containsIgnoreCase(String haystack, String needle) {
+        int max = haystack.length() - needle.length();
+        for(int i=0;i<=max;++i) {
+            if(haystack.regionMatches(true, i, needle, 0, needle.length())) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,112 @@
+package com.marginallyclever.convenience.swing;
+
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.*;
+
+/**
+ * <p>{@link VirtualizedList} is a {@link JList} tuned for very long, append-only {@link BoundedListModel}s such as
+ * logs.</p>
+ * <ul>
+ *     <li>Cells have a fixed height so the UI never measures every row.</li>
+ *     <li>The fixed width only grows, and only the newly added rows are measured.</li>
+ *     <li>The list follows the tail while the user is scrolled to the bottom.</li>
+ *     <li>The model's flush timer runs only while the list is showing.  While it is hidden the model still evicts
+ *     past its capacity.</li>
+ * </ul>
+ * @param <T> the type of element in the list.
+ */
+public class VirtualizedList<T> extends JList<T> {
+    private final BoundedListModel<T> boundedModel;
+
+    public VirtualizedList(BoundedListModel<T> model) {
+        super(model);
+        this.boundedModel = model;
+        setFixedCellWidth(1);
+        updateFixedCellHeight();
+
+        model.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                measureNewRows(e.getIndex0(), e.getIndex1());
+                if(isScrolledToBottom()) {
+                    SwingUtilities.invokeLater(() -> scrollToEnd());
+                }
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {}
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {}
+        });
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        // called by the super constructor before boundedModel is set.
+        if(boundedModel!=null) updateFixedCellHeight();
+    }
+
+    private void updateFixedCellHeight() {
+        Font font = getFont();
+        if(font==null) return;
+        FontMetrics fm = getFontMetrics(font);
+        // leave room for the renderer border.
+        setFixedCellHeight(fm.getHeight() + 2);
+    }
+
+    private void measureNewRows(int first, int last) {
+        Font font = getFont();
+        if(font==null) return;
+        FontMetrics fm = getFontMetrics(font);
+        int widest = getFixedCellWidth();
+        for(int i=first;i<=last;++i) {
+            widest = Math.max(widest, fm.stringWidth(String.valueOf(boundedModel.getElementAt(i))) + 8);
+        }
+        if(widest != getFixedCellWidth()) setFixedCellWidth(widest);
+    }
+
+    /**
+     * Must be called before the layout has accounted for the new rows.
+     */
+    private boolean isScrolledToBottom() {
+        Rectangle r = getVisibleRect();
+        return r.y + r.height >= getHeight() - getFixedCellHeight();
+    }
+
+    public void scrollToEnd() {
+        int last = boundedModel.getSize()-1;
+        if(last>=0) ensureIndexIsVisible(last);
+    }
+
+    /**
+     * Select and scroll to the next element containing the given text, starting after the current selection.
+     * @param text the text to find.
+     * @param forward the direction to search.
+     * @return true if a match was found.
+     */
+    public boolean findNext(String text, boolean forward) {
+        int selected = getSelectedIndex();
+        int start = (selected==-1) ? (forward ? 0 : boundedModel.getSize()-1) : selected + (forward ? 1 : -1);
+        int found = boundedModel.find(text, start, forward);
+        if(found==-1) return false;
+        setSelectedIndex(found);
+        ensureIndexIsVisible(found);
+        return true;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        boundedModel.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        boundedModel.stop();
+        super.removeNotify();
+    }
+}
@@ -1,12 +1,11 @@
 package com.marginallyclever.ro3;
 
-import org.reflections.Reflections;
+import com.marginallyclever.ro3.classindex.ClassIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 import java.util.function.Supplier;
 
 /**
@@ -92,11 +91,8 @@ public class Factory<T> {
     }
 
     public void scan() {
-        // Create a new instance of Reflections
-        Reflections reflections = new Reflections("com.marginallyclever.ro3");
-        // Get all classes that extend T
-        Set<Class<? extends T>> found = reflections.getSubTypesOf(type);
-        // Now, classes contains all classes that extend T
+        // Get all classes that extend T from the index built at compile time.
+        List<Class<? extends T>> found = ClassIndex.getSubTypesOf(type);
         for (Class<? extends T> clazz : found) {
             logger.info("Found " + clazz.getName());
         }
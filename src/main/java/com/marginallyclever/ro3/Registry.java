@@ -4,7 +4,9 @@ import com.marginallyclever.ro3.listwithevents.ListWithEvents;
 import com.marginallyclever.ro3.mesh.MeshFactory;
 import com.marginallyclever.ro3.node.nodes.*;
 import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.SceneChanges;
 import com.marginallyclever.ro3.node.nodes.marlinrobotarm.MarlinRobotArm;
+import com.marginallyclever.ro3.physics.PhysicsSystem;
 import com.marginallyclever.ro3.texture.TextureFactory;
 
 import javax.swing.event.EventListenerList;
@@ -23,6 +25,8 @@ public class Registry {
     public static final TextureFactory textureFactory = new TextureFactory();
     public static final MeshFactory meshFactory = new MeshFactory();
     public static final Factory<Node> nodeFactory = new Factory<>(Node.class);
+    public static final PhysicsSystem physics = new PhysicsSystem();
+    public static final SceneChanges sceneChanges = new SceneChanges();
     private static Node scene = new Node("Scene");
     public static final ListWithEvents<Camera> cameras = new ListWithEvents<>();
     private static Camera activeCamera = null;
@@ -41,6 +45,7 @@ public class Registry {
         Factory.Category<Node> pose = nodule.add("Pose", Pose::new);
             pose.add("Camera", Camera::new);
             pose.add("LookAt", LookAt::new);
+            pose.add("RigidBody3D", RigidBody3D::new);
 
         reset();
     }
@@ -0,0 +1,107 @@
+package com.marginallyclever.ro3.apps;
+
+import com.marginallyclever.ro3.apps.commands.MemoryEstimate;
+
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>{@link BoundedUndoManager} is an {@link UndoManager} limited by memory instead of by number of edits.  When the
+ * edits hold more than the budget the oldest are discarded first.  The newest edit is always kept.</p>
+ * <p>The estimate of each edit is taken once, when it is added or when another edit is merged into it, and kept
+ * in a running total so that adding an edit does not visit the whole history.</p>
+ */
+public class BoundedUndoManager extends UndoManager {
+    /**
+     * Estimate for edits that do not implement {@link MemoryEstimate}.
+     */
+    public static final long DEFAULT_EDIT_ESTIMATE = 1024;
+    private long memoryBudget;
+    private long memoryUsed;
+    // the estimate counted in memoryUsed for each edit in the history.
+    private final Map<UndoableEdit,Long> counted = new IdentityHashMap<>();
+
+    public BoundedUndoManager(long memoryBudget) {
+        super();
+        this.memoryBudget = memoryBudget;
+        // no count limit, only the memory budget.
+        setLimit(-1);
+    }
+
+    @Override
+    public synchronized boolean addEdit(UndoableEdit anEdit) {
+        boolean result = super.addEdit(anEdit);
+        UndoableEdit last = lastEdit();
+        if(last!=null) {
+            // either anEdit was appended or it was merged into the last edit.
+            long size = estimate(last);
+            Long old = counted.put(last,size);
+            memoryUsed += size - (old==null ? 0 : old);
+        }
+        // an edit that replaced the last one removes it without a trim.  Rare, so count again.
+        if(counted.size() > edits.size()) recount();
+        trimForBudget();
+        return result;
+    }
+
+    @Override
+    protected void trimEdits(int from, int to) {
+        for(int i=from;i<=to && i<edits.size();++i) {
+            Long old = counted.remove(edits.get(i));
+            if(old!=null) memoryUsed -= old;
+        }
+        super.trimEdits(from, to);
+    }
+
+    @Override
+    public synchronized void discardAllEdits() {
+        super.discardAllEdits();
+        counted.clear();
+        memoryUsed = 0;
+    }
+
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @param bytes the most memory the history may hold, in bytes.
+     */
+    public synchronized void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
+        trimForBudget();
+    }
+
+    /**
+     * @return the estimated bytes held by all edits in the history.
+     */
+    public synchronized long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    private void recount() {
+        counted.clear();
+        memoryUsed = 0;
+        for(UndoableEdit edit : edits) {
+            long size = estimate(edit);
+            counted.put(edit,size);
+            memoryUsed += size;
+        }
+    }
+
+    private static long estimate(UndoableEdit edit) {
+        return (edit instanceof MemoryEstimate m) ? m.getMemoryEstimate() : DEFAULT_EDIT_ESTIMATE;
+    }
+
+    private void trimForBudget() {
+        long used = memoryUsed;
+        int count = 0;
+        while(used > memoryBudget && count < edits.size()-1) {
+            used -= counted.get(edits.get(count));
+            count++;
+        }
+        if(count>0) trimEdits(0,count-1);
+    }
+}
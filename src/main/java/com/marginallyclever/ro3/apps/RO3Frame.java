@@ -12,6 +12,7 @@ import com.formdev.flatlaf.FlatLightLaf;
 import com.marginallyclever.communications.application.TextInterfaceToSessionLayer;
 import com.marginallyclever.convenience.helpers.FileHelper;
 import com.marginallyclever.ro3.RO3;
+import com.marginallyclever.ro3.Registry;
 import com.marginallyclever.ro3.apps.about.AboutPanel;
 import com.marginallyclever.ro3.apps.actions.*;
 import com.marginallyclever.ro3.apps.editorpanel.EditorPanel;
@@ -22,6 +23,7 @@ import com.marginallyclever.ro3.apps.shared.PersistentJFileChooser;
 import com.marginallyclever.ro3.apps.webcampanel.WebCamPanel;
 import com.marginallyclever.ro3.apps.render.OpenGLPanel;
 import com.marginallyclever.ro3.apps.render.Viewport;
+import com.marginallyclever.ro3.physics.PhysicsSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +37,7 @@ import java.util.List;
 import java.util.ArrayList;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.vecmath.Vector3d;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
@@ -55,7 +58,7 @@ public class RO3Frame extends JFrame {
     private final EditorPanel editPanel;
     private final WebCamPanel webCamPanel;
     private final TextInterfaceToSessionLayer textInterface;
-    public static final FileNameExtensionFilter FILE_FILTER = new FileNameExtensionFilter("RO files", "RO");
+    public static final FileNameExtensionFilter FILE_FILTER = new FileNameExtensionFilter("RO files", "RO", "ROB");
     public static String VERSION;
 
     public RO3Frame() {
@@ -182,7 +185,19 @@ public class RO3Frame extends JFrame {
         JMenu menu = new JMenu("Edit");
         menu.add(new JMenuItem(UndoSystem.getCommandUndo()));
         menu.add(new JMenuItem(UndoSystem.getCommandRedo()));
-        //menu.add(new JSeparator());
+        menu.add(new JSeparator());
+
+        // physics starts with gravity and the ground plane off, so opening a scene does not move anything.
+        JCheckBoxMenuItem gravity = new JCheckBoxMenuItem("Gravity");
+        gravity.setSelected(Registry.physics.getGravity().lengthSquared()>0);
+        gravity.addActionListener(e -> Registry.physics.setGravity(
+                new Vector3d(0,0,gravity.isSelected() ? PhysicsSystem.EARTH_GRAVITY : 0)));
+        menu.add(gravity);
+
+        JCheckBoxMenuItem groundPlane = new JCheckBoxMenuItem("Ground plane");
+        groundPlane.setSelected(Registry.physics.hasGroundPlane());
+        groundPlane.addActionListener(e -> Registry.physics.setGroundPlane(groundPlane.isSelected()));
+        menu.add(groundPlane);
         return menu;
     }
 
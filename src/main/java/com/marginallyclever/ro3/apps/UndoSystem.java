@@ -4,13 +4,14 @@ import com.marginallyclever.ro3.apps.actions.RedoAction;
 import com.marginallyclever.ro3.apps.actions.UndoAction;
 
 import javax.swing.undo.AbstractUndoableEdit;
-import javax.swing.undo.UndoManager;
 
 /**
  * {@link UndoSystem} is a singleton to manage the undo/redo history and associated {@link javax.swing.AbstractAction}s.
+ * The history is limited by a memory budget, see {@link BoundedUndoManager}.
  */
 public class UndoSystem {
-	private static final UndoManager undoManager = new UndoManager();
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	private static final BoundedUndoManager undoManager = new BoundedUndoManager(DEFAULT_MEMORY_BUDGET);
 	private static final UndoAction commandUndo = new UndoAction(undoManager);
 	private static final RedoAction commandRedo = new RedoAction(undoManager);
 
@@ -30,6 +31,19 @@ public class UndoSystem {
 		return commandRedo;
 	}
 
+	public static long getMemoryBudget() {
+		return undoManager.getMemoryBudget();
+	}
+
+	/**
+	 * @param bytes the most memory the undo history may hold.  The oldest edits are discarded first.
+	 */
+	public static void setMemoryBudget(long bytes) {
+		undoManager.setMemoryBudget(bytes);
+		commandUndo.updateUndoState();
+		commandRedo.updateRedoState();
+	}
+
 	public static void addEvent(AbstractUndoableEdit edit) {
 		undoManager.addEdit(edit);
 		commandUndo.updateUndoState();
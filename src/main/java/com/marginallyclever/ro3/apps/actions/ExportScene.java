@@ -1,15 +1,20 @@
 package com.marginallyclever.ro3.apps.actions;
 
+import com.marginallyclever.convenience.helpers.AssetArchives;
 import com.marginallyclever.convenience.helpers.FileHelper;
 import com.marginallyclever.ro3.Registry;
 import com.marginallyclever.ro3.apps.RO3Frame;
+import com.marginallyclever.ro3.apps.render.software.SoftwareRenderer;
+import com.marginallyclever.ro3.node.nodes.Camera;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
+import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.*;
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
@@ -25,6 +30,9 @@ import java.util.zip.ZipOutputStream;
 public class ExportScene extends AbstractAction {
     private final Logger logger = LoggerFactory.getLogger(ExportScene.class);
     public static final FileNameExtensionFilter ZIP_FILTER = new FileNameExtensionFilter("ZIP files", "zip");
+    public static final String PREVIEW_NAME = "preview.png";
+    private static final int PREVIEW_WIDTH = 320;
+    private static final int PREVIEW_HEIGHT = 240;
     private final JFileChooser chooser;
 
     public ExportScene(JFileChooser chooser) {
@@ -76,7 +84,8 @@ public class ExportScene extends AbstractAction {
             }
 
             String absolutePath = chooser.getSelectedFile().getAbsolutePath();
-            commitExport(absolutePath);
+            // copy the scene now, then write the file and draw the preview without holding up the user interface.
+            new Thread(prepareExport(absolutePath),"ExportScene").start();
         }
     }
 
@@ -85,19 +94,34 @@ public class ExportScene extends AbstractAction {
      * @param absolutePath the path to the file to create.
      */
     public void commitExport(String absolutePath) {
+        prepareExport(absolutePath).run();
+    }
+
+    /**
+     * Copy everything the export needs from the scene.  Must be called on the thread that changes the scene.
+     * @param absolutePath the path to the file to create.
+     * @return the work that writes the file.  It does not read the scene, so it can run on any thread.
+     */
+    private Runnable prepareExport(String absolutePath) {
         logger.info("Exporting to {}", absolutePath);
 
-        JSONObject json = Registry.getScene().toJSON();
+        String json = Registry.getScene().toJSON().toString();
 
         List<String> sources = Registry.textureFactory.getAllSourcesForExport();
         sources.addAll(Registry.meshFactory.getAllSourcesForExport());
 
-        createZipAndAddAssets(absolutePath, json.toString(), sources);
+        SoftwareRenderer renderer = new SoftwareRenderer(PREVIEW_WIDTH,PREVIEW_HEIGHT);
+        Camera camera = Registry.getActiveCamera();
+        SoftwareRenderer.Snapshot preview = (camera==null) ? null : renderer.capture(Registry.getScene(),camera);
 
-        logger.info("done.");
+        return () -> {
+            createZipAndAddAssets(absolutePath, json, sources, renderer, preview);
+            logger.info("done.");
+        };
     }
 
-    private void createZipAndAddAssets(String outputZipFile, String json, List<String> sources) {
+    private void createZipAndAddAssets(String outputZipFile, String json, List<String> sources,
+                                       SoftwareRenderer renderer, SoftwareRenderer.Snapshot preview) {
         // for remembering unique asset names
         Map<String, String> pathMapping = new HashMap<>();
 
@@ -105,6 +129,10 @@ public class ExportScene extends AbstractAction {
         String sceneName = rootFolderName+ "." + RO3Frame.FILE_FILTER.getExtensions()[0];  // "ro3" or "r
         String newSceneName = rootFolderName+"/"+sceneName;
         pathMapping.put(sceneName,newSceneName);  // reserve this name
+        pathMapping.put(PREVIEW_NAME,PREVIEW_NAME);
+
+        // an earlier export may still be open for reading.
+        AssetArchives.close(outputZipFile);
 
         try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(outputZipFile))) {
             for( String originalPath : sources ) {
@@ -125,6 +153,8 @@ public class ExportScene extends AbstractAction {
             byte[] jsonBytes = modifiedJson.getBytes();
             zipOutputStream.write(jsonBytes, 0, jsonBytes.length);
             zipOutputStream.closeEntry();
+
+            if(preview!=null) addPreviewToZip(rootFolderName + "/" + PREVIEW_NAME, renderer, preview, zipOutputStream);
         } catch (FileNotFoundException e) {
             logger.error("Could not open ZIP file.", e);
         } catch (IOException e) {
@@ -145,9 +175,20 @@ public class ExportScene extends AbstractAction {
 
     private void addFileToZip(String filePath, String newName, ZipOutputStream zos) throws IOException {
         zos.putNextEntry(new ZipEntry(newName));
-        BufferedInputStream input = FileHelper.open(filePath);
-        byte[] bytes = input.readAllBytes();
-        zos.write(bytes, 0, bytes.length);
+        try(BufferedInputStream input = FileHelper.open(filePath)) {
+            input.transferTo(zos);
+        }
+        zos.closeEntry();
+    }
+
+    /**
+     * Add a picture of the scene from the active camera, so the export can be recognized without opening it.
+     */
+    private void addPreviewToZip(String newName, SoftwareRenderer renderer, SoftwareRenderer.Snapshot preview,
+                                 ZipOutputStream zos) throws IOException {
+        BufferedImage image = renderer.render(preview);
+        zos.putNextEntry(new ZipEntry(newName));
+        ImageIO.write(image,"png",zos);
         zos.closeEntry();
     }
 
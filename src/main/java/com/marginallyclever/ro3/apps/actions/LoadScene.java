@@ -4,7 +4,9 @@ import com.marginallyclever.ro3.apps.UndoSystem;
 import com.marginallyclever.ro3.apps.RecentFilesMenu;
 import com.marginallyclever.ro3.Registry;
 import com.marginallyclever.ro3.node.Node;
-import org.json.JSONObject;
+import com.marginallyclever.ro3.node.io.SceneIO;
+import com.marginallyclever.ro3.node.nodes.Camera;
+import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,8 +15,6 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.security.InvalidParameterException;
 import java.util.Objects;
 
@@ -87,31 +87,29 @@ public class LoadScene extends AbstractAction {
 
         logger.info("Load from {}",selectedFile.getAbsolutePath());
 
+        // nodes are attached as they are read, so large scenes never exist as one big String or JSONObject.
+        // assets are found next to the scene, or inside the zip for a zip from ExportScene.
+        // if the file is bad, this will throw an exception before removing the previous scene.
+        Node loaded = new Node("Scene");
         try {
-            String content = new String(Files.readAllBytes(Paths.get(selectedFile.getAbsolutePath())));
-
-            // if the json is bad, this will throw an exception before removing the previous scene.
-            JSONObject json = new JSONObject(content);
-
-            // reset everything
-            NewScene newScene = new NewScene();
-            newScene.commitNewScene();
-
-            // do it!
-            String newCWD = selectedFile.getParent() + File.separator;
-            String oldCWD = System.getProperty("user.dir");
-            System.setProperty("user.dir",newCWD);
+            SceneIO.loadInto(selectedFile,loaded);
+        } catch (IOException | JSONException e) {
+            // cameras add themselves to the registry as they are read.
+            for(Camera camera : loaded.findAllByType(Camera.class)) Registry.cameras.remove(camera);
+            logger.error("Error loading file.", e);
+            return;
+        }
 
-            Node loaded = new Node("Scene");
-            loaded.fromJSON(json);
-            Registry.setScene(loaded);
+        // reset everything
+        NewScene newScene = new NewScene();
+        newScene.commitNewScene();
 
-            System.setProperty("user.dir",oldCWD);
+        // do it!
+        // the reset forgot the cameras that were read.
+        for(Camera camera : loaded.findAllByType(Camera.class)) Registry.cameras.add(camera);
+        Registry.setScene(loaded);
 
-            if(menu!=null) menu.addPath(selectedFile.getAbsolutePath());
-        } catch (IOException e) {
-            logger.error("Error loading file.", e);
-        }
+        if(menu!=null) menu.addPath(selectedFile.getAbsolutePath());
 
         logger.info("done.");
     }
@@ -2,17 +2,15 @@ package com.marginallyclever.ro3.apps.actions;
 
 import com.marginallyclever.ro3.apps.RecentFilesMenu;
 import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.node.io.SceneIO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -81,9 +79,7 @@ public class SaveScene extends AbstractAction {
     public void commitSave(String absolutePath) throws IOException {
         logger.info("Save to {}",absolutePath);
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(absolutePath))) {
-            writer.write(Registry.getScene().toJSON().toString());
-        }
+        SceneIO.save(Registry.getScene(),new File(absolutePath));
 
         logger.info("done.");
     }
@@ -2,24 +2,25 @@ package com.marginallyclever.ro3.apps.commands;
 
 import com.marginallyclever.ro3.Registry;
 import com.marginallyclever.ro3.node.Node;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.marginallyclever.ro3.node.NodeSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.CannotUndoException;
-import java.awt.datatransfer.StringSelection;
 import java.awt.datatransfer.Transferable;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Copy the selected node(s) to the clipboard.
+ * Copy the selected node(s) to the clipboard.  The clipboard holds {@link NodeSnapshot}s, which share unchanged
+ * subtrees with earlier copies.
  */
-public class CopyNode extends AbstractUndoableEdit {
+public class CopyNode extends AbstractUndoableEdit implements MemoryEstimate {
     private final Logger logger = LoggerFactory.getLogger(com.marginallyclever.ro3.apps.actions.CopyNode.class);
     private final List<Node> selection;
     private final Transferable before;
+    private TransferableNodeSnapshots copied;
     public CopyNode(List<Node> selection) {
         super();
         this.selection = selection;
@@ -39,16 +40,24 @@ public class CopyNode extends AbstractUndoableEdit {
     }
 
     public void execute() {
-        JSONArray list = new JSONArray();
+        List<NodeSnapshot> list = new ArrayList<>();
         for(Node node : selection) {
             logger.debug("Copying {}",node.getAbsolutePath());
-            list.put(node.toJSON());
+            list.add(NodeSnapshot.of(node));
         }
-        JSONObject jsonWrapper = new JSONObject();
-        jsonWrapper.put("copied",list);
-        // store the json in the clipboard.
-        StringSelection stringSelection = new StringSelection(jsonWrapper.toString());
-        Registry.clipboard.setContents(stringSelection, null);
+        copied = new TransferableNodeSnapshots(list);
+        Registry.clipboard.setContents(copied, null);
+    }
+
+    @Override
+    public long getMemoryEstimate() {
+        long sum = 0;
+        if(copied!=null) {
+            for (NodeSnapshot snapshot : copied.list()) {
+                sum += snapshot.getMemoryEstimate();
+            }
+        }
+        return sum;
     }
 
     @Override
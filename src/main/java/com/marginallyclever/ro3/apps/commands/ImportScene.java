@@ -2,21 +2,15 @@ package com.marginallyclever.ro3.apps.commands;
 
 import com.marginallyclever.ro3.Registry;
 import com.marginallyclever.ro3.node.Node;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.marginallyclever.ro3.node.io.SceneIO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.CannotUndoException;
-import java.awt.datatransfer.StringSelection;
-import java.awt.datatransfer.Transferable;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.security.InvalidParameterException;
-import java.util.List;
 
 /**
  * Load a scene from a file.
@@ -53,10 +47,9 @@ public class ImportScene extends AbstractUndoableEdit {
         logger.info("Import scene from {}",selectedFile.getAbsolutePath());
 
         try {
-            String content = new String(Files.readAllBytes(Paths.get(selectedFile.getAbsolutePath())));
             // Add the loaded scene to the current scene.
-            var jsonObject = new JSONObject(content);
-            created = createFromJSON(jsonObject);
+            created = SceneIO.load(selectedFile);
+            created.witnessProtection();
             Registry.getScene().addChild(created);
         } catch (IOException e) {
             logger.error("Error loading scene from JSON", e);
@@ -75,11 +68,4 @@ public class ImportScene extends AbstractUndoableEdit {
         parent.removeChild(created);
         created = null;
     }
-
-    public static Node createFromJSON(JSONObject jsonObject) {
-        Node loaded = Registry.nodeFactory.create(jsonObject.get("type").toString());
-        loaded.fromJSON(jsonObject);
-        loaded.witnessProtection();
-        return loaded;
-    }
 }
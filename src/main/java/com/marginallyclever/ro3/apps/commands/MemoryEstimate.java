@@ -0,0 +1,12 @@
+package com.marginallyclever.ro3.apps.commands;
+
+/**
+ * An undoable edit that can estimate how much memory it holds, so that the
+ * {@link com.marginallyclever.ro3.apps.UndoSystem} can stay within its memory budget.
+ */
+public interface MemoryEstimate {
+    /**
+     * @return the approximate number of bytes held by this edit.
+     */
+    long getMemoryEstimate();
+}
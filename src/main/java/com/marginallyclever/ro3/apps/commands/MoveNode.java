@@ -5,15 +5,19 @@ import com.marginallyclever.ro3.node.Node;
 
 import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.CannotUndoException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 /**
- * Move {@link Node}s from their current parent to another parent.
+ * <p>Move {@link Node}s from their current parent to another parent.</p>
+ * <p>Only the old parent and the old index of each node are stored, not a copy of the nodes.  Undo puts each node
+ * back where it was among its siblings.</p>
  */
-public class MoveNode extends AbstractUndoableEdit {
-    private final Map<Node,Node> childParentMap = new HashMap<>();
+public class MoveNode extends AbstractUndoableEdit implements MemoryEstimate {
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<Node> oldParents = new ArrayList<>();
+    private final int [] oldIndexes;
     private final Node newParent;
     private final int insertAt;
 
@@ -23,15 +27,19 @@ public class MoveNode extends AbstractUndoableEdit {
         this.insertAt = insertAt;
 
         selection.remove(Registry.getScene());
+        oldIndexes = new int[selection.size()];
         for(var node : selection) {
-            childParentMap.put(node,node.getParent());
+            Node parent = node.getParent();
+            oldIndexes[nodes.size()] = (parent==null) ? -1 : parent.getChildren().indexOf(node);
+            nodes.add(node);
+            oldParents.add(parent);
         }
         execute();
     }
 
     @Override
     public String getPresentationName() {
-        int count = childParentMap.size();
+        int count = nodes.size();
         return count>1? "Move "+count+" Nodes" : "Move node";
     }
 
@@ -43,7 +51,7 @@ public class MoveNode extends AbstractUndoableEdit {
 
     public void execute() {
         int newIndex = insertAt;
-        for(Node child : childParentMap.keySet()) {
+        for(Node child : nodes) {
             // Remove node from its current parent
             Node oldParent = child.getParent();
             int oldIndex = -1;
@@ -74,11 +82,26 @@ public class MoveNode extends AbstractUndoableEdit {
     }
 
     public void reverse() {
-        for(Map.Entry<Node, Node> entry : childParentMap.entrySet()) {
-            Node parent = entry.getValue();
-            Node child = entry.getKey();
-            newParent.removeChild(child);
-            parent.addChild(child);
+        for(Node child : nodes) {
+            Node parent = child.getParent();
+            if(parent!=null) parent.removeChild(child);
         }
+        // lowest index first, so that each node goes back between the same siblings.
+        List<Integer> order = new ArrayList<>();
+        for(int i=0;i<nodes.size();++i) order.add(i);
+        order.sort(Comparator.comparingInt(i -> oldIndexes[i]));
+        for(int i : order) {
+            Node parent = oldParents.get(i);
+            if(parent==null) continue;
+            int index = Math.min(oldIndexes[i],parent.getChildren().size());
+            if(index<0) parent.addChild(nodes.get(i));
+            else parent.addChild(index,nodes.get(i));
+        }
+    }
+
+    @Override
+    public long getMemoryEstimate() {
+        // a reference to each node and its old parent, and the old index.
+        return 64L + nodes.size() * (8L + 8L + 4L);
     }
 }
@@ -0,0 +1,72 @@
+package com.marginallyclever.ro3.apps.commands;
+
+import com.marginallyclever.ro3.node.nodes.Pose;
+
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotUndoException;
+import javax.vecmath.Matrix4d;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Move one or more {@link Pose}s.  Only the local matrix of each pose before and after the move is stored, not
+ * a copy of the nodes.</p>
+ * <p>The move tools record one edit when the mouse is released, so one drag is one undo step.</p>
+ */
+public class MovePose extends AbstractUndoableEdit implements MemoryEstimate {
+    private final List<Pose> poses;
+    private final List<Matrix4d> before = new ArrayList<>();
+    private final List<Matrix4d> after = new ArrayList<>();
+
+    /**
+     * @param poses the poses that moved.
+     * @param before the local matrix of each pose before the move.
+     * @param after the local matrix of each pose after the move.
+     */
+    public MovePose(List<Pose> poses, List<Matrix4d> before, List<Matrix4d> after) {
+        super();
+        if(poses.size()!=before.size() || poses.size()!=after.size()) {
+            throw new IllegalArgumentException("poses, before, and after must be the same size.");
+        }
+        this.poses = List.copyOf(poses);
+        for(Matrix4d m : before) this.before.add(new Matrix4d(m));
+        for(Matrix4d m : after) this.after.add(new Matrix4d(m));
+        execute();
+    }
+
+    @Override
+    public String getPresentationName() {
+        int count = poses.size();
+        return count>1? "Move "+count+" poses" : "Move pose";
+    }
+
+    @Override
+    public void redo() {
+        super.redo();
+        execute();
+    }
+
+    public void execute() {
+        for(int i=0;i<poses.size();++i) {
+            poses.get(i).setLocal(after.get(i));
+        }
+    }
+
+    @Override
+    public void undo() throws CannotUndoException {
+        super.undo();
+        reverse();
+    }
+
+    public void reverse() {
+        for(int i=0;i<poses.size();++i) {
+            poses.get(i).setLocal(before.get(i));
+        }
+    }
+
+    @Override
+    public long getMemoryEstimate() {
+        // two 4x4 matrices of doubles plus a reference per pose.
+        return 64L + poses.size() * (2L * (16 * 8 + 16) + 8);
+    }
+}
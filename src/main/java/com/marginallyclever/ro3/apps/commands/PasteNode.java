@@ -3,6 +3,7 @@ package com.marginallyclever.ro3.apps.commands;
 import com.marginallyclever.convenience.helpers.JSONHelper;
 import com.marginallyclever.ro3.Registry;
 import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.NodeSnapshot;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,7 +46,12 @@ public class PasteNode extends AbstractUndoableEdit {
     }
 
     public void execute() {
-        if(transfer==null || !transfer.isDataFlavorSupported(JSONHelper.JSON_FLAVOR)) return;
+        if(transfer==null) return;
+        if(transfer.isDataFlavorSupported(TransferableNodeSnapshots.flavor)) {
+            pasteSnapshots();
+            return;
+        }
+        if(!transfer.isDataFlavorSupported(JSONHelper.JSON_FLAVOR)) return;
 
         try {
             String jsonString = (String)transfer.getTransferData(JSONHelper.JSON_FLAVOR);
@@ -57,7 +63,32 @@ public class PasteNode extends AbstractUndoableEdit {
                 for(Node parent : parents) {
                     // import this json as a child of every selected node.
                     // guarantees the nodes go through witness protection.
-                    Node child = ImportScene.createFromJSON(jsonObject);
+                    Node child = Registry.nodeFactory.create(jsonObject.getString("type"));
+                    child.fromJSON(jsonObject);
+                    child.witnessProtection();
+                    parent.addChild(child);
+                    children.add(child);
+                }
+            }
+
+            Registry.selection.set(parents);
+        } catch(Exception ex) {
+            logger.error("Paste error.",ex);
+        }
+    }
+
+    /**
+     * Paste from {@link NodeSnapshot}s without going through JSON text.
+     */
+    private void pasteSnapshots() {
+        try {
+            List<?> list = (List<?>)transfer.getTransferData(TransferableNodeSnapshots.flavor);
+            for(Object item : list) {
+                if(!(item instanceof NodeSnapshot snapshot)) continue;
+                for(Node parent : parents) {
+                    Node child = snapshot.restore();
+                    // guarantees the nodes go through witness protection.
+                    child.witnessProtection();
                     parent.addChild(child);
                     children.add(child);
                 }
@@ -0,0 +1,56 @@
+package com.marginallyclever.ro3.apps.commands;
+
+import com.marginallyclever.convenience.helpers.JSONHelper;
+import com.marginallyclever.ro3.node.NodeSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.util.List;
+
+/**
+ * A {@link Transferable} that contains a list of {@link NodeSnapshot}s.  Inside the app the snapshots are pasted
+ * directly.  The JSON text is only built if another program asks for it.
+ * @param list the snapshots to transfer
+ */
+public record TransferableNodeSnapshots(List<NodeSnapshot> list) implements Transferable {
+    public final static DataFlavor flavor = new DataFlavor(List.class, "List of Node snapshots");
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return new DataFlavor[]{flavor, JSONHelper.JSON_FLAVOR};
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        for(DataFlavor f : getTransferDataFlavors()) {
+            if(f.equals(flavor)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public @NotNull Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+        if (!isDataFlavorSupported(flavor)) {
+            throw new UnsupportedFlavorException(flavor);
+        }
+        if(TransferableNodeSnapshots.flavor.equals(flavor)) return list;
+        return toJSON().toString();
+    }
+
+    /**
+     * @return the same wrapper that {@link CopyNode} used to put in the clipboard.
+     */
+    public JSONObject toJSON() {
+        JSONArray array = new JSONArray();
+        for(NodeSnapshot snapshot : list) {
+            array.put(snapshot.toJSON());
+        }
+        JSONObject jsonWrapper = new JSONObject();
+        jsonWrapper.put("copied",array);
+        return jsonWrapper;
+    }
+}
@@ -5,6 +5,10 @@ import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.FileAppender;
+import com.marginallyclever.convenience.log.Log;
+import com.marginallyclever.convenience.log.RotatingFileWriter;
+import com.marginallyclever.convenience.swing.BoundedListModel;
+import com.marginallyclever.convenience.swing.VirtualizedList;
 import com.marginallyclever.ro3.apps.App;
 import com.marginallyclever.ro3.apps.DockingPanel;
 import org.slf4j.LoggerFactory;
@@ -22,10 +26,15 @@ import java.util.*;
 /**
  * <p>{@link LogPanel} is a read-only panel that contains the log and a button to open the log file location in the
  * OS.</p>
+ * <p>Only the most recent {@link BoundedListModel#DEFAULT_CAPACITY} lines are kept on screen.  Older lines are
+ * spilled to {@link #SPILL_FILE_NAME} in the log folder.  The full log is always available in the log file.</p>
  */
 public class LogPanel extends App {
     private static final org.slf4j.Logger logger = LoggerFactory.getLogger(LogPanel.class);
-    private final JTextArea logArea = new JTextArea();
+    public static final String SPILL_FILE_NAME = "logpanel.txt";
+    private final BoundedListModel<String> logModel = new BoundedListModel<>();
+    private final VirtualizedList<String> logList = new VirtualizedList<>(logModel);
+    private final JTextField searchField = new JTextField(15);
 
     public LogPanel() {
         super(new BorderLayout());
@@ -33,11 +42,19 @@ public class LogPanel extends App {
         JToolBar toolbar = new JToolBar();
         toolbar.setFloatable(false);
         toolbar.add(new JButton(new OpenLogFileLocation()));
+        toolbar.addSeparator();
+        toolbar.add(new JLabel("Find "));
+        toolbar.add(searchField);
+        searchField.setToolTipText("Press enter to find the next line containing this text.");
+        searchField.addActionListener((e)-> logList.findNext(searchField.getText(),true));
         add(toolbar, BorderLayout.NORTH);
 
-        logArea.setEditable(false);
+        RotatingFileWriter spill = RotatingFileWriter.getShared(Paths.get(Log.LOG_FILE_PATH,SPILL_FILE_NAME));
+        logModel.setSpill(spill::write);
+
+        logList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         JScrollPane scroll = new JScrollPane();
-        scroll.setViewportView(logArea);
+        scroll.setViewportView(logList);
         add(scroll, BorderLayout.CENTER);
 
         // append log events to this panel
@@ -62,7 +79,14 @@ public class LogPanel extends App {
         logger.info("------------------------------------------------");
     }
 
+    /**
+     * Safe to call from any thread.  The message appears on screen at the next flush of the model.
+     * Multi-line messages are split into one row per line.
+     * @param message the message to append.
+     */
     public void appendToLog(String message) {
-        logArea.append(message + "\n");
+        for(String line : message.split("\\R")) {
+            logModel.offer(line);
+        }
     }
 }
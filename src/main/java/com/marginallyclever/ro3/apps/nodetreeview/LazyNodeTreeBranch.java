@@ -0,0 +1,66 @@
+package com.marginallyclever.ro3.apps.nodetreeview;
+
+import com.marginallyclever.ro3.node.Node;
+
+import javax.swing.tree.TreeNode;
+import java.util.Enumeration;
+
+/**
+ * {@link LazyNodeTreeBranch} is a {@link NodeTreeBranch} that does not create branches for its children until
+ * {@link javax.swing.JTree} first asks for them, which is usually when the branch is expanded.
+ */
+class LazyNodeTreeBranch extends NodeTreeBranch {
+    private final NodeTreeModel model;
+    private boolean loaded = false;
+
+    LazyNodeTreeBranch(NodeTreeModel model, Node node) {
+        super(node);
+        this.model = model;
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Create a branch for each child of the {@link Node}, if that has not been done yet.
+     */
+    void ensureLoaded() {
+        if(loaded) return;
+        loaded = true;
+        for(Node child : getNode().getChildren()) {
+            super.insert(model.createBranch(child), super.getChildCount());
+        }
+    }
+
+    @Override
+    public boolean isLeaf() {
+        // answer without loading.  JTree asks this of every visible row.
+        if(!loaded) return getNode().getChildren().isEmpty();
+        return super.isLeaf();
+    }
+
+    @Override
+    public int getChildCount() {
+        ensureLoaded();
+        return super.getChildCount();
+    }
+
+    @Override
+    public TreeNode getChildAt(int index) {
+        ensureLoaded();
+        return super.getChildAt(index);
+    }
+
+    @Override
+    public int getIndex(TreeNode aChild) {
+        ensureLoaded();
+        return super.getIndex(aChild);
+    }
+
+    @Override
+    public Enumeration<TreeNode> children() {
+        ensureLoaded();
+        return super.children();
+    }
+}
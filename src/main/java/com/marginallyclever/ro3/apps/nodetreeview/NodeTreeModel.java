@@ -0,0 +1,213 @@
+package com.marginallyclever.ro3.apps.nodetreeview;
+
+import com.marginallyclever.ro3.node.Node;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
+import java.util.*;
+
+/**
+ * <p>{@link NodeTreeModel} is a {@link DefaultTreeModel} of {@link NodeTreeBranch}es for one scene.</p>
+ * <ul>
+ *     <li>Branches are created lazily, only when {@link javax.swing.JTree} asks for the children of a branch.</li>
+ *     <li>Branches are found by {@link Node} in constant time.</li>
+ *     <li>Structural changes are queued with {@link #childrenChanged(Node)} and {@link #nodeRenamed(Node)} from any
+ *     thread and applied in one batch on the Event Dispatch Thread.  Each changed parent fires at most one remove and
+ *     one insert event per batch.</li>
+ * </ul>
+ */
+public class NodeTreeModel extends DefaultTreeModel {
+    private final Map<Node, LazyNodeTreeBranch> branches = new HashMap<>();
+    private final Set<Node> pendingParents = new LinkedHashSet<>();
+    private final Set<Node> pendingRenames = new LinkedHashSet<>();
+    private boolean flushScheduled = false;
+
+    public NodeTreeModel(Node scene) {
+        super(null);
+        setScene(scene);
+    }
+
+    /**
+     * Replace the whole tree.  Nothing below the root is created until it is needed.
+     * @param scene the new root {@link Node}.
+     */
+    public void setScene(Node scene) {
+        synchronized (this) {
+            pendingParents.clear();
+            pendingRenames.clear();
+        }
+        branches.clear();
+        setRoot(createBranch(scene));
+    }
+
+    public Node getScene() {
+        return ((NodeTreeBranch)getRoot()).getNode();
+    }
+
+    LazyNodeTreeBranch createBranch(Node node) {
+        LazyNodeTreeBranch branch = new LazyNodeTreeBranch(this,node);
+        branches.put(node,branch);
+        return branch;
+    }
+
+    /**
+     * @param node the node to find.
+     * @return the branch for the node, or null if no branch has been created yet.
+     */
+    public NodeTreeBranch getBranch(Node node) {
+        return branches.get(node);
+    }
+
+    /**
+     * Find the branch for a node, creating the branches of its ancestors if needed.
+     * @param node the node to find.
+     * @return the branch for the node, or null if the node is not in this tree.
+     */
+    public NodeTreeBranch findOrCreateBranch(Node node) {
+        LazyNodeTreeBranch branch = branches.get(node);
+        if(branch!=null) return branch;
+        Node parent = node.getParent();
+        if(parent==null) return null;
+        LazyNodeTreeBranch parentBranch = (LazyNodeTreeBranch)findOrCreateBranch(parent);
+        if(parentBranch==null) return null;
+        parentBranch.ensureLoaded();
+        return branches.get(node);
+    }
+
+    /**
+     * Queue a check of the children of a node.  Safe to call from any thread.
+     * @param parent the node whose children were added, removed, or reordered.
+     */
+    public void childrenChanged(Node parent) {
+        synchronized (this) {
+            pendingParents.add(parent);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Queue a repaint of a node.  Safe to call from any thread.
+     * @param node the node that was renamed.
+     */
+    public void nodeRenamed(Node node) {
+        synchronized (this) {
+            pendingRenames.add(node);
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if(flushScheduled) return;
+            flushScheduled = true;
+        }
+        SwingUtilities.invokeLater(this::flush);
+    }
+
+    /**
+     * Apply all queued changes.  Must be called on the Event Dispatch Thread.
+     */
+    public void flush() {
+        List<Node> parents;
+        List<Node> renames;
+        synchronized (this) {
+            flushScheduled = false;
+            parents = new ArrayList<>(pendingParents);
+            renames = new ArrayList<>(pendingRenames);
+            pendingParents.clear();
+            pendingRenames.clear();
+        }
+
+        // remove everything first so that nodes which moved between parents are not found under their old parent.
+        List<LazyNodeTreeBranch> loadedParents = new ArrayList<>();
+        for(Node parent : parents) {
+            LazyNodeTreeBranch branch = branches.get(parent);
+            if(branch==null) continue;  // not visible yet, nothing to update.
+            if(!branch.isLoaded()) {
+                // the expand handle may need to appear or disappear.
+                nodeChanged(branch);
+                continue;
+            }
+            removeStaleChildren(branch);
+            loadedParents.add(branch);
+        }
+        for(LazyNodeTreeBranch branch : loadedParents) {
+            insertMissingChildren(branch);
+        }
+
+        for(Node node : renames) {
+            LazyNodeTreeBranch branch = branches.get(node);
+            if(branch!=null) nodeChanged(branch);
+        }
+    }
+
+    private void removeStaleChildren(LazyNodeTreeBranch branch) {
+        Node parent = branch.getNode();
+        Set<Node> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        current.addAll(parent.getChildren());
+
+        List<Integer> indices = new ArrayList<>();
+        List<TreeNode> removed = new ArrayList<>();
+        for(int i=0;i<branch.getChildCount();++i) {
+            NodeTreeBranch child = (NodeTreeBranch)branch.getChildAt(i);
+            if(!current.contains(child.getNode())) {
+                indices.add(i);
+                removed.add(child);
+            }
+        }
+        if(removed.isEmpty()) return;
+
+        for(int i=removed.size()-1;i>=0;--i) {
+            NodeTreeBranch child = (NodeTreeBranch)removed.get(i);
+            branch.remove(indices.get(i));
+            forget(child);
+        }
+        nodesWereRemoved(branch, toArray(indices), removed.toArray());
+    }
+
+    private void insertMissingChildren(LazyNodeTreeBranch branch) {
+        List<Node> children = branch.getNode().getChildren();
+        List<Integer> indices = new ArrayList<>();
+        boolean reordered = false;
+        for(int i=0;i<children.size();++i) {
+            Node child = children.get(i);
+            LazyNodeTreeBranch childBranch = branches.get(child);
+            if(childBranch==null || childBranch.getParent()!=branch) {
+                branch.insert(createBranch(child),i);
+                indices.add(i);
+            } else if(branch.getIndex(childBranch)!=i) {
+                branch.insert(childBranch,i);
+                reordered = true;
+            }
+        }
+        if(reordered) {
+            nodeStructureChanged(branch);
+        } else if(!indices.isEmpty()) {
+            nodesWereInserted(branch, toArray(indices));
+        }
+    }
+
+    /**
+     * Remove a branch and all of its created descendants from the lookup.
+     */
+    private void forget(NodeTreeBranch branch) {
+        List<NodeTreeBranch> toForget = new ArrayList<>();
+        toForget.add(branch);
+        while(!toForget.isEmpty()) {
+            NodeTreeBranch b = toForget.remove(toForget.size()-1);
+            // only remove the mapping if it still points at this branch.
+            branches.remove(b.getNode(),b);
+            if(b instanceof LazyNodeTreeBranch lazy && !lazy.isLoaded()) continue;
+            for(int i=0;i<b.getChildCount();++i) {
+                toForget.add((NodeTreeBranch)b.getChildAt(i));
+            }
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for(int i=0;i<result.length;++i) result[i] = list.get(i);
+        return result;
+    }
+}
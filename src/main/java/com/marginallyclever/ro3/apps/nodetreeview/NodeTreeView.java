@@ -9,6 +9,7 @@ import com.marginallyclever.ro3.listwithevents.ItemRemovedListener;
 import com.marginallyclever.ro3.node.Node;
 import com.marginallyclever.ro3.node.NodeAttachListener;
 import com.marginallyclever.ro3.node.NodeDetachListener;
+import com.marginallyclever.ro3.node.NodeEventBus;
 import com.marginallyclever.ro3.node.NodeRenameListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,21 +18,18 @@ import javax.swing.*;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.tree.*;
 import java.awt.*;
-import java.awt.datatransfer.FlavorEvent;
-import java.security.InvalidParameterException;
-import java.util.*;
-import java.util.List;
-import java.util.function.Supplier;
 
 /**
- * {@link NodeTreeView} is a panel that displays the tree of nodes in the {@link Registry} scene.
+ * <p>{@link NodeTreeView} is a panel that displays the tree of nodes in the {@link Registry} scene.</p>
+ * <p>The tree is a {@link NodeTreeModel} that only creates branches as they are expanded.  Changes to the scene
+ * arrive through the {@link NodeEventBus} and are applied to the tree in batches.</p>
  */
 public class NodeTreeView extends App
         implements NodeAttachListener, NodeDetachListener, NodeRenameListener,
         SceneChangeListener, ItemAddedListener<Node>, ItemRemovedListener<Node> {
     private static final Logger logger = LoggerFactory.getLogger(NodeTreeView.class);
     private final JTree tree;
-    private final NodeTreeBranch treeModel = new NodeTreeBranch(Registry.getScene());
+    private final NodeTreeModel treeModel = new NodeTreeModel(Registry.getScene());
     private final JToolBar toolBar = new JToolBar();
     private final CutNode cutNode = new CutNode();
     private final CopyNode copyNode = new CopyNode();
@@ -103,56 +101,26 @@ public class NodeTreeView extends App
         Registry.addSceneChangeListener(this);
         Registry.selection.addItemAddedListener(this);
         Registry.selection.addItemRemovedListener(this);
-        listenTo(Registry.getScene());
-    }
-
-    private void listenTo(Node node) {
-        node.addAttachListener(this);
-        node.addDetachListener(this);
-        node.addRenameListener(this);
+        NodeEventBus.addAttachListener(this);
+        NodeEventBus.addDetachListener(this);
+        NodeEventBus.addRenameListener(this);
+        // the scene may have changed while this view was not listening.
+        if(treeModel.getScene()!=Registry.getScene()) {
+            treeModel.setScene(Registry.getScene());
+        }
     }
 
     @Override
     public void removeNotify() {
         super.removeNotify();
-        stopListeningTo(Registry.getScene());
+        NodeEventBus.removeAttachListener(this);
+        NodeEventBus.removeDetachListener(this);
+        NodeEventBus.removeRenameListener(this);
         Registry.removeSceneChangeListener(this);
         Registry.selection.removeItemAddedListener(this);
         Registry.selection.removeItemRemovedListener(this);
     }
 
-    private void stopListeningTo(Node node) {
-        node.removeAttachListener(this);
-        node.removeDetachListener(this);
-        node.removeRenameListener(this);
-
-        // stop listening to all the children of this node, a reverse of scanTree()
-        List<Node> toRemove = new ArrayList<>(node.getChildren());
-        for(Node progeny : toRemove) {
-            stopListeningTo(progeny);
-        }
-    }
-
-    /**
-     * Scan the tree for existing nodes.
-     * @param toScan the node to scan
-     */
-    public void scanTree(Node toScan) {
-        if(toScan == null) throw new InvalidParameterException("node is null");
-        //logger.debug("Scanning "+toScan.getAbsolutePath());
-
-        NodeTreeBranch parentBranch = findTreeNode(toScan);
-        if(parentBranch == null) {
-            logger.error("Node has no branch");
-            return;
-        }
-
-        for (Node child : toScan.getChildren()) {
-            //logger.debug("node has child "+child.getAbsolutePath());
-            nodeAttached(child);
-        }
-    }
-
 
     private void buildToolBar() {
         var addButton = new JButton(new AddNode<>());
@@ -169,79 +137,50 @@ public class NodeTreeView extends App
     }
 
     /**
-     * Find a node in the tree.
+     * Find a node in the tree, creating the branches that lead to it if needed.  Pending changes are applied first.
      * @param target the node to find
      * @return the NodeTreeNode that contains e, or null if not found.
      */
     private NodeTreeBranch findTreeNode(Node target) {
-        NodeTreeBranch root = ((NodeTreeBranch)treeModel.getRoot());
-        if(root==null) return null;
+        treeModel.flush();
+        return treeModel.findOrCreateBranch(target);
+    }
 
-        List<TreeNode> list = new ArrayList<>();
-        list.add(root);
-        while(!list.isEmpty()) {
-            TreeNode treeNode = list.remove(0);
-            if(treeNode instanceof NodeTreeBranch node) {
-                if (target == node.getUserObject()) {
-                    return node;
-                }
-            } else {
-                System.err.println("findTreeNode problem @ "+treeNode);
-            }
-            list.addAll(Collections.list(treeNode.children()));
-        }
-        return null;
+    /**
+     * @param node the node to check
+     * @return true if the node is part of the scene being displayed.
+     */
+    private boolean isInScene(Node node) {
+        return node.getRootNode() == treeModel.getScene();
     }
 
     @Override
     public void nodeAttached(Node child) {
         //logger.debug("Attached "+child.getAbsolutePath());
         Node parent = child.getParent();
-        if(parent==null) throw new RuntimeException("source node has no parent");
-        NodeTreeBranch branchParent = findTreeNode(parent);
-        if(branchParent==null) throw new RuntimeException("parent node has no branch");
-        NodeTreeBranch branchChild = new NodeTreeBranch(child);
-        int index = parent.getChildren().indexOf(child);
-        branchParent.insert(branchChild,index);
-
-        listenTo(child);
-        scanTree(child);
-
-        ((DefaultTreeModel) tree.getModel()).nodeStructureChanged(branchParent);
+        if(parent==null || !isInScene(parent)) return;
+        treeModel.childrenChanged(parent);
     }
 
     @Override
     public void nodeDetached(Node child) {
         //logger.debug("Detached "+child.getAbsolutePath());
-
-        stopListeningTo(child);
-
+        // the child has not been removed yet.
         Node parent = child.getParent();
-        if(parent==null) throw new RuntimeException("Source node has no parent");
-        NodeTreeBranch branchParent = findTreeNode(parent);
-        if(branchParent==null) throw new RuntimeException("Parent node has no branch");
-        NodeTreeBranch branchChild = findTreeNode(child);
-        if(branchChild==null) {
-            logger.warn("No branch for "+child.getAbsolutePath());
-            return;
-        }
-        branchParent.remove(branchChild);
-        ((DefaultTreeModel) tree.getModel()).nodeStructureChanged(branchParent);
+        if(parent==null || !isInScene(parent)) return;
+        treeModel.childrenChanged(parent);
     }
 
     @Override
     public void nodeRenamed(Node source) {
         //logger.debug("Renamed "+source.getAbsolutePath());
-        NodeTreeBranch branch = findTreeNode(source);
-        if (branch != null) {
-            ((DefaultTreeModel) tree.getModel()).nodeChanged(branch);
-        }
+        if(!isInScene(source)) return;
+        treeModel.nodeRenamed(source);
     }
 
     @Override
     public void beforeSceneChange(Node oldScene) {
         //logger.debug("beforeSceneChange");
-        stopListeningTo(oldScene);
         tree.clearSelection();  // does not trigger selection change event?
         removeNode.setEnabled(false);
     }
@@ -249,11 +188,7 @@ public class NodeTreeView extends App
     @Override
     public void afterSceneChange(Node newScene) {
         //logger.debug("afterSceneChange");
-        listenTo(newScene);
-        treeModel.removeAllChildren();
-        treeModel.setUserObject(newScene);
-        ((DefaultTreeModel) tree.getModel()).nodeStructureChanged(treeModel.getRoot());
-        scanTree(newScene);
+        treeModel.setScene(newScene);
     }
 
     /**
@@ -292,7 +227,8 @@ public class NodeTreeView extends App
     public void itemRemoved(Object source,Node item) {
         isExternalChange = true;
         try {
-            var branch = findTreeNode(item);
+            // no need to create branches just to unselect them.
+            var branch = treeModel.getBranch(item);
             if(branch==null) {
                 //throw new InvalidParameterException("item not found in tree "+item.getAbsolutePath());
                 return;
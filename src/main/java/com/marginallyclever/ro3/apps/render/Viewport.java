@@ -348,6 +348,8 @@ public class Viewport extends OpenGLPanel implements GLEventListener {
         double dt = 0.03;
         for(ViewportTool tool : viewportTools) tool.update(dt);
         updateAllNodes(dt);
+        // the mesh pass and picking read this snapshot.
+        Registry.sceneChanges.commit(Registry.getScene());
         renderAllPasses();
         renderViewportTools();
     }
@@ -390,6 +392,7 @@ public class Viewport extends OpenGLPanel implements GLEventListener {
 
     private void updateAllNodes(double dt) {
         Registry.getScene().update(dt);
+        Registry.physics.update(Registry.getScene(),dt);
     }
 
     @Override
@@ -9,11 +9,13 @@ import com.marginallyclever.convenience.helpers.ResourceHelper;
 import com.marginallyclever.ro3.Registry;
 import com.marginallyclever.ro3.apps.render.Viewport;
 import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.SceneSnapshot;
 import com.marginallyclever.ro3.node.nodes.Camera;
 import com.marginallyclever.ro3.node.nodes.Material;
 import com.marginallyclever.ro3.node.nodes.MeshInstance;
 import com.marginallyclever.ro3.texture.TextureWithMetadata;
 import com.marginallyclever.ro3.apps.render.ShaderProgram;
+import com.marginallyclever.ro3.mesh.InstanceBuffer;
 import com.marginallyclever.ro3.mesh.Mesh;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,16 +24,27 @@ import javax.vecmath.Matrix4d;
 import javax.vecmath.Vector3d;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Draw each {@link MeshInstance} as a {@link Mesh}.  If the {@link MeshInstance} has a sibling {@link Material} with
- * a {@link com.jogamp.opengl.util.texture.Texture} then use it in the {@link ShaderProgram}.
+ * <p>Draw each {@link MeshInstance} as a {@link Mesh}.  If the {@link MeshInstance} has a sibling {@link Material} with
+ * a {@link com.jogamp.opengl.util.texture.Texture} then use it in the {@link ShaderProgram}.</p>
+ * <p>Instances that share a {@link Mesh} and material settings are drawn together as one {@link MeshInstanceGroup}
+ * with a single instanced draw call, so the number of draw calls depends on the number of distinct assets and not
+ * the number of instances.</p>
  */
 public class DrawMeshes extends AbstractRenderPass {
     private static final Logger logger = LoggerFactory.getLogger(DrawMeshes.class);
     private ShaderProgram meshShader, shadowShader;
     private final Mesh shadowQuad = new Mesh();
+    private final InstanceBuffer shadowQuadInstance = new InstanceBuffer();
+    private final Map<MeshInstanceGroup.Key,MeshInstanceGroup> groups = new LinkedHashMap<>();
+    private final Map<MeshInstance,Binding> bindings = new IdentityHashMap<>();
+    private int frame = 0;
     private final int [] shadowFBO = new int[1];  // Frame Buffer Object
     private final int [] depthMap = new int[1];  // texture for the FBO
     private final int shadowMapUnit = 1;
@@ -101,7 +114,7 @@ public class DrawMeshes extends AbstractRenderPass {
         OpenGLHelper.checkGLError(gl3,logger);
     }
 
-    private void generateDepthMap(GL3 gl3, List<MeshInstance> meshes) {
+    private void generateDepthMap(GL3 gl3) {
         // before, set up the shadow FBO
         gl3.glViewport(0,0,SHADOW_WIDTH,SHADOW_HEIGHT);
         gl3.glBindFramebuffer(GL3.GL_FRAMEBUFFER, shadowFBO[0]);
@@ -113,11 +126,8 @@ public class DrawMeshes extends AbstractRenderPass {
         shadowShader.setMatrix4d(gl3, "lightProjectionMatrix", lightProjection);
         shadowShader.setMatrix4d(gl3, "lightViewMatrix", lightView);
 
-        for(MeshInstance meshInstance : meshes) {
-            Matrix4d w = meshInstance.getWorld();
-            w.transpose();
-            shadowShader.setMatrix4d(gl3,"modelMatrix",w);
-            meshInstance.getMesh().render(gl3);
+        for(MeshInstanceGroup group : groups.values()) {
+            group.render(gl3);
         }
         // render scene as normal with shadow mapping (using depth map)
         gl3.glCullFace(GL3.GL_BACK);
@@ -136,6 +146,11 @@ public class DrawMeshes extends AbstractRenderPass {
         meshShader.delete(gl3);
         shadowShader.delete(gl3);
         shadowQuad.unload(gl3);
+        shadowQuadInstance.unload(gl3);
+        for(MeshInstanceGroup group : groups.values()) {
+            group.unload(gl3);
+        }
+        groups.clear();
 
         gl3.glDeleteFramebuffers(1, shadowFBO,0);
         gl3.glDeleteTextures(1, depthMap,0);
@@ -162,11 +177,12 @@ public class DrawMeshes extends AbstractRenderPass {
         if (camera == null) return;
 
         GL3 gl3 = GLContext.getCurrentGL().getGL3();
-        List<MeshInstance> meshes = collectAllMeshes();
+        List<SceneSnapshot.Entry> meshes = collectAllMeshes();
+        updateGroups(gl3,meshes);
 
         updateLightMatrix();
-        generateDepthMap(gl3,meshes);
-        drawAllMeshes(gl3,meshes,camera);
+        generateDepthMap(gl3);
+        drawAllMeshes(gl3,camera);
         //drawShadowQuad(gl3,camera);
     }
 
@@ -196,30 +212,80 @@ public class DrawMeshes extends AbstractRenderPass {
         Matrix4d w = MatrixHelper.createIdentityMatrix4();
         //w.rotY(Math.PI/2);
         w.setTranslation(new Vector3d(0,0,-20));
-        w.transpose();
-        meshShader.setMatrix4d(gl3,"modelMatrix",w);
-        shadowQuad.render(gl3);
+        shadowQuadInstance.setCount(1);
+        shadowQuadInstance.setInstance(0,w,Color.WHITE);
+        shadowQuadInstance.upload(gl3);
+        shadowQuad.renderInstanced(gl3,shadowQuadInstance);
     }
 
-    // find all MeshInstance nodes in Registry
-    private List<MeshInstance> collectAllMeshes() {
-        List<MeshInstance> meshes = new ArrayList<>();
+    // find all MeshInstance nodes in the snapshot made for this frame.
+    private List<SceneSnapshot.Entry> collectAllMeshes() {
+        List<SceneSnapshot.Entry> meshes = new ArrayList<>();
+        SceneSnapshot snapshot = Registry.sceneChanges.getSnapshot(Registry.getScene());
+        for(SceneSnapshot.Entry entry : snapshot.findAll(MeshInstance.class)) {
+            // if they have a mesh, draw it.
+            if(((MeshInstance)entry.getNode()).getMesh() != null) meshes.add(entry);
+        }
+        return meshes;
+    }
 
-        List<Node> toScan = new ArrayList<>(Registry.getScene().getChildren());
-        while(!toScan.isEmpty()) {
-            Node node = toScan.remove(0);
-            toScan.addAll(node.getChildren());
+    /**
+     * The {@link Material} and {@link MeshInstanceGroup.Key} last found for one {@link MeshInstance}.  The material is
+     * looked up again only when the siblings change, and the key is made again only when it no longer matches.
+     */
+    private static class Binding {
+        List<Node> siblings;
+        Material material;
+        MeshInstanceGroup.Key key;
+        int frame;
+    }
 
-            if (node instanceof MeshInstance meshInstance) {
-                // if they have a mesh, draw it.
-                Mesh mesh = meshInstance.getMesh();
-                if (mesh != null) meshes.add(meshInstance);
+    /**
+     * Sort the meshes into {@link MeshInstanceGroup}s and upload their instance data.  Groups are kept between frames
+     * so that instances that did not move are not uploaded again.
+     * @param gl3 the OpenGL context
+     * @param meshes all the {@link MeshInstance}s to draw this frame.
+     */
+    private void updateGroups(GL3 gl3, List<SceneSnapshot.Entry> meshes) {
+        for(MeshInstanceGroup group : groups.values()) {
+            group.clear();
+        }
+
+        frame++;
+        for(SceneSnapshot.Entry entry : meshes) {
+            MeshInstance meshInstance = (MeshInstance)entry.getNode();
+            Binding binding = bindings.computeIfAbsent(meshInstance, k -> new Binding());
+            binding.frame = frame;
+            // the child list is copy-on-write, so the same list means the same siblings.
+            Node parent = meshInstance.getParent();
+            List<Node> siblings = (parent==null) ? null : parent.getChildren();
+            if(binding.key==null || binding.siblings!=siblings) {
+                binding.siblings = siblings;
+                binding.material = meshInstance.findFirstSibling(Material.class);
+            }
+            if(binding.key==null || !binding.key.matches(meshInstance.getMesh(),binding.material)) {
+                binding.key = MeshInstanceGroup.Key.of(meshInstance.getMesh(),binding.material);
+            }
+            groups.computeIfAbsent(binding.key, MeshInstanceGroup::new).add(entry,binding.material);
+        }
+        // forget the instances that are no longer drawn.
+        if(bindings.size()>meshes.size()) {
+            bindings.values().removeIf(b -> b.frame!=frame);
+        }
+
+        Iterator<MeshInstanceGroup> iter = groups.values().iterator();
+        while(iter.hasNext()) {
+            MeshInstanceGroup group = iter.next();
+            if(group.isEmpty()) {
+                group.unload(gl3);
+                iter.remove();
+            } else {
+                group.update(gl3);
             }
         }
-        return meshes;
     }
 
-    private void drawAllMeshes(GL3 gl3, List<MeshInstance> meshes, Camera camera) {
+    private void drawAllMeshes(GL3 gl3, Camera camera) {
         meshShader.use(gl3);
         meshShader.set1i(gl3,"shadowMap",shadowMapUnit);
         meshShader.setMatrix4d(gl3, "lightProjectionMatrix", lightProjection);
@@ -241,26 +307,14 @@ public class DrawMeshes extends AbstractRenderPass {
         meshShader.set1i(gl3, "diffuseTexture", 0);
         OpenGLHelper.checkGLError(gl3, logger);
 
-        for(MeshInstance meshInstance : meshes) {
-            Mesh mesh = meshInstance.getMesh();
-
-            TextureWithMetadata texture = null;
-            // set the texture to the first sibling that is a material and has a texture
-            Material material = meshInstance.findFirstSibling(Material.class);
-            if(material!=null) {
-                if(material.getTexture()!=null) {
-                    texture = material.getTexture();
-                }
-                meshShader.setColor(gl3,"objectColor",material.getDiffuseColor());
-                meshShader.setColor(gl3,"specularColor",material.getSpecularColor());
-                meshShader.set1i(gl3,"useLighting",material.isLit() ? 1 : 0);
-                meshShader.set1i(gl3,"shininess",material.getShininess());
-            } else {
-                meshShader.setColor(gl3,"objectColor",Color.WHITE);
-                meshShader.setColor(gl3,"specularColor",Color.WHITE);
-                meshShader.set1i(gl3,"useLighting",1);
-                meshShader.set1i(gl3,"shininess",0);
-            }
+        for(MeshInstanceGroup group : groups.values()) {
+            // the diffuse color of each instance is in the instance buffer.
+            MeshInstanceGroup.Key key = group.key;
+            meshShader.setColor(gl3,"specularColor",key.specularColor());
+            meshShader.set1i(gl3,"useLighting",key.lit() ? 1 : 0);
+            meshShader.set1i(gl3,"shininess",key.shininess());
+
+            TextureWithMetadata texture = key.texture();
             if(texture == null) {
                 gl3.glDisable(GL3.GL_TEXTURE_2D);
                 meshShader.set1i(gl3,"useTexture",0);
@@ -268,12 +322,8 @@ public class DrawMeshes extends AbstractRenderPass {
                 texture.use(meshShader);
             }
 
-            // set the model matrix
-            Matrix4d w = meshInstance.getWorld();
-            w.transpose();
-            meshShader.setMatrix4d(gl3,"modelMatrix",w);
-            // draw it
-            mesh.render(gl3);
+            // draw every instance at once
+            group.render(gl3);
 
             OpenGLHelper.checkGLError(gl3,logger);
         }
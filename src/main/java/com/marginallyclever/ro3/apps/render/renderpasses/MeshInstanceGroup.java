@@ -0,0 +1,95 @@
+package com.marginallyclever.ro3.apps.render.renderpasses;
+
+import com.jogamp.opengl.GL3;
+import com.marginallyclever.ro3.mesh.InstanceBuffer;
+import com.marginallyclever.ro3.mesh.Mesh;
+import com.marginallyclever.ro3.node.SceneSnapshot;
+import com.marginallyclever.ro3.node.nodes.Material;
+import com.marginallyclever.ro3.node.nodes.MeshInstance;
+import com.marginallyclever.ro3.texture.TextureWithMetadata;
+
+import javax.vecmath.Matrix4d;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>{@link MeshInstanceGroup} is every {@link MeshInstance} that shares one {@link Mesh} and the same shader state,
+ * so that {@link DrawMeshes} can draw all of them with one instanced draw call.  The diffuse color of each
+ * {@link Material} goes into the per-instance data so that it does not split groups.</p>
+ */
+class MeshInstanceGroup {
+    /**
+     * Everything that must be the same for two {@link MeshInstance}s to be drawn together.
+     */
+    record Key(Mesh mesh, TextureWithMetadata texture, Color specularColor, int shininess, boolean lit) {
+        static Key of(Mesh mesh, Material material) {
+            if(material==null) return new Key(mesh,null,Color.WHITE,0,true);
+            return new Key(mesh, material.getTexture(), material.getSpecularColor(), material.getShininess(), material.isLit());
+        }
+
+        /**
+         * @return true if {@link #of(Mesh, Material)} would make an equal key.  Does not allocate.
+         */
+        boolean matches(Mesh mesh, Material material) {
+            if(this.mesh!=mesh) return false;
+            if(material==null) return texture==null && Color.WHITE.equals(specularColor) && shininess==0 && lit;
+            return texture==material.getTexture()
+                    && specularColor.equals(material.getSpecularColor())
+                    && shininess==material.getShininess()
+                    && lit==material.isLit();
+        }
+    }
+
+    private static final float [] WHITE = Color.WHITE.getRGBComponents(null);
+
+    final Key key;
+    final List<SceneSnapshot.Entry> members = new ArrayList<>();
+    final List<float[]> colors = new ArrayList<>();
+    final InstanceBuffer instances = new InstanceBuffer();
+    private final Matrix4d world = new Matrix4d();
+
+    MeshInstanceGroup(Key key) {
+        this.key = key;
+    }
+
+    /**
+     * @param entry a {@link MeshInstance} in the snapshot being drawn.
+     * @param material the material used to draw it, or null.
+     */
+    void add(SceneSnapshot.Entry entry, Material material) {
+        members.add(entry);
+        colors.add(material==null ? WHITE : material.getDiffuseComponents());
+    }
+
+    void clear() {
+        members.clear();
+        colors.clear();
+    }
+
+    boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    /**
+     * Copy the world matrix and color of every member into the instance buffer and upload whatever changed.
+     * @param gl3 the OpenGL context
+     */
+    void update(GL3 gl3) {
+        instances.setCount(members.size());
+        for(int i=0;i<members.size();++i) {
+            members.get(i).getWorld(world);
+            float[] c = colors.get(i);
+            instances.setInstance(i, world, c[0], c[1], c[2], c[3]);
+        }
+        instances.upload(gl3);
+    }
+
+    void render(GL3 gl3) {
+        key.mesh().renderInstanced(gl3, instances);
+    }
+
+    void unload(GL3 gl3) {
+        instances.unload(gl3);
+    }
+}
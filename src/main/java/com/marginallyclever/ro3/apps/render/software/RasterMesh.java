@@ -0,0 +1,118 @@
+package com.marginallyclever.ro3.apps.render.software;
+
+import com.jogamp.opengl.GL3;
+import com.marginallyclever.ro3.mesh.Mesh;
+
+import java.util.List;
+
+/**
+ * <p>{@link RasterMesh} is a copy of a {@link Mesh} in primitive arrays, so that the {@link SoftwareRenderer} does
+ * not unbox a {@link Float} for every vertex of every frame.  Indexes, strips, and fans are expanded so that every
+ * three vertexes are one triangle.  Lines and points have no triangles.</p>
+ */
+class RasterMesh {
+    /**
+     * x,y,z of each vertex.
+     */
+    final float [] vertices;
+    /**
+     * x,y,z of each vertex, or null if the mesh has no normals.
+     */
+    final float [] normals;
+    /**
+     * u,v of each vertex, or null if the mesh has no texture coordinates.
+     */
+    final float [] texCoords;
+    final int vertexCount;
+    /**
+     * min x,y,z then max x,y,z of the vertexes, in the local space of the mesh.
+     */
+    final float [] bounds = new float[6];
+    // to notice when the mesh changes.
+    private final int sourceVersion;
+
+    RasterMesh(Mesh mesh) {
+        sourceVersion = mesh.getVersion();
+        int sourceVertices = mesh.vertexArray.size();
+
+        int [] order = getTriangleOrder(mesh);
+        vertexCount = order.length;
+        vertices = expand(mesh.vertexArray,order,3);
+        normals = (mesh.getHasNormals() && mesh.normalArray.size() >= sourceVertices) ? expand(mesh.normalArray,order,3) : null;
+        texCoords = (mesh.getHasTextures() && mesh.textureArray.size()/2 >= sourceVertices/3) ? expand(mesh.textureArray,order,2) : null;
+        updateBounds();
+    }
+
+    /**
+     * @return true if this is still a good copy of the mesh.
+     */
+    boolean matches(Mesh mesh) {
+        return sourceVersion == mesh.getVersion();
+    }
+
+    /**
+     * @return the source vertex of each corner of each triangle.
+     */
+    private static int [] getTriangleOrder(Mesh mesh) {
+        int count = mesh.getHasIndexes() ? mesh.indexArray.size() : mesh.vertexArray.size()/3;
+        int [] source = new int[count];
+        for(int i=0;i<count;++i) {
+            source[i] = mesh.getHasIndexes() ? mesh.indexArray.get(i) : i;
+        }
+
+        switch(mesh.getRenderStyle()) {
+            case GL3.GL_TRIANGLES: {
+                int [] order = new int[count - count%3];
+                System.arraycopy(source,0,order,0,order.length);
+                return order;
+            }
+            case GL3.GL_TRIANGLE_STRIP: {
+                int [] order = new int[Math.max(0,count-2)*3];
+                for(int i=0;i+2<count;++i) {
+                    // every other triangle in a strip is wound the other way.
+                    boolean odd = (i%2)==1;
+                    order[i*3  ] = source[i];
+                    order[i*3+1] = source[odd ? i+2 : i+1];
+                    order[i*3+2] = source[odd ? i+1 : i+2];
+                }
+                return order;
+            }
+            case GL3.GL_TRIANGLE_FAN: {
+                int [] order = new int[Math.max(0,count-2)*3];
+                for(int i=1;i+1<count;++i) {
+                    order[(i-1)*3  ] = source[0];
+                    order[(i-1)*3+1] = source[i];
+                    order[(i-1)*3+2] = source[i+1];
+                }
+                return order;
+            }
+            default:
+                return new int[0];
+        }
+    }
+
+    private static float [] expand(List<Float> list,int [] order,int size) {
+        float [] array = new float[order.length*size];
+        for(int i=0;i<order.length;++i) {
+            int s = order[i]*size;
+            for(int j=0;j<size;++j) {
+                array[i*size+j] = list.get(s+j);
+            }
+        }
+        return array;
+    }
+
+    private void updateBounds() {
+        if(vertexCount==0) return;
+        for(int j=0;j<3;++j) {
+            bounds[j] = Float.MAX_VALUE;
+            bounds[j+3] = -Float.MAX_VALUE;
+        }
+        for(int i=0;i<vertices.length;i+=3) {
+            for(int j=0;j<3;++j) {
+                bounds[j] = Math.min(bounds[j],vertices[i+j]);
+                bounds[j+3] = Math.max(bounds[j+3],vertices[i+j]);
+            }
+        }
+    }
+}
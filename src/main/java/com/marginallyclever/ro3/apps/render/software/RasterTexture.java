@@ -0,0 +1,30 @@
+package com.marginallyclever.ro3.apps.render.software;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * {@link RasterTexture} is the pixels of a texture in one array, for the {@link SoftwareRenderer}.
+ */
+class RasterTexture {
+    private final int [] pixels;
+    private final int width;
+    private final int height;
+
+    RasterTexture(BufferedImage image) {
+        width = image.getWidth();
+        height = image.getHeight();
+        pixels = image.getRGB(0,0,width,height,null,0,width);
+    }
+
+    /**
+     * Nearest pixel with the texture repeating in both directions.  v=0 is the bottom of the image, as in OpenGL.
+     * @return the ARGB color at u,v.
+     */
+    int sample(double u,double v) {
+        u -= Math.floor(u);
+        v -= Math.floor(v);
+        int x = Math.min(width-1,(int)(u*width));
+        int y = Math.min(height-1,(int)((1.0-v)*height));
+        return pixels[y*width+x];
+    }
+}
@@ -0,0 +1,745 @@
+package com.marginallyclever.ro3.apps.render.software;
+
+import com.marginallyclever.convenience.helpers.MatrixHelper;
+import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.mesh.Mesh;
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.Camera;
+import com.marginallyclever.ro3.node.nodes.Material;
+import com.marginallyclever.ro3.node.nodes.MeshInstance;
+import com.marginallyclever.ro3.texture.TextureWithMetadata;
+
+import javax.vecmath.Matrix3d;
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.*;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * <p>{@link SoftwareRenderer} draws a scene to a {@link BufferedImage} without OpenGL, so that thumbnails, previews,
+ * and image tests work on machines with no GPU.  It reads the same {@link MeshInstance}, {@link Mesh}, and
+ * {@link Material} data as {@link com.marginallyclever.ro3.apps.render.renderpasses.DrawMeshes} and lights them the
+ * same way: one light at the camera, Phong diffuse and specular, and a light gray ambient.  Shadows, lines, and
+ * points are not drawn.</p>
+ * <p>Triangles are transformed in parallel, one task per {@link MeshInstance}, and sorted into square tiles.  Each
+ * tile is then drawn by one thread into its own part of the image and depth buffer, so no locks are needed.</p>
+ * <p>{@link #capture(Node,Camera)} copies what is needed from the scene into a {@link Snapshot}, and
+ * {@link #render(Snapshot)} draws it without touching the scene again.  Capture on the thread that edits the scene
+ * (such as the Swing event thread) and render on any other thread.</p>
+ * <p>One renderer is not thread safe.  To draw many scenes at once give each thread its own renderer.  Meshes are
+ * converted once and shared by every renderer.  Textures are converted once per render, so no copy of a texture
+ * outlives the render that used it.</p>
+ */
+public class SoftwareRenderer {
+    public static final int TILE_SIZE = 32;
+    private static final Map<Mesh,RasterMesh> meshCache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Everything needed to shade the triangles of one {@link MeshInstance}.  Colors are 0...1.
+     */
+    private record Surface(float [] diffuse, float [] specular, int shininess, boolean lit, RasterTexture texture) {}
+
+    /**
+     * One {@link MeshInstance} as it was when the {@link Snapshot} was taken.
+     */
+    private record Item(RasterMesh mesh, Matrix4d world, float [] diffuse, float [] specular, int shininess,
+                        boolean lit, TextureWithMetadata texture) {}
+
+    /**
+     * <p>A copy of the meshes, materials, and camera of a scene, made by {@link #capture(Node,Camera)}.  It can be
+     * drawn on any thread while the scene keeps changing.</p>
+     */
+    public static final class Snapshot {
+        private final List<Item> items;
+        private final Matrix4d viewProjection;
+        private final Vector3d eye;
+        private final int width;
+        private final int height;
+
+        private Snapshot(List<Item> items,Matrix4d viewProjection,Vector3d eye,int width,int height) {
+            this.items = items;
+            this.viewProjection = viewProjection;
+            this.eye = eye;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * @return the number of meshes that will be drawn.
+         */
+        public int size() {
+            return items.size();
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    private final float [] depth;
+    private final int [][] bins;
+    private final int [] binCounts;
+
+    private Color backgroundColor = new Color(64,64,128);
+    private Color ambientColor = Color.LIGHT_GRAY;
+    private Color lightColor = Color.WHITE;
+    private boolean cullBackFaces = true;
+
+    // state of the frame being drawn.
+    private int [] color;
+    private TriangleBuffer triangles;
+    private final List<Surface> surfaces = new ArrayList<>();
+    private final float [] ambient = new float[3];
+    private final float [] light = new float[3];
+    private final double [] eye = new double[3];
+    private int background;
+
+    public SoftwareRenderer(int width,int height) {
+        if(width<=0 || height<=0) throw new IllegalArgumentException("width and height must be greater than zero.");
+        this.width = width;
+        this.height = height;
+        tilesX = (width+TILE_SIZE-1)/TILE_SIZE;
+        tilesY = (height+TILE_SIZE-1)/TILE_SIZE;
+        depth = new float[width*height];
+        bins = new int[tilesX*tilesY][16];
+        binCounts = new int[tilesX*tilesY];
+    }
+
+    /**
+     * Draw the {@link Registry} scene from the active camera.
+     * @return the image.
+     */
+    public BufferedImage render() {
+        Camera camera = Registry.getActiveCamera();
+        if(camera==null) throw new IllegalStateException("No active camera.");
+        return render(Registry.getScene(),camera);
+    }
+
+    /**
+     * Draw a scene.  The camera does not have to be part of the scene.
+     * @param scene the root of the scene.
+     * @param camera the point of view.
+     * @return a new image.
+     */
+    public BufferedImage render(Node scene,Camera camera) {
+        return render(capture(scene,camera));
+    }
+
+    /**
+     * Copy what {@link #render(Snapshot)} needs from a scene.  This does not draw anything.  It must be called on
+     * the thread that changes the scene.
+     * @param scene the root of the scene.
+     * @param camera the point of view.  It does not have to be part of the scene.
+     * @return a copy of the scene for a renderer of this size.
+     */
+    public Snapshot capture(Node scene,Camera camera) {
+        List<MeshInstance> meshes = collectMeshes(scene);
+        List<Item> items = new ArrayList<>(meshes.size());
+        for(MeshInstance meshInstance : meshes) {
+            items.add(getItem(meshInstance));
+        }
+        return new Snapshot(List.copyOf(items),getViewProjection(camera),
+                MatrixHelper.getPosition(camera.getWorld()),width,height);
+    }
+
+    /**
+     * Draw a {@link Snapshot}.  Safe to call on any thread.
+     * @param snapshot made by {@link #capture(Node,Camera)} of a renderer with the same size.
+     * @return a new image.
+     */
+    public BufferedImage render(Snapshot snapshot) {
+        if(snapshot.width!=width || snapshot.height!=height) {
+            throw new IllegalArgumentException("snapshot was captured for a different size.");
+        }
+        BufferedImage image = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB);
+        color = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        background = backgroundColor.getRGB();
+        toFloats(ambientColor,ambient);
+        toFloats(lightColor,light);
+        eye[0] = snapshot.eye.x;
+        eye[1] = snapshot.eye.y;
+        eye[2] = snapshot.eye.z;
+
+        List<Item> items = snapshot.items;
+        Map<TextureWithMetadata,RasterTexture> textures = new IdentityHashMap<>();
+        surfaces.clear();
+        for(Item item : items) {
+            surfaces.add(getSurface(item,textures));
+        }
+
+        Matrix4d viewProjection = snapshot.viewProjection;
+        TriangleBuffer [] parts = IntStream.range(0,items.size()).parallel()
+                .mapToObj(i -> transform(items.get(i),i,viewProjection))
+                .toArray(TriangleBuffer[]::new);
+        triangles = TriangleBuffer.concat(parts);
+
+        binTriangles();
+        IntStream.range(0,tilesX*tilesY).parallel().forEach(this::drawTile);
+
+        triangles = null;
+        color = null;
+        surfaces.clear();
+        return image;
+    }
+
+    /**
+     * Transparent meshes are put last so that they blend with what is behind them.
+     * @return every {@link MeshInstance} with a mesh in the scene, including the scene itself.
+     */
+    private List<MeshInstance> collectMeshes(Node scene) {
+        List<MeshInstance> opaque = new ArrayList<>();
+        List<MeshInstance> transparent = new ArrayList<>();
+        Deque<Node> toScan = new ArrayDeque<>();
+        toScan.add(scene);
+        while(!toScan.isEmpty()) {
+            Node node = toScan.removeFirst();
+            toScan.addAll(node.getChildren());
+            if(node instanceof MeshInstance meshInstance && meshInstance.getMesh()!=null) {
+                Material material = meshInstance.findFirstSibling(Material.class);
+                boolean isTransparent = meshInstance.getMesh().isTransparent()
+                        || (material!=null && material.getDiffuseColor().getAlpha()<255);
+                (isTransparent ? transparent : opaque).add(meshInstance);
+            }
+        }
+        opaque.addAll(transparent);
+        return opaque;
+    }
+
+    private static Item getItem(MeshInstance meshInstance) {
+        RasterMesh mesh = getRasterMesh(meshInstance.getMesh());
+        Matrix4d world = meshInstance.getWorld();
+        Material material = meshInstance.findFirstSibling(Material.class);
+        if(material==null) {
+            return new Item(mesh,world,new float[]{1,1,1,1},new float[]{1,1,1},0,true,null);
+        }
+        float [] diffuse = material.getDiffuseColor().getRGBComponents(null);
+        float [] specular = material.getSpecularColor().getRGBColorComponents(null);
+        return new Item(mesh,world,diffuse,specular,material.getShininess(),material.isLit(),material.getTexture());
+    }
+
+    /**
+     * @param textures the textures already converted in this render.
+     */
+    private static Surface getSurface(Item item,Map<TextureWithMetadata,RasterTexture> textures) {
+        RasterTexture texture = null;
+        if(item.texture()!=null) {
+            if(textures.containsKey(item.texture())) texture = textures.get(item.texture());
+            else {
+                BufferedImage image = item.texture().getImage();
+                texture = (image==null) ? null : new RasterTexture(image);
+                textures.put(item.texture(),texture);
+            }
+        }
+        return new Surface(item.diffuse(),item.specular(),item.shininess(),item.lit(),texture);
+    }
+
+    /**
+     * The {@link Camera} matrices are transposed for OpenGL.  Undo that.
+     */
+    private Matrix4d getViewProjection(Camera camera) {
+        Matrix4d projection = camera.getChosenProjectionMatrix(width,height);
+        projection.transpose();
+        Matrix4d view = camera.getWorld();
+        view.invert();
+        projection.mul(view);
+        return projection;
+    }
+
+    /**
+     * Move the triangles of one mesh to the screen, clipping them against the near plane.
+     * @return the triangles that might be visible.
+     */
+    private TriangleBuffer transform(Item item,int surfaceIndex,Matrix4d viewProjection) {
+        TriangleBuffer out = new TriangleBuffer();
+        RasterMesh mesh = item.mesh();
+        if(mesh.vertexCount==0) return out;
+
+        Matrix4d world = item.world();
+        Matrix4d mvp = new Matrix4d();
+        mvp.mul(viewProjection,world);
+        Matrix3d normalMatrix = new Matrix3d();
+        world.getRotationScale(normalMatrix);
+        if(normalMatrix.determinant()==0) return out;
+        normalMatrix.invert();
+        normalMatrix.transpose();
+
+        double [] m = toArray(mvp);
+        double [] w = toArray(world);
+        double [] n = toArray(normalMatrix);
+        float [] triangle = new float[TriangleBuffer.VERTEX_STRIDE*3];
+        float [] clipped = new float[TriangleBuffer.VERTEX_STRIDE*4];
+
+        for(int t=0;t<mesh.vertexCount;t+=3) {
+            for(int k=0;k<3;++k) {
+                loadVertex(mesh,t+k,m,w,n,triangle,k*TriangleBuffer.VERTEX_STRIDE);
+            }
+            if(mesh.normals==null) setFaceNormal(triangle);
+            if(isOutside(triangle)) continue;
+
+            float [] polygon = triangle;
+            int corners = 3;
+            if(!isInFrontOfNearPlane(triangle)) {
+                corners = clipNear(triangle,clipped);
+                polygon = clipped;
+            }
+            for(int i=1;i+1<corners;++i) {
+                addTriangle(out,surfaceIndex,polygon,0,i,i+1);
+            }
+        }
+        return out;
+    }
+
+    // vertex layout before the divide by w: clip x,y,z,w, world x,y,z, normal x,y,z, u,v.
+    private static void loadVertex(RasterMesh mesh,int index,double [] m,double [] w,double [] n,float [] out,int o) {
+        double x = mesh.vertices[index*3  ];
+        double y = mesh.vertices[index*3+1];
+        double z = mesh.vertices[index*3+2];
+        out[o  ] = (float)(m[ 0]*x + m[ 1]*y + m[ 2]*z + m[ 3]);
+        out[o+1] = (float)(m[ 4]*x + m[ 5]*y + m[ 6]*z + m[ 7]);
+        out[o+2] = (float)(m[ 8]*x + m[ 9]*y + m[10]*z + m[11]);
+        out[o+3] = (float)(m[12]*x + m[13]*y + m[14]*z + m[15]);
+        out[o+4] = (float)(w[ 0]*x + w[ 1]*y + w[ 2]*z + w[ 3]);
+        out[o+5] = (float)(w[ 4]*x + w[ 5]*y + w[ 6]*z + w[ 7]);
+        out[o+6] = (float)(w[ 8]*x + w[ 9]*y + w[10]*z + w[11]);
+        if(mesh.normals!=null) {
+            double nx = mesh.normals[index*3  ];
+            double ny = mesh.normals[index*3+1];
+            double nz = mesh.normals[index*3+2];
+            out[o+7] = (float)(n[0]*nx + n[1]*ny + n[2]*nz);
+            out[o+8] = (float)(n[3]*nx + n[4]*ny + n[5]*nz);
+            out[o+9] = (float)(n[6]*nx + n[7]*ny + n[8]*nz);
+        }
+        if(mesh.texCoords!=null) {
+            out[o+10] = mesh.texCoords[index*2  ];
+            out[o+11] = mesh.texCoords[index*2+1];
+        } else {
+            out[o+10] = 0;
+            out[o+11] = 0;
+        }
+    }
+
+    /**
+     * For meshes without normals, use the normal of the face in world space.
+     */
+    private static void setFaceNormal(float [] triangle) {
+        int s = TriangleBuffer.VERTEX_STRIDE;
+        float ax = triangle[s  +4] - triangle[4], ay = triangle[s  +5] - triangle[5], az = triangle[s  +6] - triangle[6];
+        float bx = triangle[s*2+4] - triangle[4], by = triangle[s*2+5] - triangle[5], bz = triangle[s*2+6] - triangle[6];
+        float nx = ay*bz - az*by;
+        float ny = az*bx - ax*bz;
+        float nz = ax*by - ay*bx;
+        for(int k=0;k<3;++k) {
+            triangle[k*s+7] = nx;
+            triangle[k*s+8] = ny;
+            triangle[k*s+9] = nz;
+        }
+    }
+
+    /**
+     * @return true if all three corners are outside the same side of the view volume.
+     */
+    private static boolean isOutside(float [] triangle) {
+        int s = TriangleBuffer.VERTEX_STRIDE;
+        for(int axis=0;axis<3;++axis) {
+            boolean allAbove = true;
+            boolean allBelow = true;
+            for(int k=0;k<3;++k) {
+                float v = triangle[k*s+axis];
+                float w = triangle[k*s+3];
+                allAbove &= v > w;
+                allBelow &= v < -w;
+            }
+            if(allAbove || allBelow) return true;
+        }
+        return false;
+    }
+
+    private static boolean isInFrontOfNearPlane(float [] triangle) {
+        int s = TriangleBuffer.VERTEX_STRIDE;
+        for(int k=0;k<3;++k) {
+            if(triangle[k*s+2] + triangle[k*s+3] < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cut the triangle where it crosses the near plane.
+     * @return the number of corners left in out, from 0 to 4.
+     */
+    private static int clipNear(float [] triangle,float [] out) {
+        int s = TriangleBuffer.VERTEX_STRIDE;
+        int corners = 0;
+        for(int i=0;i<3;++i) {
+            int j = (i+1)%3;
+            float di = triangle[i*s+2] + triangle[i*s+3];
+            float dj = triangle[j*s+2] + triangle[j*s+3];
+            if(di>=0) {
+                System.arraycopy(triangle,i*s,out,corners*s,s);
+                corners++;
+            }
+            if((di>=0) != (dj>=0)) {
+                float t = di/(di-dj);
+                for(int a=0;a<s;++a) {
+                    out[corners*s+a] = triangle[i*s+a] + (triangle[j*s+a] - triangle[i*s+a]) * t;
+                }
+                corners++;
+            }
+        }
+        return corners;
+    }
+
+    /**
+     * Divide by w, move to pixels, and add the triangle to out if it faces the camera and covers some of the image.
+     * Triangles are stored so that the area found by {@link #edge} is positive.
+     */
+    private void addTriangle(TriangleBuffer out,int surfaceIndex,float [] polygon,int a,int b,int c) {
+        int s = TriangleBuffer.VERTEX_STRIDE;
+        float ax = getScreenX(polygon,a*s), ay = getScreenY(polygon,a*s);
+        float bx = getScreenX(polygon,b*s), by = getScreenY(polygon,b*s);
+        float cx = getScreenX(polygon,c*s), cy = getScreenY(polygon,c*s);
+        float area = (bx-ax)*(cy-ay) - (cx-ax)*(by-ay);
+        if(area==0 || Float.isNaN(area)) return;
+        // counter-clockwise in OpenGL is clockwise on the screen because y is flipped.
+        boolean facesCamera = area<0;
+        if(!facesCamera && cullBackFaces) return;
+
+        float minX = Math.min(ax,Math.min(bx,cx));
+        float maxX = Math.max(ax,Math.max(bx,cx));
+        float minY = Math.min(ay,Math.min(by,cy));
+        float maxY = Math.max(ay,Math.max(by,cy));
+        if(maxX<0 || maxY<0 || minX>width || minY>height) return;
+
+        int o = out.add(surfaceIndex);
+        if(facesCamera) {
+            copyVertex(polygon,a*s,out.data,o);
+            copyVertex(polygon,c*s,out.data,o+s);
+            copyVertex(polygon,b*s,out.data,o+s*2);
+        } else {
+            copyVertex(polygon,a*s,out.data,o);
+            copyVertex(polygon,b*s,out.data,o+s);
+            copyVertex(polygon,c*s,out.data,o+s*2);
+        }
+    }
+
+    private float getScreenX(float [] polygon,int p) {
+        return (polygon[p]/polygon[p+3]*0.5f + 0.5f) * width;
+    }
+
+    private float getScreenY(float [] polygon,int p) {
+        return (-polygon[p+1]/polygon[p+3]*0.5f + 0.5f) * height;
+    }
+
+    private void copyVertex(float [] polygon,int p,float [] data,int o) {
+        float inverseW = 1.0f/polygon[p+3];
+        data[o+TriangleBuffer.SCREEN_X ] = getScreenX(polygon,p);
+        data[o+TriangleBuffer.SCREEN_Y ] = getScreenY(polygon,p);
+        data[o+TriangleBuffer.DEPTH    ] = polygon[p+2]*inverseW*0.5f + 0.5f;
+        data[o+TriangleBuffer.INVERSE_W] = inverseW;
+        for(int i=TriangleBuffer.WORLD;i<TriangleBuffer.VERTEX_STRIDE;++i) {
+            data[o+i] = polygon[p+i]*inverseW;
+        }
+    }
+
+    /**
+     * Put the index of each triangle in every tile its bounding box touches.
+     */
+    private void binTriangles() {
+        Arrays.fill(binCounts,0);
+        float [] data = triangles.data;
+        for(int t=0;t<triangles.count;++t) {
+            int o = t*TriangleBuffer.TRIANGLE_STRIDE;
+            float x0 = data[o], x1 = data[o+TriangleBuffer.VERTEX_STRIDE], x2 = data[o+TriangleBuffer.VERTEX_STRIDE*2];
+            float y0 = data[o+1], y1 = data[o+TriangleBuffer.VERTEX_STRIDE+1], y2 = data[o+TriangleBuffer.VERTEX_STRIDE*2+1];
+            int left   = Math.max(0,        (int)Math.min(x0,Math.min(x1,x2)) / TILE_SIZE);
+            int right  = Math.min(tilesX-1, (int)Math.max(x0,Math.max(x1,x2)) / TILE_SIZE);
+            int top    = Math.max(0,        (int)Math.min(y0,Math.min(y1,y2)) / TILE_SIZE);
+            int bottom = Math.min(tilesY-1, (int)Math.max(y0,Math.max(y1,y2)) / TILE_SIZE);
+            for(int ty=top;ty<=bottom;++ty) {
+                for(int tx=left;tx<=right;++tx) {
+                    int bin = ty*tilesX+tx;
+                    if(binCounts[bin]==bins[bin].length) bins[bin] = Arrays.copyOf(bins[bin],bins[bin].length*2);
+                    bins[bin][binCounts[bin]++] = t;
+                }
+            }
+        }
+    }
+
+    private void drawTile(int tile) {
+        int x0 = (tile%tilesX)*TILE_SIZE;
+        int y0 = (tile/tilesX)*TILE_SIZE;
+        int x1 = Math.min(x0+TILE_SIZE,width);
+        int y1 = Math.min(y0+TILE_SIZE,height);
+        for(int y=y0;y<y1;++y) {
+            Arrays.fill(color,y*width+x0,y*width+x1,background);
+            Arrays.fill(depth,y*width+x0,y*width+x1,1.0f);
+        }
+        int [] bin = bins[tile];
+        double [] attributes = new double[8];
+        for(int i=0;i<binCounts[tile];++i) {
+            drawTriangle(bin[i],x0,y0,x1,y1,attributes);
+        }
+    }
+
+    /**
+     * Draw the part of one triangle inside the rectangle x0,y0 (inclusive) to x1,y1 (exclusive).
+     * @param attributes room for the attributes of one pixel.
+     */
+    private void drawTriangle(int t,int x0,int y0,int x1,int y1,double [] attributes) {
+        final int s = TriangleBuffer.VERTEX_STRIDE;
+        final float [] d = triangles.data;
+        final int a = t*TriangleBuffer.TRIANGLE_STRIDE;
+        final int b = a+s;
+        final int c = b+s;
+        final double ax = d[a], ay = d[a+1];
+        final double bx = d[b], by = d[b+1];
+        final double cx = d[c], cy = d[c+1];
+
+        int left   = Math.max(x0,  (int)Math.floor(Math.min(ax,Math.min(bx,cx))));
+        int right  = Math.min(x1-1,(int)Math.ceil (Math.max(ax,Math.max(bx,cx))));
+        int top    = Math.max(y0,  (int)Math.floor(Math.min(ay,Math.min(by,cy))));
+        int bottom = Math.min(y1-1,(int)Math.ceil (Math.max(ay,Math.max(by,cy))));
+        if(left>right || top>bottom) return;
+
+        // edge functions.  e0 is the weight of a, e1 of b, e2 of c.
+        final double area = edge(ax,ay,bx,by,cx,cy);
+        final double inverseArea = 1.0/area;
+        // pixels exactly on an edge belong to only one of the two triangles that share it.
+        final boolean include0 = isIncluded(bx,by,cx,cy);
+        final boolean include1 = isIncluded(cx,cy,ax,ay);
+        final boolean include2 = isIncluded(ax,ay,bx,by);
+        final double step0 = -(cy-by), step1 = -(ay-cy), step2 = -(by-ay);
+
+        final Surface surface = surfaces.get(triangles.surface[t]);
+
+        for(int y=top;y<=bottom;++y) {
+            double py = y+0.5;
+            double px = left+0.5;
+            double e0 = edge(bx,by,cx,cy,px,py);
+            double e1 = edge(cx,cy,ax,ay,px,py);
+            double e2 = edge(ax,ay,bx,by,px,py);
+            int index = y*width+left;
+            for(int x=left;x<=right;++x, ++index, e0+=step0, e1+=step1, e2+=step2) {
+                if(e0<0 || e1<0 || e2<0) continue;
+                if((e0==0 && !include0) || (e1==0 && !include1) || (e2==0 && !include2)) continue;
+
+                double w0 = e0*inverseArea;
+                double w1 = e1*inverseArea;
+                double w2 = e2*inverseArea;
+                float z = (float)(w0*d[a+TriangleBuffer.DEPTH] + w1*d[b+TriangleBuffer.DEPTH] + w2*d[c+TriangleBuffer.DEPTH]);
+                if(z<0 || z>1 || z>=depth[index]) continue;
+
+                double inverseW = w0*d[a+TriangleBuffer.INVERSE_W] + w1*d[b+TriangleBuffer.INVERSE_W] + w2*d[c+TriangleBuffer.INVERSE_W];
+                double pw = 1.0/inverseW;
+                for(int i=0;i<attributes.length;++i) {
+                    int j = TriangleBuffer.WORLD+i;
+                    attributes[i] = (w0*d[a+j] + w1*d[b+j] + w2*d[c+j]) * pw;
+                }
+                depth[index] = z;
+                color[index] = shade(surface,attributes,color[index]);
+            }
+        }
+    }
+
+    /**
+     * @return twice the signed area of the triangle a,b,p.
+     */
+    private static double edge(double ax,double ay,double bx,double by,double px,double py) {
+        return (bx-ax)*(py-ay) - (by-ay)*(px-ax);
+    }
+
+    /**
+     * Two triangles that share an edge see it in opposite directions, so exactly one of them includes it.
+     */
+    private static boolean isIncluded(double ax,double ay,double bx,double by) {
+        double dy = by-ay;
+        return dy>0 || (dy==0 && bx<ax);
+    }
+
+    /**
+     * The same math as mesh.frag, without the shadows.
+     * @param attributes world x,y,z, normal x,y,z, u,v.
+     * @param destination the color already in the image, for blending.
+     * @return the new ARGB color.
+     */
+    private int shade(Surface surface,double [] attributes,int destination) {
+        double r = surface.diffuse[0];
+        double g = surface.diffuse[1];
+        double b = surface.diffuse[2];
+        double alpha = surface.diffuse[3];
+        if(surface.texture!=null) {
+            int texel = surface.texture.sample(attributes[6],attributes[7]);
+            r *= ((texel>>16) & 0xFF)/255.0;
+            g *= ((texel>> 8) & 0xFF)/255.0;
+            b *= ( texel      & 0xFF)/255.0;
+            alpha *= ((texel>>>24))/255.0;
+        }
+
+        if(surface.lit) {
+            double nx = attributes[3], ny = attributes[4], nz = attributes[5];
+            double len = Math.sqrt(nx*nx + ny*ny + nz*nz);
+            if(len>0) {
+                nx/=len;  ny/=len;  nz/=len;
+            }
+            double lx = eye[0]-attributes[0], ly = eye[1]-attributes[1], lz = eye[2]-attributes[2];
+            len = Math.sqrt(lx*lx + ly*ly + lz*lz);
+            if(len>0) {
+                lx/=len;  ly/=len;  lz/=len;
+            }
+            double nDotL = nx*lx + ny*ly + nz*lz;
+            double diffuse = Math.max(nDotL,0);
+            // the light is at the camera, so the view direction is the light direction.
+            double rx = 2*nDotL*nx - lx;
+            double ry = 2*nDotL*ny - ly;
+            double rz = 2*nDotL*nz - lz;
+            double specular = Math.pow(Math.max(lx*rx + ly*ry + lz*rz,0),surface.shininess);
+
+            r *= ambient[0] + (diffuse + specular*surface.specular[0]) * light[0];
+            g *= ambient[1] + (diffuse + specular*surface.specular[1]) * light[1];
+            b *= ambient[2] + (diffuse + specular*surface.specular[2]) * light[2];
+        }
+
+        if(alpha<1) {
+            double keep = 1-alpha;
+            r = r*alpha + ((destination>>16) & 0xFF)/255.0*keep;
+            g = g*alpha + ((destination>> 8) & 0xFF)/255.0*keep;
+            b = b*alpha + ( destination      & 0xFF)/255.0*keep;
+            alpha = alpha + ((destination>>>24))/255.0*keep;
+        }
+        return (toByte(alpha)<<24) | (toByte(r)<<16) | (toByte(g)<<8) | toByte(b);
+    }
+
+    private static int toByte(double v) {
+        if(v<=0) return 0;
+        if(v>=1) return 255;
+        return (int)(v*255+0.5);
+    }
+
+    private static void toFloats(Color c,float [] out) {
+        out[0] = c.getRed()/255f;
+        out[1] = c.getGreen()/255f;
+        out[2] = c.getBlue()/255f;
+    }
+
+    private static double [] toArray(Matrix4d m) {
+        return new double[] {
+                m.m00, m.m01, m.m02, m.m03,
+                m.m10, m.m11, m.m12, m.m13,
+                m.m20, m.m21, m.m22, m.m23,
+                m.m30, m.m31, m.m32, m.m33 };
+    }
+
+    private static double [] toArray(Matrix3d m) {
+        return new double[] {
+                m.m00, m.m01, m.m02,
+                m.m10, m.m11, m.m12,
+                m.m20, m.m21, m.m22 };
+    }
+
+    private static RasterMesh getRasterMesh(Mesh mesh) {
+        RasterMesh raster = meshCache.get(mesh);
+        if(raster==null || !raster.matches(mesh)) {
+            raster = new RasterMesh(mesh);
+            meshCache.put(mesh,raster);
+        }
+        return raster;
+    }
+
+    /**
+     * Move the camera so that every mesh in the scene is in view.  The camera looks down at the middle of the
+     * scene from the front right, and the near and far planes are moved to fit.
+     * @param scene the scene to look at.
+     * @param camera the camera to move.
+     * @param aspect the width of the image divided by the height.
+     */
+    public static void frame(Node scene,Camera camera,double aspect) {
+        Point3d min = new Point3d(Double.MAX_VALUE,Double.MAX_VALUE,Double.MAX_VALUE);
+        Point3d max = new Point3d(-Double.MAX_VALUE,-Double.MAX_VALUE,-Double.MAX_VALUE);
+        Deque<Node> toScan = new ArrayDeque<>();
+        toScan.add(scene);
+        Point3d p = new Point3d();
+        while(!toScan.isEmpty()) {
+            Node node = toScan.removeFirst();
+            toScan.addAll(node.getChildren());
+            if(!(node instanceof MeshInstance meshInstance) || meshInstance.getMesh()==null) continue;
+            RasterMesh mesh = getRasterMesh(meshInstance.getMesh());
+            if(mesh.vertexCount==0) continue;
+            Matrix4d world = meshInstance.getWorld();
+            for(int i=0;i<8;++i) {
+                p.set(mesh.bounds[(i&1)==0 ? 0 : 3],
+                      mesh.bounds[(i&2)==0 ? 1 : 4],
+                      mesh.bounds[(i&4)==0 ? 2 : 5]);
+                world.transform(p);
+                min.set(Math.min(min.x,p.x),Math.min(min.y,p.y),Math.min(min.z,p.z));
+                max.set(Math.max(max.x,p.x),Math.max(max.y,p.y),Math.max(max.z,p.z));
+            }
+        }
+        if(min.x>max.x) return;  // nothing to see
+
+        Vector3d center = new Vector3d(min);
+        center.add(max);
+        center.scale(0.5);
+        double radius = Math.max(1e-3,min.distance(max)/2);
+        // fit the sphere in the narrower of the two fields of view.
+        double halfFov = Math.toRadians(camera.getFovY())/2;
+        if(aspect<1) halfFov = Math.atan(Math.tan(halfFov)*aspect);
+        double distance = radius/Math.sin(halfFov);
+
+        Vector3d direction = new Vector3d(1,-1,0.75);
+        direction.normalize();
+        Vector3d position = new Vector3d();
+        position.scaleAdd(distance,direction,center);
+        camera.setPosition(position);
+        camera.lookAt(center);
+        camera.setNearZ(Math.max(distance-radius,distance*0.01));
+        camera.setFarZ(distance+radius);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Color getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    public void setBackgroundColor(Color backgroundColor) {
+        this.backgroundColor = backgroundColor;
+    }
+
+    public Color getAmbientColor() {
+        return ambientColor;
+    }
+
+    public void setAmbientColor(Color ambientColor) {
+        this.ambientColor = ambientColor;
+    }
+
+    public Color getLightColor() {
+        return lightColor;
+    }
+
+    public void setLightColor(Color lightColor) {
+        this.lightColor = lightColor;
+    }
+
+    public boolean getCullBackFaces() {
+        return cullBackFaces;
+    }
+
+    /**
+     * @param cullBackFaces if true, triangles facing away from the camera are not drawn, as in the
+     *                      {@link com.marginallyclever.ro3.apps.render.Viewport}.
+     */
+    public void setCullBackFaces(boolean cullBackFaces) {
+        this.cullBackFaces = cullBackFaces;
+    }
+}
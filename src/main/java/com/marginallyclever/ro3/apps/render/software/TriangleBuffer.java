@@ -0,0 +1,66 @@
+package com.marginallyclever.ro3.apps.render.software;
+
+import java.util.Arrays;
+
+/**
+ * <p>{@link TriangleBuffer} holds triangles that are ready to rasterize.  Each vertex is
+ * {@link TriangleBuffer#VERTEX_STRIDE} floats: screen x, screen y, depth from 0 to 1, 1/w, and then the world
+ * position, normal, and texture coordinate, each divided by w so they can be interpolated in screen space.</p>
+ */
+class TriangleBuffer {
+    static final int VERTEX_STRIDE = 12;
+    static final int TRIANGLE_STRIDE = VERTEX_STRIDE*3;
+    // offsets in a vertex
+    static final int SCREEN_X = 0;
+    static final int SCREEN_Y = 1;
+    static final int DEPTH = 2;
+    static final int INVERSE_W = 3;
+    static final int WORLD = 4;
+    static final int NORMAL = 7;
+    static final int TEXTURE = 10;
+
+    float [] data;
+    /**
+     * index of the {@link SoftwareRenderer} surface of each triangle.
+     */
+    int [] surface;
+    int count;
+
+    TriangleBuffer() {
+        this(64);
+    }
+
+    private TriangleBuffer(int capacity) {
+        data = new float[capacity*TRIANGLE_STRIDE];
+        surface = new int[capacity];
+    }
+
+    /**
+     * Make room for one more triangle.
+     * @return the offset of the new triangle in {@link #data}.
+     */
+    int add(int surfaceIndex) {
+        if(count==surface.length) {
+            int capacity = surface.length*2;
+            data = Arrays.copyOf(data,capacity*TRIANGLE_STRIDE);
+            surface = Arrays.copyOf(surface,capacity);
+        }
+        surface[count] = surfaceIndex;
+        return (count++)*TRIANGLE_STRIDE;
+    }
+
+    /**
+     * @return all the triangles of all the parts, in order.
+     */
+    static TriangleBuffer concat(TriangleBuffer [] parts) {
+        int total = 0;
+        for(TriangleBuffer p : parts) total += p.count;
+        TriangleBuffer result = new TriangleBuffer(Math.max(1,total));
+        for(TriangleBuffer p : parts) {
+            System.arraycopy(p.data,0,result.data,result.count*TRIANGLE_STRIDE,p.count*TRIANGLE_STRIDE);
+            System.arraycopy(p.surface,0,result.surface,result.count,p.count);
+            result.count += p.count;
+        }
+        return result;
+    }
+}
@@ -27,6 +27,11 @@ public class SelectedItems {
      */
     private final Map<Node, Matrix4d> worldPoses = new HashMap<>();
 
+    /**
+     * The local pose of each node in the selection at the moment it was selected.  Used for undo.
+     */
+    private final Map<Node, Matrix4d> localPoses = new HashMap<>();
+
     public SelectedItems() {
         super();
     }
@@ -47,12 +52,14 @@ public class SelectedItems {
     private void setEntityWorldPose(Node node) {
         if(node instanceof Pose pose) {
             worldPoses.put(node, pose.getWorld());
+            localPoses.put(node, new Matrix4d(pose.getLocal()));
         }
     }
 
     public void removeEntity(Node node) {
         nodes.remove(node);
         worldPoses.remove(node);
+        localPoses.remove(node);
     }
 
     public List<Node> getNodes() {
@@ -63,6 +70,10 @@ public class SelectedItems {
         return worldPoses.get(node);
     }
 
+    public Matrix4d getLocalPoseAtStart(Node node) {
+        return localPoses.get(node);
+    }
+
     public Matrix4d getWorldPoseNow(Node node) {
         if(node instanceof Pose pose) {
             return pose.getWorld();
@@ -77,6 +88,7 @@ public class SelectedItems {
     public void clear() {
         nodes.clear();
         worldPoses.clear();
+        localPoses.clear();
     }
 
     public void savePose() {
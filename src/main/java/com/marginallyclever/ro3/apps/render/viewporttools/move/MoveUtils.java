@@ -5,6 +5,8 @@ import com.marginallyclever.convenience.Ray;
 import com.marginallyclever.convenience.helpers.IntersectionHelper;
 import com.marginallyclever.convenience.helpers.MatrixHelper;
 import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.apps.UndoSystem;
+import com.marginallyclever.ro3.apps.commands.MovePose;
 import com.marginallyclever.ro3.apps.render.viewporttools.SelectedItems;
 import com.marginallyclever.ro3.apps.render.viewporttools.ViewportTool;
 import com.marginallyclever.ro3.node.Node;
@@ -15,6 +17,7 @@ import com.marginallyclever.ro3.apps.render.Viewport;
 import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3d;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -62,15 +65,26 @@ public class MoveUtils {
         return new Point3d(ray.getPoint(distance));
     }
 
+    /**
+     * Record the change from the saved pose of each selected item to its current pose as one undoable edit.
+     * Only the local matrices are stored.
+     * @param selectedItems the list of selected items
+     */
     public static void updateUndoState(SelectedItems selectedItems) {
+        List<Pose> poses = new ArrayList<>();
+        List<Matrix4d> before = new ArrayList<>();
+        List<Matrix4d> after = new ArrayList<>();
         for (Node node : selectedItems.getNodes()) {
             if(node instanceof Pose pose) {
-                Matrix4d before = selectedItems.getWorldPoseAtStart(node);
-                Matrix4d after = selectedItems.getWorldPoseNow(node);
-                //TODO pose.setWorld(before);
-                //TODO UndoSystem.addEvent(new PoseMoveEdit(node, before, after));
+                Matrix4d start = selectedItems.getLocalPoseAtStart(node);
+                if(start==null || start.equals(pose.getLocal())) continue;
+                poses.add(pose);
+                before.add(start);
+                after.add(new Matrix4d(pose.getLocal()));
             }
         }
+        if(poses.isEmpty()) return;
+        UndoSystem.addEvent(new MovePose(poses,before,after));
     }
 
     /**
@@ -0,0 +1,107 @@
+package com.marginallyclever.ro3.classindex;
+
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.view.View;
+import org.reflections.Reflections;
+import org.reflections.scanners.Scanners;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * <p>{@link ClassIndex} lists the classes annotated with {@link View} and the subclasses of {@link Node}.  The lists
+ * are written by {@link ClassIndexProcessor} when the project is compiled and read once, the first time they are
+ * needed.  Lookups by type are cached in a {@link ClassValue}.</p>
+ * <p>If there is no index, for example when the code was compiled by an IDE without the processor, the classpath
+ * is scanned once instead.</p>
+ */
+public final class ClassIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ClassIndex.class);
+
+    private static final class Views {
+        static final List<Class<?>> list = load(ClassIndexProcessor.VIEWS,
+                () -> new Reflections("com.marginallyclever", Scanners.TypesAnnotated).getTypesAnnotatedWith(View.class));
+    }
+
+    private static final class Nodes {
+        static final List<Class<?>> list = load(ClassIndexProcessor.NODES,
+                () -> new Reflections("com.marginallyclever").getSubTypesOf(Node.class));
+    }
+
+    private static final ClassValue<List<Class<?>>> subTypes = new ClassValue<>() {
+        @Override
+        protected List<Class<?>> computeValue(Class<?> type) {
+            List<Class<?>> list = new ArrayList<>();
+            for(Class<?> c : Nodes.list) {
+                if(c!=type && type.isAssignableFrom(c)) list.add(c);
+            }
+            return Collections.unmodifiableList(list);
+        }
+    };
+
+    private ClassIndex() {}
+
+    /**
+     * @return every class annotated with {@link View}.
+     */
+    public static List<Class<?>> getViews() {
+        return Views.list;
+    }
+
+    /**
+     * Only subclasses of {@link Node} are indexed.  Any other type finds nothing.
+     * @param type the type to find.
+     * @return every indexed class that extends or implements type, not counting type itself.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<Class<? extends T>> getSubTypesOf(Class<T> type) {
+        return (List<Class<? extends T>>)(List<?>)subTypes.get(type);
+    }
+
+    private static List<Class<?>> load(String resource, Supplier<Set<? extends Class<?>>> scan) {
+        ClassLoader loader = ClassIndex.class.getClassLoader();
+        Set<String> names = new LinkedHashSet<>();
+        boolean found = false;
+        try {
+            Enumeration<URL> urls = loader.getResources(resource);
+            while(urls.hasMoreElements()) {
+                found = true;
+                readNames(urls.nextElement(),names);
+            }
+        } catch(IOException e) {
+            logger.error("Could not read {}.",resource,e);
+        }
+
+        if(!found) {
+            logger.warn("No {} on the classpath, scanning instead.",resource);
+            return List.copyOf(scan.get());
+        }
+
+        List<Class<?>> list = new ArrayList<>();
+        for(String name : names) {
+            try {
+                list.add(Class.forName(name,false,loader));
+            } catch(ClassNotFoundException | LinkageError e) {
+                logger.warn("{} lists {} but it could not be loaded.",resource,name);
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    private static void readNames(URL url,Set<String> names) throws IOException {
+        try(BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream(),StandardCharsets.UTF_8))) {
+            String line;
+            while((line=in.readLine())!=null) {
+                line = line.trim();
+                if(!line.isEmpty() && !line.startsWith("#")) names.add(line);
+            }
+        }
+    }
+}
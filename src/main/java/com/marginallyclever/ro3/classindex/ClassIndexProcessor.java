@@ -0,0 +1,140 @@
+package com.marginallyclever.ro3.classindex;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <p>{@link ClassIndexProcessor} is an annotation processor that writes the lists read by {@link ClassIndex} while
+ * the project is compiled, so the running app never has to scan the classpath.  It lists every class annotated with
+ * {@link com.marginallyclever.ro3.view.View} and every subclass of {@link com.marginallyclever.ro3.node.Node}.</p>
+ * <p>A build may compile only the sources that changed.  The lists already in the class output are read back and
+ * merged with what this build found, and a class from an old list is kept only if it can still be found and still
+ * belongs in the list.  The pom compiles this class first and then runs it over the project.</p>
+ * <p>This class must not use any other class in the project, so that it can be compiled on its own.</p>
+ */
+@SupportedAnnotationTypes("*")
+public class ClassIndexProcessor extends AbstractProcessor {
+    static final String VIEWS = "META-INF/robotoverlord/views";
+    static final String NODES = "META-INF/robotoverlord/nodes";
+    static final String VIEW = "com.marginallyclever.ro3.view.View";
+    static final String NODE = "com.marginallyclever.ro3.node.Node";
+
+    private final Set<String> views = new TreeSet<>();
+    private final Set<String> nodes = new TreeSet<>();
+    // every type compiled in this build.  Their old entries are replaced by what was found.
+    private final Set<String> seen = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if(roundEnv.processingOver()) {
+            merge(VIEWS,views);
+            merge(NODES,nodes);
+            write(VIEWS,views);
+            write(NODES,nodes);
+            return false;
+        }
+
+        for(Element element : roundEnv.getRootElements()) {
+            visit(element);
+        }
+        // never claim an annotation, other processors may want it too.
+        return false;
+    }
+
+    private void visit(Element element) {
+        if(!(element instanceof TypeElement type)) return;
+
+        String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+        seen.add(name);
+        if(hasAnnotation(type,VIEW)) views.add(name);
+        if(extendsClass(type,NODE)) nodes.add(name);
+
+        for(Element inner : type.getEnclosedElements()) {
+            visit(inner);
+        }
+    }
+
+    private boolean hasAnnotation(TypeElement type,String annotation) {
+        return type.getAnnotationMirrors().stream()
+                .anyMatch(m -> ((TypeElement)m.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation));
+    }
+
+    /**
+     * @return true if type is a subclass of the named class, not counting the class itself.
+     */
+    private boolean extendsClass(TypeElement type,String superName) {
+        TypeMirror parent = type.getSuperclass();
+        while(parent.getKind()==TypeKind.DECLARED) {
+            TypeElement p = (TypeElement)((DeclaredType)parent).asElement();
+            if(p.getQualifiedName().contentEquals(superName)) return true;
+            parent = p.getSuperclass();
+        }
+        return false;
+    }
+
+    /**
+     * Add the classes from the last build that were not compiled in this one, if they still belong in the list.
+     */
+    private void merge(String resource,Set<String> names) {
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT,"",resource);
+            try(BufferedReader in = new BufferedReader(new InputStreamReader(file.openInputStream(),StandardCharsets.UTF_8))) {
+                String name;
+                while((name = in.readLine())!=null) {
+                    name = name.trim();
+                    if(name.isEmpty() || seen.contains(name)) continue;
+                    if(stillBelongs(resource,name)) names.add(name);
+                }
+            }
+        } catch(FileNotFoundException | NoSuchFileException e) {
+            // first build.
+        } catch(IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,"Could not read "+resource+": "+e.getMessage());
+        }
+    }
+
+    /**
+     * @param name a binary class name from an old list.
+     * @return true if the class can still be found and still belongs in the list.
+     */
+    private boolean stillBelongs(String resource,String name) {
+        TypeElement type = processingEnv.getElementUtils().getTypeElement(name.replace('$','.'));
+        if(type==null || !processingEnv.getElementUtils().getBinaryName(type).contentEquals(name)) return false;
+        return resource.equals(VIEWS) ? hasAnnotation(type,VIEW) : extendsClass(type,NODE);
+    }
+
+    private void write(String resource,Set<String> names) {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT,"",resource);
+            try(Writer out = new OutputStreamWriter(file.openOutputStream(),StandardCharsets.UTF_8)) {
+                for(String name : names) {
+                    out.write(name);
+                    out.write('\n');
+                }
+            }
+        } catch(IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,"Could not write "+resource+": "+e.getMessage());
+        }
+    }
+}
@@ -7,13 +7,15 @@ import javax.swing.event.EventListenerList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * A {@link List} that fires events when items are added or removed.
+ * A {@link List} that fires events when items are added or removed.  The list is copied on every change, so
+ * {@link #getList()} can be read from any thread while the user changes it.
  * @param <T> The type of item in the list.
  */
 public class ListWithEvents<T> {
-    private final List<T> list = new ArrayList<>();
+    private final List<T> list = new CopyOnWriteArrayList<>();
     private final EventListenerList listenerList = new EventListenerList();
 
     public void add(T item) {
@@ -0,0 +1,190 @@
+package com.marginallyclever.ro3.mesh;
+
+import com.jogamp.opengl.GL3;
+import com.marginallyclever.convenience.helpers.OpenGLHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.vecmath.Matrix4d;
+import java.awt.*;
+import java.nio.FloatBuffer;
+import java.util.BitSet;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>{@link InstanceBuffer} holds the per-instance data for drawing one {@link Mesh} many times with a single
+ * instanced draw call.  Each instance is a model matrix (vertex attributes 4-7, one column each) and a color (vertex
+ * attribute 8).</p>
+ * <p>Only instances whose data actually changed since the last {@link #upload(GL3)} are sent to the GPU.  Changes
+ * are tracked in chunks of {@link #CHUNK_SIZE} instances, and each run of changed chunks is sent separately, so a
+ * change at each end of a large buffer does not send everything in between.</p>
+ */
+public class InstanceBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(InstanceBuffer.class);
+    public static final int FIRST_ATTRIBUTE = 4;
+    public static final int NUM_ATTRIBUTES = 5;  // four matrix columns and one color
+    public static final int FLOATS_PER_INSTANCE = 20;
+    public static final int BYTES_PER_INSTANCE = FLOATS_PER_INSTANCE * Mesh.BYTES_PER_FLOAT;
+    public static final int CHUNK_SIZE = 64;  // instances
+
+    private float[] data = new float[FLOATS_PER_INSTANCE * 16];
+    private int count = 0;
+    private int countOnGPU = -1;
+    private final BitSet dirtyChunks = new BitSet();
+    private int[] VBO;
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Change the number of instances.  Growing or shrinking causes a full upload.
+     * @param count the new number of instances.
+     */
+    public void setCount(int count) {
+        if(this.count==count) return;
+        int needed = count * FLOATS_PER_INSTANCE;
+        if(needed > data.length) {
+            float[] bigger = new float[Math.max(needed, data.length * 2)];
+            System.arraycopy(data, 0, bigger, 0, data.length);
+            data = bigger;
+        }
+        this.count = count;
+    }
+
+    /**
+     * Set the data for one instance.  Nothing is marked dirty if the values have not changed.
+     * @param index the instance index, 0...{@link #getCount()}-1
+     * @param world the model matrix of the instance, in the usual row-major java order.
+     * @param color the color of the instance.
+     */
+    public void setInstance(int index, Matrix4d world, Color color) {
+        float[] c = color.getRGBComponents(null);
+        setInstance(index, world, c[0], c[1], c[2], c[3]);
+    }
+
+    /**
+     * Set the data for one instance.  Nothing is marked dirty if the values have not changed.
+     * @param index the instance index, 0...{@link #getCount()}-1
+     * @param world the model matrix of the instance, in the usual row-major java order.
+     * @param r red, 0-1
+     * @param g green, 0-1
+     * @param b blue, 0-1
+     * @param a alpha, 0-1
+     */
+    public void setInstance(int index, Matrix4d world, float r, float g, float b, float a) {
+        if(index<0 || index>=count) throw new IndexOutOfBoundsException(index);
+        int i = index * FLOATS_PER_INSTANCE;
+        boolean changed = false;
+        // OpenGL wants column-major order.
+        changed |= put(i   , world.m00);
+        changed |= put(i+ 1, world.m10);
+        changed |= put(i+ 2, world.m20);
+        changed |= put(i+ 3, world.m30);
+        changed |= put(i+ 4, world.m01);
+        changed |= put(i+ 5, world.m11);
+        changed |= put(i+ 6, world.m21);
+        changed |= put(i+ 7, world.m31);
+        changed |= put(i+ 8, world.m02);
+        changed |= put(i+ 9, world.m12);
+        changed |= put(i+10, world.m22);
+        changed |= put(i+11, world.m32);
+        changed |= put(i+12, world.m03);
+        changed |= put(i+13, world.m13);
+        changed |= put(i+14, world.m23);
+        changed |= put(i+15, world.m33);
+        changed |= put(i+16, r);
+        changed |= put(i+17, g);
+        changed |= put(i+18, b);
+        changed |= put(i+19, a);
+        if(changed) dirtyChunks.set(index / CHUNK_SIZE);
+    }
+
+    private boolean put(int i, double value) {
+        float f = (float)value;
+        if(data[i]==f) return false;
+        data[i] = f;
+        return true;
+    }
+
+    /**
+     * Send changed instances to the GPU.  Must be called with a valid OpenGL context.
+     * @param gl the OpenGL context
+     */
+    public void upload(GL3 gl) {
+        if(VBO==null) {
+            VBO = new int[1];
+            gl.glGenBuffers(1, VBO, 0);
+            OpenGLHelper.checkGLError(gl,logger);
+        }
+        gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, VBO[0]);
+        if(countOnGPU != count) {
+            gl.glBufferData(GL3.GL_ARRAY_BUFFER, (long)count * BYTES_PER_INSTANCE,
+                    FloatBuffer.wrap(data, 0, count * FLOATS_PER_INSTANCE), GL3.GL_DYNAMIC_DRAW);
+            countOnGPU = count;
+        } else {
+            forEachDirtyRange((firstInstance, lastInstance) -> {
+                int offset = firstInstance * FLOATS_PER_INSTANCE;
+                int length = (lastInstance - firstInstance) * FLOATS_PER_INSTANCE;
+                gl.glBufferSubData(GL3.GL_ARRAY_BUFFER, (long)firstInstance * BYTES_PER_INSTANCE,
+                        (long)length * Mesh.BYTES_PER_FLOAT, FloatBuffer.wrap(data, offset, length));
+            });
+        }
+        gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, 0);
+        OpenGLHelper.checkGLError(gl,logger);
+        dirtyChunks.clear();
+    }
+
+    /**
+     * Visit each run of changed instances since the last {@link #upload(GL3)}.
+     * @param consumer receives the first instance and one past the last instance of each run.
+     */
+    void forEachDirtyRange(BiConsumer<Integer,Integer> consumer) {
+        for(int first = dirtyChunks.nextSetBit(0); first >= 0; first = dirtyChunks.nextSetBit(first)) {
+            int last = dirtyChunks.nextClearBit(first);
+            int firstInstance = first * CHUNK_SIZE;
+            int lastInstance = Math.min(count, last * CHUNK_SIZE);
+            if(firstInstance >= lastInstance) break;
+            consumer.accept(firstInstance, lastInstance);
+            first = last;
+        }
+    }
+
+    /**
+     * Point the instance attributes of the currently bound vertex array object at this buffer.
+     * @param gl the OpenGL context
+     */
+    public void bindAttributes(GL3 gl) {
+        gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, VBO[0]);
+        for(int i=0;i<NUM_ATTRIBUTES;++i) {
+            int attribute = FIRST_ATTRIBUTE + i;
+            gl.glEnableVertexAttribArray(attribute);
+            gl.glVertexAttribPointer(attribute, 4, GL3.GL_FLOAT, false, BYTES_PER_INSTANCE, (long)i * 4 * Mesh.BYTES_PER_FLOAT);
+            gl.glVertexAttribDivisor(attribute, 1);
+        }
+        OpenGLHelper.checkGLError(gl,logger);
+    }
+
+    /**
+     * Disable the instance attributes of the currently bound vertex array object.
+     * @param gl the OpenGL context
+     */
+    public void unbindAttributes(GL3 gl) {
+        for(int i=0;i<NUM_ATTRIBUTES;++i) {
+            gl.glVertexAttribDivisor(FIRST_ATTRIBUTE + i, 0);
+            gl.glDisableVertexAttribArray(FIRST_ATTRIBUTE + i);
+        }
+        gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Free the GPU buffer.  The instance data is kept and will be uploaded again on the next {@link #upload(GL3)}.
+     * @param gl the OpenGL context
+     */
+    public void unload(GL3 gl) {
+        if(VBO==null) return;
+        gl.glDeleteBuffers(1, VBO, 0);
+        VBO = null;
+        countOnGPU = -1;
+    }
+}
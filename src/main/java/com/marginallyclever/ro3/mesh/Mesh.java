@@ -42,6 +42,8 @@ public class Mesh {
 	private transient boolean hasIndexes = false;
 	private transient boolean isDirty = false;
 	private transient boolean isLoaded = false;
+	// changes every time the mesh is changed through its methods.
+	private transient int version = 0;
 
 	private transient int[] VAO;
 	private transient int[] VBO;
@@ -74,6 +76,7 @@ public class Mesh {
 		textureArray.clear();
 		indexArray.clear();
 		isDirty=true;
+		version++;
 	}
 
 	public void setSourceName(String filename) {
@@ -211,15 +214,7 @@ public class Mesh {
 	 * @param count number of vertices to render
 	 */
 	public void render(GL3 gl,int startIndex,int count) {
-		if(!isLoaded) {
-			isLoaded=true;
-			isDirty=true;
-		}
-		if(isDirty) {
-			createBuffers(gl);
-			updateBuffers(gl);
-			isDirty=false;
-		}
+		prepareBuffers(gl);
 
 		gl.glBindVertexArray(VAO[0]);
 		OpenGLHelper.checkGLError(gl,logger);
@@ -234,17 +229,56 @@ public class Mesh {
 		OpenGLHelper.checkGLError(gl,logger);
 	}
 	
+	/**
+	 * Render the entire mesh once for every instance in the buffer, with a single draw call.
+	 * The shader is expected to read the instance attributes described in {@link InstanceBuffer}.
+	 * @param gl the OpenGL context
+	 * @param instances the per-instance data.  Must have been uploaded.
+	 */
+	public void renderInstanced(GL3 gl,InstanceBuffer instances) {
+		if(instances.getCount()==0) return;
+		prepareBuffers(gl);
+
+		gl.glBindVertexArray(VAO[0]);
+		instances.bindAttributes(gl);
+		OpenGLHelper.checkGLError(gl,logger);
+
+		if (hasIndexes) {
+			gl.glDrawElementsInstanced(renderStyle, indexArray.size(), GL3.GL_UNSIGNED_INT, 0, instances.getCount());
+		} else {
+			gl.glDrawArraysInstanced(renderStyle, 0, getNumVertices(), instances.getCount());
+		}
+		OpenGLHelper.checkGLError(gl,logger);
+		instances.unbindAttributes(gl);
+		gl.glBindVertexArray(0);
+		OpenGLHelper.checkGLError(gl,logger);
+	}
+
+	private void prepareBuffers(GL3 gl) {
+		if(!isLoaded) {
+			isLoaded=true;
+			isDirty=true;
+		}
+		if(isDirty) {
+			createBuffers(gl);
+			updateBuffers(gl);
+			isDirty=false;
+		}
+	}
+	
 	public void addNormal(float x,float y,float z) {
 		normalArray.add(x);
 		normalArray.add(y);
 		normalArray.add(z);
 		hasNormals=true;
+		version++;
 	}
 	
 	public void addVertex(float x,float y,float z) {
 		vertexArray.add(x);
 		vertexArray.add(y);
 		vertexArray.add(z);
+		version++;
 	}
 
 	/**
@@ -261,6 +295,7 @@ public class Mesh {
 		colorArray.add(a);
 		if(a!=1) isTransparent=true;
 		hasColors=true;
+		version++;
 	}
 
 	/**
@@ -272,11 +307,13 @@ public class Mesh {
 		textureArray.add(u);
 		textureArray.add(v);
 		hasTextures =true;
+		version++;
 	}
 	
 	public void addIndex(int n) {
 		indexArray.add(n);
 		hasIndexes=true;
+		version++;
 	}
 	
 	/**
@@ -340,8 +377,21 @@ public class Mesh {
 		return isDirty;
 	}
 
+	/**
+	 * Call with true after changing the arrays directly.
+	 * @param isDirty true if the buffers must be rebuilt.
+	 */
 	public void setDirty(boolean isDirty) {
 		this.isDirty = isDirty;
+		if(isDirty) version++;
+	}
+
+	/**
+	 * @return a number that changes when the mesh is changed by one of its methods or by {@link #setDirty(boolean)}.
+	 * Copies of the mesh can compare it to notice changes.
+	 */
+	public int getVersion() {
+		return version;
 	}
 
 	public boolean getHasNormals() {
@@ -362,6 +412,7 @@ public class Mesh {
 
 	public void setRenderStyle(int style) {
 		renderStyle = style;
+		version++;
 	}
 
 	public int getRenderStyle() {
@@ -465,6 +516,7 @@ public class Mesh {
 		vertexArray.set(i++, (float)x);
 		vertexArray.set(i++, (float)y);
 		vertexArray.set(i++, (float)z);
+		version++;
 	}
 
     public void updateVertexBuffers(GL3 gl3) {
@@ -3,102 +3,320 @@ package com.marginallyclever.ro3.mesh;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.util.*;
+import java.util.stream.IntStream;
 
 /**
- * {@link MeshSmoother} will smooth the normals of a {@link Mesh}.
+ * <p>{@link MeshSmoother} will smooth the normals of a {@link Mesh}.</p>
+ * <p>Vertices are put in a spatial hash grid with cells a little larger than vertexEpsilon, so each vertex is only
+ * compared with the vertices in the 27 cells around it.  Cells that touch form independent clusters which are
+ * smoothed in parallel.  Inside a cluster vertices are visited in the same order as the original one-pass
+ * algorithm, so the results are bit-identical to it.</p>
  * @author Dan Royer
  */
 public class MeshSmoother {
 	private static final Logger logger = LoggerFactory.getLogger(MeshSmoother.class);
+	/**
+	 * Below this many vertices the work is done on one thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 20000;
+	/**
+	 * Cells are slightly larger than vertexEpsilon so float rounding in the distance test can never reach past the
+	 * neighbouring cells.
+	 */
+	private static final double CELL_MARGIN = 1.001;
+	private static final float TINY = 1e-15f;
 
 	/**
-	 * Smooth normals.  Find points within vertexEpsilon of each other, sharing normals within normalEpsilon 
+	 * Smooth normals.  Find points within vertexEpsilon of each other, sharing normals within normalEpsilon
 	 * of each other, and then smooths the nromals (makes them the same, an average of the normals considered).
 	 * Note: Modified the original model.
-	 * 
-	 * @param model the model containing the data to smooth. 
+	 *
+	 * @param model the model containing the data to smooth.
 	 * @param vertexEpsilon how close should points be to be considered one and the same.  typically ~0.001
 	 * @param normalEpsilon how close should normals be to be merged. 0...2 larger values more smoothing.
 	 */
 	public static void smoothNormals(Mesh model, float vertexEpsilon, float normalEpsilon) {
-		float vertexEpsilonSquared = vertexEpsilon * vertexEpsilon;
-		float normalEpsilonSquared = normalEpsilon * normalEpsilon;
-
-		int numFaces = model.vertexArray.size()/3;
-		ArrayList<Integer> indexList = new ArrayList<Integer>();
-		boolean [] skip = new boolean[numFaces];
-
-		int i,j;
-		for(i=0;i<numFaces;++i) {
-			if(skip[i]) continue;
-			
-			logger.info("Smoothing "+i+"/"+numFaces);
-
-			// find vertices that are in the same position
-			float p1x = model.vertexArray.get(i * 3);
-			float p1y = model.vertexArray.get(i*3+1);
-			float p1z = model.vertexArray.get(i*3+2);
-
-			float n1x = model.normalArray.get(i * 3);
-			float n1y = model.normalArray.get(i*3+1);
-			float n1z = model.normalArray.get(i*3+2);
-
-			indexList.clear();
-			indexList.add(i);
-			
-			for(j=i+1;j<numFaces;++j) {
-				if(skip[j]) continue;
-
-				float p2x = model.vertexArray.get(j * 3);
-				float p2y = model.vertexArray.get(j*3+1);
-				float p2z = model.vertexArray.get(j*3+2);
-				//if(Math.abs(p1x-p2x)>vertexEpsilonSquared) continue;
-				//if(Math.abs(p1y-p2y)>vertexEpsilonSquared) continue;
-				//if(Math.abs(p1z-p2z)>vertexEpsilonSquared) continue;
-				
-				if( lengthDifferenceSquared(p1x,p1y,p1z,p2x,p2y,p2z) <= vertexEpsilonSquared ) {
-
-					float n2x = model.normalArray.get(j * 3);
-					float n2y = model.normalArray.get(j*3+1);
-					float n2z = model.normalArray.get(j*3+2);
-					if( lengthDifferenceSquared(n1x,n1y,n1z,n2x,n2y,n2z) <= normalEpsilonSquared ) {
-						indexList.add(j);
+		float [] vertices = toArray(model.vertexArray);
+		float [] normals = toArray(model.normalArray);
+		if(normals.length < vertices.length) {
+			logger.warn("Mesh has fewer normals than vertices, not smoothing.");
+			return;
+		}
+
+		smoothNormals(vertices,normals,vertexEpsilon,normalEpsilon);
+
+		for(int i=0;i<vertices.length;++i) {
+			model.normalArray.set(i,normals[i]);
+		}
+		model.setDirty(true);
+	}
+
+	/**
+	 * Smooth normals stored as packed x,y,z floats.  See {@link #smoothNormals(Mesh, float, float)}.
+	 * @param vertices the vertex positions.  Not modified.
+	 * @param normals the normal of each vertex.  Modified in place.
+	 * @param vertexEpsilon how close should points be to be considered one and the same.
+	 * @param normalEpsilon how close should normals be to be merged.
+	 */
+	public static void smoothNormals(float [] vertices, float [] normals, float vertexEpsilon, float normalEpsilon) {
+		int numVertices = vertices.length/3;
+		if(numVertices==0) return;
+		logger.info("Smoothing {} vertices.",numVertices);
+
+		Grid grid = new Grid(vertices,vertexEpsilon);
+		List<int[]> clusters = grid.getClusters();
+		boolean [] skip = new boolean[numVertices];
+		Smoother smoother = new Smoother(grid,vertices,normals,skip,
+				vertexEpsilon * vertexEpsilon,normalEpsilon * normalEpsilon);
+
+		IntStream range = IntStream.range(0,clusters.size());
+		if(numVertices >= PARALLEL_THRESHOLD) range = range.parallel();
+		range.forEach(c -> smoother.smoothCluster(clusters.get(c)));
+	}
+
+	private static float [] toArray(List<Float> list) {
+		float [] array = new float[list.size()];
+		for(int i=0;i<array.length;++i) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	private record Cell(long x,long y,long z) {}
+
+	/**
+	 * A spatial hash grid of vertex indexes.
+	 */
+	private static class Grid {
+		private final float [] vertices;
+		private final double cellSize;
+		private final Map<Cell,Integer> cellIds = new HashMap<>();
+		private final List<Cell> cells = new ArrayList<>();
+		private final List<int[]> cellVertices = new ArrayList<>();
+		private final int [] vertexCell;
+		private final int [][] neighbourCache;
+
+		Grid(float [] vertices,float vertexEpsilon) {
+			this.vertices = vertices;
+			this.cellSize = Math.abs(vertexEpsilon) * CELL_MARGIN;
+
+			int numVertices = vertices.length/3;
+			vertexCell = new int[numVertices];
+			List<IntList> lists = new ArrayList<>();
+			for(int i=0;i<numVertices;++i) {
+				Cell c = cellOf(i);
+				Integer id = cellIds.get(c);
+				if(id==null) {
+					id = cells.size();
+					cellIds.put(c,id);
+					cells.add(c);
+					lists.add(new IntList());
+				}
+				lists.get(id).add(i);
+				vertexCell[i] = id;
+			}
+			for(IntList list : lists) cellVertices.add(list.toArray());
+			neighbourCache = new int[cells.size()][];
+		}
+
+		private Cell cellOf(int vertex) {
+			float x = vertices[vertex*3  ];
+			float y = vertices[vertex*3+1];
+			float z = vertices[vertex*3+2];
+			if(cellSize<=0) {
+				return new Cell(exactKey(x),exactKey(y),exactKey(z));
+			}
+			return new Cell((long)Math.floor(x/cellSize),(long)Math.floor(y/cellSize),(long)Math.floor(z/cellSize));
+		}
+
+		/**
+		 * With no epsilon only equal values match.  Values this close to zero can also match because their
+		 * difference squared underflows to zero, so they share a key.
+		 */
+		private static long exactKey(float v) {
+			return Math.abs(v) < TINY ? 0 : Float.floatToIntBits(v);
+		}
+
+		/**
+		 * @param id a cell
+		 * @return the ids of the cell and of the cells around it that have vertexes.
+		 */
+		private IntList getNeighbourCells(int id) {
+			IntList found = new IntList();
+			if(cellSize<=0) {
+				found.add(id);
+				return found;
+			}
+			Cell c = cells.get(id);
+			for(int x=-1;x<=1;++x) {
+				for(int y=-1;y<=1;++y) {
+					for(int z=-1;z<=1;++z) {
+						Integer n = cellIds.get(new Cell(c.x()+x,c.y()+y,c.z()+z));
+						if(n!=null) found.add(n);
 					}
 				}
 			}
-			
-			if(indexList.size()>1) {
-				n1x=0;
-				n1y=0;
-				n1z=0;
-
-				int size = indexList.size();
-				int k;
-				for(k=0;k<size;++k) {
-					j = indexList.get(k)*3;
-					n1x += model.normalArray.get(j);
-					n1y += model.normalArray.get(j+1);
-					n1z += model.normalArray.get(j+2);
+			return found;
+		}
+
+		/**
+		 * Each cell belongs to exactly one cluster, so clusters running on different threads never share an entry.
+		 * @return the vertexes in the cell of vertex i and in the cells around it, in ascending order.
+		 */
+		int [] getNeighbours(int i) {
+			int id = vertexCell[i];
+			int [] result = neighbourCache[id];
+			if(result==null) {
+				IntList near = getNeighbourCells(id);
+				IntList found = new IntList();
+				for(int k=0;k<near.size();++k) {
+					found.addAll(cellVertices.get(near.get(k)));
 				}
-				float len = length(n1x,n1y,n1z);
-				n1x /= len;
-				n1y /= len;
-				n1z /= len;
-
-				for(k=0;k<size;++k) {
-					j = indexList.get(k);
-					skip[j]=true;
-					j*=3;
-					model.normalArray.set(j, n1x);
-					model.normalArray.set(j+1, n1y);
-					model.normalArray.set(j+2, n1z);
+				result = found.toArray();
+				Arrays.sort(result);
+				neighbourCache[id] = result;
+			}
+			return result;
+		}
+
+		/**
+		 * Group the cells that touch.  No vertex can be merged with a vertex in another cluster, so clusters can be
+		 * smoothed independently.
+		 * @return the vertexes of each cluster, in ascending order.
+		 */
+		List<int[]> getClusters() {
+			int [] parent = new int[cells.size()];
+			for(int i=0;i<parent.length;++i) parent[i]=i;
+			for(int id=0;id<parent.length;++id) {
+				IntList near = getNeighbourCells(id);
+				for(int k=0;k<near.size();++k) {
+					union(parent,id,near.get(k));
+				}
+			}
+
+			Map<Integer,IntList> clusters = new HashMap<>();
+			for(int i=0;i<vertexCell.length;++i) {
+				clusters.computeIfAbsent(find(parent,vertexCell[i]),k->new IntList()).add(i);
+			}
+			List<int[]> result = new ArrayList<>(clusters.size());
+			for(IntList list : clusters.values()) result.add(list.toArray());
+			return result;
+		}
+
+		private static int find(int [] parent,int k) {
+			while(parent[k]!=k) {
+				parent[k] = parent[parent[k]];
+				k = parent[k];
+			}
+			return k;
+		}
+
+		private static void union(int [] parent,int a,int b) {
+			int ra = find(parent,a);
+			int rb = find(parent,b);
+			if(ra!=rb) parent[ra] = rb;
+		}
+	}
+
+	/**
+	 * The original algorithm, restricted to the neighbours of each vertex.
+	 */
+	private record Smoother(Grid grid,float [] vertices,float [] normals,boolean [] skip,
+							float vertexEpsilonSquared,float normalEpsilonSquared) {
+		void smoothCluster(int [] cluster) {
+			IntList indexList = new IntList();
+			for(int i : cluster) {
+				if(skip[i]) continue;
+
+				float p1x = vertices[i*3  ];
+				float p1y = vertices[i*3+1];
+				float p1z = vertices[i*3+2];
+				float n1x = normals[i*3  ];
+				float n1y = normals[i*3+1];
+				float n1z = normals[i*3+2];
+
+				indexList.clear();
+				indexList.add(i);
+				for(int j : grid.getNeighbours(i)) {
+					if(j<=i || skip[j]) continue;
+					float p2x = vertices[j*3  ];
+					float p2y = vertices[j*3+1];
+					float p2z = vertices[j*3+2];
+					if( lengthDifferenceSquared(p1x,p1y,p1z,p2x,p2y,p2z) <= vertexEpsilonSquared ) {
+						float n2x = normals[j*3  ];
+						float n2y = normals[j*3+1];
+						float n2z = normals[j*3+2];
+						if( lengthDifferenceSquared(n1x,n1y,n1z,n2x,n2y,n2z) <= normalEpsilonSquared ) {
+							indexList.add(j);
+						}
+					}
+				}
+
+				if(indexList.size()>1) {
+					n1x=0;
+					n1y=0;
+					n1z=0;
+					int size = indexList.size();
+					for(int k=0;k<size;++k) {
+						int j = indexList.get(k)*3;
+						n1x += normals[j  ];
+						n1y += normals[j+1];
+						n1z += normals[j+2];
+					}
+					float len = length(n1x,n1y,n1z);
+					n1x /= len;
+					n1y /= len;
+					n1z /= len;
+
+					for(int k=0;k<size;++k) {
+						int j = indexList.get(k);
+						skip[j]=true;
+						j*=3;
+						normals[j  ] = n1x;
+						normals[j+1] = n1y;
+						normals[j+2] = n1z;
+					}
 				}
 			}
 		}
-		model.setDirty(true);
 	}
-	
+
+	/**
+	 * A growable list of ints without boxing.
+	 */
+	private static class IntList {
+		private int [] data = new int[4];
+		private int size = 0;
+
+		void add(int v) {
+			if(size==data.length) data = Arrays.copyOf(data,size*2);
+			data[size++] = v;
+		}
+
+		void addAll(int [] values) {
+			if(size+values.length>data.length) data = Arrays.copyOf(data,Math.max(size*2,size+values.length));
+			System.arraycopy(values,0,data,size,values.length);
+			size+=values.length;
+		}
+
+		int get(int i) {
+			return data[i];
+		}
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size=0;
+		}
+
+		int [] toArray() {
+			return Arrays.copyOf(data,size);
+		}
+	}
+
 	private static float lengthDifferenceSquared(float p1x,float p1y,float p1z,float p2x,float p2y,float p2z) {
 		float dx = p2x-p1x;
 		float dy = p2y-p1y;
@@ -106,12 +324,12 @@ public class MeshSmoother {
 
 		return lengthSquared(dx,dy,dz);
 	}
-	
-	
+
+
 	private static float lengthSquared(float dx,float dy,float dz) {
 		return dx*dx+dy*dy+dz*dz;
 	}
-	
+
 	private static float length(float dx,float dy,float dz) {
 		return (float)Math.sqrt(lengthSquared(dx,dy,dz));
 	}
@@ -0,0 +1,32 @@
+package com.marginallyclever.ro3.mesh.load;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of floats without boxing, used by the streaming loaders to hold vertexes until they are
+ * copied into a {@link com.marginallyclever.ro3.mesh.Mesh}.
+ */
+final class FloatList {
+	private float [] data = new float[48];
+	private int size = 0;
+
+	void add(float v) {
+		if(size==data.length) data = Arrays.copyOf(data,size*2);
+		data[size++] = v;
+	}
+
+	void add(float x,float y,float z) {
+		if(size+3>data.length) data = Arrays.copyOf(data,Math.max(size*2,size+3));
+		data[size++] = x;
+		data[size++] = y;
+		data[size++] = z;
+	}
+
+	float get(int i) {
+		return data[i];
+	}
+
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,24 @@
+package com.marginallyclever.ro3.mesh.load;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints without boxing, used by the streaming loaders to hold triangle indexes.
+ */
+final class IntList {
+	private int [] data = new int[48];
+	private int size = 0;
+
+	void add(int v) {
+		if(size==data.length) data = Arrays.copyOf(data,size*2);
+		data[size++] = v;
+	}
+
+	int get(int i) {
+		return data[i];
+	}
+
+	int size() {
+		return size;
+	}
+}
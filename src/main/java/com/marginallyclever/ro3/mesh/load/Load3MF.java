@@ -1,32 +1,32 @@
 package com.marginallyclever.ro3.mesh.load;
 
-import com.marginallyclever.convenience.ColorRGB;
 import com.marginallyclever.ro3.mesh.Mesh;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-
-import javax.vecmath.Vector3d;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.*;
-import java.util.ArrayList;
-import java.util.zip.ZipEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.*;
 import java.util.zip.ZipInputStream;
 
 /**
  * <p>{@link Load3MF} is a {@link MeshLoader} that loads a
  * <a href="https://en.wikipedia.org/wiki/3D_Manufacturing_Format">3MF</a> into a {@link Mesh}.</p>
+ * <p>The model part is streamed out of the zip with StAX.  Vertexes and triangles are kept in primitive arrays per
+ * object until the build section has been read, then every build item is copied into the {@link Mesh} with its
+ * transform.  Objects made of components are followed down to their meshes.  Memory use is about the size of
+ * the finished mesh, not the size of the XML.</p>
  */
 public class Load3MF implements MeshLoader {
-	private class ColorGroup {
-		public int id;
-		public ArrayList<ColorRGB> colors = new ArrayList<ColorRGB>();
-	}
+	private static final Logger logger = LoggerFactory.getLogger(Load3MF.class);
+	private static final float [] WHITE = {1,1,1,1};
+	/**
+	 * Components can refer to other objects.  Deeper than this is assumed to be a loop.
+	 */
+	private static final int MAX_COMPONENT_DEPTH = 64;
 
-    ArrayList<ColorGroup> colorGroups = new ArrayList<ColorGroup>();
-	
 	@Override
 	public String getEnglishName() {
 		return "3D Manufacturing Format (3MF)";
@@ -39,209 +39,300 @@ public class Load3MF implements MeshLoader {
 
 	@Override
 	public void load(BufferedInputStream inputStream, Mesh model) throws Exception {
-		BufferedInputStream stream2 = openZipAndFind3DFile(inputStream);
-		Element modelNode = buildTreeAndReturnRootNode(stream2);
-        double scale = getScale(modelNode);
+		ZipInputStream zipFile = new ZipInputStream(inputStream);
+		InputStream modelStream = XMLStreamSupport.findZipEntry(zipFile,".model","3MF");
+		if(modelStream==null) throw new Exception("No .model file found in 3MF.");
 
-        parseMaterials(modelNode);
-        parseAllObjects(model,modelNode,scale);
-	}
-    
-	private void parseMaterials(Element modelNode) {
-		colorGroups.clear();
-		
-        Element resources = (Element)modelNode.getElementsByTagName("resources").item(0);
-        NodeList colorGroupNodes = resources.getElementsByTagName("m:colorgroup");
-        for(int i=0;i<colorGroupNodes.getLength();++i) {
-        	ColorGroup g = loadColorGroup((Element)colorGroupNodes.item(i));
-        	colorGroups.add(g);
-        }
+		ModelReader reader = new ModelReader();
+		reader.read(modelStream);
+		reader.build(model);
 	}
 
-	private ColorGroup loadColorGroup(Element group) {
-    	ColorGroup g = new ColorGroup();
-    	g.id = Integer.valueOf(group.getAttribute("id"));
-        NodeList colorNodes = group.getElementsByTagName("m:color");
-        for(int i=0;i<colorNodes.getLength();++i) {
-        	Element cn = (Element)colorNodes.item(i);
-        	String hex = cn.getAttribute("color");
-        	ColorRGB c = ColorRGB.parse(hex);
-        	g.colors.add(c);
-        }
-    	
-		return g;
+	/**
+	 * 3MF units.  The format description says "Valid values are micron, millimeter, centimeter, inch, foot, and
+	 * meter."
+	 */
+	static double getScale(String units) {
+		double scale=1;
+		if(units!=null) {
+			switch(units) {
+			case "micron": scale=0.001;  break;
+			case "millimeter": scale = 1;  break;
+			case "centimeter": scale = 10;  break;
+			case "inch": scale = 25.4;  break;
+			case "foot": scale = 304.8;  break;
+			case "meter": scale = 1000;  break;
+			}
+		}
+		return scale * 0.1;
 	}
 
-	private void parseAllObjects(Mesh model, Element modelNode, double scale) throws Exception {
-        //logger.info("finding model/resources/object...");
-        Element resources = (Element)modelNode.getElementsByTagName("resources").item(0);
-        NodeList objects = resources.getElementsByTagName("object");
-        //logger.info(objects.getLength() + " elements found.");
-        for(int i=0;i<objects.getLength();++i) {
-        	Element object = (Element)objects.item(i);
-        	parseObject(object,scale,model);
-        }
-        //logger.info("done.");
+	/**
+	 * @param hex #RRGGBB or #RRGGBBAA
+	 * @return red, green, blue, and alpha from 0 to 1.
+	 */
+	static float [] parseColor(String hex) {
+		if(hex==null) return WHITE;
+		String s = hex.trim();
+		if(s.startsWith("#")) s = s.substring(1);
+		if(s.length()!=6 && s.length()!=8) {
+			logger.warn("Bad color '{}'.",hex);
+			return WHITE;
+		}
+		long v = Long.parseLong(s,16);
+		if(s.length()==6) v = (v<<8) | 0xFF;
+		return new float[] {
+				((v>>24) & 0xFF)/255.0f,
+				((v>>16) & 0xFF)/255.0f,
+				((v>> 8) & 0xFF)/255.0f,
+				( v      & 0xFF)/255.0f };
 	}
 
-	private void parseObject(Element object,double scale, Mesh model) throws Exception {
-    	String objectUUID = object.getAttribute("p:UUID");
-    	//logger.info("parsing object "+objectUUID);
-    	
-    	ColorRGB defaultColor = parseObjectColor(object);
-    	String objectType = object.getAttribute("type");
-    	if(!objectType.contentEquals("model")) {
-        	throw new Exception("Object "+objectUUID+" has unsupported model type '"+objectType+"'.");
-    	}
-    	
-        Element mesh = (Element)object.getElementsByTagName("mesh").item(0);
-    	//logger.info("mesh found.");
-
-        ArrayList<Vector3d> vertexes = collectMeshVertices(mesh,scale);
-        
-        //buildIndexedTriangles(mesh,model,vertexes);
-        buildTriangles(mesh,model,vertexes,defaultColor);
+	/**
+	 * A 3MF transform is 12 numbers "m00 m01 m02 m10 m11 m12 m20 m21 m22 m30 m31 m32".  Points are row vectors, so
+	 * the last three numbers are the translation.
+	 * @return the transform or null for none.
+	 */
+	static double [] parseTransform(String value) {
+		if(value==null || value.isBlank()) return null;
+		String [] parts = value.trim().split("\\s+");
+		if(parts.length!=12) throw new NumberFormatException("Transform must have 12 values: "+value);
+		double [] m = new double[12];
+		for(int i=0;i<12;++i) m[i] = Double.parseDouble(parts[i]);
+		return m;
 	}
 
-	private ColorRGB parseObjectColor(Element object) throws Exception {
-		int pid = Integer.valueOf(object.getAttribute("pid"));
-		int pindex = Integer.valueOf(object.getAttribute("pindex"));
-		return getColor(pid,pindex);
+	/**
+	 * @return the transform that applies a then b, either of which may be null.
+	 */
+	static double [] combine(double [] a,double [] b) {
+		if(a==null) return b;
+		if(b==null) return a;
+		double [] m = new double[12];
+		for(int r=0;r<4;++r) {
+			for(int c=0;c<3;++c) {
+				double sum = a[r*3]*b[c] + a[r*3+1]*b[3+c] + a[r*3+2]*b[6+c];
+				if(r==3) sum += b[9+c];
+				m[r*3+c] = sum;
+			}
+		}
+		return m;
 	}
 
-	private ColorRGB getColor(int pid, int pindex) {
-		for( ColorGroup g : colorGroups ) {
-			if(g.id == pid) return g.colors.get(pindex);
+	/**
+	 * An object in the resources section.  It has a mesh, components, or both.
+	 */
+	private static class ModelObject {
+		final int id;
+		final String type;
+		final FloatList vertices = new FloatList();
+		/**
+		 * v1, v2, v3 of each triangle.
+		 */
+		final IntList triangles = new IntList();
+		/**
+		 * pid, p1, p2, p3 of each triangle, -1 for no color.
+		 */
+		final IntList properties = new IntList();
+		final List<Reference> components = new ArrayList<>();
+
+		ModelObject(int id,String type) {
+			this.id = id;
+			this.type = type;
 		}
-		
-		return new ColorRGB(255,255,255);  // white
-	}
-	
-	@SuppressWarnings("unused")
-	private void buildIndexedTriangles(Element mesh, Mesh model, ArrayList<Vector3d> vertexes) {
-		int n = model.getNumVertices();
-		for( Vector3d vA : vertexes ) {
-			model.addVertex((float)vA.x,(float)vA.y,(float)vA.z);
+
+		boolean isModel() {
+			return type==null || type.isEmpty() || type.equals("model");
 		}
-		
-    	Element triangles = (Element)mesh.getElementsByTagName("triangles").item(0);
-    	NodeList allTriangles = triangles.getElementsByTagName("triangle");
-    	//logger.info(allTriangles.getLength() + " indexed triangles found.");
-    	for(int t=0;t<allTriangles.getLength();++t) {
-    		Element t1 = (Element)allTriangles.item(t);
-    		model.addIndex(n+Integer.valueOf(t1.getAttribute("v1")));
-    		model.addIndex(n+Integer.valueOf(t1.getAttribute("v2")));
-    		model.addIndex(n+Integer.valueOf(t1.getAttribute("v3")));
-    	}
 	}
 
-	private void buildTriangles(Element mesh, Mesh model, ArrayList<Vector3d> vertexes, ColorRGB defaultColor) {
-		Vector3d vA;
-		
-    	Element triangles = (Element)mesh.getElementsByTagName("triangles").item(0);
-    	NodeList allTriangles = triangles.getElementsByTagName("triangle");
-    	//logger.info(allTriangles.getLength() + " triangles found.");
-    	for(int t=0;t<allTriangles.getLength();++t) {
-    		Element t1 = (Element)allTriangles.item(t);
-    		int v1 = Integer.valueOf(t1.getAttribute("v1"));
-    		int v2 = Integer.valueOf(t1.getAttribute("v2"));
-    		int v3 = Integer.valueOf(t1.getAttribute("v3"));
-    		vA = vertexes.get(v1);	model.addVertex((float)vA.x,(float)vA.y,(float)vA.z);
-    		vA = vertexes.get(v2);	model.addVertex((float)vA.x,(float)vA.y,(float)vA.z);
-    		vA = vertexes.get(v3);	model.addVertex((float)vA.x,(float)vA.y,(float)vA.z);
-    		
-    		ColorRGB myColor;
-    		if( t1.hasAttribute("pid") ) {
-    			int pid = Integer.valueOf(t1.getAttribute("pid"));
-    			int p1 = Integer.valueOf("p1");
-    			myColor = getColor(pid,p1);
-    		} else myColor = defaultColor;
-    		
-    		float r = (float)myColor.red/255.0f;
-    		float g = (float)myColor.green/255.0f;
-    		float b = (float)myColor.blue/255.0f;
-    		model.addColor(r,g,b,1);
-    		model.addColor(r,g,b,1);
-    		model.addColor(r,g,b,1);
-    	}
-	}
-	
-	private ArrayList<Vector3d> collectMeshVertices(Element mesh, double scale) {
-        ArrayList<Vector3d> collectedVertexes = new ArrayList<Vector3d>();
-    	Element vertices = (Element)mesh.getElementsByTagName("vertices").item(0);
-    	NodeList allVertices = vertices.getElementsByTagName("vertex");
-    	//logger.info(allVertices.getLength() + " vertices found.");
-    	for(int v=0;v<allVertices.getLength();++v) {
-    		Element v1 = (Element)allVertices.item(v);
-    		double x = scale * Double.valueOf(v1.getAttribute("x"));
-    		double y = scale * Double.valueOf(v1.getAttribute("y"));
-    		double z = scale * Double.valueOf(v1.getAttribute("z"));
-    		collectedVertexes.add(new Vector3d(x,y,z));
-    	}
-
-		return collectedVertexes;
-	}
+	/**
+	 * A build item or a component.
+	 */
+	private record Reference(int objectId,double [] transform) {}
 
-	private Element buildTreeAndReturnRootNode(BufferedInputStream stream2) throws Exception {
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		// process XML securely, avoid attacks like XML External Entities (XXE)
-		dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-		DocumentBuilder db = dbf.newDocumentBuilder();
-		Document doc = db.parse(stream2);
-		
-		// http://stackoverflow.com/questions/13786607/normalization-in-dom-parsing-with-java-how-does-it-work
-        doc.getDocumentElement().normalize();
-
-        Element modelNode = doc.getDocumentElement();
-        
-		return modelNode;
-	}
+	/**
+	 * The state of one load, so that one {@link Load3MF} can be used by many threads.
+	 */
+	private static class ModelReader {
+		private final Map<Integer,List<float[]>> colorGroups = new HashMap<>();
+		private final Map<Integer,ModelObject> objects = new LinkedHashMap<>();
+		private final List<Reference> buildItems = new ArrayList<>();
+		private double scale = getScale(null);
+		private int trianglesAdded = 0;
 
-	private double getScale(Element modelNode) {
-		//logger.info("searching for scale...");
-        String units = modelNode.getAttribute("units");
-        // 3MF format description says "Valid values are micron, millimeter, centimeter, inch, foot, and meter."
-        double scale=1;
-        switch(units) {
-        case "micron": scale=0.001;  break;
-        case "millimeter": scale = 1;  break;
-        case "centimeter": scale = 10;  break;
-        case "inch": scale = 25.4;  break;
-        case "foot": scale = 304.8;  break;
-        case "meter": scale = 1000;  break;
-        } 
-        scale *= 0.1;
-        //logger.info("scale is now x"+scale);
-		return scale;
-	}
+		void read(InputStream in) throws Exception {
+			XMLStreamReader reader = XMLStreamSupport.createReader(in);
+			try {
+				parse(reader);
+			} finally {
+				reader.close();
+			}
+			logger.info("{} objects, {} build items.",objects.size(),buildItems.size());
+		}
 
-	private BufferedInputStream openZipAndFind3DFile(BufferedInputStream inputStream) throws IOException {
-		ZipInputStream zipFile = new ZipInputStream(inputStream);
-		ZipEntry entry;
-		
-		while((entry = zipFile.getNextEntry())!=null) {
-	        if( entry.getName().toLowerCase().endsWith(".model") ) {
-	        	File f = readZipIntoTempFile(zipFile,entry,"3dmodel", "model");
-                return new BufferedInputStream(new FileInputStream(f));
-	        }
+		private void parse(XMLStreamReader reader) throws Exception {
+			List<float[]> group = null;
+			ModelObject object = null;
+			int defaultPid = -1;
+			int defaultIndex = -1;
+
+			while(reader.hasNext()) {
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT) {
+					switch(reader.getLocalName()) {
+					case "model":
+						scale = getScale(XMLStreamSupport.getAttribute(reader,"units"));
+						break;
+					case "colorgroup":
+					case "basematerials":
+						group = new ArrayList<>();
+						colorGroups.put(XMLStreamSupport.getIntAttribute(reader,"id",-1),group);
+						break;
+					case "color":
+						if(group!=null) group.add(parseColor(XMLStreamSupport.getAttribute(reader,"color")));
+						break;
+					case "base":
+						if(group!=null) group.add(parseColor(XMLStreamSupport.getAttribute(reader,"displaycolor")));
+						break;
+					case "object":
+						object = new ModelObject(
+								XMLStreamSupport.getIntAttribute(reader,"id",-1),
+								XMLStreamSupport.getAttribute(reader,"type"));
+						defaultPid = XMLStreamSupport.getIntAttribute(reader,"pid",-1);
+						defaultIndex = XMLStreamSupport.getIntAttribute(reader,"pindex",0);
+						break;
+					case "vertex":
+						if(object!=null) readVertex(reader,object);
+						break;
+					case "triangle":
+						if(object!=null) readTriangle(reader,object,defaultPid,defaultIndex);
+						break;
+					case "component":
+						if(object!=null) object.components.add(readReference(reader));
+						break;
+					case "item":
+						if(XMLStreamSupport.getAttribute(reader,"path")!=null) {
+							logger.warn("Build items in other model parts are not supported.");
+						} else {
+							buildItems.add(readReference(reader));
+						}
+						break;
+					}
+				} else if(event == XMLStreamConstants.END_ELEMENT) {
+					switch(reader.getLocalName()) {
+					case "colorgroup":
+					case "basematerials":
+						group = null;
+						break;
+					case "object":
+						if(object!=null) objects.put(object.id,object);
+						object = null;
+						break;
+					}
+				}
+			}
 		}
-		
-		return null;
-	}
 
-	private File readZipIntoTempFile(ZipInputStream zipFile,ZipEntry entry, String prefix, String suffix) throws IOException {
-        File f = File.createTempFile(prefix,suffix);
-        f.setReadable(true);
-        f.setWritable(true);
-        f.deleteOnExit();
-        FileOutputStream fos = new FileOutputStream(f);
-		byte[] buffer = new byte[2048];
-		int len;
-        while ((len = zipFile.read(buffer)) > 0) {
-            fos.write(buffer, 0, len);
-        }
-        fos.close();
-
-		return f;
+		private void readVertex(XMLStreamReader reader,ModelObject object) {
+			double x = scale * Double.parseDouble(XMLStreamSupport.getAttribute(reader,"x"));
+			double y = scale * Double.parseDouble(XMLStreamSupport.getAttribute(reader,"y"));
+			double z = scale * Double.parseDouble(XMLStreamSupport.getAttribute(reader,"z"));
+			object.vertices.add((float)x,(float)y,(float)z);
+		}
+
+		private void readTriangle(XMLStreamReader reader,ModelObject object,int defaultPid,int defaultIndex) {
+			object.triangles.add(XMLStreamSupport.getIntAttribute(reader,"v1",0));
+			object.triangles.add(XMLStreamSupport.getIntAttribute(reader,"v2",0));
+			object.triangles.add(XMLStreamSupport.getIntAttribute(reader,"v3",0));
+			int pid = XMLStreamSupport.getIntAttribute(reader,"pid",defaultPid);
+			int p1 = XMLStreamSupport.getIntAttribute(reader,"p1",defaultIndex);
+			object.properties.add(pid);
+			object.properties.add(p1);
+			object.properties.add(XMLStreamSupport.getIntAttribute(reader,"p2",p1));
+			object.properties.add(XMLStreamSupport.getIntAttribute(reader,"p3",p1));
+		}
+
+		private Reference readReference(XMLStreamReader reader) {
+			return new Reference(
+					XMLStreamSupport.getIntAttribute(reader,"objectid",-1),
+					parseTransform(XMLStreamSupport.getAttribute(reader,"transform")));
+		}
+
+		/**
+		 * Copy every build item into the mesh.  A file with no build section adds every object once.
+		 */
+		void build(Mesh model) throws Exception {
+			List<Reference> items = buildItems;
+			if(items.isEmpty()) {
+				items = new ArrayList<>();
+				for(ModelObject o : objects.values()) items.add(new Reference(o.id,null));
+			}
+			for(Reference item : items) {
+				addObject(model,item.objectId(),item.transform(),0);
+			}
+			logger.info("{} triangles.",trianglesAdded);
+		}
+
+		private void addObject(Mesh model,int objectId,double [] transform,int depth) throws Exception {
+			if(depth>MAX_COMPONENT_DEPTH) throw new Exception("Components of object "+objectId+" are too deep.");
+			ModelObject object = objects.get(objectId);
+			if(object==null) {
+				logger.warn("Object {} not found.",objectId);
+				return;
+			}
+			if(!object.isModel()) {
+				logger.warn("Skipping object {} with unsupported model type '{}'.",objectId,object.type);
+				return;
+			}
+			addTriangles(model,object,transform);
+			for(Reference component : object.components) {
+				addObject(model,component.objectId(),combine(component.transform(),transform),depth+1);
+			}
+		}
+
+		private void addTriangles(Mesh model,ModelObject object,double [] transform) {
+			FloatList v = object.vertices;
+			int numVertices = v.size()/3;
+			double [] t = transform;
+			if(t!=null) {
+				// translation is in file units, vertexes have already been scaled.
+				t = Arrays.copyOf(t,12);
+				t[9]*=scale;
+				t[10]*=scale;
+				t[11]*=scale;
+			}
+
+			for(int i=0;i<object.triangles.size();++i) {
+				int index = object.triangles.get(i);
+				if(index<0 || index>=numVertices) {
+					throw new IndexOutOfBoundsException("Object "+object.id+" has no vertex "+index);
+				}
+				float x = v.get(index*3  );
+				float y = v.get(index*3+1);
+				float z = v.get(index*3+2);
+				if(t==null) {
+					model.addVertex(x,y,z);
+				} else {
+					model.addVertex(
+							(float)(x*t[0] + y*t[3] + z*t[6] + t[ 9]),
+							(float)(x*t[1] + y*t[4] + z*t[7] + t[10]),
+							(float)(x*t[2] + y*t[5] + z*t[8] + t[11]));
+				}
+
+				int triangle = i/3;
+				float [] c = getColor(
+						object.properties.get(triangle*4),
+						object.properties.get(triangle*4+1+(i%3)));
+				model.addColor(c[0],c[1],c[2],c[3]);
+			}
+			trianglesAdded += object.triangles.size()/3;
+		}
+
+		private float [] getColor(int pid,int pindex) {
+			List<float[]> group = colorGroups.get(pid);
+			if(group==null || pindex<0 || pindex>=group.size()) return WHITE;
+			return group.get(pindex);
+		}
 	}
 }
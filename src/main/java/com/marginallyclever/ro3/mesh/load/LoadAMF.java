@@ -3,19 +3,27 @@ package com.marginallyclever.ro3.mesh.load;
 import com.marginallyclever.ro3.mesh.Mesh;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
 import javax.vecmath.Vector3f;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 import java.io.BufferedInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipInputStream;
 
 /**
  * <p>{@link LoadAMF} is a {@link MeshLoader} that loads an
  * <a href="https://en.wikipedia.org/wiki/Additive_manufacturing_file_format">AMF</a> into a {@link Mesh}.</p>
+ * <p>The XML is streamed with StAX.  Vertexes and triangles are kept in primitive arrays per object until the end
+ * of the file, then each instance in the constellations (or each object, if there are none) is copied into the
+ * {@link Mesh}.  Zipped AMF files are read straight from the zip.</p>
  * @author Dan Royer
  * @since 2.5.0
  */
@@ -25,7 +33,7 @@ public class LoadAMF implements MeshLoader {
 	public String getEnglishName() {
 		return "3D printing file (AMF)";
 	}
-	
+
 	@Override
 	public String[] getValidExtensions() {
 		return new String[]{"amf"};
@@ -34,70 +42,204 @@ public class LoadAMF implements MeshLoader {
 	// much help from https://www.sculpteo.com/en/glossary/amf-definition/
 	@Override
 	public void load(BufferedInputStream inputStream, Mesh model) throws Exception {
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dBuilder.parse(inputStream);
-        doc.getDocumentElement().normalize();
-        if(!doc.getDocumentElement().getNodeName().contains("amf")) {
-        	throw new Exception("I can't find AMF node!");
-        }
-
-		ArrayList<Float> vertexArray = new ArrayList<>();
-		//ArrayList<Integer> faceArray = new ArrayList<>();
-		
-    	NodeList coordinateList = doc.getElementsByTagName("coordinates");
-		int numCoordinates = coordinateList.getLength();
-        logger.info(numCoordinates + " coordinates.");
-        for (int a = 0; a < numCoordinates; a++) {
-        	Element coordinate = (Element)coordinateList.item(a);
-        	//logger.info("x: "+coordinate.getElementsByTagName("x").item(0).getTextContent());
-        	//logger.info("y: "+coordinate.getElementsByTagName("y").item(0).getTextContent());
-        	//logger.info("z: "+coordinate.getElementsByTagName("z").item(0).getTextContent());
-        	float x = Float.parseFloat(coordinate.getElementsByTagName("x").item(0).getTextContent());
-        	float y = Float.parseFloat(coordinate.getElementsByTagName("y").item(0).getTextContent());
-        	float z = Float.parseFloat(coordinate.getElementsByTagName("z").item(0).getTextContent());
-            vertexArray.add(x);
-            vertexArray.add(y);
-            vertexArray.add(z);
-        }
-
-    	NodeList volumeList = doc.getElementsByTagName("volume");
-        logger.info(volumeList.getLength() + " volumes.");
-        int numVolumes = volumeList.getLength();
-        for (int a = 0; a < numVolumes; a++) {
-        	Element volume = (Element)volumeList.item(a);
-        	NodeList triangleList = volume.getElementsByTagName("triangle");
-
-            int numTriangles = triangleList.getLength();
-            logger.info("\t"+ numTriangles + " triangles.");
-            for (int b = 0; b < numTriangles; b++) {
-            	Element triangle = (Element)triangleList.item(b);
-            	int v1 = Integer.parseInt(triangle.getElementsByTagName("v1").item(0).getTextContent());
-            	int v2 = Integer.parseInt(triangle.getElementsByTagName("v2").item(0).getTextContent());
-            	int v3 = Integer.parseInt(triangle.getElementsByTagName("v3").item(0).getTextContent());
-                //logger.info("\t\t"+v1+", "+v2+", "+v3);
-            	
-            	float x1 = vertexArray.get(v1*3  );
-            	float y1 = vertexArray.get(v1*3+1);
-            	float z1 = vertexArray.get(v1*3+2);
-
-            	float x2 = vertexArray.get(v2*3  );
-            	float y2 = vertexArray.get(v2*3+1);
-            	float z2 = vertexArray.get(v2*3+2);
-            	
-            	float x3 = vertexArray.get(v3*3  );
-            	float y3 = vertexArray.get(v3*3+1);
-            	float z3 = vertexArray.get(v3*3+2);
-            	
-				model.addVertex(x1,y1,z1);
-				model.addVertex(x2,y2,z2);
-				model.addVertex(x3,y3,z3);
-				
+		InputStream source = openSource(inputStream);
+		AMFReader reader = new AMFReader();
+		reader.read(source);
+		reader.build(model);
+	}
+
+	/**
+	 * AMF files may be zipped.  If so, read the first entry in place.
+	 */
+	private InputStream openSource(BufferedInputStream inputStream) throws Exception {
+		inputStream.mark(2);
+		int a = inputStream.read();
+		int b = inputStream.read();
+		inputStream.reset();
+		if(a=='P' && b=='K') {
+			InputStream entry = XMLStreamSupport.findZipEntry(new ZipInputStream(inputStream),"","AMF");
+			if(entry==null) throw new Exception("Zipped AMF is empty.");
+			return entry;
+		}
+		return new XMLStreamSupport.ProgressInputStream(inputStream,inputStream.available(),"AMF");
+	}
+
+	/**
+	 * An object and its mesh.  Triangle indexes are relative to the vertexes of the same object.
+	 */
+	private static class AMFObject {
+		final String id;
+		final FloatList vertices = new FloatList();
+		final IntList triangles = new IntList();
+
+		AMFObject(String id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 * One instance of an object in a constellation.
+	 */
+	private static class Instance {
+		final String objectId;
+		final double [] values = new double[6];  // deltax, deltay, deltaz, rx, ry, rz
+
+		Instance(String objectId) {
+			this.objectId = objectId;
+		}
+
+		/**
+		 * Rotate around x, then y, then z, in degrees, then move.
+		 */
+		Matrix4d getMatrix() {
+			Matrix4d m = new Matrix4d();
+			Matrix4d r = new Matrix4d();
+			m.rotZ(Math.toRadians(values[5]));
+			r.rotY(Math.toRadians(values[4]));
+			m.mul(r);
+			r.rotX(Math.toRadians(values[3]));
+			m.mul(r);
+			m.setTranslation(new Vector3d(values[0],values[1],values[2]));
+			return m;
+		}
+	}
+
+	/**
+	 * The state of one load, so that one {@link LoadAMF} can be used by many threads.
+	 */
+	private static class AMFReader {
+		private final Map<String,AMFObject> objects = new LinkedHashMap<>();
+		private final List<Instance> instances = new ArrayList<>();
+		private int trianglesAdded = 0;
+
+		void read(InputStream in) throws Exception {
+			XMLStreamReader reader = XMLStreamSupport.createReader(in);
+			try {
+				parse(reader);
+			} finally {
+				reader.close();
+			}
+			logger.info("{} objects, {} instances.",objects.size(),instances.size());
+		}
+
+		private void parse(XMLStreamReader reader) throws Exception {
+			boolean foundRoot = false;
+			AMFObject object = null;
+			Instance instance = null;
+			boolean inCoordinates = false;
+			boolean inTriangle = false;
+			float [] xyz = new float[3];
+			int [] abc = new int[3];
+
+			while(reader.hasNext()) {
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					if(!foundRoot) {
+						if(!name.contains("amf")) throw new Exception("I can't find AMF node!");
+						foundRoot = true;
+						continue;
+					}
+					switch(name) {
+					case "object":
+						object = new AMFObject(XMLStreamSupport.getAttribute(reader,"id"));
+						break;
+					case "coordinates":
+						inCoordinates = true;
+						break;
+					case "x", "y", "z":
+						if(inCoordinates) xyz[name.charAt(0)-'x'] = Float.parseFloat(reader.getElementText().trim());
+						break;
+					case "triangle":
+						inTriangle = true;
+						break;
+					case "v1", "v2", "v3":
+						if(inTriangle) abc[name.charAt(1)-'1'] = Integer.parseInt(reader.getElementText().trim());
+						break;
+					case "instance":
+						instance = new Instance(XMLStreamSupport.getAttribute(reader,"objectid"));
+						break;
+					case "deltax", "deltay", "deltaz", "rx", "ry", "rz":
+						if(instance!=null) readInstanceValue(reader,name,instance);
+						break;
+					}
+				} else if(event == XMLStreamConstants.END_ELEMENT) {
+					switch(reader.getLocalName()) {
+					case "coordinates":
+						if(object!=null) object.vertices.add(xyz[0],xyz[1],xyz[2]);
+						inCoordinates = false;
+						break;
+					case "triangle":
+						if(object!=null) {
+							object.triangles.add(abc[0]);
+							object.triangles.add(abc[1]);
+							object.triangles.add(abc[2]);
+						}
+						inTriangle = false;
+						break;
+					case "object":
+						if(object!=null) objects.put(object.id,object);
+						object = null;
+						break;
+					case "instance":
+						if(instance!=null) instances.add(instance);
+						instance = null;
+						break;
+					}
+				}
+			}
+			if(!foundRoot) throw new Exception("I can't find AMF node!");
+		}
+
+		private void readInstanceValue(XMLStreamReader reader,String name,Instance instance) throws Exception {
+			double v = Double.parseDouble(reader.getElementText().trim());
+			switch(name) {
+			case "deltax": instance.values[0] = v;  break;
+			case "deltay": instance.values[1] = v;  break;
+			case "deltaz": instance.values[2] = v;  break;
+			case "rx": instance.values[3] = v;  break;
+			case "ry": instance.values[4] = v;  break;
+			case "rz": instance.values[5] = v;  break;
+			}
+		}
+
+		/**
+		 * Copy every instance into the mesh.  A file with no constellation adds every object once.
+		 */
+		void build(Mesh model) {
+			if(instances.isEmpty()) {
+				for(AMFObject object : objects.values()) addTriangles(model,object,null);
+			} else {
+				for(Instance instance : instances) {
+					AMFObject object = objects.get(instance.objectId);
+					if(object==null) {
+						logger.warn("Instance of {} is not an object.  Nested constellations are not supported.",instance.objectId);
+						continue;
+					}
+					addTriangles(model,object,instance.getMatrix());
+				}
+			}
+			logger.info("{} triangles.",trianglesAdded);
+		}
+
+		private void addTriangles(Mesh model,AMFObject object,Matrix4d matrix) {
+			FloatList v = object.vertices;
+			int numVertices = v.size()/3;
+			Vector3f p1 = new Vector3f();
+			Vector3f p2 = new Vector3f();
+			Vector3f p3 = new Vector3f();
+			Point3d temp = new Point3d();
+
+			for(int i=0;i<object.triangles.size();i+=3) {
+				getVertex(object,numVertices,object.triangles.get(i  ),matrix,temp,p1);
+				getVertex(object,numVertices,object.triangles.get(i+1),matrix,temp,p2);
+				getVertex(object,numVertices,object.triangles.get(i+2),matrix,temp,p3);
+
+				model.addVertex(p1.x,p1.y,p1.z);
+				model.addVertex(p2.x,p2.y,p2.z);
+				model.addVertex(p3.x,p3.y,p3.z);
+
 				// calculate normal from triangle face
-				Vector3f p1 = new Vector3f(x1,y1,z1);	
-				Vector3f p2 = new Vector3f(x2,y2,z2);	
-				Vector3f p3 = new Vector3f(x3,y3,z3);	
-				
 				p2.sub(p1);
 				p3.sub(p1);
 				p2.normalize();
@@ -107,8 +249,21 @@ public class LoadAMF implements MeshLoader {
 				model.addNormal(p1.x, p1.y, p1.z);
 				model.addNormal(p1.x, p1.y, p1.z);
 				model.addNormal(p1.x, p1.y, p1.z);
-            }
-        }
-	}
+			}
+			trianglesAdded += object.triangles.size()/3;
+		}
 
+		private void getVertex(AMFObject object,int numVertices,int index,Matrix4d matrix,Point3d temp,Vector3f result) {
+			if(index<0 || index>=numVertices) {
+				throw new IndexOutOfBoundsException("Object "+object.id+" has no vertex "+index);
+			}
+			FloatList v = object.vertices;
+			result.set(v.get(index*3),v.get(index*3+1),v.get(index*3+2));
+			if(matrix!=null) {
+				temp.set(result.x,result.y,result.z);
+				matrix.transform(temp);
+				result.set((float)temp.x,(float)temp.y,(float)temp.z);
+			}
+		}
+	}
 }
@@ -0,0 +1,133 @@
+package com.marginallyclever.ro3.mesh.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Helpers shared by the loaders that stream XML with StAX instead of building a DOM.
+ */
+final class XMLStreamSupport {
+	private static final Logger logger = LoggerFactory.getLogger(XMLStreamSupport.class);
+	/**
+	 * When the size of the source is not known progress is reported every this many bytes.
+	 */
+	private static final long UNKNOWN_SIZE_STEP = 16L*1024*1024;
+
+	private XMLStreamSupport() {}
+
+	/**
+	 * @param in the source.  It is not closed when the reader is closed.
+	 * @return a namespace aware reader that will not resolve DTDs or external entities.
+	 * @throws XMLStreamException if the reader cannot be created.
+	 */
+	static XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// process XML securely, avoid attacks like XML External Entities (XXE)
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory.createXMLStreamReader(in);
+	}
+
+	/**
+	 * Find an attribute of the current element by its local name, ignoring the namespace prefix.
+	 * @return the value or null if the element does not have the attribute.
+	 */
+	static String getAttribute(XMLStreamReader reader, String localName) {
+		for(int i=0;i<reader.getAttributeCount();++i) {
+			if(reader.getAttributeLocalName(i).equals(localName)) return reader.getAttributeValue(i);
+		}
+		return null;
+	}
+
+	static int getIntAttribute(XMLStreamReader reader, String localName, int defaultValue) {
+		String value = getAttribute(reader,localName);
+		return (value==null || value.isBlank()) ? defaultValue : Integer.parseInt(value.trim());
+	}
+
+	/**
+	 * Move through a zip to the first entry whose name ends with the given suffix.  No temporary file is made, the
+	 * zip is read in place.
+	 * @param zip the zip to search
+	 * @param suffix lower case end of the entry name, such as ".model"
+	 * @param name used when reporting progress.
+	 * @return a stream of the entry, or null if no entry was found.
+	 * @throws IOException if the zip cannot be read.
+	 */
+	static InputStream findZipEntry(ZipInputStream zip, String suffix, String name) throws IOException {
+		ZipEntry entry;
+		while((entry = zip.getNextEntry())!=null) {
+			if(entry.getName().toLowerCase().endsWith(suffix)) {
+				return new ProgressInputStream(zip,entry.getSize(),name+":"+entry.getName());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Logs how much of a source has been read, every 10% when the size is known or every 16MB when it is not.
+	 */
+	static class ProgressInputStream extends FilterInputStream {
+		private final long total;
+		private final String name;
+		private long count = 0;
+		private long nextReport;
+
+		/**
+		 * @param in the source
+		 * @param total the number of bytes expected, or a value less than one if not known.
+		 * @param name used in the log.
+		 */
+		ProgressInputStream(InputStream in, long total, String name) {
+			super(in);
+			this.total = total;
+			this.name = name;
+			this.nextReport = step();
+		}
+
+		private long step() {
+			return total>0 ? Math.max(1,total/10) : UNKNOWN_SIZE_STEP;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if(b>=0) advance(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b,off,len);
+			if(n>0) advance(n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			if(skipped>0) advance(skipped);
+			return skipped;
+		}
+
+		private void advance(long n) {
+			count += n;
+			if(count<nextReport) return;
+			nextReport = count + step();
+			if(total>0) {
+				logger.info("{} {}%",name,Math.min(100,count*100/total));
+			} else {
+				logger.info("{} {}MB",name,count/(1024*1024));
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package com.marginallyclever.ro3.node;
 
 import com.marginallyclever.convenience.PathCalculator;
+import com.marginallyclever.convenience.helpers.AssetResolver;
 import com.marginallyclever.ro3.Registry;
 import com.marginallyclever.ro3.node.nodes.Pose;
 import org.json.JSONArray;
@@ -12,8 +13,11 @@ import javax.swing.*;
 import javax.swing.event.EventListenerList;
 import java.awt.*;
 import java.awt.datatransfer.DataFlavor;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.UUID;
 
 /**
@@ -39,14 +43,26 @@ import java.util.UUID;
  *     <li>{@link NodeReadyListener}: called when a node is attached and all children are ready.</li>
  *     <li>{@link NodeRenameListener}: called when a node is renamed.</li>
  * </ul>
+ * <p>Attach, detach, and rename events are also repeated on the {@link NodeEventBus}.</p>
  * <p>Nodes can be serialized to and from JSON.</p>
  */
 public class Node {
     private static final Logger logger = LoggerFactory.getLogger(Node.class);
     private String name;
-    private final List<Node> children = new ArrayList<>();
-    private Node parent;
+    // copy-on-write.  Every change makes a new list, so a list returned by getChildren() never changes and can be
+    // read from any thread.  See ChildList.
+    private volatile List<Node> children = List.of();
+    private Node [] childArray = NO_CHILDREN;
+    private static final Node [] NO_CHILDREN = new Node[0];
+    private volatile Node parent;
     private UUID nodeID;
+    // only the root of a tree has an index, and only after the first lookup.  See getIndex().
+    private NodeIndex index;
+    // references read by fromJSON() wait here until the whole tree is loaded.  See resolveAfterLoad().
+    private static final ThreadLocal<List<Runnable>> afterLoad = ThreadLocal.withInitial(ArrayList::new);
+    private static final ThreadLocal<int[]> loadDepth = ThreadLocal.withInitial(()->new int[1]);
+    // how asset names in the file being loaded are found.  See resolveAsset().
+    private static final ThreadLocal<AssetResolver> assetResolver = new ThreadLocal<>();
 
     protected final EventListenerList listeners = new EventListenerList();
 
@@ -78,8 +94,20 @@ public class Node {
             throw new IndexOutOfBoundsException("Index "+index+" is out of bounds.");
         }
 
-        children.add(index,child);
+        int size = children.size();
+        Node [] array = childArray;
+        if(index<size || size==array.length) {
+            // no room at the end, or an insert that would move children a published list can see.
+            array = new Node[(size==array.length) ? Math.max(4,size*2) : array.length];
+            System.arraycopy(childArray,0,array,0,index);
+            System.arraycopy(childArray,index,array,index+1,size-index);
+        }
+        array[index] = child;
+        setChildren(array,size+1);
         child.setParent(this);
+        child.index = null;
+        NodeIndex rootIndex = getRootNode().index;
+        if(rootIndex!=null) rootIndex.addTree(child);
         fireAttachEvent(child);
         child.onAttach();
         if(child.children.isEmpty()) {
@@ -98,18 +126,21 @@ public class Node {
         for(NodeAttachListener listener : listeners.getListeners(NodeAttachListener.class)) {
             listener.nodeAttached(child);
         }
+        NodeEventBus.fireAttachEvent(child);
     }
 
     private void fireDetachEvent(Node child) {
         for(NodeDetachListener listener : listeners.getListeners(NodeDetachListener.class)) {
             listener.nodeDetached(child);
         }
+        NodeEventBus.fireDetachEvent(child);
     }
 
     private void fireRenameEvent(Node child) {
         for(NodeRenameListener listener : listeners.getListeners(NodeRenameListener.class)) {
             listener.nodeRenamed(child);
         }
+        NodeEventBus.fireRenameEvent(child);
     }
 
     /**
@@ -120,7 +151,16 @@ public class Node {
     public void removeChild(Node child) {
         child.onDetach();
         fireDetachEvent(child);
-        children.remove(child);
+        int size = children.size();
+        int i = children.indexOf(child);
+        if(i>=0) {
+            Node [] array = new Node[childArray.length];
+            System.arraycopy(childArray,0,array,0,i);
+            System.arraycopy(childArray,i+1,array,i,size-i-1);
+            setChildren(array,size-1);
+        }
+        NodeIndex rootIndex = getRootNode().index;
+        if(rootIndex!=null) rootIndex.removeTree(child,this);
         child.setParent(null);
     }
 
@@ -138,6 +178,29 @@ public class Node {
         return name;
     }
 
+    private void changeName(String newName) {
+        String oldName = name;
+        name = newName;
+        NodeIndex rootIndex = getRootNode().index;
+        if(rootIndex!=null && !newName.equals(oldName)) rootIndex.rename(this,oldName);
+    }
+
+    private void changeNodeID(UUID newID) {
+        UUID oldID = nodeID;
+        nodeID = newID;
+        NodeIndex rootIndex = getRootNode().index;
+        if(rootIndex!=null) rootIndex.changeID(this,oldID);
+    }
+
+    /**
+     * @return the index of the tree this node is in, built now if needed.
+     */
+    private NodeIndex getIndex() {
+        Node root = getRootNode();
+        if(root.index==null) root.index = new NodeIndex(root);
+        return root.index;
+    }
+
     private void setParent(Node node) {
         this.parent = node;
     }
@@ -160,17 +223,50 @@ public class Node {
         if(isNameUsedBySibling(name)) {
             return;
         }
-        this.name = name;
+        changeName(name);
         fireRenameEvent(this);
     }
 
     /**
-     * @return an iterator so that calling class cannot modify the list.
+     * @return the children at this moment.  The list cannot be modified and it does not change when children are
+     * added or removed later, so it is safe to iterate while the tree changes.
      */
     public List<Node> getChildren() {
         return children;
     }
 
+    private void setChildren(Node [] array,int size) {
+        childArray = array;
+        children = (size==0) ? List.of() : new ChildList(array,size);
+    }
+
+    /**
+     * <p>The first {@code size} entries of an array that only ever grows at the end.  Appending a child writes the
+     * next free slot of the same array, which no published list can see, so adding many children one at a time
+     * (for example while a file is loading) costs one copy each time the array doubles instead of one copy per
+     * child.  Any other change copies the array.</p>
+     */
+    private static final class ChildList extends AbstractList<Node> implements RandomAccess {
+        private final Node [] array;
+        private final int size;
+
+        ChildList(Node [] array,int size) {
+            this.array = array;
+            this.size = size;
+        }
+
+        @Override
+        public Node get(int index) {
+            Objects.checkIndex(index,size);
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
     /**
      * Find the first parent with the given name.
      * @param name the name to match.
@@ -209,7 +305,7 @@ public class Node {
      * @return the child, or null if none found.
      */
     public Node findChild(String name) {
-        return findChild(name,1);
+        return getIndex().getChild(this,name);
     }
 
     /**
@@ -238,6 +334,7 @@ public class Node {
      */
     public Node get(String path) {
         String[] parts = path.split("/");
+        NodeIndex index = getIndex();
         Node node = this;
         int i=0;
         if(parts[0].isEmpty()) {
@@ -249,7 +346,7 @@ public class Node {
             if(part.equals("..")) {
                 node = node.getParent();
             } else if(!part.equals(".")) {
-                node = node.findChild(part);
+                node = index.getChild(node,part);
             }
             if(node == null) {
                 return null;
@@ -418,18 +515,30 @@ public class Node {
 
     /**
      * Serialize this node and its children to a JSON object and its children.
-     * Classes that override this method should call super.toJSON() first, then add to the object returned.
      * @return the JSON object.
      */
     public JSONObject toJSON() {
+        return toJSON(true);
+    }
+
+    /**
+     * Serialize this node to a JSON object.
+     * Classes that override this method should call super.toJSON(withChildren) first, then add to the object returned.
+     * @param withChildren true to include the "children" array.  Streaming serializers that visit the children
+     *                     themselves pass false.
+     * @return the JSON object.
+     */
+    public JSONObject toJSON(boolean withChildren) {
         //logger.debug("Saving {}.",getAbsolutePath());
         JSONObject json = new JSONObject();
         json.put("type",getClass().getSimpleName());
         json.put("name",name);
         json.put("nodeID",nodeID.toString());
+        if(!withChildren) return json;
+
         JSONArray childrenArray = new JSONArray();
         for (Node child : this.children) {
-            childrenArray.put(child.toJSON());
+            childrenArray.put(child.toJSON(true));
         }
         json.put("children",childrenArray);
         return json;
@@ -439,22 +548,93 @@ public class Node {
      * Deserialize this node and its children from a JSON object and its children.
      * Classes that override this method should call super.fromJSON().  When they do it will trigger the creation of
      * child nodes.  The child nodes will then call their own fromJSON() methods.
+     * If there is no "children" array then existing children are left alone.
      * @param from the JSON object to read from.
      */
     public void fromJSON(JSONObject from) {
-        name = from.getString("name");
-        nodeID = UUID.fromString(from.getString("nodeID"));
-        children.clear();
-        for (Object o : from.getJSONArray("children")) {
-            JSONObject child = (JSONObject) o;
-            Node n = Registry.nodeFactory.create(child.getString("type"));
-            if(n==null) {
-                logger.error("{}: Could not create type {}.",getAbsolutePath(),child.getString("type"));
-                n = new Node();
+        changeName(from.getString("name"));
+        changeNodeID(UUID.fromString(from.getString("nodeID")));
+        if(!from.has("children")) return;
+
+        List<Node> old = children;
+        setChildren(NO_CHILDREN,0);
+        NodeIndex rootIndex = getRootNode().index;
+        if(rootIndex!=null) {
+            for(Node child : old) rootIndex.removeTree(child,this);
+        }
+        beginLoad();
+        try {
+            for (Object o : from.getJSONArray("children")) {
+                JSONObject child = (JSONObject) o;
+                Node n = Registry.nodeFactory.create(child.getString("type"));
+                if(n==null) {
+                    logger.error("{}: Could not create type {}.",getAbsolutePath(),child.getString("type"));
+                    n = new Node();
+                }
+                addChild(n);
+                n.fromJSON(child);
             }
-            addChild(n);
-            n.fromJSON(child);
+        } finally {
+            endLoad();
+        }
+    }
+
+    /**
+     * Start loading a tree.  Every call must be followed by a call to {@link #endLoad()} on the same thread, even if
+     * the load fails.  Loads can be nested.  {@link #fromJSON(JSONObject)} does this for its children, so only
+     * readers that call fromJSON() once per node need to.
+     */
+    public static void beginLoad() {
+        loadDepth.get()[0]++;
+    }
+
+    /**
+     * Start loading a tree from a file whose assets are found with the given resolver.  See {@link #beginLoad()}.
+     * A nested load keeps the resolver of the outermost load.
+     * @param resolver finds the assets named in the file.
+     */
+    public static void beginLoad(AssetResolver resolver) {
+        beginLoad();
+        if(loadDepth.get()[0]==1) assetResolver.set(resolver);
+    }
+
+    /**
+     * Finish loading a tree.  When the outermost load ends, every reference waiting in
+     * {@link #resolveAfterLoad(Runnable)} is resolved, in the order they were read, and the asset resolver given to
+     * {@link #beginLoad(AssetResolver)} is dropped.
+     */
+    public static void endLoad() {
+        int [] depth = loadDepth.get();
+        if(depth[0]==0) throw new IllegalStateException("endLoad() without beginLoad().");
+        if(--depth[0]>0) return;
+
+        List<Runnable> list = afterLoad.get();
+        // a reference might load more nodes, so take them one at a time.
+        for(int i=0;i<list.size();++i) {
+            list.get(i).run();
         }
+        list.clear();
+        assetResolver.remove();
+    }
+
+    /**
+     * Resolve a reference to another node after the whole tree is loaded, when the node it points at is sure to
+     * exist.  Used by {@link #fromJSON(JSONObject)}.  If no load is in progress the reference is resolved now.
+     * @param resolve the code that finds the other node.
+     */
+    protected void resolveAfterLoad(Runnable resolve) {
+        if(loadDepth.get()[0]==0) resolve.run();
+        else afterLoad.get().add(resolve);
+    }
+
+    /**
+     * Find an asset named by {@link #fromJSON(JSONObject)}, for example a mesh or a texture.
+     * @param filename the asset name as it was saved.
+     * @return a path that {@link com.marginallyclever.convenience.helpers.FileHelper#open(String)} can read.
+     */
+    protected String resolveAsset(String filename) {
+        AssetResolver resolver = assetResolver.get();
+        return (resolver==null) ? filename : resolver.resolve(filename);
     }
 
     public boolean hasParent(Node beingMoved) {
@@ -476,32 +656,52 @@ public class Node {
         List<Node> toScan = new ArrayList<>();
         toScan.add(this);
         while(!toScan.isEmpty()) {
-            Node n = toScan.remove(0);
-            n.nodeID = UUID.randomUUID();
+            Node n = toScan.remove(toScan.size()-1);
+            n.changeNodeID(UUID.randomUUID());
             toScan.addAll(n.getChildren());
         }
     }
 
     /**
-     * Depth-first search for a node with a matching ID and type.  Type match can be any subclass.
+     * Find a node with a matching ID and type in this node or below.  Type match can be any subclass.
      * @param nodeID the ID to search for
      * @param type the type of node to search for
-     * @return the first node found with a matching ID and type, or null if none found.
+     * @return the node with a matching ID and type, or null if none found or the ID is not a valid UUID.
      * @param <T> the type of node to search for
      */
     public <T extends Node> T findNodeByID(String nodeID, Class<T> type) {
-        List<Node> toScan = new ArrayList<>();
-        toScan.add(this);
-        while(!toScan.isEmpty()) {
-            Node node = toScan.remove(0);
-            if(type.isInstance(node)) {
-                if(node.getNodeID().toString().equals(nodeID)) {
-                    return type.cast(node);
-                }
-            }
-            toScan.addAll(node.getChildren());
+        if(nodeID==null) return null;
+        try {
+            return findNodeByID(UUID.fromString(nodeID),type);
+        } catch(IllegalArgumentException e) {
+            return null;
         }
-        return null;
+    }
+
+    /**
+     * Find a node with a matching ID and type in this node or below.  Type match can be any subclass.
+     * @param nodeID the ID to search for
+     * @param type the type of node to search for
+     * @return the node with a matching ID and type, or null if none found.
+     * @param <T> the type of node to search for
+     */
+    public <T extends Node> T findNodeByID(UUID nodeID, Class<T> type) {
+        Node node = getIndex().getByID(nodeID);
+        if(!type.isInstance(node)) return null;
+        if(node!=this && !node.hasParent(this)) return null;
+        return type.cast(node);
+    }
+
+    /**
+     * Find every node of a type in this node or below.  Type match can be any subclass.
+     * @param type the type of node to search for
+     * @return the nodes, grouped by class.
+     * @param <T> the type of node to search for
+     */
+    public <T extends Node> List<T> findAllByType(Class<T> type) {
+        List<T> list = getIndex().getAll(type);
+        if(parent!=null) list.removeIf(n -> n!=this && !n.hasParent(this));
+        return list;
     }
 
     /**
@@ -516,6 +716,7 @@ public class Node {
         if(target==null) return null;
 
         String[] parts = target.split("/");
+        NodeIndex index = getIndex();
         Node node = this;
         if(parts[0].isEmpty()) {
             node = getRootNode();
@@ -526,7 +727,7 @@ public class Node {
             } else if(part.equals(".")) {
                 // do nothing
             } else {
-                node = node.findChild(part);
+                node = index.getChild(node,part);
             }
             if(node == null) {
                 return null;
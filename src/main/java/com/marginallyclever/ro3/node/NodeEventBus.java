@@ -0,0 +1,56 @@
+package com.marginallyclever.ro3.node;
+
+import javax.swing.event.EventListenerList;
+
+/**
+ * <p>{@link NodeEventBus} repeats the attach, detach, and rename events of every {@link Node} to one set of
+ * listeners.  Listeners that care about a whole tree register here once instead of registering with every
+ * {@link Node} in the tree.</p>
+ * <p>Events are sent for every {@link Node}, whether it is in the current scene or not.  Listeners that only care
+ * about one tree should check {@link Node#getRootNode()}.</p>
+ */
+public class NodeEventBus {
+    private static final EventListenerList listeners = new EventListenerList();
+
+    public static void addAttachListener(NodeAttachListener listener) {
+        listeners.add(NodeAttachListener.class,listener);
+    }
+
+    public static void removeAttachListener(NodeAttachListener listener) {
+        listeners.remove(NodeAttachListener.class,listener);
+    }
+
+    public static void addDetachListener(NodeDetachListener listener) {
+        listeners.add(NodeDetachListener.class,listener);
+    }
+
+    public static void removeDetachListener(NodeDetachListener listener) {
+        listeners.remove(NodeDetachListener.class,listener);
+    }
+
+    public static void addRenameListener(NodeRenameListener listener) {
+        listeners.add(NodeRenameListener.class,listener);
+    }
+
+    public static void removeRenameListener(NodeRenameListener listener) {
+        listeners.remove(NodeRenameListener.class,listener);
+    }
+
+    static void fireAttachEvent(Node child) {
+        for(NodeAttachListener listener : listeners.getListeners(NodeAttachListener.class)) {
+            listener.nodeAttached(child);
+        }
+    }
+
+    static void fireDetachEvent(Node child) {
+        for(NodeDetachListener listener : listeners.getListeners(NodeDetachListener.class)) {
+            listener.nodeDetached(child);
+        }
+    }
+
+    static void fireRenameEvent(Node child) {
+        for(NodeRenameListener listener : listeners.getListeners(NodeRenameListener.class)) {
+            listener.nodeRenamed(child);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.marginallyclever.ro3.node;
+
+import java.util.*;
+
+/**
+ * <p>{@link NodeIndex} finds the {@link Node}s of one tree by ID, by name, and by type without searching the
+ * tree.  Only the root of a tree has one.  It is built the first time it is needed and then kept up to date by
+ * {@link Node} as nodes are attached, detached, renamed, or given a new ID.</p>
+ * <p>Names are indexed per parent, so a path is found one step at a time with no search.  When siblings share a
+ * name the first one in the list of children wins, same as {@link Node#findChild(String)}.</p>
+ * <p>Like the rest of the tree, the index should only be used by the thread that owns the tree.</p>
+ */
+class NodeIndex {
+    private record ChildName(Node parent,String name) {}
+
+    private final Map<UUID,Node> byID = new HashMap<>();
+    private final Map<ChildName,Node> byName = new HashMap<>();
+    private final Map<Class<? extends Node>,Set<Node>> byType = new HashMap<>();
+
+    /**
+     * Index a whole tree.
+     * @param root the root of the tree.
+     */
+    NodeIndex(Node root) {
+        addTree(root);
+    }
+
+    /**
+     * Add a node and all its children.
+     */
+    void addTree(Node top) {
+        List<Node> toScan = new ArrayList<>();
+        toScan.add(top);
+        while(!toScan.isEmpty()) {
+            Node node = toScan.remove(toScan.size()-1);
+            add(node);
+            toScan.addAll(node.getChildren());
+        }
+    }
+
+    /**
+     * Remove a node and all its children.  Call after the node is gone from the children of its parent.
+     */
+    void removeTree(Node top,Node oldParent) {
+        List<Node> toScan = new ArrayList<>(top.getChildren());
+        removeID(top);
+        removeType(top);
+        removeName(top,oldParent,top.getName());
+        while(!toScan.isEmpty()) {
+            Node node = toScan.remove(toScan.size()-1);
+            removeID(node);
+            removeType(node);
+            // the whole subtree is leaving, no need to look for a sibling with the same name.
+            byName.remove(new ChildName(node.getParent(),node.getName()));
+            toScan.addAll(node.getChildren());
+        }
+    }
+
+    private void add(Node node) {
+        byID.put(node.getNodeID(),node);
+        byType.computeIfAbsent(node.getClass(),k->new LinkedHashSet<>()).add(node);
+        addName(node);
+    }
+
+    private void addName(Node node) {
+        Node parent = node.getParent();
+        if(parent==null) return;
+        ChildName key = new ChildName(parent,node.getName());
+        Node old = byName.get(key);
+        if(old==null || old==node) {
+            byName.put(key,node);
+            return;
+        }
+        List<Node> siblings = parent.getChildren();
+        if(siblings.indexOf(node)<siblings.indexOf(old)) byName.put(key,node);
+    }
+
+    private void removeName(Node node,Node parent,String name) {
+        if(parent==null) return;
+        ChildName key = new ChildName(parent,name);
+        if(byName.get(key)!=node) return;
+        byName.remove(key);
+        for(Node sibling : parent.getChildren()) {
+            if(sibling!=node && sibling.getName().equals(name)) {
+                byName.put(key,sibling);
+                return;
+            }
+        }
+    }
+
+    private void removeID(Node node) {
+        byID.remove(node.getNodeID(),node);
+    }
+
+    private void removeType(Node node) {
+        Set<Node> set = byType.get(node.getClass());
+        if(set==null) return;
+        set.remove(node);
+        if(set.isEmpty()) byType.remove(node.getClass());
+    }
+
+    /**
+     * Call after the name of a node changes.
+     */
+    void rename(Node node,String oldName) {
+        removeName(node,node.getParent(),oldName);
+        addName(node);
+    }
+
+    /**
+     * Call after the ID of a node changes.
+     */
+    void changeID(Node node,UUID oldID) {
+        if(oldID!=null) byID.remove(oldID,node);
+        byID.put(node.getNodeID(),node);
+    }
+
+    Node getByID(UUID id) {
+        return byID.get(id);
+    }
+
+    Node getChild(Node parent,String name) {
+        return byName.get(new ChildName(parent,name));
+    }
+
+    /**
+     * @param type the type to find.  Subclasses match.
+     * @return every node of that type, grouped by class.
+     */
+    <T extends Node> List<T> getAll(Class<T> type) {
+        List<T> list = new ArrayList<>();
+        for(Map.Entry<Class<? extends Node>,Set<Node>> entry : byType.entrySet()) {
+            if(!type.isAssignableFrom(entry.getKey())) continue;
+            for(Node node : entry.getValue()) {
+                list.add(type.cast(node));
+            }
+        }
+        return list;
+    }
+
+    int size() {
+        return byID.size();
+    }
+}
@@ -0,0 +1,142 @@
+package com.marginallyclever.ro3.node;
+
+import com.marginallyclever.ro3.Registry;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>{@link NodeSnapshot} is an immutable copy of a tree of {@link Node}s, used by copy, paste, and the undo
+ * history instead of a JSON String of the whole tree.</p>
+ * <p>Snapshots are shared.  Each node's own fields are stored once per distinct value, and equal subtrees are the
+ * same instance.  Copying the same assembly again, or copying it after changing one part, only adds the nodes that
+ * changed and the path from them to the root.</p>
+ */
+public final class NodeSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(NodeSnapshot.class);
+    private static final Map<NodeSnapshot,WeakReference<NodeSnapshot>> pool = new WeakHashMap<>();
+
+    private final String fields;
+    private final List<NodeSnapshot> children;
+    private final int hash;
+    private final long memoryEstimate;
+
+    private NodeSnapshot(String fields, List<NodeSnapshot> children) {
+        this.fields = fields;
+        this.children = children;
+        int h = fields.hashCode();
+        long size = 48L + 2L * fields.length() + 8L * children.size();
+        for(NodeSnapshot c : children) {
+            h = 31 * h + System.identityHashCode(c);
+        }
+        this.hash = h;
+        this.memoryEstimate = size;
+    }
+
+    /**
+     * Take a snapshot of a node and all its children.
+     * @param node the root of the tree.
+     * @return the snapshot.
+     */
+    public static NodeSnapshot of(Node node) {
+        List<NodeSnapshot> list = new ArrayList<>(node.getChildren().size());
+        for(Node child : node.getChildren()) {
+            list.add(of(child));
+        }
+        return intern(new NodeSnapshot(node.toJSON(false).toString(), List.copyOf(list)));
+    }
+
+    private static NodeSnapshot intern(NodeSnapshot snapshot) {
+        synchronized (pool) {
+            WeakReference<NodeSnapshot> ref = pool.get(snapshot);
+            NodeSnapshot found = (ref==null) ? null : ref.get();
+            if(found!=null) return found;
+            pool.put(snapshot,new WeakReference<>(snapshot));
+            return snapshot;
+        }
+    }
+
+    /**
+     * Build a new tree of {@link Node}s from this snapshot.  The new nodes have the same IDs as the originals.
+     * @return the root of the new tree.
+     */
+    public Node restore() {
+        Node.beginLoad();
+        try {
+            return restore(null);
+        } finally {
+            Node.endLoad();
+        }
+    }
+
+    private Node restore(Node parent) {
+        JSONObject json = new JSONObject(fields);
+        String type = json.optString("type","Node");
+        Node node = Registry.nodeFactory.create(type);
+        if(node==null) {
+            logger.error("Could not create type {}.",type);
+            node = new Node();
+        }
+        if(parent!=null) parent.addChild(node);
+        for(NodeSnapshot child : children) {
+            child.restore(node);
+        }
+        // fields last, as in Node.fromJSON(), so that a node can find its children.
+        node.fromJSON(json);
+        return node;
+    }
+
+    /**
+     * @return the same JSON that {@link Node#toJSON()} would have made when the snapshot was taken.
+     */
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject(fields);
+        JSONArray list = new JSONArray();
+        for(NodeSnapshot child : children) {
+            list.put(child.toJSON());
+        }
+        json.put("children",list);
+        return json;
+    }
+
+    public List<NodeSnapshot> getChildren() {
+        return children;
+    }
+
+    /**
+     * @return an estimate of the bytes used by this subtree.  Shared subtrees are counted every time they appear, so
+     * this is an upper bound.
+     */
+    public long getMemoryEstimate() {
+        long sum = memoryEstimate;
+        for(NodeSnapshot child : children) {
+            sum += child.getMemoryEstimate();
+        }
+        return sum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof NodeSnapshot other)) return false;
+        if(hash != other.hash || !fields.equals(other.fields)) return false;
+        if(children.size() != other.children.size()) return false;
+        // children are already shared, so the same subtree is the same instance.
+        for(int i=0;i<children.size();++i) {
+            if(children.get(i) != other.children.get(i)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,96 @@
+package com.marginallyclever.ro3.node;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p>{@link SceneChanges} lets other threads change the scene and read it without racing the thread that owns it.</p>
+ * <ul>
+ *     <li>{@link #submit(Runnable)} queues a change from any thread.  Queued changes run together, in the order they
+ *     were submitted, the next time the owner calls {@link #commit(Node)}.  That is one change set.</li>
+ *     <li>{@link #getSnapshot()} returns the {@link SceneSnapshot} made by the last commit, in O(1).  Readers keep
+ *     the snapshot as long as they need it.  It will not change while the user keeps editing.</li>
+ * </ul>
+ * <p>The {@link com.marginallyclever.ro3.apps.render.Viewport} commits once per frame, after the nodes are updated
+ * and before anything is drawn.  The mesh pass draws from that snapshot and picking tests against it, so both use the
+ * world transforms worked out once by the commit.  Changes made directly on the owning thread, such as edits from the
+ * Swing event thread, are in the next snapshot.</p>
+ */
+public class SceneChanges {
+    private static final Logger logger = LoggerFactory.getLogger(SceneChanges.class);
+
+    private record Change(Runnable edit,CompletableFuture<SceneSnapshot> done) {}
+
+    private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+    private final SceneSnapshot.Builder builder = new SceneSnapshot.Builder();
+    private volatile SceneSnapshot snapshot = SceneSnapshot.EMPTY;
+
+    /**
+     * Queue a change to the scene.  Safe to call from any thread.
+     * @param edit the change.  It runs on the thread that owns the scene.
+     * @return completes with the first snapshot that includes the change, or exceptionally if the change threw.
+     */
+    public CompletableFuture<SceneSnapshot> submit(Runnable edit) {
+        CompletableFuture<SceneSnapshot> done = new CompletableFuture<>();
+        pending.add(new Change(edit,done));
+        return done;
+    }
+
+    /**
+     * Run every queued change and take a new snapshot.  Must only be called by the thread that owns the scene.
+     * @param scene the root of the scene.
+     * @return the new snapshot, or the old one if nothing changed.
+     */
+    public SceneSnapshot commit(Node scene) {
+        List<Change> applied = new ArrayList<>();
+        Change change;
+        while((change = pending.poll())!=null) {
+            try {
+                change.edit().run();
+                applied.add(change);
+            } catch(Exception e) {
+                logger.error("Scene change failed.",e);
+                change.done().completeExceptionally(e);
+            }
+        }
+
+        SceneSnapshot next = snapshot.next(scene,builder);
+        snapshot = next;
+        for(Change c : applied) {
+            c.done().complete(next);
+        }
+        return next;
+    }
+
+    /**
+     * @return the snapshot made by the last {@link #commit(Node)}, or {@link SceneSnapshot#EMPTY} before the first.
+     */
+    public SceneSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The last snapshot if it is of the given scene, otherwise a new one.  Must only be called by the thread that owns
+     * the scene.
+     * @param scene the root of the scene.
+     * @return a snapshot of the scene.  It may be one frame old if the scene was changed since the last commit.
+     */
+    public SceneSnapshot getSnapshot(Node scene) {
+        SceneSnapshot last = snapshot;
+        if(last.getRoot()!=null && last.getRoot().getNode()==scene) return last;
+        return SceneSnapshot.of(scene);
+    }
+
+    /**
+     * @return the version of the last snapshot.  It goes up by one for every commit that changed the scene.
+     */
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+}
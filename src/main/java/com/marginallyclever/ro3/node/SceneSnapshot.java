@@ -0,0 +1,244 @@
+package com.marginallyclever.ro3.node;
+
+import com.marginallyclever.ro3.node.nodes.Pose;
+
+import javax.vecmath.Matrix4d;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * <p>{@link SceneSnapshot} is an immutable view of a tree of {@link Node}s at one moment: the shape of the tree, the
+ * names, and the local and world transform of every {@link Pose}.  Any number of threads can read one snapshot
+ * while the scene keeps changing.</p>
+ * <p>Snapshots are made by {@link SceneChanges}.  A new snapshot shares every {@link Entry} that did not change
+ * since the one before it, so keeping many of them is cheap.  The version goes up by one every time the scene
+ * changes.</p>
+ * <p>Each {@link Entry} points at its live {@link Node} so that readers can tell what type it is and find it again.
+ * Other fields of the node may be changing and should only be read on the thread that owns the scene.</p>
+ */
+public final class SceneSnapshot {
+    /**
+     * Version 0, with no root.
+     */
+    public static final SceneSnapshot EMPTY = new SceneSnapshot(0,null);
+
+    private final long version;
+    private final Entry root;
+
+    /**
+     * One {@link Node} in a {@link SceneSnapshot}.
+     */
+    public static final class Entry {
+        private final Node node;
+        private final String name;
+        private final Matrix4d local;
+        private final Matrix4d world;
+        private final List<Entry> children;
+
+        private Entry(Node node,String name,Matrix4d local,Matrix4d world,List<Entry> children) {
+            this.node = node;
+            this.name = name;
+            this.local = local;
+            this.world = world;
+            this.children = children;
+        }
+
+        public Node getNode() {
+            return node;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return a copy of the local transform, or null if the node is not a {@link Pose}.
+         */
+        public Matrix4d getLocal() {
+            return local==null ? null : new Matrix4d(local);
+        }
+
+        /**
+         * @return a copy of the world transform, or null if the node is not a {@link Pose}.
+         */
+        public Matrix4d getWorld() {
+            return world==null ? null : new Matrix4d(world);
+        }
+
+        /**
+         * Same as {@link #getWorld()} but writes into an existing matrix.
+         * @param result set to the world transform, or to identity if the node is not a {@link Pose}.
+         */
+        public void getWorld(Matrix4d result) {
+            if(world==null) result.setIdentity();
+            else result.set(world);
+        }
+
+        public List<Entry> getChildren() {
+            return children;
+        }
+    }
+
+    private SceneSnapshot(long version,Entry root) {
+        this.version = version;
+        this.root = root;
+    }
+
+    /**
+     * Take a snapshot of a tree without sharing anything.  Must be called on the thread that owns the tree.
+     * @param node the root of the tree.
+     * @return the snapshot, version 0.
+     */
+    public static SceneSnapshot of(Node node) {
+        return new SceneSnapshot(0,new Builder().build(null,node,null,0));
+    }
+
+    /**
+     * Take a snapshot that shares every unchanged {@link Entry} with the previous one.  Must be called on the thread
+     * that owns the tree.
+     * @param node the root of the tree.
+     * @return the previous snapshot if nothing changed, otherwise a new snapshot with the next version.
+     */
+    SceneSnapshot next(Node node,Builder builder) {
+        Entry newRoot = builder.build(root,node,null,0);
+        return (newRoot==root) ? this : new SceneSnapshot(version+1,newRoot);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the root, or null for {@link #EMPTY}.
+     */
+    public Entry getRoot() {
+        return root;
+    }
+
+    /**
+     * Visit every {@link Entry} depth-first, parents before children.
+     * @param visitor called once for each entry.
+     */
+    public void forEach(Consumer<Entry> visitor) {
+        if(root!=null) visit(root,visitor);
+    }
+
+    private static void visit(Entry entry,Consumer<Entry> visitor) {
+        visitor.accept(entry);
+        for(Entry child : entry.children) {
+            visit(child,visitor);
+        }
+    }
+
+    /**
+     * @param type the type of node to find.  Subclasses match.
+     * @return every entry whose node is of the given type, depth-first.
+     */
+    public List<Entry> findAll(Class<? extends Node> type) {
+        List<Entry> list = new ArrayList<>();
+        forEach(e->{
+            if(type.isInstance(e.node)) list.add(e);
+        });
+        return list;
+    }
+
+    /**
+     * @param node the node to find.
+     * @return the entry for the node, or null if it was not in the tree when the snapshot was taken.
+     */
+    public Entry find(Node node) {
+        List<Entry> toScan = new ArrayList<>();
+        if(root!=null) toScan.add(root);
+        while(!toScan.isEmpty()) {
+            Entry e = toScan.remove(toScan.size()-1);
+            if(e.node==node) return e;
+            toScan.addAll(e.children);
+        }
+        return null;
+    }
+
+    /**
+     * Builds {@link Entry}s and reuses the old ones when nothing changed.  Scratch space is kept per depth, so a
+     * tree that did not change allocates nothing.
+     */
+    static class Builder {
+        private final List<Matrix4d> localScratch = new ArrayList<>();
+        private final List<Matrix4d> worldScratch = new ArrayList<>();
+        private final List<List<Entry>> childScratch = new ArrayList<>();
+
+        private <T> T scratch(List<T> list,int depth,Supplier<T> maker) {
+            while(list.size()<=depth) list.add(maker.get());
+            return list.get(depth);
+        }
+
+        /**
+         * @param previous the entry for this node in the previous snapshot, or null.
+         * @param node the node.
+         * @param parentWorld the world transform of the nearest {@link Pose} above this node, or null if there is none.
+         * @param depth the depth of this node in the tree.
+         */
+        Entry build(Entry previous,Node node,Matrix4d parentWorld,int depth) {
+            if(previous!=null && previous.node!=node) previous = null;
+
+            Matrix4d local = null;
+            Matrix4d world = parentWorld;
+            if(node instanceof Pose pose) {
+                local = scratch(localScratch,depth,Matrix4d::new);
+                local.set(pose.getLocal());
+                world = scratch(worldScratch,depth,Matrix4d::new);
+                if(parentWorld==null) world.set(local);
+                else world.mul(parentWorld,local);
+            }
+
+            List<Node> nodes = node.getChildren();
+            List<Entry> built = scratch(childScratch,depth,ArrayList::new);
+            built.clear();
+            List<Entry> oldChildren = (previous==null) ? List.of() : previous.children;
+            for(int i=0;i<nodes.size();++i) {
+                Node child = nodes.get(i);
+                Entry old = (i<oldChildren.size() && oldChildren.get(i).node==child) ? oldChildren.get(i) : findOld(oldChildren,child);
+                built.add(build(old,child,world,depth+1));
+            }
+
+            if(previous!=null
+                    && Objects.equals(previous.name,node.getName())
+                    && sameMatrix(previous.local,local)
+                    && sameMatrix(previous.world,(local==null) ? null : world)
+                    && sameEntries(previous.children,built)) {
+                built.clear();
+                return previous;
+            }
+
+            List<Entry> children = built.isEmpty() ? List.of() : Collections.unmodifiableList(new ArrayList<>(built));
+            built.clear();
+            return new Entry(node,node.getName(),
+                    (local==null) ? null : new Matrix4d(local),
+                    (local==null) ? null : new Matrix4d(world),
+                    children);
+        }
+
+        private static Entry findOld(List<Entry> oldChildren,Node child) {
+            for(Entry e : oldChildren) {
+                if(e.node==child) return e;
+            }
+            return null;
+        }
+
+        private static boolean sameMatrix(Matrix4d a,Matrix4d b) {
+            if(a==null || b==null) return a==b;
+            return a.equals(b);
+        }
+
+        private static boolean sameEntries(List<Entry> a,List<Entry> b) {
+            if(a.size()!=b.size()) return false;
+            for(int i=0;i<a.size();++i) {
+                if(a.get(i)!=b.get(i)) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.marginallyclever.convenience.PathCalculator;
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.HingeJoint;
+import com.marginallyclever.ro3.node.nodes.Pose;
+
+import javax.vecmath.Matrix4d;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>The layout shared by {@link MotionRecorder} and {@link MotionPlayer}.</p>
+ * <ul>
+ *     <li>Header: the {@link #MAGIC} bytes, a version int, the keyframe interval as an int, then the number of
+ *     channels and for each channel its kind as a byte and the path from the scene to its node as UTF.</li>
+ *     <li>Frames: {@link #FRAME_KEY} or {@link #FRAME_DELTA}, then the time and every value.  Each is the bits of the
+ *     double XOR the bits of the same number in the frame before, written as an unsigned variable length long.  In
+ *     a keyframe there is no frame before, so the bits are written whole.  A value that did not change costs one
+ *     byte.</li>
+ *     <li>{@link #FRAME_END}, then the index: the number of frames as a long, the number of keyframes as an int,
+ *     and for each keyframe its time as a double, its frame number as a long and its offset in the file as a
+ *     long.</li>
+ *     <li>Trailer: the offset of {@link #FRAME_END} as a long, then the {@link #MAGIC} bytes again.</li>
+ * </ul>
+ */
+final class MotionFormat {
+    static final byte[] MAGIC = {'R','O','3','M'};
+    static final int VERSION = 1;
+    static final int TRAILER_SIZE = 8 + 4;
+
+    static final int FRAME_END = 0;
+    static final int FRAME_KEY = 1;
+    static final int FRAME_DELTA = 2;
+
+    /**
+     * A {@link HingeJoint}: angle, velocity and acceleration.  A {@link com.marginallyclever.ro3.node.nodes.Motor}
+     * drives its hinge through these, so they are also the motor commands.
+     */
+    static final int KIND_HINGE = 0;
+    /**
+     * A {@link Pose} that has no Pose above it, so its local matrix is its world matrix: the top three rows.
+     */
+    static final int KIND_POSE = 1;
+
+    record Channel(int kind,String path) {
+        int width() {
+            return MotionFormat.width(kind);
+        }
+    }
+
+    private MotionFormat() {}
+
+    static int width(int kind) {
+        return switch(kind) {
+            case KIND_HINGE -> 3;
+            case KIND_POSE -> 12;
+            default -> throw new IllegalArgumentException("Unknown channel kind "+kind);
+        };
+    }
+
+    /**
+     * @return a channel for every {@link HingeJoint} and every top {@link Pose} in the scene, depth first.
+     */
+    static List<Channel> findChannels(Node scene,List<Node> nodes) {
+        List<Channel> channels = new ArrayList<>();
+        List<Node> toScan = new ArrayList<>();
+        toScan.add(scene);
+        while(!toScan.isEmpty()) {
+            Node node = toScan.remove(toScan.size()-1);
+            if(node instanceof HingeJoint) {
+                channels.add(new Channel(KIND_HINGE,getPath(scene,node)));
+                nodes.add(node);
+            } else if(node instanceof Pose pose && isTopPose(scene,pose)) {
+                channels.add(new Channel(KIND_POSE,getPath(scene,node)));
+                nodes.add(node);
+            }
+            List<Node> children = node.getChildren();
+            for(int i=children.size()-1;i>=0;--i) toScan.add(children.get(i));
+        }
+        return channels;
+    }
+
+    private static boolean isTopPose(Node scene,Pose pose) {
+        if(pose==scene) return true;
+        Pose above = pose.findParent(Pose.class);
+        // a Pose above the scene does not move with the recording.
+        return above==null || (above!=scene && !above.hasParent(scene));
+    }
+
+    static String getPath(Node scene,Node node) {
+        return (node==scene) ? "." : PathCalculator.getRelativePath(scene,node);
+    }
+
+    /**
+     * Read the values of one channel.
+     */
+    static void get(Node node,int kind,double [] values,int offset) {
+        if(kind==KIND_HINGE) {
+            HingeJoint hinge = (HingeJoint)node;
+            values[offset  ] = hinge.getAngle();
+            values[offset+1] = hinge.getVelocity();
+            values[offset+2] = hinge.getAcceleration();
+        } else {
+            Matrix4d m = ((Pose)node).getLocal();
+            values[offset   ] = m.m00;  values[offset+ 1] = m.m01;  values[offset+ 2] = m.m02;  values[offset+ 3] = m.m03;
+            values[offset+ 4] = m.m10;  values[offset+ 5] = m.m11;  values[offset+ 6] = m.m12;  values[offset+ 7] = m.m13;
+            values[offset+ 8] = m.m20;  values[offset+ 9] = m.m21;  values[offset+10] = m.m22;  values[offset+11] = m.m23;
+        }
+    }
+
+    /**
+     * Write the values of one channel.
+     */
+    static void set(Node node,int kind,double [] values,int offset) {
+        if(kind==KIND_HINGE) {
+            HingeJoint hinge = (HingeJoint)node;
+            hinge.setAngle(values[offset]);
+            hinge.setVelocity(values[offset+1]);
+            hinge.setAcceleration(values[offset+2]);
+            hinge.updateAxle();
+        } else {
+            Matrix4d m = ((Pose)node).getLocal();
+            m.m00 = values[offset   ];  m.m01 = values[offset+ 1];  m.m02 = values[offset+ 2];  m.m03 = values[offset+ 3];
+            m.m10 = values[offset+ 4];  m.m11 = values[offset+ 5];  m.m12 = values[offset+ 6];  m.m13 = values[offset+ 7];
+            m.m20 = values[offset+ 8];  m.m21 = values[offset+ 9];  m.m22 = values[offset+10];  m.m23 = values[offset+11];
+            m.m30 = 0;                  m.m31 = 0;                  m.m32 = 0;                  m.m33 = 1;
+        }
+    }
+
+    /**
+     * Write an unsigned variable length long into a buffer.
+     * @return the position after the last byte written.
+     */
+    static int writeVarLong(byte [] buffer,int position,long value) {
+        while((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte)value;
+        return position;
+    }
+
+    /**
+     * Reads from a buffer, one value at a time.
+     */
+    static final class Cursor {
+        final byte [] buffer;
+        int position;
+        final int limit;
+
+        Cursor(byte [] buffer,int position,int limit) {
+            this.buffer = buffer;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        boolean hasMore() {
+            return position<limit;
+        }
+
+        int readByte() throws IOException {
+            if(position>=limit) throw new IOException("Unexpected end of motion file.");
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for(int shift=0;shift<64;shift+=7) {
+                int b = readByte();
+                value |= (long)(b & 0x7F) << shift;
+                if((b & 0x80)==0) return value;
+            }
+            throw new IOException("Bad variable length number in motion file.");
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.HingeJoint;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>{@link MotionPlayer} reads a file made by {@link MotionRecorder} and puts the scene back the way it was at any
+ * recorded moment.</p>
+ * <p>{@link #seek(double)} finds the keyframe at or before the time with a binary search of the index, then reads
+ * forward to the last frame at or before the time.  At most one keyframe interval is read, no matter how long the
+ * recording is.  {@link #next()} steps forward one frame at a time.</p>
+ * <p>{@link #bind(Node)} finds the recorded nodes in a scene by their paths and {@link #apply()} sets them to the
+ * current frame.  Nodes that cannot be found are skipped.</p>
+ */
+public class MotionPlayer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MotionPlayer.class);
+
+    private final RandomAccessFile file;
+    private final List<MotionFormat.Channel> channels = new ArrayList<>();
+    private final int [] channelOffset;
+    private final double [] values;
+    private final long [] bits;
+    private final Node [] bound;
+
+    private final long frameCount;
+    private final double [] keyTime;
+    private final long [] keyFrame;
+    private final long [] keyOffset;
+    private final long dataEnd;
+    private final double endTime;
+
+    private byte [] block = new byte[0];
+    private MotionFormat.Cursor cursor;
+    private int currentBlock = -1;
+    private long frame = -1;
+    private long timeBits;
+
+    public MotionPlayer(File path) throws IOException {
+        file = new RandomAccessFile(path,"r");
+        try {
+            byte [] magic = new byte[MotionFormat.MAGIC.length];
+            file.readFully(magic);
+            if(!Arrays.equals(magic,MotionFormat.MAGIC)) throw new IOException("Not a motion file.");
+            int version = file.readInt();
+            if(version!=MotionFormat.VERSION) throw new IOException("Unknown motion file version "+version);
+            file.readInt();  // keyframe interval, for information only.
+            int count = file.readInt();
+            int size = 0;
+            channelOffset = new int[count];
+            for(int i=0;i<count;++i) {
+                int kind = file.readUnsignedByte();
+                MotionFormat.width(kind);
+                channels.add(new MotionFormat.Channel(kind,file.readUTF()));
+                channelOffset[i] = size;
+                size += channels.get(i).width();
+            }
+            values = new double[size];
+            bits = new long[size];
+            bound = new Node[count];
+            long headerEnd = file.getFilePointer();
+
+            Index index = readIndex();
+            if(index==null) {
+                logger.warn("{} has no index, probably because the recording did not finish.  Scanning.",path);
+                index = scan(headerEnd);
+            }
+            frameCount = index.frameCount;
+            keyTime = index.time.stream().mapToDouble(Double::doubleValue).toArray();
+            keyFrame = index.frame.stream().mapToLong(Long::longValue).toArray();
+            keyOffset = index.offset.stream().mapToLong(Long::longValue).toArray();
+            dataEnd = index.dataEnd;
+
+            if(frameCount>0) {
+                seekFrame(frameCount-1);
+                endTime = getTime();
+                seekFrame(0);
+            } else {
+                endTime = Double.NaN;
+            }
+        } catch(IOException|RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private static class Index {
+        long frameCount;
+        long dataEnd;
+        final List<Double> time = new ArrayList<>();
+        final List<Long> frame = new ArrayList<>();
+        final List<Long> offset = new ArrayList<>();
+    }
+
+    /**
+     * @return the index at the end of the file, or null if it is not there.
+     */
+    private Index readIndex() throws IOException {
+        long length = file.length();
+        if(length<MotionFormat.TRAILER_SIZE) return null;
+        file.seek(length-MotionFormat.TRAILER_SIZE);
+        long indexOffset = file.readLong();
+        byte [] magic = new byte[MotionFormat.MAGIC.length];
+        file.readFully(magic);
+        if(!Arrays.equals(magic,MotionFormat.MAGIC) || indexOffset<0 || indexOffset>=length-MotionFormat.TRAILER_SIZE) return null;
+
+        byte [] bytes = new byte[(int)(length-MotionFormat.TRAILER_SIZE-indexOffset)];
+        file.seek(indexOffset);
+        file.readFully(bytes);
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+        if(data.readUnsignedByte()!=MotionFormat.FRAME_END) return null;
+        Index index = new Index();
+        index.dataEnd = indexOffset;
+        index.frameCount = data.readLong();
+        int n = data.readInt();
+        for(int i=0;i<n;++i) {
+            index.time.add(data.readDouble());
+            index.frame.add(data.readLong());
+            index.offset.add(data.readLong());
+        }
+        return index;
+    }
+
+    /**
+     * Rebuild the index by reading every frame.  A frame cut short at the end of the file is ignored.
+     */
+    private Index scan(long headerEnd) throws IOException {
+        Index index = new Index();
+        file.seek(headerEnd);
+        InputStream in = new BufferedInputStream(Channels.newInputStream(file.getChannel()));
+        long offset = headerEnd;
+        long last = headerEnd;
+        long timeBits = 0;
+        try {
+            while(true) {
+                int type = in.read();
+                if(type<0 || type==MotionFormat.FRAME_END) break;
+                long start = offset;
+                offset++;
+                long [] read = new long[1];
+                offset += readVarLong(in,read);
+                long t = (type==MotionFormat.FRAME_KEY) ? read[0] : read[0]^timeBits;
+                for(int i=0;i<values.length;++i) offset += readVarLong(in,read);
+                timeBits = t;
+                if(type==MotionFormat.FRAME_KEY) {
+                    index.time.add(Double.longBitsToDouble(t));
+                    index.frame.add(index.frameCount);
+                    index.offset.add(start);
+                }
+                index.frameCount++;
+                last = offset;
+            }
+        } catch(EOFException e) {
+            // the last frame was cut short.
+        }
+        index.dataEnd = last;
+        return index;
+    }
+
+    private static int readVarLong(InputStream in,long [] result) throws IOException {
+        long value = 0;
+        for(int shift=0, n=1;shift<64;shift+=7, n++) {
+            int b = in.read();
+            if(b<0) throw new EOFException();
+            value |= (long)(b & 0x7F) << shift;
+            if((b & 0x80)==0) {
+                result[0] = value;
+                return n;
+            }
+        }
+        throw new IOException("Bad variable length number in motion file.");
+    }
+
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * @return the path from the recorded scene to the node of a channel.
+     */
+    public String getChannelPath(int channel) {
+        return channels.get(channel).path();
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return the time of the first frame, or NaN if there are no frames.
+     */
+    public double getStartTime() {
+        return keyTime.length==0 ? Double.NaN : keyTime[0];
+    }
+
+    /**
+     * @return the time of the last frame, or NaN if there are no frames.
+     */
+    public double getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return the current frame number, or -1 if there are no frames.
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return the time of the current frame.
+     */
+    public double getTime() {
+        return Double.longBitsToDouble(timeBits);
+    }
+
+    /**
+     * @param channel the channel to read.
+     * @param result filled with the values of the channel in the current frame.  Three for a
+     * {@link HingeJoint} (angle, velocity, acceleration) and twelve for a {@link Pose} (the top three rows).
+     */
+    public void getValues(int channel,double [] result) {
+        System.arraycopy(values,channelOffset[channel],result,0,channels.get(channel).width());
+    }
+
+    /**
+     * Go to the last frame at or before a time.  Before the first frame, go to the first frame.
+     * @param time the time to find.
+     * @return the time of the frame found.
+     * @throws IOException if the file cannot be read.
+     */
+    public double seek(double time) throws IOException {
+        if(frameCount==0) return Double.NaN;
+        int i = findLast(keyTime,time);
+        loadBlock(i);
+        decodeFrame();
+        while(cursor.hasMore() && peekTime()<=time) decodeFrame();
+        return getTime();
+    }
+
+    /**
+     * Go to a frame by number.
+     * @param target from 0 to {@link #getFrameCount()}-1.
+     * @throws IOException if the file cannot be read.
+     */
+    public void seekFrame(long target) throws IOException {
+        if(target<0 || target>=frameCount) throw new IndexOutOfBoundsException("frame "+target+" of "+frameCount);
+        int i = findLast(keyFrame,target);
+        loadBlock(i);
+        decodeFrame();
+        while(frame<target) decodeFrame();
+    }
+
+    /**
+     * Step to the next frame.
+     * @return false if the current frame is the last.
+     * @throws IOException if the file cannot be read.
+     */
+    public boolean next() throws IOException {
+        if(frame+1>=frameCount) return false;
+        if(!cursor.hasMore()) loadBlock(currentBlock+1);
+        decodeFrame();
+        return true;
+    }
+
+    /**
+     * @return the index of the last entry at or before the key, or 0 if there is none.
+     */
+    private static int findLast(double [] list,double key) {
+        int lo = 0, hi = list.length-1;
+        while(lo<hi) {
+            int mid = (lo+hi+1)>>>1;
+            if(list[mid]<=key) lo = mid;
+            else hi = mid-1;
+        }
+        return lo;
+    }
+
+    private static int findLast(long [] list,long key) {
+        int lo = 0, hi = list.length-1;
+        while(lo<hi) {
+            int mid = (lo+hi+1)>>>1;
+            if(list[mid]<=key) lo = mid;
+            else hi = mid-1;
+        }
+        return lo;
+    }
+
+    /**
+     * Read the frames from one keyframe up to the next.
+     */
+    private void loadBlock(int i) throws IOException {
+        long start = keyOffset[i];
+        long end = (i+1<keyOffset.length) ? keyOffset[i+1] : dataEnd;
+        int size = (int)(end-start);
+        if(block.length<size) block = new byte[size];
+        file.seek(start);
+        file.readFully(block,0,size);
+        cursor = new MotionFormat.Cursor(block,0,size);
+        currentBlock = i;
+        frame = keyFrame[i]-1;
+    }
+
+    /**
+     * @return the time of the next frame without moving to it.
+     */
+    private double peekTime() throws IOException {
+        int mark = cursor.position;
+        int type = cursor.readByte();
+        long t = cursor.readVarLong();
+        cursor.position = mark;
+        return Double.longBitsToDouble(type==MotionFormat.FRAME_KEY ? t : t^timeBits);
+    }
+
+    private void decodeFrame() throws IOException {
+        int type = cursor.readByte();
+        boolean isKey = (type==MotionFormat.FRAME_KEY);
+        if(!isKey && type!=MotionFormat.FRAME_DELTA) throw new IOException("Bad frame type "+type);
+        long t = cursor.readVarLong();
+        timeBits = isKey ? t : t^timeBits;
+        for(int i=0;i<values.length;++i) {
+            long v = cursor.readVarLong();
+            bits[i] = isKey ? v : v^bits[i];
+            values[i] = Double.longBitsToDouble(bits[i]);
+        }
+        frame++;
+    }
+
+    /**
+     * Find the recorded nodes in a scene.
+     * @param scene the node that was recorded.  It does not have to be the same instance, only the same shape.
+     * @return the number of channels that were found.
+     */
+    public int bind(Node scene) {
+        int found = 0;
+        for(int i=0;i<channels.size();++i) {
+            MotionFormat.Channel c = channels.get(i);
+            Node node = scene.get(c.path());
+            boolean fits = (c.kind()==MotionFormat.KIND_HINGE) ? node instanceof HingeJoint : node instanceof Pose;
+            bound[i] = fits ? node : null;
+            if(fits) found++;
+            else logger.warn("No {} at {}.",c.kind()==MotionFormat.KIND_HINGE ? "HingeJoint" : "Pose",c.path());
+        }
+        return found;
+    }
+
+    /**
+     * Set every bound node to the current frame.
+     */
+    public void apply() {
+        if(frame<0) return;
+        for(int i=0;i<bound.length;++i) {
+            if(bound[i]!=null) MotionFormat.set(bound[i],channels.get(i).kind(),values,channelOffset[i]);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,148 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.marginallyclever.ro3.node.Node;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>{@link MotionRecorder} writes what a scene does over time to a compact binary file, to be played back with
+ * {@link MotionPlayer}.  Every call to {@link #record(double)} saves one frame: the angle, velocity and acceleration
+ * of every {@link com.marginallyclever.ro3.node.nodes.HingeJoint} and the local matrix of every top
+ * {@link com.marginallyclever.ro3.node.nodes.Pose}.  See {@link MotionFormat} for the layout.</p>
+ * <p>The nodes to record are found once, when the recorder is made.  Nodes added later are not recorded.</p>
+ * <p>Most frames only store how each value changed since the frame before.  Every few frames a keyframe stores the
+ * values whole, so that a player can start from there.  {@link #close()} writes the index of keyframes; a file
+ * that was never closed can still be played, only slower to open.</p>
+ */
+public class MotionRecorder implements Closeable {
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 256;
+
+    private record Keyframe(double time,long frame,long offset) {}
+
+    private final OutputStream out;
+    private final int keyframeInterval;
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<MotionFormat.Channel> channels;
+    private final double [] values;
+    private final long [] previous;
+    private final byte [] frame;
+    private final List<Keyframe> keyframes = new ArrayList<>();
+    private long offset = 0;
+    private long frameCount = 0;
+    private long previousTime;
+    private double lastTime = Double.NEGATIVE_INFINITY;
+    private boolean closed = false;
+
+    public MotionRecorder(Node scene,File file) throws IOException {
+        this(scene,new FileOutputStream(file),DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * @param scene the top of the tree to record.
+     * @param out the destination.  It is closed by {@link #close()}.
+     * @param keyframeInterval the number of frames from one keyframe to the next.  More makes a smaller file and
+     *                         slower seeking.
+     * @throws IOException if the header cannot be written.
+     */
+    public MotionRecorder(Node scene,OutputStream out,int keyframeInterval) throws IOException {
+        if(keyframeInterval<1) throw new IllegalArgumentException("keyframeInterval must be at least 1.");
+        this.out = new BufferedOutputStream(out);
+        this.keyframeInterval = keyframeInterval;
+        this.channels = MotionFormat.findChannels(scene,nodes);
+
+        int size = 0;
+        for(MotionFormat.Channel c : channels) size += c.width();
+        values = new double[size];
+        previous = new long[size];
+        // a type byte, then the time and each value at no more than 10 bytes each.
+        frame = new byte[1+10*(size+1)];
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(header);
+        data.write(MotionFormat.MAGIC);
+        data.writeInt(MotionFormat.VERSION);
+        data.writeInt(keyframeInterval);
+        data.writeInt(channels.size());
+        for(MotionFormat.Channel c : channels) {
+            data.writeByte(c.kind());
+            data.writeUTF(c.path());
+        }
+        write(header.toByteArray(),header.size());
+    }
+
+    private void write(byte [] bytes,int length) throws IOException {
+        out.write(bytes,0,length);
+        offset += length;
+    }
+
+    /**
+     * @return the number of nodes being recorded.
+     */
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Save the state of the scene as one frame.
+     * @param time the time of the frame, in seconds.  Must not be less than the time of the frame before.
+     * @throws IOException if the write fails.
+     */
+    public void record(double time) throws IOException {
+        if(closed) throw new IOException("Recorder is closed.");
+        if(!(time>=lastTime)) throw new IllegalArgumentException("time must not go backwards.");
+        lastTime = time;
+
+        int k = 0;
+        for(int i=0;i<channels.size();++i) {
+            MotionFormat.get(nodes.get(i),channels.get(i).kind(),values,k);
+            k += channels.get(i).width();
+        }
+
+        boolean isKey = (frameCount % keyframeInterval)==0;
+        if(isKey) keyframes.add(new Keyframe(time,frameCount,offset));
+
+        int p = 0;
+        frame[p++] = (byte)(isKey ? MotionFormat.FRAME_KEY : MotionFormat.FRAME_DELTA);
+        long bits = Double.doubleToLongBits(time);
+        p = MotionFormat.writeVarLong(frame,p,isKey ? bits : bits^previousTime);
+        previousTime = bits;
+        for(int i=0;i<values.length;++i) {
+            bits = Double.doubleToLongBits(values[i]);
+            p = MotionFormat.writeVarLong(frame,p,isKey ? bits : bits^previous[i]);
+            previous[i] = bits;
+        }
+        write(frame,p);
+        frameCount++;
+    }
+
+    /**
+     * Write the index and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) return;
+        closed = true;
+
+        long indexOffset = offset;
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(tail);
+        data.writeByte(MotionFormat.FRAME_END);
+        data.writeLong(frameCount);
+        data.writeInt(keyframes.size());
+        for(Keyframe key : keyframes) {
+            data.writeDouble(key.time());
+            data.writeLong(key.frame());
+            data.writeLong(key.offset());
+        }
+        data.writeLong(indexOffset);
+        data.write(MotionFormat.MAGIC);
+        write(tail.toByteArray(),tail.size());
+        out.close();
+    }
+}
@@ -0,0 +1,185 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.node.Node;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.marginallyclever.ro3.node.io.SceneBinaryWriter.*;
+
+/**
+ * <p>{@link SceneBinaryReader} reads a tree of {@link Node}s written by {@link SceneBinaryWriter}.  Each node is
+ * created and attached to its parent, then its children are read, then it is given its fields.  This is the same
+ * order as {@link Node#fromJSON(JSONObject)}, where subclasses read their own fields after super.fromJSON() has made
+ * their children.</p>
+ */
+public class SceneBinaryReader {
+    private static final Logger logger = LoggerFactory.getLogger(SceneBinaryReader.class);
+    private final List<String> strings = new ArrayList<>();
+
+    public SceneBinaryReader() {
+        super();
+    }
+
+    /**
+     * @param header at least the first {@link SceneBinaryWriter#MAGIC}.length bytes of a file.
+     * @return true if the bytes are the start of a binary scene.
+     */
+    public static boolean isBinaryScene(byte[] header) {
+        return header.length >= MAGIC.length && Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC);
+    }
+
+    /**
+     * Read a tree and apply the root of the file to an existing node.
+     * @param in the source.  It is not closed.
+     * @param root the node that receives the fields and children of the root in the file.
+     * @throws IOException if the read fails or the data is malformed.
+     */
+    public void readInto(InputStream in, Node root) throws IOException {
+        DataInputStream data = start(in);
+        Node.beginLoad();
+        try {
+            readNode(data, null, root);
+        } finally {
+            Node.endLoad();
+        }
+    }
+
+    /**
+     * Read a tree.  The type of the root comes from the file.
+     * @param in the source.  It is not closed.
+     * @return the root of the tree.
+     * @throws IOException if the read fails or the data is malformed.
+     */
+    public Node read(InputStream in) throws IOException {
+        DataInputStream data = start(in);
+        Node.beginLoad();
+        try {
+            return readNode(data, null, null);
+        } finally {
+            Node.endLoad();
+        }
+    }
+
+    private DataInputStream start(InputStream in) throws IOException {
+        strings.clear();
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if(!isBinaryScene(magic)) throw new IOException("Not a binary scene.");
+        int version = data.readInt();
+        if(version > VERSION) throw new IOException("Binary scene version "+version+" is newer than "+VERSION+".");
+        return data;
+    }
+
+    private Node readNode(DataInputStream data, Node parent, Node target) throws IOException {
+        Object value = readValue(data);
+        if(!(value instanceof JSONObject fields)) throw new IOException("Expected node fields.");
+
+        Node node = target;
+        if(node==null) {
+            String type = fields.optString("type","Node");
+            node = Registry.nodeFactory.create(type);
+            if(node==null) {
+                logger.error("Could not create type {}.",type);
+                node = new Node();
+            }
+        }
+        if(parent!=null) parent.addChild(node);
+
+        int count = readVarInt(data);
+        for(int i=0;i<count;++i) {
+            readNode(data, node, null);
+        }
+        node.fromJSON(fields);
+        return node;
+    }
+
+    private Object readValue(DataInputStream data) throws IOException {
+        int tag = data.readUnsignedByte();
+        switch(tag) {
+            case TAG_NULL: return JSONObject.NULL;
+            case TAG_FALSE: return Boolean.FALSE;
+            case TAG_TRUE: return Boolean.TRUE;
+            case TAG_LONG: {
+                long v = unZigZag(readVarLong(data));
+                if(v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) return (int)v;
+                return v;
+            }
+            case TAG_DOUBLE: return data.readDouble();
+            case TAG_NEW_STRING:
+            case TAG_STRING_REF: return readString(tag, data);
+            case TAG_BIG_NUMBER: return new BigDecimal(readString(data.readUnsignedByte(), data));
+            case TAG_OBJECT: {
+                int count = readVarInt(data);
+                JSONObject obj = new JSONObject();
+                for(int i=0;i<count;++i) {
+                    String key = readString(data.readUnsignedByte(), data);
+                    obj.put(key, readValue(data));
+                }
+                return obj;
+            }
+            case TAG_ARRAY: {
+                int count = readVarInt(data);
+                JSONArray array = new JSONArray();
+                for(int i=0;i<count;++i) {
+                    array.put(readValue(data));
+                }
+                return array;
+            }
+            case TAG_DOUBLE_ARRAY: {
+                int count = readVarInt(data);
+                double[] list = new double[count];
+                for(int i=0;i<count;++i) {
+                    list[i] = data.readDouble();
+                }
+                return new JSONArray(list);
+            }
+            default: throw new IOException("Unknown tag "+tag);
+        }
+    }
+
+    private String readString(int tag, DataInputStream data) throws IOException {
+        if(tag == TAG_STRING_REF) {
+            int index = readVarInt(data);
+            if(index<0 || index>=strings.size()) throw new IOException("Bad string reference "+index);
+            return strings.get(index);
+        }
+        if(tag != TAG_NEW_STRING) throw new IOException("Expected a string, found tag "+tag);
+        int length = readVarInt(data);
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        String str = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(str);
+        return str;
+    }
+
+    static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static int readVarInt(DataInputStream data) throws IOException {
+        return (int)readVarLong(data);
+    }
+
+    static long readVarLong(DataInputStream data) throws IOException {
+        long result = 0;
+        int shift = 0;
+        while(true) {
+            int b = data.readUnsignedByte();
+            result |= (long)(b & 0x7F) << shift;
+            if((b & 0x80) == 0) return result;
+            shift += 7;
+            if(shift > 63) throw new IOException("Malformed variable length number.");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.marginallyclever.ro3.node.Node;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>{@link SceneBinaryWriter} writes a tree of {@link Node}s in a compact binary form.  It holds the same data as
+ * the JSON form and is read back with {@link SceneBinaryReader}.</p>
+ * <p>Layout: the {@link #MAGIC} bytes, a version int, then the root node.  Each node is its
+ * {@link Node#toJSON(boolean)} fields as a tagged value, then the number of children, then each child.</p>
+ * <ul>
+ *     <li>Every string (field names, node types, mesh and texture paths) is written once and then referenced by
+ *     index, so repeated assets cost a few bytes each.</li>
+ *     <li>Arrays of doubles, such as the local matrix of a {@link com.marginallyclever.ro3.node.nodes.Pose}, are
+ *     written as raw doubles.</li>
+ *     <li>Counts and integers are variable length.</li>
+ * </ul>
+ */
+public class SceneBinaryWriter {
+    public static final byte[] MAGIC = {'R','O','3','B'};
+    public static final int VERSION = 1;
+
+    static final int TAG_NULL = 0;
+    static final int TAG_FALSE = 1;
+    static final int TAG_TRUE = 2;
+    static final int TAG_LONG = 3;
+    static final int TAG_DOUBLE = 4;
+    static final int TAG_NEW_STRING = 5;
+    static final int TAG_STRING_REF = 6;
+    static final int TAG_OBJECT = 7;
+    static final int TAG_ARRAY = 8;
+    static final int TAG_DOUBLE_ARRAY = 9;
+    static final int TAG_BIG_NUMBER = 10;
+
+    private final Map<String,Integer> strings = new HashMap<>();
+
+    public SceneBinaryWriter() {
+        super();
+    }
+
+    /**
+     * Write the tree to a stream.  The stream is flushed but not closed.
+     * @param root the root of the tree.
+     * @param out the destination.
+     * @throws IOException if the write fails.
+     */
+    public void write(Node root, OutputStream out) throws IOException {
+        strings.clear();
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.write(MAGIC);
+        data.writeInt(VERSION);
+        writeNode(data, root);
+        data.flush();
+    }
+
+    /**
+     * Write the tree to a file.  If the write fails the file is not changed.
+     * @param root the root of the tree.
+     * @param file the destination.
+     * @throws IOException if the write fails.
+     */
+    public void write(Node root, File file) throws IOException {
+        SceneIO.writeSafely(file, out -> write(root, out));
+    }
+
+    private void writeNode(DataOutputStream data, Node node) throws IOException {
+        writeValue(data, node.toJSON(false));
+        writeVarInt(data, node.getChildren().size());
+        for(Node child : node.getChildren()) {
+            writeNode(data, child);
+        }
+    }
+
+    private void writeValue(DataOutputStream data, Object value) throws IOException {
+        if(value == null || value == JSONObject.NULL) {
+            data.writeByte(TAG_NULL);
+        } else if(value instanceof Boolean b) {
+            data.writeByte(b ? TAG_TRUE : TAG_FALSE);
+        } else if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            data.writeByte(TAG_LONG);
+            writeVarLong(data, zigZag(((Number)value).longValue()));
+        } else if(value instanceof Double || value instanceof Float) {
+            data.writeByte(TAG_DOUBLE);
+            data.writeDouble(((Number)value).doubleValue());
+        } else if(value instanceof Number n) {
+            data.writeByte(TAG_BIG_NUMBER);
+            writeString(data, n.toString());
+        } else if(value instanceof JSONObject obj) {
+            data.writeByte(TAG_OBJECT);
+            writeVarInt(data, obj.length());
+            for(String key : obj.keySet()) {
+                writeString(data, key);
+                writeValue(data, obj.get(key));
+            }
+        } else if(value instanceof JSONArray array) {
+            if(isAllDoubles(array)) {
+                data.writeByte(TAG_DOUBLE_ARRAY);
+                writeVarInt(data, array.length());
+                for(int i=0;i<array.length();++i) {
+                    data.writeDouble(((Number)array.get(i)).doubleValue());
+                }
+            } else {
+                data.writeByte(TAG_ARRAY);
+                writeVarInt(data, array.length());
+                for(int i=0;i<array.length();++i) {
+                    writeValue(data, array.get(i));
+                }
+            }
+        } else {
+            writeString(data, value.toString());
+        }
+    }
+
+    private boolean isAllDoubles(JSONArray array) {
+        if(array.isEmpty()) return false;
+        for(int i=0;i<array.length();++i) {
+            Object o = array.get(i);
+            if(!(o instanceof Double) && !(o instanceof Float)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write a string value.  The first time a string is seen it is written in full, after that only its index.
+     */
+    private void writeString(DataOutputStream data, String str) throws IOException {
+        Integer index = strings.get(str);
+        if(index!=null) {
+            data.writeByte(TAG_STRING_REF);
+            writeVarInt(data, index);
+            return;
+        }
+        strings.put(str, strings.size());
+        data.writeByte(TAG_NEW_STRING);
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(data, bytes.length);
+        data.write(bytes);
+    }
+
+    static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        writeVarLong(data, value & 0xFFFFFFFFL);
+    }
+
+    static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        while((value & ~0x7FL) != 0) {
+            data.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        data.writeByte((int)value);
+    }
+}
@@ -0,0 +1,166 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.marginallyclever.convenience.helpers.AssetArchive;
+import com.marginallyclever.convenience.helpers.AssetArchives;
+import com.marginallyclever.convenience.helpers.AssetResolver;
+import com.marginallyclever.ro3.node.Node;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+
+/**
+ * <p>{@link SceneIO} picks the scene format for a file.  Files ending in {@link #BINARY_EXTENSION} are saved with
+ * {@link SceneBinaryWriter}, everything else with {@link SceneJSONWriter}.  When loading, the first bytes of the
+ * file decide the format, so a renamed file still loads.</p>
+ * <p>A zip made by {@link com.marginallyclever.ro3.apps.actions.ExportScene} can be loaded directly.  The scene
+ * inside is read from the zip through {@link AssetArchives}.</p>
+ * <p>While a file loads, the assets it names are found with {@link #getAssetResolver(File)}: first next to the
+ * scene, in the same folder or the same zip, then as {@link AssetResolver#DEFAULT} would.</p>
+ */
+public class SceneIO {
+    public static final String BINARY_EXTENSION = "rob";
+
+    public static boolean isBinaryName(File file) {
+        return file.getName().toLowerCase().endsWith("." + BINARY_EXTENSION);
+    }
+
+    /**
+     * Save a tree to a file.
+     * @param root the root of the tree.
+     * @param file the destination.
+     * @throws IOException if the write fails.
+     */
+    public static void save(Node root, File file) throws IOException {
+        if(isBinaryName(file)) {
+            new SceneBinaryWriter().write(root, file);
+        } else {
+            new SceneJSONWriter().write(root, file);
+        }
+    }
+
+    /**
+     * Writes the whole of a file.
+     */
+    interface FileContents {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Write a file so that a write that fails part way leaves the old file as it was.  The contents go to a
+     * temporary file in the same folder, which replaces the old file only when the write succeeds.
+     * @param file the destination.
+     * @param contents writes the file.
+     * @throws IOException if the write fails.
+     */
+    static void writeSafely(File file, FileContents contents) throws IOException {
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try {
+            try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                contents.write(out);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read a file and apply the root of the file to an existing node.
+     * @param file the source.
+     * @param root the node that receives the fields and children of the root in the file.
+     * @throws IOException if the read fails or the file is malformed.
+     */
+    public static void loadInto(File file, Node root) throws IOException {
+        Node.beginLoad(getAssetResolver(file));
+        try(InputStream in = open(file)) {
+            if(isBinary(in)) new SceneBinaryReader().readInto(in, root);
+            else new SceneJSONReader().readInto(in, root);
+        } finally {
+            Node.endLoad();
+        }
+    }
+
+    /**
+     * Read a file.  The type of the root comes from the file.
+     * @param file the source.
+     * @return the root of the tree.
+     * @throws IOException if the read fails or the file is malformed.
+     */
+    public static Node load(File file) throws IOException {
+        Node.beginLoad(getAssetResolver(file));
+        try(InputStream in = open(file)) {
+            if(isBinary(in)) return new SceneBinaryReader().read(in);
+            else return new SceneJSONReader().read(in);
+        } finally {
+            Node.endLoad();
+        }
+    }
+
+    /**
+     * @param file a scene file or a zip with a scene in it.
+     * @return finds the assets named in the scene.  Assets next to the scene come first, in the same folder or, for
+     * a zip, in the same folder of the zip.
+     * @throws IOException if the zip cannot be read.
+     */
+    public static AssetResolver getAssetResolver(File file) throws IOException {
+        if(AssetArchives.isZip(file)) {
+            String zipPath = file.getAbsolutePath();
+            String entry = findSceneEntry(AssetArchives.get(zipPath));
+            String folder = entry.substring(0, entry.lastIndexOf('/')+1);
+            return (filename) -> {
+                String name = folder + filename;
+                if(AssetArchives.exists(zipPath, name)) return zipPath + ":" + name;
+                return AssetResolver.DEFAULT.resolve(filename);
+            };
+        }
+        File folder = file.getAbsoluteFile().getParentFile();
+        return (filename) -> {
+            File local = new File(folder, filename);
+            if(local.exists()) return local.getAbsolutePath();
+            return AssetResolver.DEFAULT.resolve(filename);
+        };
+    }
+
+    private static InputStream open(File file) throws IOException {
+        if(AssetArchives.isZip(file)) {
+            AssetArchive archive = AssetArchives.get(file.getAbsolutePath());
+            return new BufferedInputStream(archive.open(findSceneEntry(archive)));
+        }
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    /**
+     * @return the scene in the zip nearest the root.
+     */
+    private static String findSceneEntry(AssetArchive archive) throws IOException {
+        String best = null;
+        for(ZipEntry entry : archive.getEntries()) {
+            String name = entry.getName().toLowerCase();
+            if(!name.endsWith(".ro") && !name.endsWith("." + BINARY_EXTENSION)) continue;
+            if(best==null || depth(entry.getName()) < depth(best)) best = entry.getName();
+        }
+        if(best==null) throw new FileNotFoundException("No scene found in "+archive.getFile());
+        return best;
+    }
+
+    private static int depth(String name) {
+        return (int)name.chars().filter(c -> c=='/').count();
+    }
+
+    private static boolean isBinary(InputStream in) throws IOException {
+        byte[] header = new byte[SceneBinaryWriter.MAGIC.length];
+        in.mark(header.length);
+        int count = in.readNBytes(header, 0, header.length);
+        in.reset();
+        return count == header.length && SceneBinaryReader.isBinaryScene(header);
+    }
+}
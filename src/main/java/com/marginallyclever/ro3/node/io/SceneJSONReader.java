@@ -0,0 +1,195 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.node.Node;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+
+/**
+ * <p>{@link SceneJSONReader} reads a tree of {@link Node}s from JSON with a Jackson {@link JsonParser}.</p>
+ * <p>Files written by {@link SceneJSONWriter} start with {@link SceneJSONWriter#STREAM_MARKER}.  In those files
+ * each node is created and attached as soon as its own fields have been read, and its children are read one at a
+ * time after that, so only the path from the root to the current node is held as JSON.  The fields are applied with
+ * {@link Node#fromJSON(JSONObject)} once the children are attached, the same order as a full document.</p>
+ * <p>Older files may have "children" anywhere in each node.  They are read into one org.json document and passed to
+ * {@link Node#fromJSON(JSONObject)} as before, without first copying the whole file into a String.</p>
+ */
+public class SceneJSONReader {
+    private static final Logger logger = LoggerFactory.getLogger(SceneJSONReader.class);
+    private final JsonFactory factory = new JsonFactory();
+
+    public SceneJSONReader() {
+        super();
+    }
+
+    /**
+     * Read a tree and apply the root of the file to an existing node.
+     * @param in the source.  It is not closed.
+     * @param root the node that receives the fields and children of the root in the file.
+     * @throws IOException if the read fails or the JSON is malformed.
+     */
+    public void readInto(InputStream in, Node root) throws IOException {
+        try(JsonParser parser = factory.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            Node.beginLoad();
+            try {
+                readRoot(parser, root);
+            } finally {
+                Node.endLoad();
+            }
+        }
+    }
+
+    /**
+     * Read a tree.  The type of the root comes from the file.
+     * @param in the source.  It is not closed.
+     * @return the root of the tree.
+     * @throws IOException if the read fails or the JSON is malformed.
+     */
+    public Node read(InputStream in) throws IOException {
+        try(JsonParser parser = factory.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            Node.beginLoad();
+            try {
+                return readRoot(parser, null);
+            } finally {
+                Node.endLoad();
+            }
+        }
+    }
+
+    public void readInto(File file, Node root) throws IOException {
+        try(InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            readInto(in, root);
+        }
+    }
+
+    public Node read(File file) throws IOException {
+        try(InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    private Node readRoot(JsonParser parser, Node root) throws IOException {
+        JsonToken token = parser.nextToken();
+        if(token == JsonToken.FIELD_NAME && SceneJSONWriter.STREAM_MARKER.equals(parser.getCurrentName())) {
+            parser.nextToken();
+            parser.skipChildren();
+            return readNode(parser, null, root);
+        }
+
+        // older file, read the whole thing.
+        JSONObject json = new JSONObject();
+        while(token == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            json.put(name, readValue(parser));
+            token = parser.nextToken();
+        }
+        expect(token, JsonToken.END_OBJECT);
+        if(root==null) root = createNode(json);
+        root.fromJSON(json);
+        return root;
+    }
+
+    /**
+     * Read one node and its children.  The parser must be inside the object of the node, after the START_OBJECT
+     * token and any tokens already consumed.
+     * @param parser the source
+     * @param parent the parent to attach the new node to, or null for the root.
+     * @param target the node to fill, or null to create one from the "type" field.
+     * @return the node that was read.
+     */
+    private Node readNode(JsonParser parser, Node parent, Node target) throws IOException {
+        JSONObject fields = new JSONObject();
+        Node node = null;
+        JsonToken token;
+        while((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if(name.equals("children")) {
+                node = attach(fields, parent, target);
+                expect(parser.currentToken(), JsonToken.START_ARRAY);
+                while((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                    readNode(parser, node, null);
+                }
+                expect(token, JsonToken.END_ARRAY);
+            } else {
+                if(node!=null) throw new IOException("Field '"+name+"' after children at "+node.getAbsolutePath());
+                fields.put(name, readValue(parser));
+            }
+        }
+        expect(token, JsonToken.END_OBJECT);
+        if(node==null) node = attach(fields, parent, target);
+        node.fromJSON(fields);
+        return node;
+    }
+
+    /**
+     * Create the node or use the target, then attach it to the parent.  The fields are not applied yet: subclasses of
+     * {@link Node} read their own fields after super.fromJSON() has made their children, so the streaming reader
+     * waits for the children too.
+     */
+    private Node attach(JSONObject fields, Node parent, Node target) {
+        Node node = (target!=null) ? target : createNode(fields);
+        if(parent!=null) parent.addChild(node);
+        return node;
+    }
+
+    private Node createNode(JSONObject fields) {
+        String type = fields.optString("type","Node");
+        Node node = Registry.nodeFactory.create(type);
+        if(node==null) {
+            logger.error("Could not create type {}.",type);
+            node = new Node();
+        }
+        return node;
+    }
+
+    /**
+     * Read the value at the current token as an org.json value.
+     * @param parser the source
+     * @return a {@link JSONObject}, {@link JSONArray}, String, Number, Boolean, or {@link JSONObject#NULL}.
+     */
+    static Object readValue(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        switch(token) {
+            case START_OBJECT: {
+                JSONObject obj = new JSONObject();
+                while(parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    obj.put(name, readValue(parser));
+                }
+                return obj;
+            }
+            case START_ARRAY: {
+                JSONArray array = new JSONArray();
+                while(parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.put(readValue(parser));
+                }
+                return array;
+            }
+            case VALUE_STRING: return parser.getText();
+            case VALUE_NUMBER_INT: return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT: return parser.getDoubleValue();
+            case VALUE_TRUE: return Boolean.TRUE;
+            case VALUE_FALSE: return Boolean.FALSE;
+            case VALUE_NULL: return JSONObject.NULL;
+            default: throw new IOException("Unexpected token "+token+" at "+parser.getCurrentLocation());
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if(actual != expected) throw new IOException("Expected "+expected+" but found "+actual);
+    }
+}
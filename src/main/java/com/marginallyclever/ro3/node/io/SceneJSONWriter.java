@@ -0,0 +1,201 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.marginallyclever.ro3.node.Node;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * <p>{@link SceneJSONWriter} writes a tree of {@link Node}s as JSON, one node at a time, with a Jackson
+ * {@link JsonGenerator}.  Only one node's {@link Node#toJSON(boolean)} is in memory at any moment instead of the
+ * whole document.</p>
+ * <p>The output is the same document that {@link Node#toJSON()} would make, except that "children" is always the
+ * last field of each node and the root starts with {@link #STREAM_MARKER}.  {@link SceneJSONReader} uses the
+ * marker to know that it can attach children as they arrive.</p>
+ * <p>When parallel mode is on, the subtrees under the root are serialized on the common fork-join pool and then
+ * written in order.  At most {@link #getWindow()} finished subtrees wait in memory to be written.  The tree must
+ * not change while it is written.  Parallel mode is off by default.</p>
+ */
+public class SceneJSONWriter {
+    public static final String STREAM_MARKER = "childrenLast";
+    private final JsonFactory factory = new JsonFactory();
+    private boolean parallel = false;
+    private int window = Runtime.getRuntime().availableProcessors()*2;
+
+    public SceneJSONWriter() {
+        super();
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @param parallel true to serialize the subtrees under the root on several threads.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @param window in parallel mode, the most subtrees that are serialized ahead of the one being written.
+     */
+    public void setWindow(int window) {
+        if(window<1) throw new IllegalArgumentException("window must be at least 1.");
+        this.window = window;
+    }
+
+    /**
+     * Write the tree to a stream.  The stream is not closed.
+     * @param root the root of the tree.
+     * @param out the destination.
+     * @throws IOException if the write fails.
+     */
+    public void write(Node root, OutputStream out) throws IOException {
+        try(JsonGenerator generator = factory.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeRoot(generator, root);
+        }
+    }
+
+    /**
+     * Write the tree to a file.  If the write fails the file is not changed.
+     * @param root the root of the tree.
+     * @param file the destination.
+     * @throws IOException if the write fails.
+     */
+    public void write(Node root, File file) throws IOException {
+        SceneIO.writeSafely(file, out -> write(root, out));
+    }
+
+    private void writeRoot(JsonGenerator generator, Node root) throws IOException {
+        generator.writeStartObject();
+        generator.writeBooleanField(STREAM_MARKER, true);
+        writeFields(generator, root);
+        generator.writeArrayFieldStart("children");
+        List<Node> children = root.getChildren();
+        if(parallel && children.size()>1) {
+            writeInParallel(generator, children);
+        } else {
+            for(Node child : children) {
+                writeNode(generator, child);
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Serialize the children on the common pool and write each one as soon as it and every child before it are
+     * done, so that no more than {@link #window} of them wait in memory.
+     */
+    private void writeInParallel(JsonGenerator generator, List<Node> children) throws IOException {
+        Deque<CompletableFuture<String>> pending = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while(next<children.size() || !pending.isEmpty()) {
+                while(next<children.size() && pending.size()<window) {
+                    Node child = children.get(next++);
+                    pending.add(CompletableFuture.supplyAsync(() -> writeSubtreeToString(child)));
+                }
+                generator.writeRawValue(pending.remove().join());
+            }
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof UncheckedIOException u) throw u.getCause();
+            if(e.getCause() instanceof RuntimeException r) throw r;
+            throw e;
+        } finally {
+            for(CompletableFuture<String> f : pending) f.cancel(false);
+        }
+    }
+
+    private String writeSubtreeToString(Node node) {
+        StringWriter sw = new StringWriter();
+        try(JsonGenerator generator = factory.createGenerator(sw)) {
+            writeNode(generator, node);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sw.toString();
+    }
+
+    private void writeNode(JsonGenerator generator, Node node) throws IOException {
+        generator.writeStartObject();
+        writeFields(generator, node);
+        generator.writeArrayFieldStart("children");
+        for(Node child : node.getChildren()) {
+            writeNode(generator, child);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private void writeFields(JsonGenerator generator, Node node) throws IOException {
+        JSONObject fields = node.toJSON(false);
+        // type first so that readers can create the node as early as possible.
+        if(fields.has("type")) {
+            generator.writeFieldName("type");
+            writeValue(generator, fields.get("type"));
+        }
+        for(String key : fields.keySet()) {
+            if(key.equals("type")) continue;
+            generator.writeFieldName(key);
+            writeValue(generator, fields.get(key));
+        }
+    }
+
+    /**
+     * Write any value that can be found in an org.json {@link JSONObject}.
+     * @param generator the destination.
+     * @param value the value to write.
+     * @throws IOException if the write fails.
+     */
+    static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if(value == null || value == JSONObject.NULL) {
+            generator.writeNull();
+        } else if(value instanceof JSONObject obj) {
+            generator.writeStartObject();
+            for(String key : obj.keySet()) {
+                generator.writeFieldName(key);
+                writeValue(generator, obj.get(key));
+            }
+            generator.writeEndObject();
+        } else if(value instanceof JSONArray array) {
+            generator.writeStartArray();
+            for(int i=0;i<array.length();++i) {
+                writeValue(generator, array.get(i));
+            }
+            generator.writeEndArray();
+        } else if(value instanceof String str) {
+            generator.writeString(str);
+        } else if(value instanceof Boolean b) {
+            generator.writeBoolean(b);
+        } else if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number)value).longValue());
+        } else if(value instanceof BigInteger bi) {
+            generator.writeNumber(bi);
+        } else if(value instanceof BigDecimal bd) {
+            generator.writeNumber(bd);
+        } else if(value instanceof Number n) {
+            generator.writeNumber(n.doubleValue());
+        } else {
+            // same as org.json: anything else is written as its string form.
+            generator.writeString(value.toString());
+        }
+    }
+}
@@ -152,6 +152,22 @@ public class Camera extends Pose {
         return farZ;
     }
 
+    /**
+     * @param nearZ distance to the near clipping plane.  Must be greater than zero.
+     */
+    public void setNearZ(double nearZ) {
+        if(nearZ<=0) throw new IllegalArgumentException("nearZ must be greater than zero.");
+        this.nearZ = nearZ;
+    }
+
+    /**
+     * @param farZ distance to the far clipping plane.  Must be greater than nearZ.
+     */
+    public void setFarZ(double farZ) {
+        if(farZ<=nearZ) throw new IllegalArgumentException("farZ must be greater than nearZ.");
+        this.farZ = farZ;
+    }
+
     /**
      * Translate relative to camera's current orientation
      * @param delta distance to travel.  Positive is up.
@@ -44,7 +44,10 @@ public class DHParameter extends Node {
         super("DH Parameter");
     }
 
-    private void toPose() {
+    /**
+     * Set the local transform of the sibling {@link Pose} from the DH parameters.
+     */
+    public void toPose() {
         Pose pose = findFirstSibling(Pose.class);
         if (pose != null) pose.setLocal(getDHMatrix());
     }
@@ -160,8 +163,8 @@ public class DHParameter extends Node {
     }
 
     @Override
-    public JSONObject toJSON() {
-        JSONObject json = super.toJSON();
+    public JSONObject toJSON(boolean withChildren) {
+        JSONObject json = super.toJSON(withChildren);
         json.put("d",d);
         json.put("theta",theta);
         json.put("r",r);
@@ -182,15 +185,31 @@ public class DHParameter extends Node {
         return d;
     }
 
+    public void setD(double d) {
+        this.d = d;
+    }
+
     public double getR() {
         return r;
     }
 
+    public void setR(double r) {
+        this.r = r;
+    }
+
     public double getAlpha() {
         return alpha;
     }
 
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+
     public double getTheta() {
         return theta;
     }
+
+    public void setTheta(double theta) {
+        this.theta = theta;
+    }
 }
@@ -113,7 +113,13 @@ public class HingeJoint extends Node {
         super.update(dt);
         velocity += acceleration * dt;
         angle += velocity * dt;
+        updateAxle();
+    }
 
+    /**
+     * Turn the axle to the current angle.  {@link #update(double)} does this every frame.
+     */
+    public void updateAxle() {
         if(axle.getSubject()!=null) {
             // set the axle's location in space.
             axle.getSubject().getLocal().rotZ(Math.toRadians(angle));
@@ -121,8 +127,8 @@ public class HingeJoint extends Node {
     }
 
     @Override
-    public JSONObject toJSON() {
-        JSONObject json = super.toJSON();
+    public JSONObject toJSON(boolean withChildren) {
+        JSONObject json = super.toJSON(withChildren);
         json.put("angle",angle);
         json.put("minAngle",minAngle);
         json.put("maxAngle",maxAngle);
@@ -148,8 +154,8 @@ public class HingeJoint extends Node {
             if(version==1) {
                 axle.setPath(from.getString("axle"));
             } else if(version==0) {
-                Pose pose = this.getRootNode().findNodeByID(from.getString("axle"),Pose.class);
-                axle.setPath( PathCalculator.getRelativePath(this,pose) );
+                String id = from.getString("axle");
+                resolveAfterLoad(()->axle.setPath( PathCalculator.getRelativePath(this,getRootNode().findNodeByID(id,Pose.class)) ));
             }
         }
     }
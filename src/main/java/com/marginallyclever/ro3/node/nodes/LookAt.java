@@ -71,8 +71,8 @@ public class LookAt extends Pose {
     }
 
     @Override
-    public JSONObject toJSON() {
-        var json = super.toJSON();
+    public JSONObject toJSON(boolean withChildren) {
+        var json = super.toJSON(withChildren);
         json.put("version",1);
         if(target.getSubject()!=null) {
             json.put("target", target.getPath());
@@ -88,8 +88,8 @@ public class LookAt extends Pose {
             if(version == 1) {
                 target.setPath(from.getString("target"));
             } else if(version == 0) {
-                Pose pose = getRootNode().findNodeByID(from.getString("target"),Pose.class);
-                target.setPath( PathCalculator.getRelativePath(this,pose) );
+                String id = from.getString("target");
+                resolveAfterLoad(()->target.setPath( PathCalculator.getRelativePath(this,getRootNode().findNodeByID(id,Pose.class)) ));
             }
         }
     }
@@ -27,8 +27,11 @@ import java.util.List;
  * </ul>
  */
 public class Material extends Node {
+    private static final int THUMBNAIL_SIZE = 64;
     private TextureWithMetadata texture;
     private Color diffuseColor = new Color(255,255,255);
+    // diffuseColor as RGBA floats, kept so the renderer does not unpack the color every frame.
+    private float [] diffuseComponents = diffuseColor.getRGBComponents(null);
     private Color specularColor = new Color(255,255,255);
     private Color emissionColor = new Color(0,0,0);
     private int shininess = 10;
@@ -69,9 +72,18 @@ public class Material extends Node {
         addLabelAndComponent(pane,"Texture",button,gbc);
 
         if(texture!=null) {
-            BufferedImage smaller = scaleImage(texture.getImage(),64);
             addLabelAndComponent(pane,"Size",new JLabel(texture.getWidth()+"x"+texture.getHeight()),gbc);
-            addLabelAndComponent(pane,"Preview",new JLabel(new ImageIcon(smaller)),gbc);
+            // the image may not be decoded yet.  Show it when it is ready instead of waiting here.
+            JLabel preview = new JLabel("Loading...");
+            addLabelAndComponent(pane,"Preview",preview,gbc);
+            texture.getThumbnail(THUMBNAIL_SIZE).thenAccept(small -> SwingUtilities.invokeLater(() -> {
+                if(small==null) {
+                    preview.setText("Not available");
+                } else {
+                    preview.setText(null);
+                    preview.setIcon(new ImageIcon(small));
+                }
+            }));
         }
 
         // diffuse
@@ -155,8 +167,8 @@ public class Material extends Node {
     }
 
     @Override
-    public JSONObject toJSON() {
-        JSONObject json = super.toJSON();
+    public JSONObject toJSON(boolean withChildren) {
+        JSONObject json = super.toJSON(withChildren);
         if(texture!=null) json.put("texture",texture.getSource());
         json.put("diffuseColor", diffuseColor.getRGB());
         json.put("specularColor", specularColor.getRGB());
@@ -169,8 +181,8 @@ public class Material extends Node {
     @Override
     public void fromJSON(JSONObject from) {
         super.fromJSON(from);
-        if(from.has("texture")) texture = Registry.textureFactory.load(from.getString("texture"));
-        if(from.has("diffuseColor")) diffuseColor = new Color(from.getInt("diffuseColor"),true);
+        if(from.has("texture")) texture = Registry.textureFactory.load(resolveAsset(from.getString("texture")));
+        if(from.has("diffuseColor")) setDiffuseColor(new Color(from.getInt("diffuseColor"),true));
         if(from.has("specularColor")) specularColor = new Color(from.getInt("specularColor"),true);
         if(from.has("emissionColor")) emissionColor = new Color(from.getInt("emissionColor"),true);
         if(from.has("shininess")) shininess = from.getInt("shininess");
@@ -183,6 +195,15 @@ public class Material extends Node {
 
     public void setDiffuseColor(Color color) {
         diffuseColor = color;
+        diffuseComponents = color.getRGBComponents(null);
+    }
+
+    /**
+     * @return the diffuse color as red, green, blue, and alpha from 0 to 1.  The array is shared and must not be
+     * modified.  A new array is made when the color changes.
+     */
+    public float [] getDiffuseComponents() {
+        return diffuseComponents;
     }
 
     public Color getSpecularColor() {
@@ -91,8 +91,8 @@ public class MeshInstance extends Pose {
     }
 
     @Override
-    public JSONObject toJSON() {
-        JSONObject json = super.toJSON();
+    public JSONObject toJSON(boolean withChildren) {
+        JSONObject json = super.toJSON(withChildren);
         if(mesh!=null) {
             json.put("mesh", mesh.getSourceName());
         }
@@ -103,7 +103,7 @@ public class MeshInstance extends Pose {
     public void fromJSON(JSONObject from) {
         super.fromJSON(from);
         if(from.has("mesh")) {
-            mesh = Registry.meshFactory.load(from.getString("mesh"));
+            mesh = Registry.meshFactory.load(resolveAsset(from.getString("mesh")));
         }
     }
 
@@ -120,12 +120,23 @@ public class MeshInstance extends Pose {
      * @return the ray hit in world space, or null if no hit.
      */
     public RayHit intersect(Ray ray) {
+        return intersect(ray,getWorld());
+    }
+
+    /**
+     * Same as {@link #intersect(Ray)} with a world transform that was already found, for example in a
+     * {@link com.marginallyclever.ro3.node.SceneSnapshot}.
+     * @param ray the ray in world space
+     * @param world the world transform of this instance.  It is not changed.
+     * @return the ray hit in world space, or null if no hit.
+     */
+    public RayHit intersect(Ray ray,Matrix4d world) {
         if( mesh==null ) return null;
 
-        Ray localRay = transformRayToLocalSpace(ray);
+        Ray localRay = transformRayToLocalSpace(ray,world);
         RayHit localHit = mesh.intersect(localRay);
         if(localHit!=null && localHit.distance()<Double.MAX_VALUE) {
-            Vector3d normal = transformNormalToWorldSpace(localHit.normal());
+            Vector3d normal = transformNormalToWorldSpace(localHit.normal(),world);
             return new RayHit(this,localHit.distance(),normal);
         } else {
             return null;
@@ -135,10 +146,11 @@ public class MeshInstance extends Pose {
     /**
      * transform the ray into local space.
      * @param ray the ray in world space
+     * @param world the world transform of this instance
      * @return the ray in local space
      */
-    private Ray transformRayToLocalSpace(Ray ray) {
-        Matrix4d m = getWorld();
+    private Ray transformRayToLocalSpace(Ray ray,Matrix4d world) {
+        Matrix4d m = new Matrix4d(world);
         Point3d o = new Point3d(ray.getOrigin());
         Vector3d d = new Vector3d(ray.getDirection());
 
@@ -152,11 +164,12 @@ public class MeshInstance extends Pose {
     /**
      * transform the ray into local space.
      * @param normal the normal in local space
+     * @param world the world transform of this instance
      * @return the ray in world space
      */
-    private Vector3d transformNormalToWorldSpace(Vector3d normal) {
+    private Vector3d transformNormalToWorldSpace(Vector3d normal,Matrix4d world) {
         Vector3d d = new Vector3d(normal);
-        getWorld().transform(d);
+        world.transform(d);
         return d;
     }
 }
@@ -57,8 +57,8 @@ public class Motor extends Node {
     }
 
     @Override
-    public JSONObject toJSON() {
-        JSONObject json = super.toJSON();
+    public JSONObject toJSON(boolean withChildren) {
+        JSONObject json = super.toJSON(withChildren);
         json.put("version",1);
         if(hinge.getSubject()!=null) json.put("hinge",hinge.getPath());
         return json;
@@ -72,8 +72,8 @@ public class Motor extends Node {
             if(version==1) {
                 hinge.setPath(from.getString("hinge"));
             } else if(version==0) {
-                HingeJoint joint = this.getRootNode().findNodeByID(from.getString("hinge"), HingeJoint.class);
-                hinge.setRelativePath(this, joint);
+                String id = from.getString("hinge");
+                resolveAfterLoad(()->hinge.setRelativePath(this, getRootNode().findNodeByID(id, HingeJoint.class)));
             }
         }
     }
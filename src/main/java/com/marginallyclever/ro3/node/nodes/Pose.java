@@ -48,6 +48,19 @@ public class Pose extends Node {
         return parentWorld;
     }
 
+    /**
+     * Same as {@link #getWorld()} but writes into an existing matrix instead of creating new ones.
+     * @param result the matrix to fill.
+     */
+    public void getWorld(Matrix4d result) {
+        result.set(local);
+        Pose p = findParent(Pose.class);
+        while(p!=null) {
+            result.mul(p.local,result);
+            p = p.findParent(Pose.class);
+        }
+    }
+
     public void setWorld(Matrix4d world) {
         // search up the tree to find the world transform.
         Pose parent = findParent(Pose.class);
@@ -167,8 +180,8 @@ public class Pose extends Node {
     }
 
     @Override
-    public JSONObject toJSON() {
-        JSONObject json = super.toJSON();
+    public JSONObject toJSON(boolean withChildren) {
+        JSONObject json = super.toJSON(withChildren);
 
         double[] localArray = MatrixHelper.matrix4dToArray(local);
         json.put("local", new JSONArray(localArray));
@@ -1,15 +1,51 @@
 package com.marginallyclever.ro3.node.nodes;
 
-import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.convenience.swing.NumberFormatHelper;
+import com.marginallyclever.ro3.physics.PhysicsSystem;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 import javax.swing.*;
+import javax.swing.text.NumberFormatter;
+import javax.vecmath.Vector3d;
 import java.awt.*;
 import java.util.List;
+import java.util.function.DoubleConsumer;
 
 /**
- * {@link RigidBody3D} is a {@link Node} that represents a rigid body.
+ * <p>{@link RigidBody3D} is a {@link Pose} that is moved by the {@link PhysicsSystem}.  Children of the body move
+ * with it, so a {@link MeshInstance} child gives the body a shape to look at.</p>
+ * <p>This class provides several properties:</p>
+ * <ul>
+ * <li>{@code mass}: in kg.</li>
+ * <li>{@code shape}: the collision shape, one of {@link Shape}.</li>
+ * <li>{@code size}: for a box the length of each side.  For a sphere x is the radius.  For a capsule or cylinder
+ * x is the radius and z is the length along the local Z axis.</li>
+ * <li>{@code inertia}: the diagonal of the inertia tensor.  When it is zero the inertia is found from the shape
+ * and mass.</li>
+ * <li>{@code kinematic}: a kinematic body is not moved by the simulation.  It follows its {@link Pose} and
+ * pushes dynamic bodies out of the way.</li>
+ * <li>{@code friction}: Coulomb friction.  Two bodies in contact use the geometric mean of their friction.</li>
+ * <li>{@code bounce}: restitution from 0 to 1.</li>
+ * <li>{@code surfaceVelocity}: in the local frame.  Bodies touching this one are carried along, as if it were a
+ * conveyor belt.</li>
+ * </ul>
  */
 public class RigidBody3D extends Pose {
+    public enum Shape { BOX, SPHERE, CAPSULE, CYLINDER }
+
+    private double mass = 1;  // kg
+    private Shape shape = Shape.BOX;
+    private final Vector3d size = new Vector3d(10,10,10);
+    private final Vector3d inertia = new Vector3d();
+    private boolean kinematic = false;
+    private double friction = 1;
+    private double bounce = 0;
+    private final Vector3d surfaceVelocity = new Vector3d();
+    // changed by every setter so the PhysicsSystem knows to rebuild the body.
+    // read by the physics system, which may be on another thread.
+    private volatile int revision = 0;
+
     public RigidBody3D() {
         this("RigidBody3D");
     }
@@ -24,6 +60,172 @@ public class RigidBody3D extends Pose {
         list.add(pane);
         pane.setName(RigidBody3D.class.getSimpleName());
 
+        NumberFormatter formatter = NumberFormatHelper.getNumberFormatter();
+
+        JComboBox<Shape> shapeBox = new JComboBox<>(Shape.values());
+        shapeBox.setSelectedItem(shape);
+        shapeBox.addActionListener(e -> setShape((Shape)shapeBox.getSelectedItem()));
+
+        JCheckBox kinematicBox = new JCheckBox();
+        kinematicBox.setSelected(kinematic);
+        kinematicBox.addActionListener(e -> setKinematic(kinematicBox.isSelected()));
+
+        addLabelAndComponent(pane, "Shape", shapeBox);
+        JFormattedTextField massField = createField(formatter, mass, v -> {});
+        massField.addPropertyChangeListener("value", (evt) -> {
+            double v = ((Number) massField.getValue()).doubleValue();
+            // mass must stay above zero.  Put back the old value instead.
+            if(v>0) setMass(v);
+            else massField.setValue(mass);
+        });
+        addLabelAndComponent(pane, "Mass", massField);
+        addLabelAndComponent(pane, "Size X", createField(formatter, size.x, v -> { size.x = v;  revision++; }));
+        addLabelAndComponent(pane, "Size Y", createField(formatter, size.y, v -> { size.y = v;  revision++; }));
+        addLabelAndComponent(pane, "Size Z", createField(formatter, size.z, v -> { size.z = v;  revision++; }));
+        addLabelAndComponent(pane, "Inertia X", createField(formatter, inertia.x, v -> { inertia.x = v;  revision++; }));
+        addLabelAndComponent(pane, "Inertia Y", createField(formatter, inertia.y, v -> { inertia.y = v;  revision++; }));
+        addLabelAndComponent(pane, "Inertia Z", createField(formatter, inertia.z, v -> { inertia.z = v;  revision++; }));
+        addLabelAndComponent(pane, "Kinematic", kinematicBox);
+        addLabelAndComponent(pane, "Friction", createField(formatter, friction, this::setFriction));
+        addLabelAndComponent(pane, "Bounce", createField(formatter, bounce, this::setBounce));
+        addLabelAndComponent(pane, "Surface X", createField(formatter, surfaceVelocity.x, v -> surfaceVelocity.x = v));
+        addLabelAndComponent(pane, "Surface Y", createField(formatter, surfaceVelocity.y, v -> surfaceVelocity.y = v));
+        addLabelAndComponent(pane, "Surface Z", createField(formatter, surfaceVelocity.z, v -> surfaceVelocity.z = v));
+
         super.getComponents(list);
     }
+
+    private JFormattedTextField createField(NumberFormatter formatter, double value, DoubleConsumer setter) {
+        JFormattedTextField field = new JFormattedTextField(formatter);
+        field.setValue(value);
+        field.addPropertyChangeListener("value", (evt) -> setter.accept(((Number) field.getValue()).doubleValue()));
+        return field;
+    }
+
+    @Override
+    public JSONObject toJSON(boolean withChildren) {
+        JSONObject json = super.toJSON(withChildren);
+        json.put("version",1);
+        json.put("mass",mass);
+        json.put("shape",shape.name());
+        json.put("size",toArray(size));
+        json.put("inertia",toArray(inertia));
+        json.put("kinematic",kinematic);
+        json.put("friction",friction);
+        json.put("bounce",bounce);
+        json.put("surfaceVelocity",toArray(surfaceVelocity));
+        return json;
+    }
+
+    @Override
+    public void fromJSON(JSONObject from) {
+        super.fromJSON(from);
+        if(from.has("mass")) mass = from.getDouble("mass");
+        if(from.has("shape")) shape = Shape.valueOf(from.getString("shape"));
+        if(from.has("size")) fromArray(from.getJSONArray("size"),size);
+        if(from.has("inertia")) fromArray(from.getJSONArray("inertia"),inertia);
+        if(from.has("kinematic")) kinematic = from.getBoolean("kinematic");
+        if(from.has("friction")) friction = from.getDouble("friction");
+        if(from.has("bounce")) bounce = from.getDouble("bounce");
+        if(from.has("surfaceVelocity")) fromArray(from.getJSONArray("surfaceVelocity"),surfaceVelocity);
+        revision++;
+    }
+
+    private static JSONArray toArray(Vector3d v) {
+        return new JSONArray(new double[]{v.x,v.y,v.z});
+    }
+
+    private static void fromArray(JSONArray array, Vector3d v) {
+        v.set(array.getDouble(0),array.getDouble(1),array.getDouble(2));
+    }
+
+    public double getMass() {
+        return mass;
+    }
+
+    /**
+     * @param mass in kg.  Must be greater than zero.
+     */
+    public void setMass(double mass) {
+        if(mass<=0) throw new IllegalArgumentException("mass must be greater than zero.");
+        this.mass = mass;
+        revision++;
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    public void setShape(Shape shape) {
+        this.shape = shape;
+        revision++;
+    }
+
+    /**
+     * @return the size of the shape.  See the class description for the meaning of each value.
+     */
+    public Vector3d getSize() {
+        return new Vector3d(size);
+    }
+
+    public void setSize(Vector3d size) {
+        this.size.set(size);
+        revision++;
+    }
+
+    /**
+     * @return the diagonal of the inertia tensor, or zero to use the inertia of the shape.
+     */
+    public Vector3d getInertia() {
+        return new Vector3d(inertia);
+    }
+
+    public void setInertia(Vector3d inertia) {
+        this.inertia.set(inertia);
+        revision++;
+    }
+
+    public boolean isKinematic() {
+        return kinematic;
+    }
+
+    public void setKinematic(boolean kinematic) {
+        this.kinematic = kinematic;
+        revision++;
+    }
+
+    public double getFriction() {
+        return friction;
+    }
+
+    public void setFriction(double friction) {
+        this.friction = friction;
+    }
+
+    public double getBounce() {
+        return bounce;
+    }
+
+    public void setBounce(double bounce) {
+        this.bounce = bounce;
+    }
+
+    /**
+     * @return the velocity of the surface in the local frame.  Read often by the {@link PhysicsSystem}, so this is
+     * not a copy.  Do not change it.
+     */
+    public Vector3d getSurfaceVelocity() {
+        return surfaceVelocity;
+    }
+
+    public void setSurfaceVelocity(Vector3d velocity) {
+        surfaceVelocity.set(velocity);
+    }
+
+    /**
+     * @return a number that changes whenever the shape, mass, or kinematic state change.
+     */
+    public int getRevision() {
+        return revision;
+    }
 }
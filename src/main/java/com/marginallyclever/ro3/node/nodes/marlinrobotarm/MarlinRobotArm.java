@@ -11,6 +11,8 @@ import com.marginallyclever.ro3.node.nodes.HingeJoint;
 import com.marginallyclever.ro3.node.nodes.Motor;
 import com.marginallyclever.ro3.node.nodes.Pose;
 import com.marginallyclever.ro3.apps.nodeselector.NodeSelector;
+import com.marginallyclever.ro3.workspace.WorkspaceAnalyzer;
+import com.marginallyclever.ro3.workspace.WorkspacePointCloud;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -18,6 +20,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -27,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <p>{@link MarlinRobotArm} converts the state of a robot arm into GCode and back.</p>
@@ -43,6 +47,8 @@ import java.util.Objects;
 public class MarlinRobotArm extends Node {
     private static final Logger logger = LoggerFactory.getLogger(MarlinRobotArm.class);
     public static final int MAX_JOINTS = 6;
+    // voxels along the longest side of the workspace map.
+    private static final int WORKSPACE_RESOLUTION = 64;
     private final List<NodePath<Motor>> motors = new ArrayList<>();
     private final NodePath<Motor> gripperMotor = new NodePath<>(this,Motor.class);
     private final NodePath<Pose> endEffector = new NodePath<>(this,Pose.class);
@@ -61,8 +67,8 @@ public class MarlinRobotArm extends Node {
     }
 
     @Override
-    public JSONObject toJSON() {
-        JSONObject json = super.toJSON();
+    public JSONObject toJSON(boolean withChildren) {
+        JSONObject json = super.toJSON(withChildren);
         JSONArray jointArray = new JSONArray();
         json.put("version",1);
 
@@ -91,20 +97,19 @@ public class MarlinRobotArm extends Node {
                     if(version==1) {
                         motors.get(i).setPath(motorArray.getString(i));
                     } else if(version==0) {
-                        Motor motor = this.getRootNode().findNodeByID(motorArray.getString(i), Motor.class);
-                        motors.get(i).setRelativePath(this,motor);
+                        String id = motorArray.getString(i);
+                        NodePath<Motor> path = motors.get(i);
+                        resolveAfterLoad(()->path.setRelativePath(this,getRootNode().findNodeByID(id,Motor.class)));
                     }
                 }
             }
         }
-        Node root = this.getRootNode();
         if(from.has("endEffector")) {
             String s = from.getString("endEffector");
             if(version==1) {
                 endEffector.setPath(s);
             } else if(version==0) {
-                Pose goal = root.findNodeByID(s,Pose.class);
-                endEffector.setRelativePath(this,goal);
+                resolveAfterLoad(()->endEffector.setRelativePath(this,getRootNode().findNodeByID(s,Pose.class)));
             }
         }
         if(from.has("target")) {
@@ -112,8 +117,7 @@ public class MarlinRobotArm extends Node {
             if(version==1) {
                 target.setPath(s);
             } else if(version==0) {
-                Pose goal = root.findNodeByID(s,Pose.class);
-                target.setRelativePath(this,goal);
+                resolveAfterLoad(()->target.setRelativePath(this,getRootNode().findNodeByID(s,Pose.class)));
             }
         }
         if(from.has("gripperMotor")) {
@@ -121,8 +125,7 @@ public class MarlinRobotArm extends Node {
             if(version==1) {
                 gripperMotor.setPath(s);
             } else if(version==0) {
-                Motor goal = root.findNodeByID(s,Motor.class);
-                gripperMotor.setRelativePath(this,goal);
+                resolveAfterLoad(()->gripperMotor.setRelativePath(this,getRootNode().findNodeByID(s,Motor.class)));
             }
         }
         if(from.has("linearVelocity")) {
@@ -155,6 +158,10 @@ public class MarlinRobotArm extends Node {
         M114.addActionListener(e-> sendGCode("M114"));
         addLabelAndComponent(pane, "Get state", M114,gbc);
 
+        JButton workspace = new JButton("Map");
+        workspace.addActionListener(e-> mapWorkspace(workspace));
+        addLabelAndComponent(pane, "Workspace", workspace,gbc);
+
         gbc.gridwidth=1;
         gbc.gridy++;
 
@@ -179,6 +186,32 @@ public class MarlinRobotArm extends Node {
         super.getComponents(list);
     }
 
+    /**
+     * Map where the end effector can reach on a background thread, then add the map to the scene next to this arm.
+     * @param button disabled while the map is being made.
+     */
+    private void mapWorkspace(JButton button) {
+        Node parent = getParent();
+        if(parent==null || getEndEffector()==null || getNumJoints()==0) {
+            logger.warn("Workspace needs an end effector and at least one motor.");
+            return;
+        }
+        MarlinRobotArmModel model = new MarlinRobotArmModel(this);
+        button.setEnabled(false);
+        CompletableFuture.supplyAsync(()->{
+            WorkspaceAnalyzer analyzer = new WorkspaceAnalyzer(model);
+            Point3d min = new Point3d();
+            Point3d max = new Point3d();
+            if(!analyzer.findBounds(min,max)) return null;
+            double longest = Math.max(max.x-min.x,Math.max(max.y-min.y,max.z-min.z));
+            return analyzer.sampleJointSpace(min,max,Math.max(longest/WORKSPACE_RESOLUTION,1e-6));
+        }).whenComplete((grid,error)-> SwingUtilities.invokeLater(()->{
+            button.setEnabled(true);
+            if(error!=null) logger.error("Workspace failed.",error);
+            else if(grid!=null) parent.addChild(WorkspacePointCloud.create(grid,getName()+" workspace",WorkspacePointCloud.DEFAULT_BANDS));
+        }));
+    }
+
     private JComponent createVelocitySlider() {
         JPanel container = new JPanel(new BorderLayout());
         // add a slider to control linear velocity
@@ -0,0 +1,113 @@
+package com.marginallyclever.ro3.node.nodes.marlinrobotarm;
+
+import com.marginallyclever.ro3.node.NodeSnapshot;
+import com.marginallyclever.ro3.node.nodes.HingeJoint;
+import com.marginallyclever.ro3.node.nodes.Motor;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import com.marginallyclever.ro3.workspace.ChainPositions;
+import com.marginallyclever.ro3.workspace.ForwardKinematics;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>{@link MarlinRobotArmModel} is the forward kinematics of a {@link MarlinRobotArm}.  It works on a private copy
+ * of the arm so that moving the joints does not change the scene, and so that each copy can run on its own
+ * thread.</p>
+ * <p>Positions are relative to the nearest {@link Pose} above the arm.</p>
+ */
+public class MarlinRobotArmModel implements ForwardKinematics, ChainPositions {
+    private final NodeSnapshot snapshot;
+    private final List<HingeJoint> hinges = new ArrayList<>();
+    // the pose that turns with each hinge.
+    private final List<Pose> axles = new ArrayList<>();
+    private final Pose endEffector;
+    private final Matrix4d world = new Matrix4d();
+
+    /**
+     * @param arm the arm to copy.  It must have an end effector.
+     * @throws IllegalArgumentException if the arm has no end effector.
+     */
+    public MarlinRobotArmModel(MarlinRobotArm arm) {
+        this(NodeSnapshot.of(arm));
+    }
+
+    private MarlinRobotArmModel(NodeSnapshot snapshot) {
+        this.snapshot = snapshot;
+        if(!(snapshot.restore() instanceof MarlinRobotArm arm)) {
+            throw new IllegalArgumentException("Snapshot is not a MarlinRobotArm.");
+        }
+        for(int i=0;i<MarlinRobotArm.MAX_JOINTS;++i) {
+            Motor motor = arm.getJoint(i);
+            if(motor==null || motor.getHinge()==null) continue;
+            hinges.add(motor.getHinge());
+            Pose axle = motor.getHinge().getAxle();
+            axles.add(axle!=null ? axle : motor.getHinge().findParent(Pose.class));
+        }
+        endEffector = arm.getEndEffector();
+        if(endEffector==null) throw new IllegalArgumentException("Arm has no end effector.");
+    }
+
+    @Override
+    public int getNumJoints() {
+        return hinges.size();
+    }
+
+    @Override
+    public double getJointMin(int index) {
+        return hinges.get(index).getMinAngle();
+    }
+
+    @Override
+    public double getJointMax(int index) {
+        return hinges.get(index).getMaxAngle();
+    }
+
+    @Override
+    public boolean getEndEffectorPosition(double[] joints, Point3d result) {
+        for(int i=0;i<hinges.size();++i) {
+            HingeJoint hinge = hinges.get(i);
+            hinge.setAngle(joints[i]);
+            hinge.update(0);
+        }
+        endEffector.getWorld(world);
+        result.set(world.m03,world.m13,world.m23);
+        return true;
+    }
+
+    /**
+     * The base of the arm, every hinge with a {@link Pose} to find it by, and then the end effector.
+     */
+    @Override
+    public int getNumChainPositions() {
+        int count = 2;
+        for(Pose axle : axles) if(axle!=null) count++;
+        return count;
+    }
+
+    @Override
+    public boolean getChainPositions(double[] joints, Point3d[] result) {
+        for(int i=0;i<hinges.size();++i) {
+            HingeJoint hinge = hinges.get(i);
+            hinge.setAngle(joints[i]);
+            hinge.update(0);
+        }
+        result[0].set(0,0,0);
+        int k = 1;
+        for(Pose axle : axles) {
+            if(axle==null) continue;
+            axle.getWorld(world);
+            result[k++].set(world.m03,world.m13,world.m23);
+        }
+        endEffector.getWorld(world);
+        result[k].set(world.m03,world.m13,world.m23);
+        return true;
+    }
+
+    @Override
+    public MarlinRobotArmModel copy() {
+        return new MarlinRobotArmModel(snapshot);
+    }
+}
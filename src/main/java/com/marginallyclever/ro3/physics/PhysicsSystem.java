@@ -0,0 +1,544 @@
+package com.marginallyclever.ro3.physics;
+
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.NodeAttachListener;
+import com.marginallyclever.ro3.node.NodeDetachListener;
+import com.marginallyclever.ro3.node.NodeEventBus;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import com.marginallyclever.ro3.node.nodes.RigidBody3D;
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DMatrix3C;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.ode4j.ode.OdeConstants.*;
+
+/**
+ * <p>{@link PhysicsSystem} simulates every {@link RigidBody3D} in a scene with ode4j.</p>
+ * <p>Bodies are found when the scene is first simulated and then followed through {@link NodeEventBus}, so a
+ * body that is added, pasted, or removed joins or leaves the simulation on the next update.  The system listens to
+ * {@link NodeEventBus} only while it has a scene; {@link #reset()} stops listening.  Collision uses a hash space,
+ * which suits hundreds of bodies of mixed sizes.</p>
+ * <p>The simulation runs in fixed steps of {@link #getStepSize()}.  Before each step a kinematic body follows its
+ * {@link Pose}, and a dynamic body that was moved by someone else (such as the move tool) is put where it was moved.
+ * After each step the dynamic bodies write their results back into their {@link Pose}.  Reading and writing the
+ * {@link Pose}s uses matrices kept by this class, so a frame does not create garbage for them.</p>
+ * <p>World units are centimeters and mass is in kg.  Gravity and the ground plane are off until they are turned on
+ * with {@link #setGravity(Vector3d)} and {@link #setGroundPlane(boolean)}, so opening a scene does not drop its
+ * bodies.</p>
+ */
+public class PhysicsSystem implements NodeAttachListener, NodeDetachListener {
+    private static final Logger logger = LoggerFactory.getLogger(PhysicsSystem.class);
+    public static final double DEFAULT_STEP_SIZE = 1.0/120.0;
+    public static final double EARTH_GRAVITY = -981;  // cm/s/s
+    /**
+     * When a frame takes longer than this many steps, the rest of the time is dropped so the simulation does not
+     * fall further and further behind.
+     */
+    public static final int MAX_STEPS_PER_UPDATE = 8;
+    private static final int MAX_CONTACTS = 8;
+    private static final double GROUND_FRICTION = 1;
+    private static final double BOUNCE_VELOCITY = 1;  // cm/s
+    private static final double MOVED_EPSILON = 1e-6;
+    // cells in the hash space are 2^level cm.
+    private static final int HASH_MIN_LEVEL = -2;
+    private static final int HASH_MAX_LEVEL = 10;
+    /**
+     * When more attach and detach events than this wait for an update, they are dropped and the whole scene is
+     * scanned again at the next update instead.
+     */
+    public static final int MAX_PENDING = 1024;
+
+    /**
+     * The ode4j objects of one {@link RigidBody3D}.
+     */
+    private static class BodyRecord {
+        final RigidBody3D node;
+        DBody body;
+        DGeom geom;
+        int revision;
+        // the world pose last read from or written to the node.
+        final Matrix4d lastWorld = new Matrix4d();
+        final Vector3d surfaceVelocity = new Vector3d();
+
+        BodyRecord(RigidBody3D node) {
+            this.node = node;
+        }
+    }
+
+    private DWorld world;
+    private DHashSpace space;
+    private DJointGroup contactGroup;
+    private DGeom ground;
+    private DContactBuffer contacts;
+    private final DGeom.DNearCallback nearCallback = this::nearCallback;
+
+    // read by the event listeners, which may be on another thread.
+    private volatile Node scene;
+    private boolean listening = false;
+    private final List<BodyRecord> records = new ArrayList<>();
+    private final Map<RigidBody3D,BodyRecord> recordMap = new IdentityHashMap<>();
+    // attach and detach events may come from another thread.  They are applied at the start of the next update.
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private volatile boolean rescan = false;
+
+    private boolean enabled = true;
+    private boolean groundPlane = false;
+    private double stepSize = DEFAULT_STEP_SIZE;
+    private double accumulator = 0;
+    private final Vector3d gravity = new Vector3d();
+
+    private final Matrix4d tempWorld = new Matrix4d();
+    private final Matrix4d tempParent = new Matrix4d();
+    private final DMatrix3 tempRotation = new DMatrix3();
+
+    public PhysicsSystem() {
+        super();
+    }
+
+    /**
+     * Advance the simulation.  Call once per frame.
+     * @param scene the root of the tree to simulate.  When it changes all bodies are rebuilt.
+     * @param dt seconds since the last call.
+     */
+    public void update(Node scene, double dt) {
+        if(scene!=this.scene || rescan) setScene(scene);
+        Runnable r;
+        while((r = pending.poll())!=null) {
+            pendingCount.decrementAndGet();
+            r.run();
+        }
+
+        if(!enabled || dt<=0 || records.isEmpty()) return;
+
+        accumulator += dt;
+        int steps = 0;
+        while(accumulator>=stepSize) {
+            if(steps==MAX_STEPS_PER_UPDATE) {
+                accumulator = 0;
+                break;
+            }
+            step();
+            accumulator -= stepSize;
+            steps++;
+        }
+    }
+
+    private void step() {
+        for(int i=0;i<records.size();++i) {
+            readPose(records.get(i));
+        }
+        space.collide(null,nearCallback);
+        world.quickStep(stepSize);
+        contactGroup.empty();
+        for(int i=0;i<records.size();++i) {
+            writePose(records.get(i));
+        }
+    }
+
+    /**
+     * Remove every body and start over with a new tree.
+     */
+    private void setScene(Node newScene) {
+        clearBodies();
+        clearPending();
+        rescan = false;
+        scene = newScene;
+        accumulator = 0;
+        setListening(scene!=null);
+        if(scene!=null) addSubtree(scene);
+    }
+
+    private void setListening(boolean listen) {
+        if(listen==listening) return;
+        listening = listen;
+        if(listen) {
+            NodeEventBus.addAttachListener(this);
+            NodeEventBus.addDetachListener(this);
+        } else {
+            NodeEventBus.removeAttachListener(this);
+            NodeEventBus.removeDetachListener(this);
+        }
+    }
+
+    @Override
+    public void nodeAttached(Node child) {
+        // the event comes after the child is added, so only nodes in the current scene are queued.
+        Node current = scene;
+        if(current==null || child.getRootNode()!=current) return;
+        queue(() -> {
+            if(child.getRootNode()==scene) addSubtree(child);
+        });
+    }
+
+    @Override
+    public void nodeDetached(Node child) {
+        // the event comes before the child is removed, so it is still in the scene now.
+        Node current = scene;
+        if(current==null || child.getRootNode()!=current) return;
+        List<RigidBody3D> found = findBodies(child);
+        if(!found.isEmpty()) queue(() -> found.forEach(this::removeBody));
+    }
+
+    /**
+     * Wait for the next update.  If nobody is calling update, stop queueing and scan the scene again later.
+     */
+    private void queue(Runnable r) {
+        if(rescan) return;
+        if(pendingCount.incrementAndGet()>MAX_PENDING) {
+            rescan = true;
+            clearPending();
+            return;
+        }
+        pending.add(r);
+    }
+
+    private void clearPending() {
+        pending.clear();
+        pendingCount.set(0);
+    }
+
+    private void addSubtree(Node root) {
+        for(RigidBody3D body : findBodies(root)) {
+            if(!recordMap.containsKey(body)) addBody(body);
+        }
+    }
+
+    private List<RigidBody3D> findBodies(Node root) {
+        List<RigidBody3D> found = new ArrayList<>();
+        Deque<Node> toVisit = new ArrayDeque<>();
+        toVisit.add(root);
+        while(!toVisit.isEmpty()) {
+            Node n = toVisit.pop();
+            if(n instanceof RigidBody3D rb) found.add(rb);
+            toVisit.addAll(n.getChildren());
+        }
+        return found;
+    }
+
+    private void addBody(RigidBody3D node) {
+        start();
+        BodyRecord record = new BodyRecord(node);
+        build(record);
+        records.add(record);
+        recordMap.put(node,record);
+    }
+
+    private void removeBody(RigidBody3D node) {
+        BodyRecord record = recordMap.remove(node);
+        if(record==null) return;
+        destroy(record);
+        // swap the last record into the hole so removal does not shift the list.
+        int index = records.indexOf(record);
+        int last = records.size()-1;
+        records.set(index,records.get(last));
+        records.remove(last);
+    }
+
+    private void clearBodies() {
+        for(BodyRecord record : records) destroy(record);
+        records.clear();
+        recordMap.clear();
+    }
+
+    /**
+     * Create the ode4j world the first time a body is added.
+     */
+    private void start() {
+        if(world!=null) return;
+        if(OdeHelper.initODE2(0)==0) {
+            logger.error("ODE init failed.");
+        }
+        world = OdeHelper.createWorld();
+        world.setGravity(gravity.x,gravity.y,gravity.z);
+        world.setAutoDisableFlag(true);
+        space = OdeHelper.createHashSpace(null);
+        space.setLevels(HASH_MIN_LEVEL,HASH_MAX_LEVEL);
+        contactGroup = OdeHelper.createJointGroup();
+        contacts = new DContactBuffer(MAX_CONTACTS);
+        if(groundPlane) ground = OdeHelper.createPlane(space,0,0,1,0);
+    }
+
+    /**
+     * Destroy every body and the ode4j world, and stop listening to {@link NodeEventBus}.
+     */
+    public void reset() {
+        setListening(false);
+        clearBodies();
+        clearPending();
+        rescan = false;
+        scene = null;
+        accumulator = 0;
+        if(world==null) return;
+        contactGroup.destroy();
+        space.destroy();
+        world.destroy();
+        world = null;
+        space = null;
+        contactGroup = null;
+        ground = null;
+    }
+
+    /**
+     * (Re)create the body and geometry from the settings of the node.
+     */
+    private void build(BodyRecord record) {
+        destroy(record);
+        RigidBody3D node = record.node;
+        Vector3d size = node.getSize();
+        double m = node.getMass();
+
+        DMass mass = OdeHelper.createMass();
+        switch(node.getShape()) {
+            case SPHERE -> {
+                record.geom = OdeHelper.createSphere(space,size.x);
+                mass.setSphereTotal(m,size.x);
+            }
+            case CAPSULE -> {
+                record.geom = OdeHelper.createCapsule(space,size.x,size.z);
+                mass.setCapsuleTotal(m,3,size.x,size.z);
+            }
+            case CYLINDER -> {
+                record.geom = OdeHelper.createCylinder(space,size.x,size.z);
+                mass.setCylinderTotal(m,3,size.x,size.z);
+            }
+            default -> {
+                record.geom = OdeHelper.createBox(space,size.x,size.y,size.z);
+                mass.setBoxTotal(m,size.x,size.y,size.z);
+            }
+        }
+        Vector3d inertia = node.getInertia();
+        if(inertia.x>0 && inertia.y>0 && inertia.z>0) {
+            mass.setParameters(m,0,0,0,inertia.x,inertia.y,inertia.z,0,0,0);
+        }
+
+        record.body = OdeHelper.createBody(world);
+        record.body.setMass(mass);
+        if(node.isKinematic()) record.body.setKinematic();
+        record.geom.setBody(record.body);
+        record.geom.setData(record);
+
+        node.getWorld(record.lastWorld);
+        setBodyTransform(record.body,record.lastWorld);
+        record.revision = node.getRevision();
+    }
+
+    private void destroy(BodyRecord record) {
+        if(record.geom!=null) record.geom.destroy();
+        if(record.body!=null) record.body.destroy();
+        record.geom = null;
+        record.body = null;
+    }
+
+    /**
+     * Bring the body up to date with its node before a step.
+     */
+    private void readPose(BodyRecord record) {
+        RigidBody3D node = record.node;
+        if(record.revision!=node.getRevision()) build(record);
+
+        node.getWorld(tempWorld);
+        if(node.isKinematic()) {
+            // move at the speed the pose moved, so that contacts push dynamic bodies correctly.
+            record.body.setLinearVel(
+                    (tempWorld.m03-record.lastWorld.m03)/stepSize,
+                    (tempWorld.m13-record.lastWorld.m13)/stepSize,
+                    (tempWorld.m23-record.lastWorld.m23)/stepSize);
+            setBodyTransform(record.body,tempWorld);
+            record.lastWorld.set(tempWorld);
+        } else if(!tempWorld.epsilonEquals(record.lastWorld,MOVED_EPSILON)) {
+            // moved by someone else.  start again from the new place.
+            setBodyTransform(record.body,tempWorld);
+            record.body.setLinearVel(0,0,0);
+            record.body.setAngularVel(0,0,0);
+            record.body.enable();
+            record.lastWorld.set(tempWorld);
+        }
+
+        record.surfaceVelocity.set(node.getSurfaceVelocity());
+        tempWorld.transform(record.surfaceVelocity);
+    }
+
+    /**
+     * Copy the result of a step into the node.
+     */
+    private void writePose(BodyRecord record) {
+        DBody body = record.body;
+        if(body.isKinematic() || !body.isEnabled()) return;
+
+        DVector3C p = body.getPosition();
+        DMatrix3C r = body.getRotation();
+        Matrix4d m = tempWorld;
+        m.m00 = r.get00();  m.m01 = r.get01();  m.m02 = r.get02();  m.m03 = p.get0();
+        m.m10 = r.get10();  m.m11 = r.get11();  m.m12 = r.get12();  m.m13 = p.get1();
+        m.m20 = r.get20();  m.m21 = r.get21();  m.m22 = r.get22();  m.m23 = p.get2();
+        m.m30 = 0;          m.m31 = 0;          m.m32 = 0;          m.m33 = 1;
+
+        RigidBody3D node = record.node;
+        Pose parent = node.findParent(Pose.class);
+        if(parent==null) {
+            node.getLocal().set(m);
+        } else {
+            parent.getWorld(tempParent);
+            invertAffine(tempParent);
+            node.getLocal().mul(tempParent,m);
+        }
+        record.lastWorld.set(m);
+    }
+
+    private void setBodyTransform(DBody body,Matrix4d m) {
+        body.setPosition(m.m03,m.m13,m.m23);
+        DMatrix3 r = tempRotation;
+        r.set00(m.m00);  r.set01(m.m01);  r.set02(m.m02);
+        r.set10(m.m10);  r.set11(m.m11);  r.set12(m.m12);
+        r.set20(m.m20);  r.set21(m.m21);  r.set22(m.m22);
+        body.setRotation(r);
+    }
+
+    /**
+     * Invert a matrix whose last row is 0,0,0,1 without creating temporary arrays.
+     */
+    static void invertAffine(Matrix4d m) {
+        double a = m.m00, b = m.m01, c = m.m02;
+        double d = m.m10, e = m.m11, f = m.m12;
+        double g = m.m20, h = m.m21, i = m.m22;
+        double c00 = e*i-f*h, c01 = c*h-b*i, c02 = b*f-c*e;
+        double c10 = f*g-d*i, c11 = a*i-c*g, c12 = c*d-a*f;
+        double c20 = d*h-e*g, c21 = b*g-a*h, c22 = a*e-b*d;
+        double det = a*c00 + b*c10 + c*c20;
+        if(Math.abs(det)<1e-12) throw new ArithmeticException("Matrix cannot be inverted.");
+        double s = 1.0/det;
+        double tx = m.m03, ty = m.m13, tz = m.m23;
+        m.m00 = c00*s;  m.m01 = c01*s;  m.m02 = c02*s;
+        m.m10 = c10*s;  m.m11 = c11*s;  m.m12 = c12*s;
+        m.m20 = c20*s;  m.m21 = c21*s;  m.m22 = c22*s;
+        m.m03 = -(m.m00*tx + m.m01*ty + m.m02*tz);
+        m.m13 = -(m.m10*tx + m.m11*ty + m.m12*tz);
+        m.m23 = -(m.m20*tx + m.m21*ty + m.m22*tz);
+    }
+
+    private void nearCallback(Object data,DGeom o1,DGeom o2) {
+        DBody b1 = o1.getBody();
+        DBody b2 = o2.getBody();
+        if(!isDynamic(b1) && !isDynamic(b2)) return;
+        if(b1!=null && b2!=null && OdeHelper.areConnectedExcluding(b1,b2,DContactJoint.class)) return;
+
+        int n = OdeHelper.collide(o1,o2,MAX_CONTACTS,contacts.getGeomBuffer());
+        if(n==0) return;
+
+        BodyRecord r1 = (BodyRecord)o1.getData();
+        BodyRecord r2 = (BodyRecord)o2.getData();
+        double f1 = (r1==null) ? GROUND_FRICTION : r1.node.getFriction();
+        double f2 = (r2==null) ? GROUND_FRICTION : r2.node.getFriction();
+        double bounce = Math.max(r1==null ? 0 : r1.node.getBounce(), r2==null ? 0 : r2.node.getBounce());
+
+        for(int i=0;i<n;++i) {
+            DContact contact = contacts.get(i);
+            contact.surface.mode = dContactApprox1;
+            contact.surface.mu = Math.sqrt(Math.max(0,f1*f2));
+            if(bounce>0) {
+                contact.surface.mode |= dContactBounce;
+                contact.surface.bounce = bounce;
+                contact.surface.bounce_vel = BOUNCE_VELOCITY;
+            }
+            // a moving surface on o1 moves o2 the other way, see the contact joint constraint v1-v2=motion1.
+            boolean moving = r1!=null && setSurfaceMotion(contact,r1.surfaceVelocity,-1);
+            if(!moving && r2!=null) setSurfaceMotion(contact,r2.surfaceVelocity,1);
+            DJoint joint = OdeHelper.createContactJoint(world,contactGroup,contact);
+            joint.attach(b1,b2);
+        }
+    }
+
+    /**
+     * Use the part of the surface velocity that is along the contact plane as the first friction direction.
+     * @return true if the surface is moving along the contact plane.
+     */
+    private boolean setSurfaceMotion(DContact contact,Vector3d velocity,double sign) {
+        if(velocity.x==0 && velocity.y==0 && velocity.z==0) return false;
+        DVector3C normal = contact.geom.normal;
+        double nx = normal.get0(), ny = normal.get1(), nz = normal.get2();
+        double along = velocity.x*nx + velocity.y*ny + velocity.z*nz;
+        double tx = velocity.x - along*nx;
+        double ty = velocity.y - along*ny;
+        double tz = velocity.z - along*nz;
+        double speed = Math.sqrt(tx*tx+ty*ty+tz*tz);
+        if(speed<1e-9) return false;
+        contact.fdir1.set(tx/speed,ty/speed,tz/speed);
+        contact.surface.mode |= dContactFDir1 | dContactMotion1;
+        contact.surface.motion1 = sign*speed;
+        return true;
+    }
+
+    private static boolean isDynamic(DBody body) {
+        return body!=null && !body.isKinematic();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled false to pause the simulation.  Bodies stay where they are.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        accumulator = 0;
+    }
+
+    public double getStepSize() {
+        return stepSize;
+    }
+
+    /**
+     * @param stepSize seconds per simulation step.
+     */
+    public void setStepSize(double stepSize) {
+        if(stepSize<=0) throw new IllegalArgumentException("stepSize must be greater than zero.");
+        this.stepSize = stepSize;
+    }
+
+    public Vector3d getGravity() {
+        return new Vector3d(gravity);
+    }
+
+    /**
+     * @param gravity in cm/s/s.
+     */
+    public void setGravity(Vector3d gravity) {
+        this.gravity.set(gravity);
+        if(world!=null) world.setGravity(gravity.x,gravity.y,gravity.z);
+    }
+
+    public boolean hasGroundPlane() {
+        return groundPlane;
+    }
+
+    /**
+     * @param groundPlane true to have bodies collide with the plane z=0.
+     */
+    public void setGroundPlane(boolean groundPlane) {
+        this.groundPlane = groundPlane;
+        if(space==null) return;
+        if(groundPlane && ground==null) ground = OdeHelper.createPlane(space,0,0,1,0);
+        else if(!groundPlane && ground!=null) {
+            ground.destroy();
+            ground = null;
+        }
+    }
+
+    /**
+     * @return the number of bodies being simulated.
+     */
+    public int getBodyCount() {
+        return records.size();
+    }
+}
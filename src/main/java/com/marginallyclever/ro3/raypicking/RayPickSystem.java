@@ -2,7 +2,7 @@ package com.marginallyclever.ro3.raypicking;
 
 import com.marginallyclever.convenience.Ray;
 import com.marginallyclever.ro3.Registry;
-import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.SceneSnapshot;
 import com.marginallyclever.ro3.node.nodes.MeshInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,23 +36,20 @@ public class RayPickSystem {
     }
 
     /**
-     * Traverse the scene {@link Node}s and find all the {@link MeshInstance}s that collide with the ray.
+     * Find all the {@link MeshInstance}s that collide with the ray.  The scene is tested as it was last drawn, using
+     * the world transforms in the {@link SceneSnapshot} of that frame.
      * @param ray the ray to test.
      * @return all {@link RayHit} by the ray.  It may be an empty list.
      */
     public List<RayHit> findRayIntersections(Ray ray) {
         List<RayHit> rayHits = new ArrayList<>();
+        Matrix4d world = new Matrix4d();
 
-        Queue<Node> toTest = new LinkedList<>();
-        toTest.add(Registry.getScene());
-        while(!toTest.isEmpty()) {
-            Node node = toTest.remove();
-            toTest.addAll(node.getChildren());
-
-            if(node instanceof MeshInstance mesh) {
-                RayHit hit = mesh.intersect(ray);
-                if (hit != null) rayHits.add(hit);
-            }
+        SceneSnapshot snapshot = Registry.sceneChanges.getSnapshot(Registry.getScene());
+        for(SceneSnapshot.Entry entry : snapshot.findAll(MeshInstance.class)) {
+            entry.getWorld(world);
+            RayHit hit = ((MeshInstance)entry.getNode()).intersect(ray,world);
+            if (hit != null) rayHits.add(hit);
         }
         return rayHits;
     }
@@ -0,0 +1,80 @@
+package com.marginallyclever.ro3.texture;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>{@link TextureCache} keeps decoded images by the hash of the file they came from, so two files with the same
+ * contents are only decoded once.  When the images use more than the memory budget the least recently used are
+ * dropped.  They are decoded again the next time they are needed.</p>
+ */
+class TextureCache {
+    public static final long DEFAULT_BUDGET = 256L*1024*1024;
+
+    // access order, so the first entry is the least recently used.
+    private final LinkedHashMap<String,BufferedImage> images = new LinkedHashMap<>(16,0.75f,true);
+    private long budget = DEFAULT_BUDGET;
+    private long used = 0;
+
+    synchronized BufferedImage get(String key) {
+        return images.get(key);
+    }
+
+    /**
+     * Add an image and drop old images until the cache is under budget.  The new image is never dropped, even if it
+     * is larger than the budget by itself.
+     */
+    synchronized void put(String key,BufferedImage image) {
+        BufferedImage old = images.put(key,image);
+        if(old!=null) used -= getBytes(old);
+        used += getBytes(image);
+        trim(key);
+    }
+
+    synchronized void remove(String key) {
+        BufferedImage old = images.remove(key);
+        if(old!=null) used -= getBytes(old);
+    }
+
+    synchronized void clear() {
+        images.clear();
+        used = 0;
+    }
+
+    private void trim(String keep) {
+        Iterator<Map.Entry<String,BufferedImage>> iter = images.entrySet().iterator();
+        while(used>budget && iter.hasNext()) {
+            Map.Entry<String,BufferedImage> entry = iter.next();
+            if(entry.getKey().equals(keep)) continue;
+            used -= getBytes(entry.getValue());
+            iter.remove();
+        }
+    }
+
+    /**
+     * @return about how many bytes of memory the image uses.
+     */
+    static long getBytes(BufferedImage image) {
+        return (long)image.getWidth() * image.getHeight() * 4;
+    }
+
+    synchronized long getBudget() {
+        return budget;
+    }
+
+    synchronized void setBudget(long bytes) {
+        if(bytes<0) throw new IllegalArgumentException("budget must not be negative.");
+        budget = bytes;
+        trim(null);
+    }
+
+    synchronized long getUsed() {
+        return used;
+    }
+
+    synchronized int size() {
+        return images.size();
+    }
+}
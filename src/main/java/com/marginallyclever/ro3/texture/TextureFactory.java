@@ -1,59 +1,255 @@
 package com.marginallyclever.ro3.texture;
 
 import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.util.texture.TextureData;
 import com.marginallyclever.convenience.helpers.FileHelper;
 import com.marginallyclever.ro3.listwithevents.ListWithEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * {@link TextureFactory} loads textures from files.
+ * <p>{@link TextureFactory} loads textures from files.</p>
+ * <p>{@link #load(String)} only reads the file and the size of the image.  Decoding happens on a pool of worker
+ * threads, and a texture is drawn without its image until it is ready.  Decoded images are kept in a
+ * {@link TextureCache} by the hash of the file, so files with the same contents share one image.  Once a texture
+ * is on the GPU its image is dropped from the cache, and it is decoded again if the OpenGL context is lost or if
+ * something asks for the pixels.</p>
+ * <p>Every factory shares one pool of decoder threads.  The threads are daemons, so they do not keep the application
+ * running.</p>
  */
 public class TextureFactory {
     private static final Logger logger = LoggerFactory.getLogger(TextureFactory.class);
     private final ListWithEvents<TextureWithMetadata> texturePool = new ListWithEvents<>();
+    private final Map<String,TextureWithMetadata> bySource = new HashMap<>();
+    private final TextureCache cache = new TextureCache();
+    // decodes in progress, by content key.
+    private final Map<String,CompletableFuture<BufferedImage>> decoding = new HashMap<>();
+    // small copies for the user interface, by content key and size.
+    private final Map<String,BufferedImage> thumbnails = new HashMap<>();
+    private static final ExecutorService decoder = Executors.newFixedThreadPool(
+            Math.max(1,Runtime.getRuntime().availableProcessors()-1),
+            new DecoderThreadFactory());
+
+    private static class DecoderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r,"TextureDecoder-"+count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 
     public TextureFactory() {}
 
     /**
-     * Load a texture from a file.
+     * Load a texture from a file.  The image is decoded in the background.
      * @param filename the file to load.
-     * @return the texture, or null if the file could not be loaded.
+     * @return the texture, or null if the file could not be read or is not an image.
      */
     public TextureWithMetadata load(String filename) {
         String absolutePath = FileHelper.getAbsolutePathOrFilename(filename);
 
-        for(TextureWithMetadata t : texturePool.getList()) {
-            if(t.getSource().equals(absolutePath)) {
-                return t;
-            }
+        synchronized(this) {
+            TextureWithMetadata t = bySource.get(absolutePath);
+            if(t!=null) return t;
         }
+
         TextureWithMetadata t = loadTexture(absolutePath);
-        if(t!=null) texturePool.add(t);
+        if(t==null) return null;
+
+        synchronized(this) {
+            // another thread may have loaded the same file while this one was reading.
+            TextureWithMetadata other = bySource.get(absolutePath);
+            if(other!=null) return other;
+            bySource.put(absolutePath,t);
+        }
+        texturePool.add(t);
         return t;
     }
 
     private TextureWithMetadata loadTexture(String filename) {
         try {
-            BufferedImage image = ImageIO.read(FileHelper.open(filename));
-            return new TextureWithMetadata(image, filename);
+            byte [] bytes = readAllBytes(filename);
+            int [] size = readSize(bytes);
+            if(size==null) {
+                logger.error("Not an image: "+filename);
+                return null;
+            }
+            TextureWithMetadata t = new TextureWithMetadata(this,filename,getContentKey(bytes),size[0],size[1]);
+            decode(t,bytes);
+            return t;
         } catch (IOException e) {
             logger.error("Failed to load from "+filename,e);
             return null;
         }
     }
 
+    private static byte [] readAllBytes(String filename) throws IOException {
+        try(InputStream in = FileHelper.open(filename)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Read the width and height from the header of the image without decoding it.
+     * @return width and height, or null if no {@link ImageReader} understands the bytes.
+     */
+    static int [] readSize(byte [] bytes) throws IOException {
+        try(ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in,true,true);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the bytes, in hex.
+     */
+    static String getContentKey(byte [] bytes) {
+        try {
+            byte [] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder sb = new StringBuilder(digest.length*2);
+            for(byte b : digest) sb.append(String.format("%02x",b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform must have SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Start decoding a texture unless it is already decoded or being decoded.
+     * @param bytes the contents of the file, or null to read it again.
+     * @return the image, when it is ready.
+     */
+    private synchronized CompletableFuture<BufferedImage> decode(TextureWithMetadata t,byte [] bytes) {
+        String key = t.getContentKey();
+        BufferedImage image = cache.get(key);
+        if(image!=null) return CompletableFuture.completedFuture(image);
+
+        CompletableFuture<BufferedImage> future = decoding.get(key);
+        if(future!=null) return future;
+
+        CompletableFuture<BufferedImage> result = new CompletableFuture<>();
+        decoding.put(key,result);
+        decoder.execute(() -> {
+            try {
+                BufferedImage decoded = decodeNow(t.getSource(),bytes);
+                // in the cache before anyone waiting is told.
+                synchronized(TextureFactory.this) {
+                    decoding.remove(key);
+                    cache.put(key,decoded);
+                }
+                result.complete(decoded);
+            } catch(Exception e) {
+                synchronized(TextureFactory.this) {
+                    decoding.remove(key);
+                }
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static BufferedImage decodeNow(String filename,byte [] bytes) {
+        try {
+            if(bytes==null) bytes = readAllBytes(filename);
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            if(image==null) throw new IOException("Not an image.");
+            return image;
+        } catch (IOException e) {
+            logger.error("Failed to decode "+filename,e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the pixels of a texture, decoding them if they are not in the cache.  This may take a while.
+     * @return the image, or null if it could not be decoded.
+     */
+    BufferedImage getImage(TextureWithMetadata t) {
+        try {
+            return decode(t,null).join();
+        } catch (CompletionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get a small copy of a texture, decoding and scaling it on a worker thread.  Thumbnails are kept, so the
+     * second request for the same size is ready at once.
+     * @return the thumbnail when it is ready, or null if the image could not be decoded.
+     */
+    synchronized CompletableFuture<BufferedImage> getThumbnail(TextureWithMetadata t,int size) {
+        String key = t.getContentKey()+":"+size;
+        BufferedImage found = thumbnails.get(key);
+        if(found!=null) return CompletableFuture.completedFuture(found);
+
+        return decode(t,null).thenApplyAsync(image -> {
+            BufferedImage small = createThumbnail(image,size);
+            synchronized(TextureFactory.this) {
+                thumbnails.put(key,small);
+            }
+            return small;
+        },decoder).exceptionally(e -> null);
+    }
+
+    /**
+     * @return the image scaled to size x size.
+     */
+    static BufferedImage createThumbnail(BufferedImage image,int size) {
+        BufferedImage small = new BufferedImage(size,size,BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = small.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING,RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image,0,0,size,size,null);
+        g.dispose();
+        return small;
+    }
+
+    /**
+     * Decode the texture and prepare it for upload, all on a worker thread.
+     */
+    CompletableFuture<TextureData> prepareUpload(TextureWithMetadata t) {
+        return decode(t,null).thenApplyAsync(TextureWithMetadata::createTextureData,decoder);
+    }
+
+    /**
+     * Called when a texture is on the GPU, so the pixels are not needed any more.
+     */
+    void uploaded(TextureWithMetadata t) {
+        cache.remove(t.getContentKey());
+    }
+
     /**
      * Unloads all OpenGL textures so that they can be reloaded on the next call to {@link GLAutoDrawable#display()}.
-     * Does not free the underlying {@link BufferedImage} data.
+     * Their images are decoded again in the background.
      */
     public void unloadAll() {
         for(TextureWithMetadata t : texturePool.getList()) {
@@ -91,4 +287,22 @@ public class TextureFactory {
 
         return result;
     }
+
+    /**
+     * @return the most memory, in bytes, that decoded images may use before the least recently used are dropped.
+     */
+    public long getMemoryBudget() {
+        return cache.getBudget();
+    }
+
+    public void setMemoryBudget(long bytes) {
+        cache.setBudget(bytes);
+    }
+
+    /**
+     * @return about how much memory, in bytes, the decoded images use now.
+     */
+    public long getMemoryUsed() {
+        return cache.getUsed();
+    }
 }
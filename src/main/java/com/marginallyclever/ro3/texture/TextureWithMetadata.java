@@ -4,25 +4,55 @@ import com.jogamp.opengl.GL3;
 import com.jogamp.opengl.GLContext;
 import com.jogamp.opengl.GLProfile;
 import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
+import com.jogamp.opengl.util.texture.TextureIO;
 import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 import com.marginallyclever.ro3.apps.render.ShaderProgram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * {@link TextureWithMetadata} is an OpenGL {@link Texture} with metadata about where it came from and the source
- * image.
+ * <p>{@link TextureWithMetadata} is an OpenGL {@link Texture} with metadata about where it came from and the source
+ * image.</p>
+ * <p>Textures made by a {@link TextureFactory} do not hold their pixels.  The factory decodes them on demand and
+ * they are uploaded with mipmaps once they are ready.  Until then the texture is not used.</p>
  */
 public class TextureWithMetadata {
+    private static final Logger logger = LoggerFactory.getLogger(TextureWithMetadata.class);
+    private final TextureFactory factory;
+    // only for textures that were not made by a factory.
     private final BufferedImage image;
+    private final String contentKey;
+    private final int width;
+    private final int height;
     private Texture texture;
+    private CompletableFuture<TextureData> pendingUpload;
+    private boolean uploadFailed = false;
     private final String source;
     private boolean doNotExport=false;
 
     public TextureWithMetadata(BufferedImage image,String source) {
         super();
+        this.factory = null;
         this.image = image;
         this.source = source;
+        this.contentKey = null;
+        this.width = (image==null) ? 0 : image.getWidth();
+        this.height = (image==null) ? 0 : image.getHeight();
+    }
+
+    TextureWithMetadata(TextureFactory factory,String source,String contentKey,int width,int height) {
+        super();
+        this.factory = factory;
+        this.image = null;
+        this.source = source;
+        this.contentKey = contentKey;
+        this.width = width;
+        this.height = height;
     }
 
     public Texture getTexture() {
@@ -33,8 +63,30 @@ public class TextureWithMetadata {
         return source;
     }
 
+    /**
+     * @return the hash of the file contents, or null if this texture was not loaded by a {@link TextureFactory}.
+     */
+    String getContentKey() {
+        return contentKey;
+    }
+
+    /**
+     * The pixels may have to be decoded first, which can take a while for a big image.
+     * @return the source image, or null if it could not be decoded.
+     */
     public BufferedImage getImage() {
-        return image;
+        return (factory==null) ? image : factory.getImage(this);
+    }
+
+    /**
+     * A small copy of the image for the user interface.  Decoding and scaling happen on a worker thread, so this
+     * does not wait.
+     * @param size the width and height of the thumbnail.
+     * @return the thumbnail when it is ready, or null if the image could not be decoded.
+     */
+    public CompletableFuture<BufferedImage> getThumbnail(int size) {
+        if(factory!=null) return factory.getThumbnail(this,size);
+        return CompletableFuture.completedFuture(image==null ? null : TextureFactory.createThumbnail(image,size));
     }
 
     /**
@@ -43,17 +95,9 @@ public class TextureWithMetadata {
      * @param shader the shader to use.
      */
     public void use(ShaderProgram shader) {
-        if(texture==null) {
-            BufferedImage flip = new BufferedImage(image.getWidth(),image.getHeight(),BufferedImage.TYPE_INT_ARGB);
-            for(int y=0;y<image.getHeight();++y) {
-                for(int x=0;x<image.getWidth();++x) {
-                    flip.setRGB(x,y,image.getRGB(x,image.getHeight()-y-1));
-                }
-            }
-            texture = AWTTextureIO.newTexture(GLProfile.getDefault(), flip, false);
-        }
-
         GL3 gl3 = GLContext.getCurrentGL().getGL3();
+        if(texture==null) upload(gl3);
+
         if(texture==null) {
             gl3.glDisable(GL3.GL_TEXTURE_2D);
             shader.set1i(gl3,"useTexture",0);
@@ -65,24 +109,73 @@ public class TextureWithMetadata {
         }
     }
 
+    /**
+     * Start preparing the texture on the first call.  Upload it on the first call after it is ready.
+     */
+    private void upload(GL3 gl3) {
+        if(uploadFailed) return;
+        if(pendingUpload==null) {
+            pendingUpload = (factory==null)
+                    ? CompletableFuture.completedFuture(image==null ? null : createTextureData(image))
+                    : factory.prepareUpload(this);
+        }
+        if(!pendingUpload.isDone()) return;
+
+        TextureData data = pendingUpload.exceptionally(e -> null).join();
+        pendingUpload = null;
+        if(data==null) {
+            uploadFailed = true;
+            return;
+        }
+        try {
+            texture = TextureIO.newTexture(data);
+            texture.setTexParameteri(gl3,GL3.GL_TEXTURE_MIN_FILTER,GL3.GL_LINEAR_MIPMAP_LINEAR);
+            texture.setTexParameteri(gl3,GL3.GL_TEXTURE_MAG_FILTER,GL3.GL_LINEAR);
+        } catch(Exception e) {
+            logger.error("Failed to upload {}",source,e);
+            uploadFailed = true;
+        } finally {
+            data.flush();
+        }
+        if(texture!=null && factory!=null) factory.uploaded(this);
+    }
+
+    /**
+     * OpenGL puts the first row of the image at v=0, which is the bottom of the texture, so flip the image before
+     * upload.  Safe to call from any thread.
+     * @return the texture data with mipmaps.
+     */
+    static TextureData createTextureData(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        BufferedImage flip = new BufferedImage(w,h,BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = flip.createGraphics();
+        g.drawImage(image,0,0,w,h,0,h,w,0,null);
+        g.dispose();
+        return AWTTextureIO.newTextureData(GLProfile.getDefault(),flip,true);
+    }
+
     /**
      * Must only be called when there is a valid OpenGL render context, likely from within
-     * a {@link com.jogamp.opengl.GLAutoDrawable}.
+     * a {@link com.jogamp.opengl.GLAutoDrawable}.  The texture will be uploaded again the next time it is used.
      */
     public void unload() {
+        uploadFailed = false;
+        if(pendingUpload!=null) {
+            pendingUpload.cancel(false);
+            pendingUpload = null;
+        }
         if(texture==null) return;
         texture.destroy(GLContext.getCurrentGL().getGL3());
         texture = null;
     }
 
     public int getWidth() {
-        if(image==null) return 0;
-        return image.getWidth();
+        return width;
     }
 
     public int getHeight() {
-        if(image==null) return 0;
-        return image.getHeight();
+        return height;
     }
 
     public boolean isDoNotExport() {
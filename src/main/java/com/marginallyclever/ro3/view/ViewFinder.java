@@ -1,23 +1,34 @@
 package com.marginallyclever.ro3.view;
 
-import org.reflections.Reflections;
-import org.reflections.scanners.Scanners;
+import com.marginallyclever.ro3.classindex.ClassIndex;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
- * Finds all classes annotated with {@link View} that are for the given target class.
+ * Finds all classes annotated with {@link View} that are for the given target class.  The classes come from the
+ * {@link ClassIndex} and the list for each target class is only worked out once.
  */
 public class ViewFinder {
-    public static Set<ViewProvider<?>> findViews(Class<?> targetClass) {
-        Reflections reflections = new Reflections("com.marginallyclever", Scanners.TypesAnnotated);
-        Set<Class<?>> annotatedClasses = reflections.getTypesAnnotatedWith(View.class);
+    private static final ClassValue<List<Class<?>>> viewsFor = new ClassValue<>() {
+        @Override
+        protected List<Class<?>> computeValue(Class<?> targetClass) {
+            List<Class<?>> list = new ArrayList<>();
+            for(Class<?> cls : ClassIndex.getViews()) {
+                if(ViewProvider.class.isAssignableFrom(cls) && isViewApplicableForClass(cls, targetClass)) {
+                    list.add(cls);
+                }
+            }
+            return Collections.unmodifiableList(list);
+        }
+    };
 
-        return annotatedClasses.stream()
-                .filter(cls -> isViewApplicableForClass(cls, targetClass))
-                .filter(ViewProvider.class::isAssignableFrom)
+    public static Set<ViewProvider<?>> findViews(Class<?> targetClass) {
+        return viewsFor.get(targetClass).stream()
                 .map(cls -> {
                     try {
                         return (ViewProvider<?>) cls.getDeclaredConstructor().newInstance();
@@ -0,0 +1,116 @@
+package com.marginallyclever.ro3.workcell;
+
+import com.marginallyclever.convenience.Cylinder;
+import com.marginallyclever.ro3.workspace.ChainPositions;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>{@link WorkcellArm} is one robot in a shared workcell as seen by the {@link WorkcellScheduler}: its kinematics,
+ * where it stands, how thick it is, how fast it moves and the work it has queued.</p>
+ * <p>The work is a list of tasks.  Each task is a list of joint states visited in order.  A task is never split, but
+ * the scheduler may do whole tasks in a different order.</p>
+ * <p>Every move is a straight line in joint space.  A move takes as long as the joint that moves furthest needs at
+ * the top speed.</p>
+ */
+public class WorkcellArm {
+    private final String name;
+    private final ChainPositions model;
+    private final Matrix4d base = new Matrix4d();
+    private final double radius;
+    private final double maxJointSpeed;
+    private final double [] home;
+    private final List<double[][]> tasks = new ArrayList<>();
+    private final Point3d [] points;
+    private final Vector3d end = new Vector3d();
+
+    /**
+     * @param name for reports.
+     * @param model the kinematics of the arm.  The arm keeps a copy.
+     * @param base the pose of the base of the arm in the workcell.
+     * @param radius the distance from the middle of each link to its surface.
+     * @param maxJointSpeed the top speed of every joint, in degrees or units of distance per second.
+     * @param home the joint state at the start.
+     * @throws IllegalArgumentException if the model has fewer than two chain positions or the home does not fit the
+     * model.
+     */
+    public WorkcellArm(String name,ChainPositions model,Matrix4d base,double radius,double maxJointSpeed,double [] home) {
+        if(model.getNumChainPositions()<2) throw new IllegalArgumentException(name+" has no chain positions.");
+        if(home.length!=model.getNumJoints()) throw new IllegalArgumentException(name+" home must have "+model.getNumJoints()+" joints.");
+        if(!(maxJointSpeed>0)) throw new IllegalArgumentException("maxJointSpeed must be more than zero.");
+        this.name = name;
+        this.model = model.copy();
+        this.base.set(base);
+        this.radius = radius;
+        this.maxJointSpeed = maxJointSpeed;
+        this.home = home.clone();
+        points = new Point3d[model.getNumChainPositions()];
+        for(int i=0;i<points.length;++i) points[i] = new Point3d();
+    }
+
+    /**
+     * Queue a task.
+     * @param waypoints the joint states to visit, in order.
+     */
+    public void addTask(double [] ... waypoints) {
+        double [][] copy = new double[waypoints.length][];
+        for(int i=0;i<waypoints.length;++i) {
+            if(waypoints[i].length!=home.length) throw new IllegalArgumentException("waypoint "+i+" must have "+home.length+" joints.");
+            copy[i] = waypoints[i].clone();
+        }
+        tasks.add(copy);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double [] getHome() {
+        return home.clone();
+    }
+
+    public int getNumTasks() {
+        return tasks.size();
+    }
+
+    double [][] getTask(int index) {
+        return tasks.get(index);
+    }
+
+    /**
+     * @return the seconds needed to move from one joint state to another.
+     */
+    public double getMoveDuration(double [] from,double [] to) {
+        double most = 0;
+        for(int i=0;i<from.length;++i) most = Math.max(most,Math.abs(to[i]-from[i]));
+        return most / maxJointSpeed;
+    }
+
+    /**
+     * @return the number of capsules filled by {@link #getCapsules(double[], Cylinder[])}.
+     */
+    public int getNumCapsules() {
+        return points.length-1;
+    }
+
+    /**
+     * Find the space filled by the arm.  Not thread safe.
+     * @param joints the joint state.
+     * @param result filled with {@link #getNumCapsules()} capsules in workcell space.
+     */
+    public void getCapsules(double [] joints,Cylinder [] result) {
+        model.getChainPositions(joints,points);
+        for(Point3d p : points) base.transform(p);
+        for(int i=0;i<getNumCapsules();++i) {
+            end.set(points[i]);
+            result[i].SetP1(end);
+            end.set(points[i+1]);
+            result[i].SetP2(end);
+            result[i].setRadius((float)radius);
+        }
+    }
+}
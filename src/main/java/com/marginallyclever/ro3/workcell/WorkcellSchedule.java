@@ -0,0 +1,130 @@
+package com.marginallyclever.ro3.workcell;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>{@link WorkcellSchedule} is the plan made by {@link WorkcellScheduler}: when every arm makes every move.  Between
+ * moves an arm waits where it is.  After its last move an arm stays where it stopped.</p>
+ */
+public class WorkcellSchedule {
+    /**
+     * One straight move in joint space.
+     * @param task the index of the task in {@link WorkcellArm}.
+     * @param start the time the move starts, in seconds.
+     * @param end the time the move ends, in seconds.
+     * @param from the joint state at the start.
+     * @param to the joint state at the end.
+     */
+    public record Move(int task,double start,double end,double [] from,double [] to) {}
+
+    private final List<WorkcellArm> arms;
+    private final List<List<Move>> moves = new ArrayList<>();
+
+    WorkcellSchedule(List<WorkcellArm> arms) {
+        this.arms = List.copyOf(arms);
+    }
+
+    /**
+     * Add the moves of the next arm.  Arms are added in the same order as the list given to the constructor.
+     */
+    void add(List<Move> list) {
+        moves.add(Collections.unmodifiableList(new ArrayList<>(list)));
+    }
+
+    /**
+     * @return the number of arms planned so far.
+     */
+    int getNumPlanned() {
+        return moves.size();
+    }
+
+    public int getNumArms() {
+        return arms.size();
+    }
+
+    public WorkcellArm getArm(int arm) {
+        return arms.get(arm);
+    }
+
+    /**
+     * @return the moves of one arm, in the order they happen.
+     */
+    public List<Move> getMoves(int arm) {
+        return moves.get(arm);
+    }
+
+    /**
+     * @return the tasks of one arm in the order they are done.
+     */
+    public List<Integer> getTaskOrder(int arm) {
+        List<Integer> order = new ArrayList<>();
+        for(Move m : moves.get(arm)) {
+            if(order.isEmpty() || order.get(order.size()-1)!=m.task()) order.add(m.task());
+        }
+        return order;
+    }
+
+    /**
+     * @return the time the last move of one arm ends, or 0 if it does not move.
+     */
+    public double getEndTime(int arm) {
+        List<Move> list = moves.get(arm);
+        return list.isEmpty() ? 0 : list.get(list.size()-1).end();
+    }
+
+    /**
+     * @return the total seconds one arm spends waiting before its last move ends.
+     */
+    public double getWaitTime(int arm) {
+        double wait = 0;
+        double t = 0;
+        for(Move m : moves.get(arm)) {
+            wait += m.start()-t;
+            t = m.end();
+        }
+        return wait;
+    }
+
+    /**
+     * @return the time when every arm has finished.
+     */
+    public double getCycleTime() {
+        double most = 0;
+        for(int i=0;i<moves.size();++i) most = Math.max(most,getEndTime(i));
+        return most;
+    }
+
+    /**
+     * Find where one arm is at a given time.
+     * @param arm the arm.
+     * @param time the time in seconds.
+     * @param result filled with the joint state.
+     */
+    public void getJoints(int arm,double time,double [] result) {
+        List<Move> list = moves.get(arm);
+        // the last move that starts at or before the time.
+        int lo = 0, hi = list.size()-1, found = -1;
+        while(lo<=hi) {
+            int mid = (lo+hi)>>>1;
+            if(list.get(mid).start()<=time) {
+                found = mid;
+                lo = mid+1;
+            } else hi = mid-1;
+        }
+        if(found<0) {
+            double [] home = arms.get(arm).getHome();
+            System.arraycopy(home,0,result,0,home.length);
+            return;
+        }
+        Move m = list.get(found);
+        double span = m.end()-m.start();
+        if(time>=m.end() || span<=0) {
+            System.arraycopy(m.to(),0,result,0,m.to().length);
+            return;
+        }
+        double f = (time-m.start()) / span;
+        for(int i=0;i<result.length;++i) result[i] = m.from()[i] + (m.to()[i]-m.from()[i]) * f;
+    }
+}
@@ -0,0 +1,221 @@
+package com.marginallyclever.ro3.workcell;
+
+import com.marginallyclever.convenience.Cylinder;
+import com.marginallyclever.convenience.helpers.IntersectionHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>{@link WorkcellScheduler} plans the queued work of several {@link WorkcellArm}s in one workcell so that no two
+ * arms are ever in the same space at the same time.</p>
+ * <p>Arms are planned one at a time in the order given, so the first arm never waits.  Each later arm starts every
+ * move as early as it can, waiting where it is until the move, and any waiting before it, stays clear of the arms
+ * already planned.  When its last move ends it must also stay clear of them until they have all finished.
+ * Each arm is a chain of capsules and two arms touch when
+ * {@link IntersectionHelper#cylinderCylinder(Cylinder, Cylinder)} says so.</p>
+ * <p>Space is checked every {@link #getTimeStep()} seconds, so waits are the shortest to within one step.  The step
+ * should be small enough that no part of an arm moves further than its radius in one step.</p>
+ * <p>With {@link #setReorderTasks(boolean)} an arm may do its tasks in a different order.  At each turn it picks the
+ * task that can finish soonest.</p>
+ * <p>Planning does not use threads or random numbers, so the same arms always give the same schedule.</p>
+ */
+public class WorkcellScheduler {
+    public static final double DEFAULT_TIME_STEP = 0.05;
+
+    private double timeStep = DEFAULT_TIME_STEP;
+    private boolean reorderTasks = false;
+
+    public double getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * @param timeStep seconds between space checks.
+     */
+    public void setTimeStep(double timeStep) {
+        if(!(timeStep>0)) throw new IllegalArgumentException("timeStep must be more than zero.");
+        this.timeStep = timeStep;
+    }
+
+    public boolean getReorderTasks() {
+        return reorderTasks;
+    }
+
+    /**
+     * @param reorderTasks true if an arm may do its tasks in a different order than they were queued.
+     */
+    public void setReorderTasks(boolean reorderTasks) {
+        this.reorderTasks = reorderTasks;
+    }
+
+    /**
+     * Plan every arm.
+     * @param arms the arms, most important first.
+     * @return the schedule.
+     * @throws IllegalStateException if an arm cannot stay clear of the arms before it by waiting.  Usually this
+     * means that an arm waits in the path of another.  Try a different order of arms.
+     */
+    public WorkcellSchedule plan(List<WorkcellArm> arms) {
+        WorkcellSchedule schedule = new WorkcellSchedule(arms);
+        for(WorkcellArm arm : arms) {
+            schedule.add(planArm(schedule,arm));
+        }
+        return schedule;
+    }
+
+    private List<WorkcellSchedule.Move> planArm(WorkcellSchedule schedule,WorkcellArm arm) {
+        Checker checker = new Checker(schedule,arm);
+        List<WorkcellSchedule.Move> result = new ArrayList<>();
+        double [] pose = arm.getHome();
+        double time = 0;
+
+        if(arm.getNumTasks()==0) {
+            if(checker.firstHit(pose,pose,0,0,schedule.getCycleTime())>=0) {
+                throw new IllegalStateException(arm.getName()+" is in the way at home.");
+            }
+            return result;
+        }
+
+        List<Integer> remaining = new ArrayList<>();
+        for(int i=0;i<arm.getNumTasks();++i) remaining.add(i);
+        while(!remaining.isEmpty()) {
+            boolean last = remaining.size()==1;
+            List<WorkcellSchedule.Move> best = null;
+            int bestIndex = -1;
+            int choices = reorderTasks ? remaining.size() : 1;
+            for(int i=0;i<choices;++i) {
+                List<WorkcellSchedule.Move> moves = placeTask(schedule,checker,arm,remaining.get(i),pose,time,last);
+                if(moves==null) continue;
+                if(best==null || end(moves)<end(best)) {
+                    best = moves;
+                    bestIndex = i;
+                }
+            }
+            if(best==null) {
+                throw new IllegalStateException(arm.getName()+" cannot do task "+remaining.get(0)+" without hitting another arm.");
+            }
+            result.addAll(best);
+            remaining.remove(bestIndex);
+            WorkcellSchedule.Move lastMove = best.get(best.size()-1);
+            pose = lastMove.to();
+            time = lastMove.end();
+        }
+        return result;
+    }
+
+    private static double end(List<WorkcellSchedule.Move> moves) {
+        return moves.get(moves.size()-1).end();
+    }
+
+    /**
+     * @return the moves of one task at the earliest times that stay clear, or null if there are none.
+     */
+    private List<WorkcellSchedule.Move> placeTask(WorkcellSchedule schedule,Checker checker,WorkcellArm arm,int task,
+                                                  double [] from,double time,boolean lastTask) {
+        double [][] waypoints = arm.getTask(task);
+        List<WorkcellSchedule.Move> moves = new ArrayList<>();
+        double [] pose = from;
+        for(int i=0;i<waypoints.length;++i) {
+            double [] to = waypoints[i];
+            double duration = arm.getMoveDuration(pose,to);
+            boolean park = lastTask && i==waypoints.length-1;
+            double start = earliestStart(schedule,checker,pose,to,time,duration,park);
+            if(start<0) return null;
+            moves.add(new WorkcellSchedule.Move(task,start,start+duration,pose,to));
+            pose = to;
+            time = start+duration;
+        }
+        return moves;
+    }
+
+    /**
+     * Wait at from, then move to to.
+     * @param time when the arm reaches from.
+     * @param park true if the arm stays at to forever after.
+     * @return the earliest start that stays clear, or -1 if waiting will not help.
+     */
+    private double earliestStart(WorkcellSchedule schedule,Checker checker,double [] from,double [] to,double time,
+                                 double duration,boolean park) {
+        double horizon = schedule.getCycleTime();
+        double clearUntil = time;
+        for(int step=0; ;++step) {
+            double start = time + step*timeStep;
+            // waiting at from.  Anything already checked does not need checking again.
+            if(checker.firstHit(from,from,clearUntil,clearUntil,start)>=0) return -1;
+            clearUntil = start;
+
+            double hit = checker.firstHit(from,to,start,start,start+duration);
+            if(hit<0 && park) {
+                double end = start+duration;
+                hit = checker.firstHit(to,to,end,end,Math.max(end,horizon));
+            }
+            if(hit<0) return start;
+            // after the horizon every other arm has stopped, so waiting longer changes nothing.
+            if(start>horizon) return -1;
+        }
+    }
+
+    private static Cylinder [] createCapsules(int count) {
+        Cylinder [] list = new Cylinder[count];
+        for(int i=0;i<count;++i) list[i] = new Cylinder();
+        return list;
+    }
+
+    /**
+     * Tests one arm against the arms already planned.
+     */
+    private class Checker {
+        private final WorkcellSchedule schedule;
+        private final WorkcellArm arm;
+        private final Cylinder [] mine;
+        private final List<Cylinder[]> theirs = new ArrayList<>();
+        private final List<double[]> theirJoints = new ArrayList<>();
+        private final double [] joints;
+
+        Checker(WorkcellSchedule schedule,WorkcellArm arm) {
+            this.schedule = schedule;
+            this.arm = arm;
+            mine = createCapsules(arm.getNumCapsules());
+            joints = new double[arm.getHome().length];
+            for(int i=0;i<schedule.getNumPlanned();++i) {
+                WorkcellArm other = schedule.getArm(i);
+                theirs.add(createCapsules(other.getNumCapsules()));
+                theirJoints.add(new double[other.getHome().length]);
+            }
+        }
+
+        /**
+         * Move in a straight line from a to b between moveStart and moveStart+the duration of the move, checking from
+         * t0 to t1.
+         * @return the first time the arm touches another, or -1 if it never does.
+         */
+        double firstHit(double [] a,double [] b,double moveStart,double t0,double t1) {
+            double duration = arm.getMoveDuration(a,b);
+            int steps = (int)Math.ceil((t1-t0)/timeStep);
+            for(int s=0;s<=steps;++s) {
+                double t = (steps==0) ? t0 : t0 + (t1-t0)*s/steps;
+                double f = (duration<=0) ? 1 : Math.min(1,Math.max(0,(t-moveStart)/duration));
+                for(int i=0;i<joints.length;++i) joints[i] = a[i] + (b[i]-a[i])*f;
+                if(touches(t)) return t;
+            }
+            return -1;
+        }
+
+        private boolean touches(double time) {
+            arm.getCapsules(joints,mine);
+            for(int i=0;i<theirs.size();++i) {
+                double [] q = theirJoints.get(i);
+                Cylinder [] other = theirs.get(i);
+                schedule.getJoints(i,time,q);
+                schedule.getArm(i).getCapsules(q,other);
+                for(Cylinder c0 : mine) {
+                    for(Cylinder c1 : other) {
+                        if(IntersectionHelper.cylinderCylinder(c0,c1)) return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
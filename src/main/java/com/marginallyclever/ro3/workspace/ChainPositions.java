@@ -0,0 +1,25 @@
+package com.marginallyclever.ro3.workspace;
+
+import javax.vecmath.Point3d;
+
+/**
+ * A {@link KinematicModel} that can describe the shape of the whole arm, not only the end effector.
+ */
+public interface ChainPositions extends KinematicModel {
+    /**
+     * @return the number of points filled by {@link #getChainPositions(double[], Point3d[])}.
+     */
+    int getNumChainPositions();
+
+    /**
+     * The shape of the arm as a chain of points from the base to the end effector, so that a capsule around each
+     * pair of neighbours covers the arm.
+     * @param joints one value for every joint.
+     * @param result filled with {@link #getNumChainPositions()} points.
+     * @return false if the robot cannot be put in that state.
+     */
+    boolean getChainPositions(double [] joints, Point3d [] result);
+
+    @Override
+    ChainPositions copy();
+}
@@ -0,0 +1,183 @@
+package com.marginallyclever.ro3.workspace;
+
+import javax.vecmath.Matrix4d;
+import java.util.Arrays;
+
+/**
+ * <p>{@link DHBatchKinematics} is the forward kinematics of a {@link DHChainModel} for many joint states at once.
+ * Make one with {@link DHChainModel#getBatch()}.</p>
+ * <p>Joint values and poses are kept as a structure of arrays: every sample is one column, so that
+ * <code>joints[j*stride+s]</code> is joint j of sample s and <code>poses[k*stride+s]</code> is element k of the pose of
+ * sample s.  The pose is the top three rows of the end effector matrix, so element k is at row k/4 and column k%4.</p>
+ * <p>Each joint is applied to all the samples before moving to the next joint.  The sines and cosines are found in
+ * one loop and the matrix math in another.  The second loop is plain arithmetic over arrays with no branches, which
+ * the JIT can turn into SIMD instructions.</p>
+ * <p>Scratch space is kept between calls, so a batch is not thread safe.  Each thread should use its own.</p>
+ */
+public class DHBatchKinematics {
+    /**
+     * The number of values in one pose.
+     */
+    public static final int POSE_SIZE = 12;
+
+    private final int numJoints;
+    private final boolean [] revolute;
+    private final double [] d, r, theta;
+    private final double [] cosAlpha, sinAlpha;
+    private final double [] base;
+    private final double [] tool;
+
+    private double [] cos = new double[0];
+    private double [] sin = new double[0];
+
+    /**
+     * All angles are in degrees and all matrices are row-major 3x4.
+     */
+    DHBatchKinematics(boolean [] revolute,double [] d,double [] r,double [] alpha,double [] theta,double [] base,double [] tool) {
+        this.numJoints = revolute.length;
+        this.revolute = revolute.clone();
+        this.d = d.clone();
+        this.r = r.clone();
+        this.theta = theta.clone();
+        this.cosAlpha = new double[numJoints];
+        this.sinAlpha = new double[numJoints];
+        for(int j=0;j<numJoints;++j) {
+            double ra = Math.toRadians(alpha[j]);
+            cosAlpha[j] = Math.cos(ra);
+            sinAlpha[j] = Math.sin(ra);
+        }
+        this.base = base.clone();
+        this.tool = tool.clone();
+    }
+
+    public int getNumJoints() {
+        return numJoints;
+    }
+
+    /**
+     * Find the pose of the end effector for count joint states.
+     * @param joints joint values, <code>joints[j*stride+s]</code>.  Degrees for revolute joints, distance for
+     *               prismatic joints.
+     * @param poses filled with the poses, <code>poses[k*stride+s]</code>.  Must hold {@link #POSE_SIZE}*stride values.
+     * @param stride the distance between one joint or pose element and the next.
+     * @param count the number of samples, no more than stride.
+     * @throws IllegalArgumentException if the arrays are too small.
+     */
+    public void solve(double [] joints,double [] poses,int stride,int count) {
+        if(count<0 || count>stride) throw new IllegalArgumentException("count must be between 0 and stride.");
+        if(joints.length<numJoints*stride) throw new IllegalArgumentException("joints must hold "+numJoints*stride+" values.");
+        if(poses.length<POSE_SIZE*stride) throw new IllegalArgumentException("poses must hold "+POSE_SIZE*stride+" values.");
+        if(cos.length<count) {
+            cos = new double[count];
+            sin = new double[count];
+        }
+
+        for(int k=0;k<POSE_SIZE;++k) {
+            Arrays.fill(poses,k*stride,k*stride+count,base[k]);
+        }
+
+        for(int j=0;j<numJoints;++j) {
+            int q = j*stride;
+            if(revolute[j]) {
+                for(int s=0;s<count;++s) {
+                    double t = Math.toRadians(joints[q+s]);
+                    cos[s] = Math.cos(t);
+                    sin[s] = Math.sin(t);
+                }
+                for(int row=0;row<3;++row) {
+                    applyRevolute(poses,row*4*stride,stride,count,cosAlpha[j],sinAlpha[j],r[j],d[j]);
+                }
+            } else {
+                double t = Math.toRadians(theta[j]);
+                double ct = Math.cos(t);
+                double st = Math.sin(t);
+                for(int row=0;row<3;++row) {
+                    applyPrismatic(poses,row*4*stride,stride,count,ct,st,cosAlpha[j],sinAlpha[j],r[j],joints,q);
+                }
+            }
+        }
+
+        for(int row=0;row<3;++row) {
+            applyTool(poses,row*4*stride,stride,count);
+        }
+    }
+
+    /**
+     * Multiply one row of every pose by a DH matrix with theta from {@link #cos} and {@link #sin}.
+     * @param i0 the index of column 0 of the row.
+     */
+    private void applyRevolute(double [] poses,int i0,int stride,int count,double ca,double sa,double r,double d) {
+        final double [] c = cos;
+        final double [] sn = sin;
+        int i1 = i0+stride;
+        int i2 = i1+stride;
+        int i3 = i2+stride;
+        for(int s=0;s<count;++s) {
+            double m0 = poses[i0+s];
+            double m1 = poses[i1+s];
+            double m2 = poses[i2+s];
+            double u = m0*c[s] + m1*sn[s];
+            double v = m1*c[s] - m0*sn[s];
+            poses[i0+s] = u;
+            poses[i1+s] = v*ca + m2*sa;
+            poses[i2+s] = m2*ca - v*sa;
+            poses[i3+s] += r*u + m2*d;
+        }
+    }
+
+    /**
+     * Multiply one row of every pose by a DH matrix with d from the joints.
+     * @param i0 the index of column 0 of the row.
+     * @param q the index of the first value of this joint.
+     */
+    private static void applyPrismatic(double [] poses,int i0,int stride,int count,double ct,double st,double ca,double sa,double r,double [] joints,int q) {
+        int i1 = i0+stride;
+        int i2 = i1+stride;
+        int i3 = i2+stride;
+        for(int s=0;s<count;++s) {
+            double m0 = poses[i0+s];
+            double m1 = poses[i1+s];
+            double m2 = poses[i2+s];
+            double u = m0*ct + m1*st;
+            double v = m1*ct - m0*st;
+            poses[i0+s] = u;
+            poses[i1+s] = v*ca + m2*sa;
+            poses[i2+s] = m2*ca - v*sa;
+            poses[i3+s] += r*u + m2*joints[q+s];
+        }
+    }
+
+    /**
+     * Multiply one row of every pose by the tool matrix.
+     * @param i0 the index of column 0 of the row.
+     */
+    private void applyTool(double [] poses,int i0,int stride,int count) {
+        final double [] t = tool;
+        int i1 = i0+stride;
+        int i2 = i1+stride;
+        int i3 = i2+stride;
+        for(int s=0;s<count;++s) {
+            double m0 = poses[i0+s];
+            double m1 = poses[i1+s];
+            double m2 = poses[i2+s];
+            poses[i0+s] = m0*t[0] + m1*t[4] + m2*t[8];
+            poses[i1+s] = m0*t[1] + m1*t[5] + m2*t[9];
+            poses[i2+s] = m0*t[2] + m1*t[6] + m2*t[10];
+            poses[i3+s] += m0*t[3] + m1*t[7] + m2*t[11];
+        }
+    }
+
+    /**
+     * Copy one pose out of a buffer filled by {@link #solve(double[], double[], int, int)}.
+     * @param poses the buffer.
+     * @param stride the same stride given to solve.
+     * @param sample the sample to copy.
+     * @param result set to the pose.
+     */
+    public static void getPose(double [] poses,int stride,int sample,Matrix4d result) {
+        result.m00 = poses[sample];             result.m01 = poses[stride+sample];      result.m02 = poses[2*stride+sample];    result.m03 = poses[3*stride+sample];
+        result.m10 = poses[4*stride+sample];    result.m11 = poses[5*stride+sample];    result.m12 = poses[6*stride+sample];    result.m13 = poses[7*stride+sample];
+        result.m20 = poses[8*stride+sample];    result.m21 = poses[9*stride+sample];    result.m22 = poses[10*stride+sample];   result.m23 = poses[11*stride+sample];
+        result.m30 = 0;                         result.m31 = 0;                         result.m32 = 0;                         result.m33 = 1;
+    }
+}
@@ -0,0 +1,182 @@
+package com.marginallyclever.ro3.workspace;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>{@link DHChainModel} is the forward kinematics of a serial arm described by
+ * <a href="https://en.wikipedia.org/wiki/Denavit%E2%80%93Hartenberg_parameters">Denavit-Hartenberg parameters</a>.
+ * Revolute joints change theta and prismatic joints change d.</p>
+ */
+public class DHChainModel implements ForwardKinematics, ChainPositions {
+    private record Link(double d,double r,double alpha,double theta,boolean revolute,double min,double max) {}
+
+    private final List<Link> links = new ArrayList<>();
+    private final Matrix4d base = new Matrix4d();
+    private final Matrix4d tool = new Matrix4d();
+    // reused by every call to getEndEffectorPosition().
+    private final Matrix4d result = new Matrix4d();
+    private final Matrix4d local = new Matrix4d();
+
+    public DHChainModel() {
+        base.setIdentity();
+        tool.setIdentity();
+    }
+
+    /**
+     * Add a link to the end of the chain.
+     * @param d distance from previous joint along Z axis.
+     * @param r distance from previous joint along X axis.
+     * @param alpha angle from previous joint around X axis, in degrees.
+     * @param theta angle from previous joint around Z axis, in degrees.
+     * @param revolute true if the joint changes theta, false if it changes d.
+     * @param min the lowest value of the joint.
+     * @param max the highest value of the joint.
+     */
+    public void addLink(double d,double r,double alpha,double theta,boolean revolute,double min,double max) {
+        links.add(new Link(d,r,alpha,theta,revolute,min,max));
+    }
+
+    /**
+     * @param m the pose of the first joint relative to the base of the robot.
+     */
+    public void setBase(Matrix4d m) {
+        base.set(m);
+    }
+
+    /**
+     * @param m the pose of the end effector relative to the last joint.
+     */
+    public void setTool(Matrix4d m) {
+        tool.set(m);
+    }
+
+    @Override
+    public int getNumJoints() {
+        return links.size();
+    }
+
+    @Override
+    public double getJointMin(int index) {
+        return links.get(index).min();
+    }
+
+    @Override
+    public double getJointMax(int index) {
+        return links.get(index).max();
+    }
+
+    /**
+     * A revolute joint whose limits are a full turn apart has no limits, same as the legacy DHComponent.
+     */
+    @Override
+    public boolean isJointLimited(int index) {
+        Link link = links.get(index);
+        return !link.revolute() || link.max()-link.min() < 360;
+    }
+
+    @Override
+    public boolean getEndEffectorPosition(double[] joints, Point3d p) {
+        getEndEffectorPose(joints,result);
+        p.set(result.m03,result.m13,result.m23);
+        return true;
+    }
+
+    /**
+     * Forward kinematics one joint at a time.  See {@link #getBatch()} to do many joint states at once.
+     * @param joints one value for every joint.
+     * @param pose set to the pose of the end effector relative to the base of the robot.
+     */
+    public void getEndEffectorPose(double[] joints, Matrix4d pose) {
+        pose.set(base);
+        for(int i=0;i<links.size();++i) {
+            Link link = links.get(i);
+            if(link.revolute()) setLocal(link.d(),link.r(),link.alpha(),joints[i]);
+            else                setLocal(joints[i],link.r(),link.alpha(),link.theta());
+            pose.mul(local);
+        }
+        pose.mul(tool);
+    }
+
+    /**
+     * The start of the first link, the end of every link and then the end effector.
+     */
+    @Override
+    public int getNumChainPositions() {
+        return links.size()+2;
+    }
+
+    @Override
+    public boolean getChainPositions(double[] joints, Point3d[] points) {
+        result.set(base);
+        points[0].set(result.m03,result.m13,result.m23);
+        for(int i=0;i<links.size();++i) {
+            Link link = links.get(i);
+            if(link.revolute()) setLocal(link.d(),link.r(),link.alpha(),joints[i]);
+            else                setLocal(joints[i],link.r(),link.alpha(),link.theta());
+            result.mul(local);
+            points[i+1].set(result.m03,result.m13,result.m23);
+        }
+        result.mul(tool);
+        points[links.size()+1].set(result.m03,result.m13,result.m23);
+        return true;
+    }
+
+    /**
+     * The base and tool must be rigid transforms, as they are for any robot.
+     * @return the same forward kinematics for many joint states at once.  Later changes to this model do not change
+     * the batch.
+     */
+    public DHBatchKinematics getBatch() {
+        int n = links.size();
+        boolean [] revolute = new boolean[n];
+        double [] d = new double[n];
+        double [] r = new double[n];
+        double [] alpha = new double[n];
+        double [] theta = new double[n];
+        for(int i=0;i<n;++i) {
+            Link link = links.get(i);
+            revolute[i] = link.revolute();
+            d[i] = link.d();
+            r[i] = link.r();
+            alpha[i] = link.alpha();
+            theta[i] = link.theta();
+        }
+        return new DHBatchKinematics(revolute,d,r,alpha,theta,toRows(base),toRows(tool));
+    }
+
+    /**
+     * @return the top three rows of m.
+     */
+    private static double [] toRows(Matrix4d m) {
+        return new double[] {
+                m.m00, m.m01, m.m02, m.m03,
+                m.m10, m.m11, m.m12, m.m13,
+                m.m20, m.m21, m.m22, m.m23 };
+    }
+
+    private void setLocal(double d,double r,double alpha,double theta) {
+        double rt = Math.toRadians(theta);
+        double ra = Math.toRadians(alpha);
+        double ct = Math.cos(rt);
+        double ca = Math.cos(ra);
+        double st = Math.sin(rt);
+        double sa = Math.sin(ra);
+
+        local.m00 = ct;    local.m01 = -st*ca;    local.m02 = st*sa;     local.m03 = r*ct;
+        local.m10 = st;    local.m11 = ct*ca;     local.m12 = -ct*sa;    local.m13 = r*st;
+        local.m20 = 0;     local.m21 = sa;        local.m22 = ca;        local.m23 = d;
+        local.m30 = 0;     local.m31 = 0;         local.m32 = 0;         local.m33 = 1;
+    }
+
+    @Override
+    public DHChainModel copy() {
+        DHChainModel copy = new DHChainModel();
+        copy.links.addAll(links);
+        copy.base.set(base);
+        copy.tool.set(tool);
+        return copy;
+    }
+}
@@ -0,0 +1,18 @@
+package com.marginallyclever.ro3.workspace;
+
+import javax.vecmath.Point3d;
+
+/**
+ * A {@link KinematicModel} that can find the end effector from the joints.
+ */
+public interface ForwardKinematics extends KinematicModel {
+    /**
+     * @param joints one value for every joint.
+     * @param result the position of the end effector.
+     * @return false if the robot cannot be put in that state.
+     */
+    boolean getEndEffectorPosition(double [] joints, Point3d result);
+
+    @Override
+    ForwardKinematics copy();
+}
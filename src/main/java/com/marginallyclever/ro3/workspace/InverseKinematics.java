@@ -0,0 +1,19 @@
+package com.marginallyclever.ro3.workspace;
+
+import javax.vecmath.Point3d;
+
+/**
+ * A {@link KinematicModel} that can find the joints for an end effector position.
+ */
+public interface InverseKinematics extends KinematicModel {
+    /**
+     * Inverse kinematics for the end effector at the home orientation.
+     * @param target the position of the end effector.
+     * @param joints filled with one value for every joint.
+     * @return false if there is no solution.  The joint limits are checked by the caller.
+     */
+    boolean solve(Point3d target, double [] joints);
+
+    @Override
+    InverseKinematics copy();
+}
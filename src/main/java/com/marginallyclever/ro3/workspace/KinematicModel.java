@@ -0,0 +1,31 @@
+package com.marginallyclever.ro3.workspace;
+
+/**
+ * <p>{@link KinematicModel} is the kinematics of a robot without the rest of the robot, so that a
+ * {@link WorkspaceAnalyzer} can ask it thousands of questions at once.  Joint values are in degrees for revolute
+ * joints and in the robot's units of distance for prismatic joints.  Positions are relative to the base of the
+ * robot.</p>
+ * <p>This interface only describes the joints.  What a model can calculate is added by {@link ForwardKinematics},
+ * {@link InverseKinematics}, and {@link ChainPositions}, and callers check for them with {@code instanceof}.</p>
+ * <p>Implementations are not expected to be thread safe.  Each worker thread asks for its own {@link #copy()}.</p>
+ */
+public interface KinematicModel {
+    int getNumJoints();
+
+    double getJointMin(int index);
+
+    double getJointMax(int index);
+
+    /**
+     * @param index the joint
+     * @return false if the joint can turn forever, in which case it has no margin to measure.
+     */
+    default boolean isJointLimited(int index) {
+        return true;
+    }
+
+    /**
+     * @return a model of the same class that does not share any state with this one.
+     */
+    KinematicModel copy();
+}
@@ -0,0 +1,413 @@
+package com.marginallyclever.ro3.workspace;
+
+import javax.vecmath.Point3d;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <p>{@link WorkspaceAnalyzer} maps where a robot can reach into a {@link WorkspaceGrid}.  There are two ways to do
+ * it:</p>
+ * <ul>
+ *     <li>{@link #sampleJointSpace(Point3d, Point3d, double)} tries random joint values and records where the end
+ *     effector lands.  It works for any {@link ForwardKinematics}.</li>
+ *     <li>{@link #solveGrid(Point3d, Point3d, double)} solves the inverse kinematics at the center of every voxel.
+ *     It works for any {@link InverseKinematics}, such as a delta robot or a Stewart platform.</li>
+ * </ul>
+ * <p>For each voxel it keeps the best manipulability and the best joint-limit margin.  Manipulability is
+ * sqrt(det(J*J<sup>T</sup>)) of the positional Jacobian J, found by finite differences.  A bigger number means the end
+ * effector can move more easily in every direction.  Zero means the robot is in a singularity or at the edge of the
+ * workspace.</p>
+ * <p>The work is split across a {@link ForkJoinPool}.  Every task has its own {@link KinematicModel#copy()}.
+ * Random samples are picked from a seed so the same seed always gives the same grid.</p>
+ */
+public class WorkspaceAnalyzer {
+    private static final int SAMPLES_PER_TASK = 2048;
+    private static final int VOXELS_PER_TASK = 512;
+
+    private final KinematicModel model;
+    private final ForkJoinPool pool;
+    private int samples = 200_000;
+    private long seed = 0;
+
+    public WorkspaceAnalyzer(KinematicModel model) {
+        this(model,ForkJoinPool.commonPool());
+    }
+
+    public WorkspaceAnalyzer(KinematicModel model,ForkJoinPool pool) {
+        this.model = model;
+        this.pool = pool;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @param samples the number of random joint states to try in {@link #sampleJointSpace(Point3d, Point3d, double)}.
+     */
+    public void setSamples(int samples) {
+        if(samples<1) throw new IllegalArgumentException("samples must be at least one.");
+        this.samples = samples;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Find the box around every end effector position that {@link #sampleJointSpace(Point3d, Point3d, double)}
+     * would visit.
+     * @param min the lowest corner of the box.
+     * @param max the highest corner of the box.
+     * @return false if no sample could be reached.
+     */
+    public boolean findBounds(Point3d min,Point3d max) {
+        requireForwardKinematics();
+        double [] box = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE,
+                         -Double.MAX_VALUE,-Double.MAX_VALUE,-Double.MAX_VALUE };
+        run(samples,SAMPLES_PER_TASK,(m,from,to)->{
+            double [] local = box.clone();
+            if(m instanceof DHChainModel chain) findBoundsInBatches(chain,from,to,local);
+            else findBoundsOneByOne((ForwardKinematics)m,from,to,local);
+            synchronized(box) {
+                for(int i=0;i<3;++i) box[i] = Math.min(box[i],local[i]);
+                for(int i=3;i<6;++i) box[i] = Math.max(box[i],local[i]);
+            }
+        });
+        if(box[0]>box[3]) return false;
+        min.set(box[0],box[1],box[2]);
+        max.set(box[3],box[4],box[5]);
+        return true;
+    }
+
+    private void findBoundsOneByOne(ForwardKinematics m,int from,int to,double [] box) {
+        double [] q = new double[m.getNumJoints()];
+        Point3d p = new Point3d();
+        for(int i=from;i<to;++i) {
+            pickJoints(m,i,q);
+            if(!m.getEndEffectorPosition(q,p)) continue;
+            box[0] = Math.min(box[0],p.x);
+            box[1] = Math.min(box[1],p.y);
+            box[2] = Math.min(box[2],p.z);
+            box[3] = Math.max(box[3],p.x);
+            box[4] = Math.max(box[4],p.y);
+            box[5] = Math.max(box[5],p.z);
+        }
+    }
+
+    /**
+     * Same as {@link #findBoundsOneByOne(ForwardKinematics, int, int, double[])} with {@link DHBatchKinematics}.
+     */
+    private void findBoundsInBatches(DHChainModel m,int from,int to,double [] box) {
+        DHBatchKinematics batch = m.getBatch();
+        int n = m.getNumJoints();
+        int stride = Math.min(to-from,SAMPLES_PER_TASK);
+        double [] q = new double[n];
+        double [] joints = new double[n*stride];
+        double [] poses = new double[DHBatchKinematics.POSE_SIZE*stride];
+        for(int start=from;start<to;start+=stride) {
+            int count = Math.min(stride,to-start);
+            for(int s=0;s<count;++s) {
+                pickJoints(m,start+s,q);
+                for(int j=0;j<n;++j) joints[j*stride+s] = q[j];
+            }
+            batch.solve(joints,poses,stride,count);
+            for(int axis=0;axis<3;++axis) {
+                // the translation is column 3 of each row.
+                int k = (axis*4+3)*stride;
+                double lo = box[axis];
+                double hi = box[axis+3];
+                for(int s=0;s<count;++s) {
+                    lo = Math.min(lo,poses[k+s]);
+                    hi = Math.max(hi,poses[k+s]);
+                }
+                box[axis] = lo;
+                box[axis+3] = hi;
+            }
+        }
+    }
+
+    /**
+     * Try {@link #getSamples()} random joint states and record the voxel that each end effector position lands in.
+     * Samples outside the box are ignored.
+     * @param min the lowest corner of the box.
+     * @param max the highest corner of the box.
+     * @param voxelSize the length of one side of a voxel.
+     * @return the grid.
+     * @throws UnsupportedOperationException if the model is not {@link ForwardKinematics}.
+     */
+    public WorkspaceGrid sampleJointSpace(Point3d min,Point3d max,double voxelSize) {
+        requireForwardKinematics();
+        WorkspaceGrid grid = WorkspaceGrid.covering(min,max,voxelSize);
+        int count = grid.getNumVoxels();
+        AtomicIntegerArray hits = new AtomicIntegerArray(count);
+        // the bits of a positive float sort in the same order as the float, so max() on the bits is max() on the float.
+        AtomicIntegerArray manipulability = new AtomicIntegerArray(count);
+        AtomicIntegerArray margin = new AtomicIntegerArray(count);
+
+        run(samples,SAMPLES_PER_TASK,(model,from,to)->{
+            ForwardKinematics m = (ForwardKinematics)model;
+            int n = m.getNumJoints();
+            double [] q = new double[n];
+            double [][] jacobian = new double[3][n];
+            Point3d p = new Point3d();
+            Point3d work = new Point3d();
+            for(int i=from;i<to;++i) {
+                pickJoints(m,i,q);
+                if(!m.getEndEffectorPosition(q,p)) continue;
+                int index = grid.getIndex(p);
+                if(index<0) continue;
+
+                float w = (float)(getJacobian(m,q,jacobian,work) ? getManipulability(jacobian) : 0);
+                float c = (float)getJointLimitMargin(m,q);
+                hits.incrementAndGet(index);
+                manipulability.accumulateAndGet(index,Float.floatToIntBits(w),Math::max);
+                margin.accumulateAndGet(index,Float.floatToIntBits(c),Math::max);
+            }
+        });
+
+        int [] h = new int[count];
+        float [] w = new float[count];
+        float [] c = new float[count];
+        for(int i=0;i<count;++i) {
+            h[i] = hits.get(i);
+            w[i] = Float.intBitsToFloat(manipulability.get(i));
+            c[i] = Float.intBitsToFloat(margin.get(i));
+        }
+        grid.set(h,w,c);
+        return grid;
+    }
+
+    /**
+     * Solve the inverse kinematics at the center of every voxel in the box.  A voxel is reachable if there is a
+     * solution inside the joint limits.
+     * @param min the lowest corner of the box.
+     * @param max the highest corner of the box.
+     * @param voxelSize the length of one side of a voxel.
+     * @return the grid.
+     * @throws UnsupportedOperationException if the model is not {@link InverseKinematics}.
+     */
+    public WorkspaceGrid solveGrid(Point3d min,Point3d max,double voxelSize) {
+        if(!(model instanceof InverseKinematics)) throw new UnsupportedOperationException("Model has no inverse kinematics.");
+        WorkspaceGrid grid = WorkspaceGrid.covering(min,max,voxelSize);
+        int count = grid.getNumVoxels();
+        int [] hits = new int[count];
+        float [] manipulability = new float[count];
+        float [] margin = new float[count];
+        double step = voxelSize * 0.01;
+
+        // every voxel is written by exactly one task, so plain arrays are safe.
+        run(count,VOXELS_PER_TASK,(model,from,to)->{
+            InverseKinematics m = (InverseKinematics)model;
+            int n = m.getNumJoints();
+            double [] q = new double[n];
+            double [] q2 = new double[n];
+            double [][] inverse = new double[n][3];
+            Point3d p = new Point3d();
+            for(int i=from;i<to;++i) {
+                grid.getCenter(i,p);
+                if(!m.solve(p,q) || !isInsideLimits(m,q)) continue;
+                hits[i] = 1;
+                margin[i] = (float)getJointLimitMargin(m,q);
+                manipulability[i] = (float)(getInverseJacobian(m,p,step,q2,inverse) ? getManipulabilityFromInverse(inverse) : 0);
+            }
+        });
+
+        grid.set(hits,manipulability,margin);
+        return grid;
+    }
+
+    /**
+     * Use whichever method the model supports, preferring inverse kinematics because it visits every voxel.
+     */
+    public WorkspaceGrid analyze(Point3d min,Point3d max,double voxelSize) {
+        return (model instanceof InverseKinematics)
+                ? solveGrid(min,max,voxelSize)
+                : sampleJointSpace(min,max,voxelSize);
+    }
+
+    private void requireForwardKinematics() {
+        if(!(model instanceof ForwardKinematics)) throw new UnsupportedOperationException("Model has no forward kinematics.");
+    }
+
+    /**
+     * Pick random joint values for one sample.  The same seed and sample always give the same values.
+     */
+    private void pickJoints(KinematicModel m,int sample,double [] q) {
+        for(int j=0;j<q.length;++j) {
+            double lo = m.getJointMin(j);
+            double hi = m.getJointMax(j);
+            q[j] = lo + (hi-lo) * random(seed,(long)sample*q.length+j);
+        }
+    }
+
+    /**
+     * SplitMix64, so that every sample has its own random numbers no matter which task runs it.
+     * @return a number in [0,1).
+     */
+    static double random(long seed,long n) {
+        long z = seed + (n+1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z>>>30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z>>>27)) * 0x94D049BB133111EBL;
+        z = z ^ (z>>>31);
+        return (z>>>11) * 0x1.0p-53;
+    }
+
+    /**
+     * Central differences of the end effector position for each joint.
+     * @return false if the robot cannot be moved to either side of q.
+     */
+    private static boolean getJacobian(ForwardKinematics m,double [] q,double [][] jacobian,Point3d work) {
+        double [] before = new double[3];
+        for(int j=0;j<q.length;++j) {
+            double h = Math.max(1e-6,(m.getJointMax(j)-m.getJointMin(j))*1e-4);
+            double original = q[j];
+            q[j] = original-h;
+            boolean ok = m.getEndEffectorPosition(q,work);
+            before[0]=work.x;
+            before[1]=work.y;
+            before[2]=work.z;
+            q[j] = original+h;
+            ok &= m.getEndEffectorPosition(q,work);
+            q[j] = original;
+            if(!ok) return false;
+            jacobian[0][j] = (work.x-before[0])/(2*h);
+            jacobian[1][j] = (work.y-before[1])/(2*h);
+            jacobian[2][j] = (work.z-before[2])/(2*h);
+        }
+        return true;
+    }
+
+    /**
+     * Central differences of the joint values for each axis of the end effector position.
+     * @return false if either side of p cannot be solved.
+     */
+    private static boolean getInverseJacobian(InverseKinematics m,Point3d p,double step,double [] q,double [][] inverse) {
+        Point3d work = new Point3d();
+        double [] before = new double[q.length];
+        for(int axis=0;axis<3;++axis) {
+            work.set(p);
+            addToAxis(work,axis,-step);
+            if(!m.solve(work,q)) return false;
+            System.arraycopy(q,0,before,0,q.length);
+            work.set(p);
+            addToAxis(work,axis,step);
+            if(!m.solve(work,q)) return false;
+            for(int j=0;j<q.length;++j) {
+                inverse[j][axis] = (q[j]-before[j])/(2*step);
+            }
+        }
+        return true;
+    }
+
+    private static void addToAxis(Point3d p,int axis,double v) {
+        switch(axis) {
+            case 0 -> p.x += v;
+            case 1 -> p.y += v;
+            default -> p.z += v;
+        }
+    }
+
+    /**
+     * @param jacobian 3xN
+     * @return sqrt(det(J*J<sup>T</sup>))
+     */
+    static double getManipulability(double [][] jacobian) {
+        double [][] a = new double[3][3];
+        for(int r=0;r<3;++r) {
+            for(int c=0;c<3;++c) {
+                double sum=0;
+                for(int k=0;k<jacobian[r].length;++k) sum += jacobian[r][k]*jacobian[c][k];
+                a[r][c] = sum;
+            }
+        }
+        double det = determinant(a);
+        return (det>0) ? Math.sqrt(det) : 0;
+    }
+
+    /**
+     * The inverse Jacobian K turns a change of position into a change of joints.  Where K is square, J=K<sup>-1</sup>
+     * and sqrt(det(J*J<sup>T</sup>)) = 1/sqrt(det(K<sup>T</sup>*K)).  The same formula is used for robots with more
+     * joints than axes.
+     * @param inverse Nx3
+     */
+    static double getManipulabilityFromInverse(double [][] inverse) {
+        double [][] a = new double[3][3];
+        for(int r=0;r<3;++r) {
+            for(int c=0;c<3;++c) {
+                double sum=0;
+                for(double [] row : inverse) sum += row[r]*row[c];
+                a[r][c] = sum;
+            }
+        }
+        double det = determinant(a);
+        return (det>0) ? 1.0/Math.sqrt(det) : 0;
+    }
+
+    private static double determinant(double [][] a) {
+        return a[0][0]*(a[1][1]*a[2][2]-a[1][2]*a[2][1])
+             - a[0][1]*(a[1][0]*a[2][2]-a[1][2]*a[2][0])
+             + a[0][2]*(a[1][0]*a[2][1]-a[1][1]*a[2][0]);
+    }
+
+    private static boolean isInsideLimits(KinematicModel m,double [] q) {
+        for(int j=0;j<q.length;++j) {
+            if(Double.isNaN(q[j])) return false;
+            if(!m.isJointLimited(j)) continue;
+            if(q[j]<m.getJointMin(j) || q[j]>m.getJointMax(j)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the distance of the joint nearest to a limit, from 0 at the limit to 1 in the middle of its range.
+     */
+    static double getJointLimitMargin(KinematicModel m,double [] q) {
+        double worst = 1;
+        for(int j=0;j<q.length;++j) {
+            if(!m.isJointLimited(j)) continue;
+            double lo = m.getJointMin(j);
+            double hi = m.getJointMax(j);
+            double half = (hi-lo)/2;
+            if(half<=0) return 0;
+            double d = Math.min(q[j]-lo,hi-q[j]) / half;
+            worst = Math.min(worst,d);
+        }
+        return Math.max(0,worst);
+    }
+
+    private interface Slice {
+        void run(KinematicModel model,int from,int to);
+    }
+
+    private void run(int count,int grain,Slice slice) {
+        pool.invoke(new Task(0,count,grain,slice));
+    }
+
+    private class Task extends RecursiveAction {
+        private final int from, to, grain;
+        private final Slice slice;
+
+        Task(int from,int to,int grain,Slice slice) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.slice = slice;
+        }
+
+        @Override
+        protected void compute() {
+            if(to-from<=grain) {
+                slice.run(model.copy(),from,to);
+                return;
+            }
+            int mid = (from+to)>>>1;
+            invokeAll(new Task(from,mid,grain,slice),new Task(mid,to,grain,slice));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.marginallyclever.ro3.workspace;
+
+import javax.vecmath.Point3d;
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>{@link WorkspaceGrid} is a voxel grid of where a robot can reach, made by a {@link WorkspaceAnalyzer}.  Each
+ * voxel is four bytes:</p>
+ * <ul>
+ *     <li>hits, the number of samples that reached the voxel, up to 255;</li>
+ *     <li>the best joint-limit margin, from 0 (a joint is at a limit) to 1 (every joint is centered);</li>
+ *     <li>the best manipulability, as a fraction of the best in the grid.</li>
+ * </ul>
+ * <p>Voxel x changes fastest, then y, then z.  The file format is the same data behind a small header, compressed
+ * with GZIP.</p>
+ */
+public class WorkspaceGrid {
+    private static final int MAGIC = 0x52575347;  // "RWSG"
+    private static final int VERSION = 1;
+    public static final int MAX_VOXELS = 1<<24;
+
+    private final Point3d origin = new Point3d();
+    private final double voxelSize;
+    private final int sizeX, sizeY, sizeZ;
+    private final byte [] hits;
+    private final byte [] margin;
+    private final short [] manipulability;
+    private float maxManipulability;
+
+    /**
+     * @param origin the lowest corner of the grid.
+     * @param voxelSize the length of one side of a voxel.
+     * @param sizeX the number of voxels in x.
+     * @param sizeY the number of voxels in y.
+     * @param sizeZ the number of voxels in z.
+     * @throws IllegalArgumentException if the grid is empty or bigger than {@link #MAX_VOXELS}.
+     */
+    public WorkspaceGrid(Point3d origin,double voxelSize,int sizeX,int sizeY,int sizeZ) {
+        if(!(voxelSize>0)) throw new IllegalArgumentException("voxelSize must be greater than zero.");
+        if(sizeX<1 || sizeY<1 || sizeZ<1) throw new IllegalArgumentException("grid must have at least one voxel.");
+        long count = (long)sizeX * sizeY * sizeZ;
+        if(count>MAX_VOXELS) throw new IllegalArgumentException("grid of "+count+" voxels is too big.");
+
+        this.origin.set(origin);
+        this.voxelSize = voxelSize;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        hits = new byte[(int)count];
+        margin = new byte[(int)count];
+        manipulability = new short[(int)count];
+    }
+
+    /**
+     * Make a grid that covers a box, including the highest corner.
+     * @param min the lowest corner of the box.
+     * @param max the highest corner of the box.
+     * @param voxelSize the length of one side of a voxel.
+     */
+    public static WorkspaceGrid covering(Point3d min,Point3d max,double voxelSize) {
+        if(!(voxelSize>0)) throw new IllegalArgumentException("voxelSize must be greater than zero.");
+        return new WorkspaceGrid(min,voxelSize,
+                cellsAcross(max.x-min.x,voxelSize),
+                cellsAcross(max.y-min.y,voxelSize),
+                cellsAcross(max.z-min.z,voxelSize));
+    }
+
+    private static int cellsAcross(double length,double voxelSize) {
+        // one more than fits so that a point exactly on the highest corner is inside.
+        return Math.max(0,(int)Math.floor(length/voxelSize)) + 1;
+    }
+
+    public Point3d getOrigin() {
+        return new Point3d(origin);
+    }
+
+    public double getVoxelSize() {
+        return voxelSize;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    public int getNumVoxels() {
+        return hits.length;
+    }
+
+    public int getIndex(int x,int y,int z) {
+        return x + sizeX*(y + sizeY*z);
+    }
+
+    /**
+     * @return the index of the voxel that contains the point, or -1 if the point is outside the grid.
+     */
+    public int getIndex(Point3d p) {
+        int x = (int)Math.floor((p.x-origin.x)/voxelSize);
+        int y = (int)Math.floor((p.y-origin.y)/voxelSize);
+        int z = (int)Math.floor((p.z-origin.z)/voxelSize);
+        if(x<0 || x>=sizeX || y<0 || y>=sizeY || z<0 || z>=sizeZ) return -1;
+        return getIndex(x,y,z);
+    }
+
+    /**
+     * @param index the voxel
+     * @param result the center of the voxel.
+     */
+    public void getCenter(int index,Point3d result) {
+        int x = index % sizeX;
+        int y = (index / sizeX) % sizeY;
+        int z = index / (sizeX*sizeY);
+        result.set(
+                origin.x + (x+0.5)*voxelSize,
+                origin.y + (y+0.5)*voxelSize,
+                origin.z + (z+0.5)*voxelSize);
+    }
+
+    public boolean isReachable(int index) {
+        return hits[index]!=0;
+    }
+
+    public int getHits(int index) {
+        return hits[index] & 0xFF;
+    }
+
+    /**
+     * @return from 0 (a joint is at a limit) to 1 (every joint is centered).
+     */
+    public double getJointLimitMargin(int index) {
+        return (margin[index] & 0xFF) / 255.0;
+    }
+
+    /**
+     * @return the manipulability, to within 1/65535th of {@link #getMaxManipulability()}.
+     */
+    public double getManipulability(int index) {
+        return (manipulability[index] & 0xFFFF) / 65535.0 * maxManipulability;
+    }
+
+    public double getMaxManipulability() {
+        return maxManipulability;
+    }
+
+    public int getReachableCount() {
+        int sum = 0;
+        for(byte h : hits) {
+            if(h!=0) sum++;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the volume of all the reachable voxels.
+     */
+    public double getReachableVolume() {
+        return getReachableCount() * voxelSize * voxelSize * voxelSize;
+    }
+
+    /**
+     * Store the results of an analysis.  Every array has one value per voxel.
+     */
+    void set(int [] hitCounts,float [] manipulabilities,float [] margins) {
+        float max = 0;
+        for(float m : manipulabilities) {
+            if(m>max) max = m;
+        }
+        maxManipulability = max;
+
+        for(int i=0;i<hits.length;++i) {
+            if(hitCounts[i]<=0) {
+                hits[i] = 0;
+                margin[i] = 0;
+                manipulability[i] = 0;
+                continue;
+            }
+            hits[i] = (byte)Math.min(255,hitCounts[i]);
+            margin[i] = (byte)Math.round(Math.max(0,Math.min(1,margins[i])) * 255);
+            manipulability[i] = (short)((max==0) ? 0 : Math.round(manipulabilities[i] / max * 65535));
+        }
+    }
+
+    public void save(OutputStream stream) throws IOException {
+        GZIPOutputStream zip = new GZIPOutputStream(stream);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(zip));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sizeX);
+        out.writeInt(sizeY);
+        out.writeInt(sizeZ);
+        out.writeDouble(origin.x);
+        out.writeDouble(origin.y);
+        out.writeDouble(origin.z);
+        out.writeDouble(voxelSize);
+        out.writeFloat(maxManipulability);
+        // one plane at a time compresses better than one voxel at a time.
+        out.write(hits);
+        out.write(margin);
+        for(short m : manipulability) out.writeShort(m);
+        out.flush();
+        zip.finish();
+    }
+
+    /**
+     * @throws IOException if the stream is not a grid or is from a newer version.
+     */
+    public static WorkspaceGrid load(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+        if(in.readInt()!=MAGIC) throw new IOException("Not a workspace grid.");
+        int version = in.readInt();
+        if(version!=VERSION) throw new IOException("Unknown workspace grid version "+version+".");
+        int sx = in.readInt();
+        int sy = in.readInt();
+        int sz = in.readInt();
+        Point3d origin = new Point3d(in.readDouble(),in.readDouble(),in.readDouble());
+        WorkspaceGrid grid;
+        try {
+            grid = new WorkspaceGrid(origin,in.readDouble(),sx,sy,sz);
+        } catch(IllegalArgumentException e) {
+            throw new IOException(e.getMessage(),e);
+        }
+        grid.maxManipulability = in.readFloat();
+        in.readFully(grid.hits);
+        in.readFully(grid.margin);
+        for(int i=0;i<grid.manipulability.length;++i) {
+            grid.manipulability[i] = in.readShort();
+        }
+        return grid;
+    }
+}
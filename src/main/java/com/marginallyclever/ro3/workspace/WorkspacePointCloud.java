@@ -0,0 +1,67 @@
+package com.marginallyclever.ro3.workspace;
+
+import com.jogamp.opengl.GL3;
+import com.marginallyclever.ro3.mesh.Mesh;
+import com.marginallyclever.ro3.node.nodes.Material;
+import com.marginallyclever.ro3.node.nodes.MeshInstance;
+import com.marginallyclever.ro3.node.nodes.Pose;
+
+import javax.vecmath.Point3d;
+import java.awt.*;
+
+/**
+ * <p>{@link WorkspacePointCloud} draws a {@link WorkspaceGrid} as one point per reachable voxel.</p>
+ * <p>{@link com.marginallyclever.ro3.apps.render.renderpasses.DrawMeshes} colors a mesh with its {@link Material},
+ * so the points are split into bands by manipulability and each band gets its own unlit {@link Material}.  The
+ * least dexterous band is blue and the most dexterous band is red.</p>
+ * <p>The meshes are not files, so they are not saved with the scene.  Save the {@link WorkspaceGrid} instead.</p>
+ */
+public class WorkspacePointCloud {
+    public static final int DEFAULT_BANDS = 8;
+
+    /**
+     * @param grid the grid to draw.
+     * @param name the name of the new node.
+     * @param bands the number of colors.
+     * @return a {@link Pose} with one child {@link Pose} for every band that has points.
+     */
+    public static Pose create(WorkspaceGrid grid,String name,int bands) {
+        if(bands<1) throw new IllegalArgumentException("bands must be at least one.");
+        Mesh [] meshes = new Mesh[bands];
+        double max = grid.getMaxManipulability();
+        Point3d p = new Point3d();
+
+        for(int i=0;i<grid.getNumVoxels();++i) {
+            if(!grid.isReachable(i)) continue;
+            int band = (max==0) ? 0 : Math.min(bands-1,(int)(grid.getManipulability(i)/max*bands));
+            if(meshes[band]==null) meshes[band] = new Mesh(GL3.GL_POINTS);
+            grid.getCenter(i,p);
+            meshes[band].addVertex((float)p.x,(float)p.y,(float)p.z);
+        }
+
+        Pose root = new Pose(name);
+        for(int b=0;b<bands;++b) {
+            if(meshes[b]==null) continue;
+            Pose band = new Pose("band "+b);
+            root.addChild(band);
+
+            MeshInstance meshInstance = new MeshInstance();
+            meshInstance.setMesh(meshes[b]);
+            band.addChild(meshInstance);
+
+            Material material = new Material();
+            material.setLit(false);
+            material.setDiffuseColor(getBandColor(b,bands));
+            band.addChild(material);
+        }
+        return root;
+    }
+
+    /**
+     * @return blue for the first band through to red for the last.
+     */
+    static Color getBandColor(int band,int bands) {
+        float t = (bands==1) ? 1 : band/(float)(bands-1);
+        return Color.getHSBColor((1-t)*2f/3f,1,1);
+    }
+}
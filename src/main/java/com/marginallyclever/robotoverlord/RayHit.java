@@ -1,11 +1,15 @@
 package com.marginallyclever.robotoverlord;
 
+import com.marginallyclever.robotoverlord.components.LinearPatternComponent;
 import com.marginallyclever.robotoverlord.components.ShapeComponent;
+import com.marginallyclever.robotoverlord.entity.Entity;
 
 import javax.vecmath.Vector3d;
 
 /**
  * A ray hit is a record of a ray hitting a {@link ShapeComponent} at a certain distance.
+ * When the ray hit a copy drawn by a {@link LinearPatternComponent} then the pattern and the index of the copy are
+ * also recorded.
  * @author Dan Royer
  * @since 2.5.0
  */
@@ -14,10 +18,28 @@ public class RayHit {
     public ShapeComponent target;
     public double distance;
     public final Vector3d normal;
+    // the pattern that drew the copy of target that was hit, or null.
+    public LinearPatternComponent pattern;
+    // the index of the copy that was hit, or -1.
+    public int index = -1;
 
     public RayHit(ShapeComponent target, double distance, Vector3d normal) {
         this.target = target;
         this.distance = distance;
         this.normal = normal;
     }
+
+    public RayHit(ShapeComponent target, double distance, Vector3d normal, LinearPatternComponent pattern, int index) {
+        this(target, distance, normal);
+        this.pattern = pattern;
+        this.index = index;
+    }
+
+    /**
+     * @return the entity that was hit.  For a copy in a pattern this is the entity holding the pattern.
+     */
+    public Entity getEntity() {
+        if(pattern!=null) return pattern.getEntity();
+        return target==null ? null : target.getEntity();
+    }
 }
@@ -1,27 +1,335 @@
 package com.marginallyclever.robotoverlord.components;
 
 import com.jogamp.opengl.GL3;
+import com.marginallyclever.convenience.Ray;
+import com.marginallyclever.convenience.helpers.IntersectionHelper;
+import com.marginallyclever.ro3.mesh.InstanceBuffer;
+import com.marginallyclever.robotoverlord.RayHit;
+import com.marginallyclever.robotoverlord.SerializationContext;
+import com.marginallyclever.robotoverlord.entity.Entity;
+import com.marginallyclever.robotoverlord.entity.EntityManager;
 import com.marginallyclever.robotoverlord.parameters.DoubleParameter;
 import com.marginallyclever.robotoverlord.parameters.IntParameter;
+import com.marginallyclever.robotoverlord.parameters.ReferenceParameter;
+import com.marginallyclever.robotoverlord.systems.render.mesh.AABB;
+import com.marginallyclever.robotoverlord.systems.render.mesh.Mesh;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import java.util.List;
+import java.util.Map;
 
 /**
- * A component that should render a child component in a linear pattern.
+ * <p>A component that renders copies of a source {@link Entity} in a linear pattern.  The copies are not entities.
+ * Copy 0 is the source itself.  Copy i is the source moved i steps along the local X axis of the entity holding this
+ * component.</p>
+ * <p>All the copies of the source mesh are drawn with one instanced draw call.  Ray picking and collision tests
+ * report which copy was hit by its index.</p>
  *
  * @since 2.6.0
  * @author Dan Royer
  */
+@ComponentDependency(components={PoseComponent.class})
 @Deprecated
-public class LinearPatternComponent extends RenderComponent {
+public class LinearPatternComponent extends RenderComponent implements ComponentWithReferences {
     public static final String[] SPACING_TYPE_NAMES = {"Spacing","Distance"};
     public static int SPACING = 0;
     public static int DISTANCE = 1;
+    public final ReferenceParameter source = new ReferenceParameter("Source");
     public final IntParameter spacingType = new IntParameter("type", LinearPatternComponent.SPACING);
     public final DoubleParameter measure = new DoubleParameter("", 1);
     public final IntParameter quantity = new IntParameter("quantity", 1);
 
+    private transient Entity sourceEntity;
+    // the id that was not found, so that a missing source does not search the scene on every call.
+    private transient String missingID;
+    // EntityManager.getChanges() when missingID was not found.
+    private transient long missingChanges;
+    private transient final InstanceBuffer instances = new InstanceBuffer();
+
+    /**
+     * A source that is not found is not looked for again until the scene or the references change.
+     * @return the entity being copied, or null.
+     */
+    public Entity getSource() {
+        String id = source.get();
+        if(id==null || id.isEmpty() || getEntity()==null) return null;
+        Entity root = getEntity().getRoot();
+        if(sourceEntity!=null && id.equals(sourceEntity.getUniqueID()) && sourceEntity.getRoot()==root) return sourceEntity;
+        if(id.equals(missingID) && missingChanges==EntityManager.getChanges()) return null;
+
+        sourceEntity = EntityManager.findEntityByUniqueID(List.of(root),id);
+        missingID = (sourceEntity==null) ? id : null;
+        missingChanges = EntityManager.getChanges();
+        return sourceEntity;
+    }
+
+    public void setSource(Entity entity) {
+        sourceEntity = entity;
+        missingID = null;
+        source.set(entity==null ? null : entity.getUniqueID());
+    }
+
+    /**
+     * @return the mesh of the source, or null.
+     */
+    public Mesh getModel() {
+        ShapeComponent shape = getSourceShape();
+        return shape==null ? null : shape.getModel();
+    }
+
+    private ShapeComponent getSourceShape() {
+        Entity e = getSource();
+        return e==null ? null : e.getComponent(ShapeComponent.class);
+    }
+
+    /**
+     * @return the number of copies, including the source.
+     */
+    public int getCount() {
+        return Math.max(1,quantity.get());
+    }
+
+    /**
+     * @return the distance between neighboring copies.
+     */
+    public double getSpacing() {
+        if(spacingType.get()==DISTANCE) {
+            int count = getCount();
+            return count<2 ? 0 : measure.get() / (count-1);
+        }
+        return measure.get();
+    }
+
+    /**
+     * @param step set to the world space translation from one copy to the next.
+     */
+    public void getStep(Vector3d step) {
+        step.set(1,0,0);
+        Entity e = getEntity();
+        PoseComponent pose = e==null ? null : e.getComponent(PoseComponent.class);
+        if(pose!=null) {
+            Matrix4d m = pose.getWorld();
+            step.set(m.m00,m.m10,m.m20);
+        }
+        step.scale(getSpacing());
+    }
+
+    /**
+     * @param index the copy, 0...{@link #getCount()}-1
+     * @param result set to the world pose of the copy.
+     */
+    public void getInstanceTransform(int index,Matrix4d result) {
+        Vector3d step = new Vector3d();
+        getStep(step);
+        getSourceWorld(result);
+        addSteps(result,step,index);
+    }
+
+    private void getSourceWorld(Matrix4d result) {
+        Entity e = getSource();
+        PoseComponent pose = e==null ? null : e.getComponent(PoseComponent.class);
+        if(pose==null) result.setIdentity();
+        else result.set(pose.getWorld());
+    }
+
+    private static void addSteps(Matrix4d m,Vector3d step,int index) {
+        m.m03 += step.x*index;
+        m.m13 += step.y*index;
+        m.m23 += step.z*index;
+    }
+
+    /**
+     * Draw every copy except the source, which draws itself.  The shader must read the model matrix of each copy
+     * from the instance attributes.  See {@link Mesh#renderInstanced(GL3, InstanceBuffer)}.
+     * @param gl the OpenGL context
+     */
     @Override
     public void render(GL3 gl) {
-        // draw each child at each pattern location
-        throw new RuntimeException("Not implemented yet.");
+        Mesh mesh = getModel();
+        if(mesh==null) return;
+
+        Vector3d step = new Vector3d();
+        getStep(step);
+        Matrix4d base = new Matrix4d();
+        getSourceWorld(base);
+        Matrix4d m = new Matrix4d();
+
+        int count = getCount();
+        instances.setCount(count-1);
+        for(int i=1;i<count;++i) {
+            m.set(base);
+            addSteps(m,step,i);
+            instances.setInstance(i-1,m,1,1,1,1);
+        }
+        mesh.renderInstanced(gl,instances);
+    }
+
+    /**
+     * Free the instance data on the GPU.
+     * @param gl the OpenGL context
+     */
+    public void unload(GL3 gl) {
+        instances.unload(gl);
+    }
+
+    /**
+     * Find the nearest copy hit by the ray.  The source itself is not tested, it is found through its own
+     * {@link ShapeComponent}.
+     * @param ray the ray in world space
+     * @return the hit in world space with the pattern and the index of the copy, or null.
+     */
+    public RayHit intersect(Ray ray) {
+        if( !getEnabled() || !getVisible() ) return null;
+        ShapeComponent shape = getSourceShape();
+        if(shape==null || shape.getModel()==null) return null;
+        Mesh mesh = shape.getModel();
+
+        // every copy is the source moved by a whole number of steps, so work in the local space of the source.
+        Matrix4d world = new Matrix4d();
+        getSourceWorld(world);
+        Matrix4d inverse = new Matrix4d(world);
+        inverse.invert();
+        Point3d origin = new Point3d(ray.getOrigin());
+        Vector3d direction = new Vector3d(ray.getDirection());
+        Vector3d step = new Vector3d();
+        getStep(step);
+        inverse.transform(origin);
+        inverse.transform(direction);
+        inverse.transform(step);
+
+        AABB box = mesh.getBoundingBox();
+        Point3d top = box.getBoundsTop();
+        Point3d bottom = box.getBoundsBottom();
+        boolean useBox = !top.epsilonEquals(bottom,1e-6);
+
+        RayHit best = null;
+        Point3d copyOrigin = new Point3d();
+        int count = getCount();
+        // visit the copies nearest the ray origin first, so the box test can skip everything behind the first hit.
+        boolean backwards = step.dot(direction) < 0;
+        for(int k=1;k<count;++k) {
+            int i = backwards ? count-k : k;
+            copyOrigin.scaleAdd(-i,step,origin);
+            double near = best==null ? ray.getMaxDistance() : best.distance;
+            if(useBox && rayBox(copyOrigin,direction,bottom,top) >= near) continue;
+
+            RayHit hit = mesh.intersect(new Ray(copyOrigin,direction,near));
+            if(hit!=null && hit.distance<near) {
+                hit.index = i;
+                best = hit;
+            }
+        }
+        if(best==null) return null;
+
+        Vector3d normal = new Vector3d(best.normal);
+        world.transform(normal);
+        return new RayHit(shape,best.distance,normal,this,best.index);
+    }
+
+    /**
+     * @return the distance along the ray to the box, 0 if the ray starts inside, or Double.MAX_VALUE for a miss.
+     */
+    private static double rayBox(Point3d origin,Vector3d direction,Point3d bottom,Point3d top) {
+        double tMin = 0;
+        double tMax = Double.MAX_VALUE;
+        double [] o = {origin.x,origin.y,origin.z};
+        double [] d = {direction.x,direction.y,direction.z};
+        double [] lo = {bottom.x,bottom.y,bottom.z};
+        double [] hi = {top.x,top.y,top.z};
+        for(int i=0;i<3;++i) {
+            if(d[i]==0) {
+                if(o[i]<lo[i] || o[i]>hi[i]) return Double.MAX_VALUE;
+                continue;
+            }
+            double t0 = (lo[i]-o[i])/d[i];
+            double t1 = (hi[i]-o[i])/d[i];
+            tMin = Math.max(tMin,Math.min(t0,t1));
+            tMax = Math.min(tMax,Math.max(t0,t1));
+            if(tMin>tMax) return Double.MAX_VALUE;
+        }
+        return tMin;
+    }
+
+    /**
+     * @param index the copy, 0...{@link #getCount()}-1
+     * @return the bounding box of the copy in world space, or null if there is no source mesh.
+     */
+    public AABB getCuboid(int index) {
+        Mesh mesh = getModel();
+        if(mesh==null) return null;
+        AABB box = new AABB();
+        box.setShape(mesh);
+        box.setBounds(mesh.getBoundingBox().getBoundsTop(),mesh.getBoundingBox().getBoundsBottom());
+        Matrix4d m = new Matrix4d();
+        getInstanceTransform(index,m);
+        box.setPose(m);
+        return box;
+    }
+
+    /**
+     * Find the first copy whose bounding box touches the given box.  The source itself is not tested.
+     * @param other the box to test, in world space.
+     * @return the index of the copy, or -1 if none.
+     */
+    public int findCollision(AABB other) {
+        Mesh mesh = getModel();
+        if(mesh==null) return -1;
+
+        // bounding spheres first.
+        other.updatePoints();
+        Point3d otherCenter = new Point3d();
+        for(Point3d p : other.p) otherCenter.add(p);
+        otherCenter.scale(1.0/other.p.length);
+        double otherRadius = 0;
+        for(Point3d p : other.p) otherRadius = Math.max(otherRadius,p.distance(otherCenter));
+
+        Point3d top = mesh.getBoundingBox().getBoundsTop();
+        Point3d bottom = mesh.getBoundingBox().getBoundsBottom();
+        Point3d center = new Point3d();
+        center.interpolate(top,bottom,0.5);
+        double radius = top.distance(bottom)/2;
+        Matrix4d world = new Matrix4d();
+        getSourceWorld(world);
+        world.transform(center);
+        Vector3d step = new Vector3d();
+        getStep(step);
+
+        Point3d copyCenter = new Point3d();
+        int count = getCount();
+        for(int i=1;i<count;++i) {
+            copyCenter.scaleAdd(i,step,center);
+            if(copyCenter.distance(otherCenter) > radius+otherRadius) continue;
+            if(IntersectionHelper.cuboidCuboid(getCuboid(i),other)) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public void updateReferences(Map<String, String> oldToNewIDMap) {
+        source.updateReferences(oldToNewIDMap);
+        missingID = null;
+    }
+
+    @Override
+    public JSONObject toJSON(SerializationContext context) {
+        JSONObject jo = super.toJSON(context);
+        jo.put("source",source.toJSON(context));
+        jo.put("spacingType",spacingType.toJSON(context));
+        jo.put("measure",measure.toJSON(context));
+        jo.put("quantity",quantity.toJSON(context));
+        return jo;
+    }
+
+    @Override
+    public void parseJSON(JSONObject jo, SerializationContext context) throws JSONException {
+        super.parseJSON(jo, context);
+        if(jo.has("source")) source.parseJSON(jo.getJSONObject("source"),context);
+        if(jo.has("spacingType")) spacingType.parseJSON(jo.getJSONObject("spacingType"),context);
+        if(jo.has("measure")) measure.parseJSON(jo.getJSONObject("measure"),context);
+        if(jo.has("quantity")) quantity.parseJSON(jo.getJSONObject("quantity"),context);
     }
 }
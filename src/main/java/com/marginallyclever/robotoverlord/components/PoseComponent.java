@@ -125,6 +125,23 @@ public class PoseComponent extends Component implements PropertyChangeListener {
         return result;
     }
 
+    /**
+     * Same as {@link #getWorld()} but writes into an existing matrix instead of creating new ones.
+     * @param result the matrix to fill.
+     */
+    public void getWorld(Matrix4d result) {
+        result.set(local);
+
+        Entity child = getEntity();
+        if(child==null) return;
+        PoseComponent parentPose = child.findFirstComponentInParents(PoseComponent.class);
+        while(parentPose!=null) {
+            result.mul(parentPose.local,result);
+            Entity parent = parentPose.getEntity();
+            parentPose = (parent==null) ? null : parent.findFirstComponentInParents(PoseComponent.class);
+        }
+    }
+
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
         refreshLocalMatrix();
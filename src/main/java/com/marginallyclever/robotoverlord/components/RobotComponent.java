@@ -1,6 +1,8 @@
 package com.marginallyclever.robotoverlord.components;
 
 import com.marginallyclever.convenience.helpers.MatrixHelper;
+import com.marginallyclever.ro3.workspace.DHChainModel;
+import com.marginallyclever.ro3.workspace.WorkspaceAnalyzer;
 import com.marginallyclever.robotoverlord.SerializationContext;
 import com.marginallyclever.robotoverlord.entity.Entity;
 import com.marginallyclever.robotoverlord.parameters.DoubleParameter;
@@ -123,6 +125,16 @@ public class RobotComponent extends Component implements Robot, ComponentWithRef
         return result;
     }
 
+    /**
+     * Same as {@link #getAllJointValues()} but writes into an existing array.
+     * @param result an array at least {@link #getNumBones()} long.
+     */
+    public void getAllJointValues(double[] result) {
+        for(int i=0;i<getNumBones();++i) {
+            result[i] = getBone(i).getJointValue();
+        }
+    }
+
     @Override
     public void set(int property, Object value) {
         switch (property) {
@@ -298,6 +310,40 @@ public class RobotComponent extends Component implements Robot, ComponentWithRef
         }
     }
 
+    /**
+     * Assumes the bones are a chain, one inside the next, as {@link #getActiveJointPose()} does.
+     * @return a copy of the kinematics of this arm for {@link WorkspaceAnalyzer}, relative to the base of the robot.
+     */
+    public DHChainModel getKinematicModel() {
+        DHChainModel model = new DHChainModel();
+        if(getNumBones()==0) return model;
+
+        for(int i=0;i<getNumBones();++i) {
+            DHComponent b = getBone(i);
+            model.addLink(b.getD(),b.getR(),b.getAlpha(),b.getTheta(),b.isRevolute(),b.getJointMin(),b.getJointMax());
+        }
+
+        // the first bone's parent, relative to the base.
+        DHComponent first = getBone(0);
+        Matrix4d firstLocal = new Matrix4d(first.getLocal());
+        firstLocal.invert();
+        Matrix4d base = inBaseFrameOfReference(first.getEntity().getComponent(PoseComponent.class).getWorld());
+        base.mul(firstLocal);
+        model.setBase(base);
+
+        // the end effector, relative to the last bone.
+        ArmEndEffectorComponent ee = getEndEffector();
+        PoseComponent eePose = (ee==null) ? null : ee.getEntity().getComponent(PoseComponent.class);
+        if(eePose!=null) {
+            Matrix4d last = getBone(getNumBones()-1).getEntity().getComponent(PoseComponent.class).getWorld();
+            last.invert();
+            Matrix4d tool = eePose.getWorld();
+            tool.mul(last,tool);
+            model.setTool(tool);
+        }
+        return model;
+    }
+
     @Override
     public JSONObject toJSON(SerializationContext context) {
         JSONObject jo = super.toJSON(context);
@@ -77,6 +77,10 @@ public class DogRobotComponent extends Component {
         targets[index].set(point2);
     }
 
+    public Point3d getTarget(int index) {
+        return targets[index];
+    }
+
     public Point3d getNextPOC(int index) {
         return nextPOC[index];
     }
@@ -12,18 +12,66 @@ import org.json.JSONObject;
 import java.util.*;
 
 /**
- * A motor {@link Component} that approximates a torque curve.
+ * <p>A motor {@link Component} that approximates a torque curve.</p>
+ * <p>The rest of the parameters describe how the motor and its load resist changes in speed.  Inertia is in
+ * kg*m^2, friction and back-EMF in the units of the torque curve.  The default rotor inertia is 60/(2*pi), which
+ * makes one unit of torque speed the motor up by one rpm every second.  That is how motors behaved before they had
+ * inertia, so older scenes still move the same.</p>
  *
  * @author Dan Royer
  * @since 2.5.0
  */
 public abstract class MotorComponent extends Component {
-    private final TreeMap<Double, Double> torqueCurve = new TreeMap<>();
+    public static final double DEFAULT_ROTOR_INERTIA = 60.0/(2.0*Math.PI);
+
+    private final TorqueCurve torqueCurve = new TorqueCurve();
+    private TorqueTable torqueTable;
+    private int torqueTableVersion = -1;
     public final DoubleParameter currentRPM = new DoubleParameter("Current Velocity (rpm)",0);  // rpm
     public final DoubleParameter desiredRPM = new DoubleParameter("Desired Velocity (rpm)",0);  // rpm
     public final DoubleParameter gearRatio = new DoubleParameter("Gear Ratio",1.0);
     public final DoubleParameter currentAngle = new DoubleParameter("Current angle", 0);
     public final ListParameter<ReferenceParameter> connectedTo = new ListParameter<>("Connected to",new ReferenceParameter());
+    public final DoubleParameter rotorInertia = new DoubleParameter("Rotor inertia",DEFAULT_ROTOR_INERTIA);
+    // at the output of the gearbox, not counting other motors in connectedTo.
+    public final DoubleParameter loadInertia = new DoubleParameter("Load inertia",0);
+    // torque per radian/s.
+    public final DoubleParameter viscousFriction = new DoubleParameter("Viscous friction",0);
+    public final DoubleParameter coulombFriction = new DoubleParameter("Coulomb friction",0);
+    // torque per radian/s lost from the drive, or added to braking.  Leave at zero if the torque curve already falls
+    // with speed.
+    public final DoubleParameter backEMF = new DoubleParameter("Back-EMF",0);
+
+    /**
+     * A {@link TreeMap} that counts changes, so the {@link TorqueTable} can be baked again only when needed.
+     */
+    private static class TorqueCurve extends TreeMap<Double,Double> {
+        int version = 0;
+
+        @Override
+        public Double put(Double key, Double value) {
+            version++;
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends Double, ? extends Double> map) {
+            version++;
+            super.putAll(map);
+        }
+
+        @Override
+        public Double remove(Object key) {
+            version++;
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            version++;
+            super.clear();
+        }
+    }
 
     public MotorComponent() {
         super();
@@ -35,34 +83,22 @@ public abstract class MotorComponent extends Component {
     }
 
     /**
-     * @param rpm The RPM to get the torque for
+     * @param rpm The RPM to get the torque for.  The sign is ignored.
      * @return The torque at the given RPM, or 0.0 if the RPM is outside the curve.
      */
     public double getTorqueAtRpm(double rpm) {
-        // If the exact RPM is in the curve, return the torque for it
-        if (this.torqueCurve.containsKey(rpm)) {
-            return this.torqueCurve.get(rpm);
-        }
+        return getTorqueTable().getTorque(rpm);
+    }
 
-        // If the exact RPM is not in the curve, perform linear interpolation
-        Double lowestRPM = null;
-        Double lowerRpm = null;
-        Double higherRpm = null;
-        for(Double key : this.torqueCurve.keySet()) {
-            if(key <= rpm && ( lowerRpm == null || key >  lowerRpm))  lowerRpm = key;
-            if(key >= rpm && (higherRpm == null || key < higherRpm)) higherRpm = key;
-            if(lowestRPM == null || key < lowestRPM) lowestRPM = key;
+    /**
+     * @return the torque curve baked for fast lookup.  It is baked again after the curve changes.
+     */
+    public TorqueTable getTorqueTable() {
+        if(torqueTable==null || torqueTableVersion!=torqueCurve.version) {
+            torqueTable = new TorqueTable(torqueCurve);
+            torqueTableVersion = torqueCurve.version;
         }
-
-        // If no suitable lower or higher RPM is found, return 0.0
-        if(lowerRpm == null) return torqueCurve.get(lowestRPM);
-        if(higherRpm == null) return 0.0;
-
-        // Perform linear interpolation
-        double lowerTorque = torqueCurve.get(lowerRpm);
-        double higherTorque = torqueCurve.get(higherRpm);
-        double slope = (higherTorque - lowerTorque) / (higherRpm - lowerRpm);
-        return lowerTorque + slope * (rpm - lowerRpm);
+        return torqueTable;
     }
 
     public void setCurrentRPM(double rpm) {
@@ -112,6 +148,11 @@ public abstract class MotorComponent extends Component {
         jo.put("desiredVelocity", desiredRPM.toJSON(context));
         jo.put("currentAngle",currentAngle.toJSON(context));
         jo.put("connectedTo",connectedTo.toJSON(context));
+        jo.put("rotorInertia",rotorInertia.toJSON(context));
+        jo.put("loadInertia",loadInertia.toJSON(context));
+        jo.put("viscousFriction",viscousFriction.toJSON(context));
+        jo.put("coulombFriction",coulombFriction.toJSON(context));
+        jo.put("backEMF",backEMF.toJSON(context));
         return jo;
     }
 
@@ -131,6 +172,12 @@ public abstract class MotorComponent extends Component {
         desiredRPM.parseJSON(jo.getJSONObject("desiredVelocity"),context);
         currentAngle.parseJSON(jo.getJSONObject("currentAngle"),context);
         connectedTo.parseJSON(jo.getJSONObject("connectedTo"),context);
+        // older files do not have these.
+        if(jo.has("rotorInertia")) rotorInertia.parseJSON(jo.getJSONObject("rotorInertia"),context);
+        if(jo.has("loadInertia")) loadInertia.parseJSON(jo.getJSONObject("loadInertia"),context);
+        if(jo.has("viscousFriction")) viscousFriction.parseJSON(jo.getJSONObject("viscousFriction"),context);
+        if(jo.has("coulombFriction")) coulombFriction.parseJSON(jo.getJSONObject("coulombFriction"),context);
+        if(jo.has("backEMF")) backEMF.parseJSON(jo.getJSONObject("backEMF"),context);
     }
 
     @Override
@@ -142,6 +189,8 @@ public abstract class MotorComponent extends Component {
                 + ", desiredRPM=" + desiredRPM
                 + ", currentAngle=" + currentAngle
                 + ", connectedTo=" + connectedTo
+                + ", rotorInertia=" + rotorInertia
+                + ", loadInertia=" + loadInertia
                 + ",\n";
     }
 
@@ -0,0 +1,74 @@
+package com.marginallyclever.robotoverlord.components.motors;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * <p>A torque curve baked into flat arrays so that {@link #getTorque(double)} does not search.  The curve is
+ * linear between its points, the same as {@link MotorComponent#getTorqueAtRpm(double)} has always been.  Below the
+ * first point the torque is that of the first point.  Above the last point the torque is zero.</p>
+ * <p>A table of buckets of equal width points at the first segment in each bucket, so a lookup is one division
+ * and at most a few steps.</p>
+ */
+public class TorqueTable {
+    private static final int BUCKETS = 64;
+
+    private final double [] rpm;
+    private final double [] torque;
+    private final double [] slope;
+    private final int [] bucket;
+    private final double bucketScale;
+
+    /**
+     * @param curve rpm to torque.  Keys must be zero or more.
+     */
+    public TorqueTable(SortedMap<Double,Double> curve) {
+        int n = curve.size();
+        rpm = new double[n];
+        torque = new double[n];
+        slope = new double[n];
+        int i=0;
+        for(Map.Entry<Double,Double> e : curve.entrySet()) {
+            rpm[i] = e.getKey();
+            torque[i] = e.getValue();
+            i++;
+        }
+        for(i=0;i+1<n;++i) {
+            slope[i] = (torque[i+1]-torque[i]) / (rpm[i+1]-rpm[i]);
+        }
+
+        bucket = new int[BUCKETS+1];
+        double max = (n==0) ? 0 : rpm[n-1];
+        bucketScale = (max>0) ? BUCKETS/max : 0;
+        int segment = 0;
+        for(int b=0;b<=BUCKETS;++b) {
+            double start = (bucketScale>0) ? b/bucketScale : 0;
+            while(segment+1<n && rpm[segment+1]<=start) segment++;
+            bucket[b] = segment;
+        }
+    }
+
+    /**
+     * @param rpm the speed of the motor.  The sign is ignored.
+     * @return the torque at that speed.
+     */
+    public double getTorque(double rpm) {
+        int n = this.rpm.length;
+        if(n==0) return 0;
+        double r = Math.abs(rpm);
+        if(r<=this.rpm[0]) return torque[0];
+        if(r>this.rpm[n-1]) return 0;
+        if(r==this.rpm[n-1]) return torque[n-1];
+
+        int i = bucket[Math.min(BUCKETS,(int)(r*bucketScale))];
+        while(i+1<n && this.rpm[i+1]<=r) i++;
+        return torque[i] + slope[i] * (r-this.rpm[i]);
+    }
+
+    /**
+     * @return the highest rpm in the curve, or 0 if the curve is empty.
+     */
+    public double getMaxRPM() {
+        return rpm.length==0 ? 0 : rpm[rpm.length-1];
+    }
+}
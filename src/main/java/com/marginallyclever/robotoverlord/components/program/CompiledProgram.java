@@ -0,0 +1,83 @@
+package com.marginallyclever.robotoverlord.components.program;
+
+import com.marginallyclever.robotoverlord.components.PoseComponent;
+import com.marginallyclever.robotoverlord.entity.Entity;
+
+import java.util.*;
+
+/**
+ * <p>A program tree flattened into a list of {@link Instruction}s, so that running it does not have to walk or
+ * search the tree.  The order is a depth-first walk of the tree: each step, then its children, then its next
+ * sibling.  The root is not a step.</p>
+ * <p>Each instruction knows the nearest {@link ProgramStepComponent} in its step or above it.  That is the action
+ * the step performs, so the poses below a {@link ProgramPathComponent} are moved to by that path.</p>
+ * <p>A {@link CompiledProgram} does not change.  If the tree changes, compile it again.</p>
+ */
+@Deprecated
+public class CompiledProgram {
+    /**
+     * @param step the entity visited.
+     * @param pose the pose of the step, or null.
+     * @param action the nearest {@link ProgramStepComponent} in the step or above it, or null if there is none.
+     */
+    public record Instruction(Entity step, PoseComponent pose, ProgramStepComponent action) {}
+
+    private final Entity root;
+    private final Instruction[] instructions;
+    private final Map<String,Integer> indexByID = new HashMap<>();
+
+    private CompiledProgram(Entity root,List<Instruction> list) {
+        this.root = root;
+        this.instructions = list.toArray(new Instruction[0]);
+        for(int i=0;i<instructions.length;++i) {
+            indexByID.putIfAbsent(instructions[i].step().getUniqueID(),i);
+        }
+    }
+
+    /**
+     * @param root the root of the program tree.
+     * @return the compiled program.
+     */
+    public static CompiledProgram compile(Entity root) {
+        List<Instruction> list = new ArrayList<>();
+        for(Entity child : root.getChildren()) {
+            compile(child,null,list);
+        }
+        return new CompiledProgram(root,list);
+    }
+
+    private static void compile(Entity step,ProgramStepComponent inherited,List<Instruction> list) {
+        ProgramStepComponent own = step.getComponent(ProgramStepComponent.class);
+        ProgramStepComponent action = (own!=null) ? own : inherited;
+        list.add(new Instruction(step,step.getComponent(PoseComponent.class),action));
+        for(Entity child : step.getChildren()) {
+            compile(child,action,list);
+        }
+    }
+
+    public Entity getRoot() {
+        return root;
+    }
+
+    public int size() {
+        return instructions.length;
+    }
+
+    public boolean isEmpty() {
+        return instructions.length==0;
+    }
+
+    public Instruction get(int index) {
+        return instructions[index];
+    }
+
+    /**
+     * @param uniqueID the unique ID of a step.
+     * @return the index of the step, or -1 if it is not in this program.
+     */
+    public int indexOf(String uniqueID) {
+        if(uniqueID==null) return -1;
+        Integer i = indexByID.get(uniqueID);
+        return (i==null) ? -1 : i;
+    }
+}
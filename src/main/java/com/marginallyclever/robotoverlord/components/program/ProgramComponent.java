@@ -13,7 +13,7 @@ import org.json.JSONObject;
 
 import java.beans.PropertyChangeListener;
 import java.util.Map;
-import java.util.Stack;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The ProgramComponent holds run-time information about the program being executed by a robot.
@@ -36,12 +36,26 @@ public class ProgramComponent extends Component implements ComponentWithReferenc
     public ReferenceParameter stepEntity = new ReferenceParameter("Step",null);
     private final BooleanParameter isRunning = new BooleanParameter("Running",false);
     public IntParameter mode = new IntParameter("mode",RUN_STEP);
-    private final Stack<Object> stack = new Stack<>();
+    // adding a component to an entity fires no scene event, so count the attachments instead.
+    private static final AtomicLong attachments = new AtomicLong();
 
     public ProgramComponent() {
         super();
     }
 
+    @Override
+    public void onAttach() {
+        super.onAttach();
+        attachments.incrementAndGet();
+    }
+
+    /**
+     * @return a number that changes every time a {@link ProgramComponent} is attached to an {@link Entity}.
+     */
+    public static long getAttachments() {
+        return attachments.get();
+    }
+
     public boolean getRunning() {
         return isRunning.get();
     }
@@ -53,7 +67,6 @@ public class ProgramComponent extends Component implements ComponentWithReferenc
     public void reset() {
         isRunning.set(false);
         stepEntity.set((String)null);
-        stack.clear();
     }
 
     @Override
@@ -79,22 +92,6 @@ public class ProgramComponent extends Component implements ComponentWithReferenc
         isRunning.addPropertyChangeListener(arg0);
     }
 
-    public void popStack() {
-        stack.pop();
-    }
-
-    public void pushStack(Object obj) {
-        stack.push(obj);
-    }
-
-    public Object peekStack() {
-        return stack.peek();
-    }
-
-    public int getStackDepth() {
-        return stack.size();
-    }
-
     @Override
     public void updateReferences(Map<String, String> oldToNewIDMap) {
         programEntity.updateReferences(oldToNewIDMap);
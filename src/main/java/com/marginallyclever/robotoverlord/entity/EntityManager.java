@@ -12,9 +12,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * {@link EntityManager} is a container for all the {@link Entity} in a project.
@@ -26,6 +28,8 @@ import java.util.Queue;
 @Deprecated
 public class EntityManager {
 	private static final Logger logger = LoggerFactory.getLogger(EntityManager.class);
+	// counts the events of every EntityManager, for components that cannot reach their own.
+	private static final AtomicLong changes = new AtomicLong();
 	private final List<Entity> entities = new ArrayList<>();
 	private final Entity rootEntity = new Entity("Scene");
 	private final List<EntityManagerListener> entityManagerListeners = new ArrayList<>();
@@ -96,6 +100,7 @@ public class EntityManager {
 	}
 
 	public void fireEntityManagerEvent(EntityManagerEvent event) {
+		changes.incrementAndGet();
 		for(EntityManagerListener listener : entityManagerListeners) {
 			listener.entityManagerEvent(event);
 		}
@@ -109,15 +114,33 @@ public class EntityManager {
 		entityManagerListeners.remove(listener);
 	}
 
+	/**
+	 * @return a number that changes every time any {@link EntityManager} fires an event.
+	 */
+	public static long getChanges() {
+		return changes.get();
+	}
+
 	/**
 	 * Find an entity by its unique ID.
 	 * @param uuid the unique ID to search for.
 	 * @return the entity with the given unique ID, or null if not found.
 	 */
     public Entity findEntityByUniqueID(String uuid) {
+		return findEntityByUniqueID(entities,uuid);
+    }
+
+	/**
+	 * Find an entity by its unique ID in any tree of entities, for example one that is not yet in an
+	 * {@link EntityManager}.
+	 * @param roots the entities to search, and their children.
+	 * @param uuid the unique ID to search for.
+	 * @return the entity with the given unique ID, or null if not found.
+	 */
+	public static Entity findEntityByUniqueID(Collection<Entity> roots,String uuid) {
 		if(uuid==null) return null;
 
-		Queue<Entity> toTest = new LinkedList<>(entities);
+		Queue<Entity> toTest = new LinkedList<>(roots);
 		while(!toTest.isEmpty()) {
 			Entity entity = toTest.remove();
 
@@ -1,6 +1,7 @@
 package com.marginallyclever.robotoverlord.renderpanel;
 
 import com.marginallyclever.convenience.helpers.MatrixHelper;
+import com.marginallyclever.robotoverlord.components.LinearPatternComponent;
 import com.marginallyclever.robotoverlord.components.MaterialComponent;
 import com.marginallyclever.robotoverlord.components.PoseComponent;
 import com.marginallyclever.robotoverlord.components.RenderComponent;
@@ -40,9 +41,13 @@ public class MatrixMaterialRenderSet {
 
             PoseComponent pose = entity.getComponent(PoseComponent.class);
             Matrix4d m = (pose==null) ? MatrixHelper.createIdentityMatrix4() : pose.getWorld();
-            MatrixMaterialRender mmr = new MatrixMaterialRender(m,
-                    entity.getComponent(RenderComponent.class),
-                    entity.getComponent(MaterialComponent.class));
+            MaterialComponent material = entity.getComponent(MaterialComponent.class);
+            if(material==null && renderComponent instanceof LinearPatternComponent pattern) {
+                // copies look like the source.
+                Entity source = pattern.getSource();
+                if(source!=null) material = source.getComponent(MaterialComponent.class);
+            }
+            MatrixMaterialRender mmr = new MatrixMaterialRender(m, renderComponent, material);
 
             if(mmr.materialComponent==null) noMaterial.add(mmr);
             else if(mmr.materialComponent.drawOnBottom.get()) onBottom.add(mmr);
@@ -278,6 +278,10 @@ public class OpenGLRenderPanel implements RenderPanel, GLEventListener, MouseLis
             if(shape != null) {
                 shape.unload(gl);
             }
+            LinearPatternComponent pattern = test.getComponent(LinearPatternComponent.class);
+            if(pattern != null) {
+                pattern.unload(gl);
+            }
         }
     }
 
@@ -732,17 +736,21 @@ public class OpenGLRenderPanel implements RenderPanel, GLEventListener, MouseLis
         }
 
         boolean hasMesh = false;
+        Mesh mesh = null;
         if(mmr.renderComponent instanceof ShapeComponent shape) {
             // if this component is a shape
-            Mesh mesh = shape.getModel();
-            if(mesh != null) {
-                hasMesh = true;
-                // and it has vertex colors, enable them.
-                useVertexColor &= mesh.getHasColors();
-                // and it has texture coordinates, continue to allow textures.
-                useTexture &= mesh.getHasTextures();
-                useLighting &= mesh.getHasNormals();
-            }
+            mesh = shape.getModel();
+        } else if(mmr.renderComponent instanceof LinearPatternComponent pattern) {
+            // or copies of a shape
+            mesh = pattern.getModel();
+        }
+        if(mesh != null) {
+            hasMesh = true;
+            // and it has vertex colors, enable them.
+            useVertexColor &= mesh.getHasColors();
+            // and it has texture coordinates, continue to allow textures.
+            useTexture &= mesh.getHasTextures();
+            useLighting &= mesh.getHasNormals();
         }
         if(!hasMesh) {
             useVertexColor=false;
@@ -762,7 +770,10 @@ public class OpenGLRenderPanel implements RenderPanel, GLEventListener, MouseLis
             shaderProgram.set1i(gl,"diffuseTexture",0);
         }
 
+        boolean useInstancing = mmr.renderComponent instanceof LinearPatternComponent;
+        shaderProgram.set1i(gl,"useInstancing",useInstancing?1:0);
         mmr.renderComponent.render(gl);
+        if(useInstancing) shaderProgram.set1i(gl,"useInstancing",0);
     }
 
     private void renderLights() {
@@ -0,0 +1,65 @@
+package com.marginallyclever.robotoverlord.robots.deltarobot3;
+
+import com.marginallyclever.ro3.workspace.InverseKinematics;
+
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+/**
+ * The inverse kinematics of a {@link DeltaRobot3}, with its own arms so that it does not move the robot.
+ */
+@Deprecated
+public class DeltaRobot3Model implements InverseKinematics {
+	private final DeltaRobot3Arm [] arms = new DeltaRobot3Arm[DeltaRobot3.NUM_ARMS];
+	private final Vector3d target = new Vector3d();
+	private final double min, max;
+
+	/**
+	 * @param min the lowest angle of each bicep, in degrees.
+	 * @param max the highest angle of each bicep, in degrees.
+	 */
+	public DeltaRobot3Model(double min,double max) {
+		this.min = min;
+		this.max = max;
+		for(int i=0;i<arms.length;++i) {
+			double v = Math.PI*2.0 * ((double)i/arms.length - 1.0/(arms.length*2.0));
+			arms[i] = new DeltaRobot3Arm(new Vector3d(Math.cos(v),Math.sin(v),0));
+			arms[i].rebuildShoulder();
+		}
+	}
+
+	@Override
+	public int getNumJoints() {
+		return arms.length;
+	}
+
+	@Override
+	public double getJointMin(int index) {
+		return min;
+	}
+
+	@Override
+	public double getJointMax(int index) {
+		return max;
+	}
+
+	@Override
+	public boolean solve(Point3d p, double[] joints) {
+		target.set(p);
+		try {
+			for(int i=0;i<arms.length;++i) {
+				arms[i].updateWrist(target);
+				arms[i].updateShoulderAngle();
+				joints[i] = arms[i].angle;
+			}
+		} catch(AssertionError e) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public DeltaRobot3Model copy() {
+		return new DeltaRobot3Model(min,max);
+	}
+}
@@ -0,0 +1,79 @@
+package com.marginallyclever.robotoverlord.robots.stewartplatform.linear;
+
+import com.marginallyclever.convenience.Ray;
+import com.marginallyclever.convenience.helpers.IntersectionHelper;
+import com.marginallyclever.ro3.workspace.InverseKinematics;
+
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+/**
+ * The inverse kinematics of a {@link LinearStewartPlatformCore} for a top plate that does not rotate.  The same
+ * math as {@link LinearStewartPlatformCore#update(double)} without touching the platform.
+ */
+@Deprecated
+public class LinearStewartPlatformModel implements InverseKinematics {
+	private final Point3d [] pBase;
+	private final Point3d [] pEE;
+	private final double armLength;
+	private final double baseZ;
+	private final double slideTravel;
+	private final Ray ray = new Ray();
+	private final Point3d pEE2 = new Point3d();
+
+	/**
+	 * @param pBase the bottom of each slide.
+	 * @param pEE each ball joint on the top plate, relative to the top plate.
+	 * @param armLength the length of every arm.
+	 * @param baseZ the height of the slides above pBase.
+	 * @param slideTravel how far each slide can move.
+	 */
+	public LinearStewartPlatformModel(Point3d [] pBase,Point3d [] pEE,double armLength,double baseZ,double slideTravel) {
+		if(pBase.length!=pEE.length) throw new IllegalArgumentException("one end effector point for every base point.");
+		this.pBase = copyOf(pBase);
+		this.pEE = copyOf(pEE);
+		this.armLength = armLength;
+		this.baseZ = baseZ;
+		this.slideTravel = slideTravel;
+		ray.setDirection(new Vector3d(0,0,1));
+	}
+
+	private static Point3d [] copyOf(Point3d [] list) {
+		Point3d [] result = new Point3d[list.length];
+		for(int i=0;i<list.length;++i) result[i] = new Point3d(list[i]);
+		return result;
+	}
+
+	@Override
+	public int getNumJoints() {
+		return pBase.length;
+	}
+
+	@Override
+	public double getJointMin(int index) {
+		return 0;
+	}
+
+	@Override
+	public double getJointMax(int index) {
+		return slideTravel;
+	}
+
+	@Override
+	public boolean solve(Point3d target, double[] joints) {
+		for(int i=0;i<pBase.length;++i) {
+			pEE2.add(pEE[i],target);
+			ray.setOrigin(pBase[i]);
+			double t = IntersectionHelper.raySphere(ray,pEE2,armLength);
+			// raySphere returns -1 for a miss.
+			if(t<0) return false;
+			joints[i] = t - baseZ;
+		}
+		return true;
+	}
+
+	@Override
+	public LinearStewartPlatformModel copy() {
+		return new LinearStewartPlatformModel(pBase,pEE,armLength,baseZ,slideTravel);
+	}
+}
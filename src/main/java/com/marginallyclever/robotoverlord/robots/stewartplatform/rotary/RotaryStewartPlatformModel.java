@@ -0,0 +1,128 @@
+package com.marginallyclever.robotoverlord.robots.stewartplatform.rotary;
+
+import com.marginallyclever.ro3.workspace.InverseKinematics;
+
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+/**
+ * The inverse kinematics of a {@link RotaryStewartPlatform} for a top plate that does not rotate.  The same math as
+ * the platform uses to find its elbows, without touching the platform.  The platform has no bicep limits of its own,
+ * so the limits are given.
+ */
+@Deprecated
+public class RotaryStewartPlatformModel implements InverseKinematics {
+	private final Point3d [] pShoulder;
+	private final Point3d [] pEE;
+	private final double bicepLength;
+	private final double armLength;
+	private final double min, max;
+
+	private final Vector3d wrist = new Vector3d();
+	private final Vector3d projectedWrist = new Vector3d();
+	private final Vector3d temp = new Vector3d();
+	private final Vector3d r = new Vector3d();
+	private final Vector3d normal = new Vector3d();
+	private final Vector3d ortho = new Vector3d();
+	private final Point3d pElbow = new Point3d();
+
+	/**
+	 * @param pShoulder the motor shaft of each bicep.
+	 * @param pEE each ball joint on the top plate, relative to the top plate.
+	 * @param bicepLength the length of every bicep.
+	 * @param armLength the length of every forearm.
+	 * @param min the lowest angle of each bicep, in degrees.
+	 * @param max the highest angle of each bicep, in degrees.
+	 */
+	public RotaryStewartPlatformModel(Point3d [] pShoulder,Point3d [] pEE,double bicepLength,double armLength,double min,double max) {
+		if(pShoulder.length!=pEE.length) throw new IllegalArgumentException("one end effector point for every shoulder.");
+		this.pShoulder = copyOf(pShoulder);
+		this.pEE = copyOf(pEE);
+		this.bicepLength = bicepLength;
+		this.armLength = armLength;
+		this.min = min;
+		this.max = max;
+	}
+
+	private static Point3d [] copyOf(Point3d [] list) {
+		Point3d [] result = new Point3d[list.length];
+		for(int i=0;i<list.length;++i) result[i] = new Point3d(list[i]);
+		return result;
+	}
+
+	@Override
+	public int getNumJoints() {
+		return pShoulder.length;
+	}
+
+	@Override
+	public double getJointMin(int index) {
+		return min;
+	}
+
+	@Override
+	public double getJointMax(int index) {
+		return max;
+	}
+
+	@Override
+	public boolean solve(Point3d target, double[] joints) {
+		int n = pShoulder.length;
+		for(int i=0;i<n;++i) {
+			int j = (i+n-1)%n;
+			int k = ((j/2)+1);
+
+			double angle = Math.toRadians(k*120.0);
+			double c = Math.cos(angle);
+			double s = Math.sin(angle);
+			normal.set(c,s,0);
+			ortho.set(-s,c,0);
+
+			// projectedWrist = project pEE2 onto plane of bicep
+			wrist.add(pEE[i],target);
+			wrist.sub(pShoulder[i]);
+
+			double a = wrist.dot(normal);
+			temp.scale(a,normal);
+			projectedWrist.sub(wrist,temp);
+
+			// we need to find projectedWrist-elbow to calculate the angle at the shoulder.
+			double b = Math.sqrt(armLength*armLength-a*a);
+			if(Double.isNaN(b)) return false;
+
+			// use intersection of circles to find elbow point.
+			double r1 = b;  // circle 1 centers on wrist
+			double r0 = bicepLength;  // circle 0 centers on shoulder
+			double d = projectedWrist.length();
+			if(d==0) return false;
+			// distance along projectedWrist to the midpoint between the two possible intersections
+			a = ( r0 * r0 - r1 * r1 + d*d ) / ( 2.0*d );
+
+			projectedWrist.scale(1.0/d);
+			temp.scale(a,projectedWrist);
+			temp.add(pShoulder[i]);
+			// with a and r0 we can find h, the distance from midpoint to intersections.
+			double hh = Math.sqrt(r0*r0-a*a);
+			if(Double.isNaN(hh)) return false;
+
+			r.cross(normal,projectedWrist);
+			r.scale(hh);
+			pElbow.set(temp);
+			if(j%2==0) pElbow.add(r);
+			else       pElbow.sub(r);
+
+			temp.sub(pElbow,pShoulder[i]);
+			double y = -temp.z;
+			temp.z = 0;
+			double x = temp.length();
+			if( ortho.dot(temp) < 0 ) x=-x;
+			joints[i] = Math.toDegrees(Math.atan2(-y,x))%360;
+		}
+		return true;
+	}
+
+	@Override
+	public RotaryStewartPlatformModel copy() {
+		return new RotaryStewartPlatformModel(pShoulder,pEE,bicepLength,armLength,min,max);
+	}
+}
@@ -2,6 +2,7 @@ package com.marginallyclever.robotoverlord.systems;
 
 import com.marginallyclever.convenience.Ray;
 import com.marginallyclever.robotoverlord.RayHit;
+import com.marginallyclever.robotoverlord.components.LinearPatternComponent;
 import com.marginallyclever.robotoverlord.components.ShapeComponent;
 import com.marginallyclever.robotoverlord.entity.Entity;
 import com.marginallyclever.robotoverlord.entity.EntityManager;
@@ -39,7 +40,8 @@ public class RayPickSystem {
     }
 
     /**
-     * Traverse the scene Entities and find all the {@link ShapeComponent}s that collide with the ray.
+     * Traverse the scene Entities and find all the {@link ShapeComponent}s that collide with the ray, including the
+     * copies drawn by each {@link LinearPatternComponent}.
      * @param ray the ray to test.
      * @return all {@link RayHit} by the ray.  May be an empty list.
      */
@@ -52,9 +54,16 @@ public class RayPickSystem {
             toTest.addAll(entity.getChildren());
 
             ShapeComponent shape = entity.getComponent(ShapeComponent.class);
-            if(shape==null) continue;
-            RayHit hit = shape.intersect(ray);
-            if(hit!=null) rayHits.add(hit);
+            if(shape!=null) {
+                RayHit hit = shape.intersect(ray);
+                if(hit!=null) rayHits.add(hit);
+            }
+
+            LinearPatternComponent pattern = entity.getComponent(LinearPatternComponent.class);
+            if(pattern!=null) {
+                RayHit hit = pattern.intersect(ray);
+                if(hit!=null) rayHits.add(hit);
+            }
         }
         return rayHits;
     }
@@ -0,0 +1,303 @@
+package com.marginallyclever.robotoverlord.systems.motor;
+
+import com.marginallyclever.robotoverlord.components.motors.MotorComponent;
+import com.marginallyclever.robotoverlord.components.motors.StepperMotorComponent;
+
+/**
+ * <p>Changes the speed of a chain of {@link MotorComponent}s over one time step, the way motors with speed
+ * controllers would.  A chain is a motor and every motor it turns, because their entities are in or below one of
+ * its connectedTo entities, and every motor those turn.  All the axes are treated as parallel.</p>
+ * <p>The motors in a chain are stepped together.  A motor that turns others carries their inertia, and when one of
+ * them speeds up it pushes back on the motor that carries it.  Each controller asks for the torque that would reach
+ * the desired speed by the end of the step.  The torque curve, less back-EMF, limits how much it gets.  Motors
+ * that hit their limit are solved for the speed that limit reaches.</p>
+ * <p>Friction is found at the end of the step, not the start.  That is what keeps a light motor with a large step
+ * from overshooting and ringing: viscous friction can only slow the motor towards zero and Coulomb friction can
+ * only stop it.  A motor with no inertia is not stuck, it reaches the desired speed at once or, if the torque is
+ * not enough, the speed where the torque and the friction balance.</p>
+ * <p>Steppers and disabled motors keep their own speed.  They are still part of the inertia of the chain.</p>
+ */
+public class MotorDynamics {
+    private static final double RPM_TO_RADIANS = 2.0*Math.PI/60.0;
+    // pivots smaller than this mean a motor with no inertia and no viscous friction.
+    private static final double SINGULAR = 1e-12;
+
+    // reaches the desired speed.
+    private static final int TRACK = 0;
+    // pushes as hard as it can.
+    private static final int DRIVE = 1;
+    // speed is not changed by the step.
+    private static final int FIXED = 2;
+
+    private final MotorComponent [] motors;
+    private final int [] parent;
+    private final int [] mode;
+    // inertia matrix of the chain, in kg*m^2.
+    private final double [][] mass;
+    private final double [][] system;
+    private final double [] w;
+    private final double [] wanted;
+    private final double [] next;
+    private final double [] momentum;
+    private final double [] torque;
+    private final double [] friction;
+    private final double [] rhs;
+    private final double [] solution;
+    private final int [] driven;
+
+    /**
+     * @param motors the motors in the chain.  Every motor comes after the motor that turns it.
+     * @param parent for each motor, the index of the motor that turns it, or -1.
+     */
+    public MotorDynamics(MotorComponent [] motors,int [] parent) {
+        if(motors.length!=parent.length) throw new IllegalArgumentException("motors and parent must be the same length.");
+        for(int i=0;i<parent.length;++i) {
+            if(parent[i]>=i) throw new IllegalArgumentException("motor "+i+" comes before the motor that turns it.");
+        }
+        int n = motors.length;
+        this.motors = motors;
+        this.parent = parent;
+        mode = new int[n];
+        mass = new double[n][n];
+        system = new double[n][n];
+        w = new double[n];
+        wanted = new double[n];
+        next = new double[n];
+        momentum = new double[n];
+        torque = new double[n];
+        friction = new double[n];
+        rhs = new double[n];
+        solution = new double[n];
+        driven = new int[n];
+    }
+
+    public int size() {
+        return motors.length;
+    }
+
+    public MotorComponent getMotor(int index) {
+        return motors[index];
+    }
+
+    /**
+     * @return the index of the motor that turns this one, or -1.
+     */
+    public int getParent(int index) {
+        return parent[index];
+    }
+
+    /**
+     * Change the current speed of every motor in the chain that is driven by torque.
+     * @param dt the time step in seconds.
+     */
+    public void step(double dt) {
+        if(!(dt>0)) return;
+        int n = motors.length;
+
+        buildMass();
+        for(int i=0;i<n;++i) {
+            MotorComponent motor = motors[i];
+            w[i] = motor.getCurrentRPM() * RPM_TO_RADIANS;
+            if(keepsItsSpeed(motor)) {
+                mode[i] = FIXED;
+                next[i] = w[i];
+            } else {
+                mode[i] = TRACK;
+                wanted[i] = motor.getDesiredRPM() * RPM_TO_RADIANS;
+                next[i] = wanted[i];
+            }
+        }
+        for(int i=0;i<n;++i) {
+            double sum = 0;
+            for(int j=0;j<n;++j) sum += mass[i][j]*w[j];
+            momentum[i] = sum/dt;
+        }
+
+        // the motor that is furthest from reaching its desired speed drives as hard as it can.  That changes what
+        // the others need, so look again.  A driven motor that would pass its desired speed can reach it after all.
+        for(int pass=0;pass<=2*n;++pass) {
+            int worst = -1;
+            double worstExcess = 0;
+            double worstNeeded = 0;
+            for(int i=0;i<n;++i) {
+                if(mode[i]!=TRACK) continue;
+                double needed = getSystem(i,dt) - momentum[i] + motors[i].coulombFriction.get()*Math.signum(next[i]);
+                double excess = Math.abs(needed) - getTorqueLimit(i,needed);
+                if(excess>worstExcess) {
+                    worst = i;
+                    worstExcess = excess;
+                    worstNeeded = needed;
+                }
+            }
+            if(worst>=0) {
+                mode[worst] = DRIVE;
+                torque[worst] = Math.copySign(getTorqueLimit(worst,worstNeeded),worstNeeded);
+            } else if(!releaseOvershoot()) break;
+            solveDriven(dt);
+        }
+
+        for(int i=0;i<n;++i) {
+            MotorComponent motor = motors[i];
+            if(mode[i]==TRACK) motor.setCurrentRPM(motor.getDesiredRPM());
+            else if(!keepsItsSpeed(motor)) motor.setCurrentRPM(next[i] / RPM_TO_RADIANS);
+        }
+    }
+
+    /**
+     * @return true if a driven motor would pass its desired speed and goes back to reaching it.
+     */
+    private boolean releaseOvershoot() {
+        boolean found = false;
+        for(int i=0;i<motors.length;++i) {
+            if(mode[i]==DRIVE && (next[i]-wanted[i])*Math.signum(torque[i])>0) {
+                mode[i] = TRACK;
+                next[i] = wanted[i];
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private static boolean keepsItsSpeed(MotorComponent motor) {
+        return motor instanceof StepperMotorComponent || !motor.enabled.get();
+    }
+
+    /**
+     * @return row i of (mass/dt + viscous friction) times the next speeds.
+     */
+    private double getSystem(int i,double dt) {
+        double sum = motors[i].viscousFriction.get()*next[i];
+        for(int j=0;j<next.length;++j) sum += mass[i][j]*next[j]/dt;
+        return sum;
+    }
+
+    /**
+     * Back-EMF fights the drive when it speeds the motor up and helps when it slows the motor down.
+     */
+    private double getTorqueLimit(int i,double needed) {
+        MotorComponent motor = motors[i];
+        double available = motor.getTorqueAtRpm(motor.getCurrentRPM());
+        double emf = motor.backEMF.get() * Math.abs(w[i]);
+        boolean speedingUp = (w[i]==0) || Math.signum(needed)==Math.signum(w[i]);
+        return speedingUp ? Math.max(0,available-emf) : available+emf;
+    }
+
+    /**
+     * Find the speed of every {@link #DRIVE} motor.  Solved once without Coulomb friction to find which way each
+     * motor is going and again with it.  A motor that friction would turn backwards, or that has no inertia and no
+     * viscous friction to balance its torque, stops instead.
+     */
+    private void solveDriven(double dt) {
+        int n = motors.length;
+        while(true) {
+            int count = 0;
+            for(int i=0;i<n;++i) {
+                friction[i] = 0;
+                if(mode[i]==DRIVE) driven[count++] = i;
+            }
+            if(count==0) return;
+
+            int stuck = solve(count,dt);
+            if(stuck<0) {
+                for(int k=0;k<count;++k) {
+                    int i = driven[k];
+                    friction[i] = motors[i].coulombFriction.get() * Math.signum(solution[k]);
+                }
+                stuck = solve(count,dt);
+            }
+            if(stuck<0) {
+                for(int k=0;k<count;++k) {
+                    int i = driven[k];
+                    if(friction[i]!=0 && Math.signum(solution[k])!=Math.signum(friction[i])) {
+                        stuck = i;
+                        break;
+                    }
+                }
+            }
+            if(stuck<0) {
+                for(int k=0;k<count;++k) next[driven[k]] = solution[k];
+                return;
+            }
+            mode[stuck] = FIXED;
+            next[stuck] = 0;
+        }
+    }
+
+    /**
+     * Solve the rows of the driven motors for their speeds, with the speeds of every other motor known.
+     * @param count the number of driven motors.
+     * @return the index of a driven motor that cannot be solved, or -1 if the speeds are in {@link #solution}.
+     */
+    private int solve(int count,double dt) {
+        int n = motors.length;
+        for(int r=0;r<count;++r) {
+            int i = driven[r];
+            double b = momentum[i] + torque[i] - friction[i];
+            for(int j=0;j<n;++j) {
+                if(mode[j]!=DRIVE) b -= mass[i][j]*next[j]/dt;
+            }
+            rhs[r] = b;
+            for(int c=0;c<count;++c) {
+                int j = driven[c];
+                system[r][c] = mass[i][j]/dt + (i==j ? motors[i].viscousFriction.get() : 0);
+            }
+        }
+
+        // Gaussian elimination with partial pivoting.  Chains are a handful of motors long.
+        for(int c=0;c<count;++c) {
+            int best = c;
+            for(int r=c+1;r<count;++r) {
+                if(Math.abs(system[r][c])>Math.abs(system[best][c])) best = r;
+            }
+            if(!(Math.abs(system[best][c])>SINGULAR)) return driven[c];
+            if(best!=c) {
+                double [] row = system[best];
+                system[best] = system[c];
+                system[c] = row;
+                double t = rhs[best];
+                rhs[best] = rhs[c];
+                rhs[c] = t;
+            }
+            for(int r=c+1;r<count;++r) {
+                double f = system[r][c] / system[c][c];
+                if(f==0) continue;
+                for(int k=c;k<count;++k) system[r][k] -= f*system[c][k];
+                rhs[r] -= f*rhs[c];
+            }
+        }
+        for(int c=count-1;c>=0;--c) {
+            double sum = rhs[c];
+            for(int k=c+1;k<count;++k) sum -= system[c][k]*solution[k];
+            solution[c] = sum / system[c][c];
+        }
+        return -1;
+    }
+
+    /**
+     * The rotor of each motor spins on the output of the motor that turns it.  Its load spins on its own output,
+     * which turns at the speed of the rotor times the gear ratio.  Each adds inertia*v*v' to the matrix, where
+     * v says how fast the part turns for each motor in the chain.
+     */
+    private void buildMass() {
+        int n = motors.length;
+        for(int i=0;i<n;++i) {
+            for(int j=0;j<n;++j) mass[i][j] = 0;
+        }
+        for(int i=0;i<n;++i) {
+            MotorComponent motor = motors[i];
+            addPart(i,1,motor.rotorInertia.get());
+            addPart(i,motor.gearRatio.get(),motor.loadInertia.get());
+        }
+    }
+
+    private void addPart(int motor,double own,double inertia) {
+        if(inertia==0) return;
+        for(int i=motor;i>=0;i=parent[i]) {
+            double a = (i==motor) ? own : motors[i].gearRatio.get();
+            for(int j=motor;j>=0;j=parent[j]) {
+                double b = (j==motor) ? own : motors[j].gearRatio.get();
+                mass[i][j] += inertia*a*b;
+            }
+        }
+    }
+}
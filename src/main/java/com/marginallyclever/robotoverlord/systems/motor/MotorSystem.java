@@ -16,8 +16,7 @@ import com.marginallyclever.robotoverlord.systems.EntitySystemUtils;
 
 import javax.swing.*;
 import javax.vecmath.Matrix4d;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 /**
  * <p>For motors</p>
@@ -27,10 +26,24 @@ import java.util.List;
  */
 public class MotorSystem implements EntitySystem {
     private final EntityManager entityManager;
+    // connectedTo unique IDs to entities.  Forgotten whenever the scene changes.
+    private final Map<String,Entity> connections = new HashMap<>();
+    // every motor in the scene, grouped into the chains they turn.  Forgotten with the connections.
+    private List<MotorDynamics> chains = null;
+    // the motors in the order they were found in the scene, and the connectedTo of each, to notice changes the
+    // scene does not announce.
+    private MotorComponent [] found = new MotorComponent[0];
+    private String [] foundConnections = new String[0];
+    // a chain of one for updateMotor(MotorComponent,double).
+    private MotorDynamics single;
 
     public MotorSystem(EntityManager entityManager) {
         super();
         this.entityManager = entityManager;
+        if(entityManager!=null) entityManager.addListener((event)->{
+            connections.clear();
+            chains = null;
+        });
     }
 
     /**
@@ -93,30 +106,177 @@ public class MotorSystem implements EntitySystem {
     }
 
     /**
-     * Update the system over time.
+     * Update the system over time.  A motor that is turned by another motor, because its entity is in or below
+     * one of the other motor's connectedTo entities, is stepped together with that motor.  See {@link MotorDynamics}.
      *
      * @param dt the time step in seconds.
      */
     public void update(double dt) {
-        List<Entity> list = new LinkedList<>(entityManager.getEntities());
-        while (!list.isEmpty()) {
-            Entity e = list.remove(0);
-            list.addAll(e.getChildren());
-
-            MotorComponent found = e.getComponent(MotorComponent.class);
-            if (found != null) updateMotor(found, dt);
+        for(MotorDynamics chain : getChains()) {
+            updateChain(chain,dt);
         }
     }
 
     public void updateMotor(MotorComponent motor, double dt) {
-        if(motor instanceof ServoComponent) updateServo((ServoComponent)motor,dt);
-        else if(motor instanceof StepperMotorComponent) updateStepper((StepperMotorComponent)motor,dt);
-        else if(motor instanceof DCMotorComponent) updateMotorBasic(motor, dt);
+        if(single==null || single.getMotor(0)!=motor) {
+            single = new MotorDynamics(new MotorComponent[]{motor},new int[]{-1});
+        }
+        updateChain(single,dt);
     }
 
-    private void updateServo(ServoComponent servo, double dt) {
-        if(!servo.enabled.get()) return;
+    private void updateChain(MotorDynamics chain, double dt) {
+        for(int i=0;i<chain.size();++i) {
+            MotorComponent motor = chain.getMotor(i);
+            if(motor instanceof ServoComponent && motor.enabled.get()) updateServo((ServoComponent)motor,dt);
+        }
+        chain.step(dt);
+        for(int i=0;i<chain.size();++i) {
+            MotorComponent motor = chain.getMotor(i);
+            if(!motor.enabled.get()) continue;
+            if(motor instanceof StepperMotorComponent) updateStepper((StepperMotorComponent)motor,dt);
+            else if(motor instanceof DCMotorComponent || motor instanceof ServoComponent) moveMotor(motor,dt);
+        }
+    }
+
+    private List<MotorDynamics> getChains() {
+        if(chains!=null && matchesScene()) return chains;
+
+        List<MotorComponent> motors = rememberScene();
+
+        Map<MotorComponent,MotorComponent> turnedBy = findTurnedBy(motors);
+        // a loop of connections would never end.
+        for(MotorComponent motor : motors) {
+            MotorComponent up = turnedBy.get(motor);
+            for(int d=0;up!=null && d<=motors.size();++d) up = turnedBy.get(up);
+            if(up!=null) turnedBy.remove(motor);
+        }
+
+        Map<MotorComponent,List<MotorComponent>> turns = new HashMap<>();
+        for(MotorComponent motor : motors) {
+            MotorComponent up = turnedBy.get(motor);
+            if(up!=null) turns.computeIfAbsent(up,k->new ArrayList<>()).add(motor);
+        }
+
+        chains = new ArrayList<>();
+        for(MotorComponent root : motors) {
+            if(turnedBy.containsKey(root)) continue;
+            // each motor comes after the motor that turns it.
+            List<MotorComponent> chain = new ArrayList<>();
+            chain.add(root);
+            for(int i=0;i<chain.size();++i) {
+                chain.addAll(turns.getOrDefault(chain.get(i),List.of()));
+            }
+            int [] parent = new int[chain.size()];
+            for(int i=0;i<parent.length;++i) {
+                parent[i] = chain.indexOf(turnedBy.get(chain.get(i)));
+            }
+            chains.add(new MotorDynamics(chain.toArray(new MotorComponent[0]),parent));
+        }
+        return chains;
+    }
+
+    /**
+     * Adding a component to an entity or changing a connectedTo does not tell the {@link EntityManager}.
+     * @return true if the scene has the same motors, in the same order, with the same connections as when the
+     * chains were found.
+     */
+    private boolean matchesScene() {
+        int count = 0;
+        int connection = 0;
+        List<Entity> entities = entityManager.getEntities();
+        for(int i=0;i<entities.size() && count>=0;++i) {
+            count = matchesScene(entities.get(i),count);
+        }
+        if(count!=found.length) return false;
+        for(MotorComponent motor : found) {
+            for(int i=0;i<motor.connectedTo.size();++i) {
+                if(connection==foundConnections.length) return false;
+                if(!Objects.equals(foundConnections[connection++],motor.connectedTo.get(i).get())) return false;
+            }
+        }
+        return connection==foundConnections.length;
+    }
+
+    /**
+     * @return the number of motors matched so far, or -1 if one does not match.
+     */
+    private int matchesScene(Entity e,int count) {
+        MotorComponent motor = e.getComponent(MotorComponent.class);
+        if(motor!=null) {
+            if(count==found.length || found[count]!=motor) return -1;
+            count++;
+        }
+        List<Entity> children = e.getChildren();
+        for(int i=0;i<children.size() && count>=0;++i) {
+            count = matchesScene(children.get(i),count);
+        }
+        return count;
+    }
 
+    /**
+     * @return every motor in the scene, depth first.
+     */
+    private List<MotorComponent> rememberScene() {
+        List<MotorComponent> motors = new ArrayList<>();
+        for(Entity e : entityManager.getEntities()) rememberScene(e,motors);
+        found = motors.toArray(new MotorComponent[0]);
+        List<String> names = new ArrayList<>();
+        for(MotorComponent motor : found) {
+            for(ReferenceParameter name : motor.connectedTo) names.add(name.get());
+        }
+        foundConnections = names.toArray(new String[0]);
+        return motors;
+    }
+
+    private void rememberScene(Entity e,List<MotorComponent> motors) {
+        MotorComponent motor = e.getComponent(MotorComponent.class);
+        if(motor!=null) motors.add(motor);
+        for(Entity child : e.getChildren()) rememberScene(child,motors);
+    }
+
+    /**
+     * @return for each motor, the motor that turns it, if any.
+     */
+    private Map<MotorComponent,MotorComponent> findTurnedBy(List<MotorComponent> motors) {
+        Map<Entity,MotorComponent> turns = new HashMap<>();
+        for(MotorComponent motor : motors) {
+            for(ReferenceParameter name : motor.connectedTo) {
+                Entity connection = findConnection(name.get());
+                if(connection!=null) turns.putIfAbsent(connection,motor);
+            }
+        }
+
+        Map<MotorComponent,MotorComponent> turnedBy = new HashMap<>();
+        if(turns.isEmpty()) return turnedBy;
+        for(MotorComponent motor : motors) {
+            Entity e = motor.getEntity();
+            while(e!=null) {
+                MotorComponent up = turns.get(e);
+                if(up!=null && up!=motor) {
+                    turnedBy.put(motor,up);
+                    break;
+                }
+                e = e.getParent();
+            }
+        }
+        return turnedBy;
+    }
+
+    private Entity findConnection(String uid) {
+        if(uid==null || uid.isEmpty() || entityManager==null) return null;
+        Entity found = connections.get(uid);
+        if(found!=null && uid.equals(found.getUniqueID())) return found;
+        found = entityManager.findEntityByUniqueID(uid);
+        if(found!=null) connections.put(uid,found);
+        return found;
+    }
+
+    /**
+     * Set the desired speed of the servo from its PID.  A stiff gain or a large step would make the proportional
+     * term pass the target in one step and overshoot further on every step, so it is capped at the speed that
+     * reaches the target by the end of the step.
+     */
+    private void updateServo(ServoComponent servo, double dt) {
         double desiredAngle = servo.desiredAngle.get();
         double currentAngle = servo.currentAngle.get();
 
@@ -135,14 +295,16 @@ public class MotorSystem implements EntitySystem {
         errorSum += error;
 
         double derivative = error - previousError;
-        double output = kP*error + kI*errorSum + kD*derivative;
+        double proportional = kP*error;
+        // 1 rpm = 6 deg/s.
+        double reach = error/(6.0*dt);
+        if(Math.abs(proportional)>Math.abs(reach)) proportional = reach;
+        double output = proportional + kI*errorSum + kD*derivative;
 
         servo.lastError.set(error);
         servo.errorSum.set(errorSum);
 
         servo.setDesiredRPM(output);
-
-        updateMotorBasic(servo, dt);
     }
 
     private void updateStepper(StepperMotorComponent motor, double dt) {
@@ -155,25 +317,10 @@ public class MotorSystem implements EntitySystem {
         rotateMotor(motor, newAngle);
     }
 
-    private void updateMotorBasic(MotorComponent motor, double dt) {
-        if(!motor.enabled.get()) return;
-
-        double currentRPM = motor.getCurrentRPM();
-        double desiredRPM = motor.getDesiredRPM();
-        if (currentRPM != desiredRPM) {
-            double torque = motor.getTorqueAtRpm(currentRPM);
-            // assume direct relationship
-            double acceleration = torque;
-            double dv = acceleration * dt;
-            if (currentRPM < desiredRPM) {
-                currentRPM = Math.min(currentRPM + dv, desiredRPM);
-            } else {
-                currentRPM = Math.max(currentRPM - dv, desiredRPM);
-            }
-            motor.setCurrentRPM(currentRPM);
-        }
-
-        // adjust angle
+    /**
+     * Turn the motor at the speed found by {@link MotorDynamics}.
+     */
+    private void moveMotor(MotorComponent motor, double dt) {
         double degreesPerSecond = motor.getCurrentRPM()*6.0;  // 1 rpm = 6 deg/s.
         double newAngle = motor.currentAngle.get() + degreesPerSecond * dt;
 
@@ -207,9 +354,8 @@ public class MotorSystem implements EntitySystem {
         if(motorEntity==null) return;
 
         for(ReferenceParameter name : motor.connectedTo) {
-            String uid = name.get();
-            if(uid==null || uid.isEmpty()) continue;
-            Entity connection = entityManager.findEntityByUniqueID(name.get());
+            Entity connection = findConnection(name.get());
+            if(connection==null) continue;
             PoseComponent childPose = connection.getComponent(PoseComponent.class);
             Matrix4d m = childPose.getLocal();
             Matrix4d rotZ = new Matrix4d();
@@ -98,6 +98,7 @@ public class RenderSystem implements EntitySystem {
 
     public void decorateLinearPattern(ComponentSwingViewFactory view, Component component) {
         LinearPatternComponent patternComponent = (LinearPatternComponent) component;
+        view.add(patternComponent.source);
         view.addComboBox(patternComponent.spacingType, LinearPatternComponent.SPACING_TYPE_NAMES);
         view.add(patternComponent.measure);
         view.add(patternComponent.quantity);
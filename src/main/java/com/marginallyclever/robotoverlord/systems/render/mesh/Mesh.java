@@ -3,6 +3,7 @@ package com.marginallyclever.robotoverlord.systems.render.mesh;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 import com.marginallyclever.convenience.Ray;
+import com.marginallyclever.ro3.mesh.InstanceBuffer;
 import com.marginallyclever.robotoverlord.RayHit;
 import com.marginallyclever.convenience.helpers.IntersectionHelper;
 import com.marginallyclever.convenience.helpers.OpenGLHelper;
@@ -203,6 +204,40 @@ public class Mesh {
 	 * @param startIndex index of the first vertex to render
 	 */
 	public void render(GL3 gl,int count,int startIndex) {
+		bindForRender(gl);
+
+		if (hasIndexes) {
+			gl.glDrawElements(renderStyle, indexArray.size(), GL3.GL_UNSIGNED_INT, 0);
+		} else {
+			gl.glDrawArrays(renderStyle, startIndex, count);
+		}
+		OpenGLHelper.checkGLError(gl,logger);
+	}
+
+	/**
+	 * Render the entire mesh once for every instance in the buffer, with a single draw call.
+	 * The shader must read the model matrix of each instance from vertex attributes
+	 * {@link InstanceBuffer#FIRST_ATTRIBUTE} and up.
+	 * @param gl the OpenGL context
+	 * @param instances the per-instance data.
+	 */
+	public void renderInstanced(GL3 gl,InstanceBuffer instances) {
+		if(instances.getCount()==0) return;
+		instances.upload(gl);
+		bindForRender(gl);
+		instances.bindAttributes(gl);
+
+		if (hasIndexes) {
+			gl.glDrawElementsInstanced(renderStyle, indexArray.size(), GL3.GL_UNSIGNED_INT, 0, instances.getCount());
+		} else {
+			gl.glDrawArraysInstanced(renderStyle, 0, getNumVertices(), instances.getCount());
+		}
+		OpenGLHelper.checkGLError(gl,logger);
+
+		instances.unbindAttributes(gl);
+	}
+
+	private void bindForRender(GL3 gl) {
 		if(!isLoaded) {
 			isLoaded=true;
 			isDirty=true;
@@ -221,13 +256,6 @@ public class Mesh {
 		if(hasNormals ) bindArray(gl,attribIndex++,3);
 		if(hasColors  ) bindArray(gl,attribIndex++,4);
 		if(hasTextures) bindArray(gl,attribIndex++,2);
-
-		if (hasIndexes) {
-			gl.glDrawElements(renderStyle, indexArray.size(), GL3.GL_UNSIGNED_INT, 0);
-		} else {
-			gl.glDrawArrays(renderStyle, startIndex, count);
-		}
-		OpenGLHelper.checkGLError(gl,logger);
 	}
 	
 	public void addNormal(float x,float y,float z) {
@@ -109,6 +109,8 @@ public class RobotGripperSystem implements EntitySystem {
 
         // do not consider the gripper itself or the jaws.
         removeGripperAndJawsFromHits(gripper, hits);
+        // copies in a pattern are not entities and cannot be picked up.
+        hits.removeIf(hit -> hit.pattern != null);
 
         if(!hits.isEmpty()) {
             // move the entities to the gripper
@@ -1,6 +1,5 @@
 package com.marginallyclever.robotoverlord.systems.robot.crab;
 
-import com.marginallyclever.convenience.helpers.MathHelper;
 import com.marginallyclever.robotoverlord.components.Component;
 import com.marginallyclever.robotoverlord.components.PoseComponent;
 import com.marginallyclever.robotoverlord.components.RobotComponent;
@@ -11,11 +10,16 @@ import com.marginallyclever.robotoverlord.parameters.swing.ViewElementButton;
 import com.marginallyclever.robotoverlord.parameters.swing.ComponentSwingViewFactory;
 import com.marginallyclever.robotoverlord.systems.EntitySystem;
 import com.marginallyclever.robotoverlord.systems.EntitySystemUtils;
+import com.marginallyclever.robotoverlord.systems.robot.gait.EntityWalker;
+import com.marginallyclever.robotoverlord.systems.robot.gait.GaitBody;
+import com.marginallyclever.robotoverlord.systems.robot.gait.GaitDriver;
+import com.marginallyclever.robotoverlord.systems.robot.gait.GaitPattern;
 
 import javax.swing.*;
 import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -27,9 +31,13 @@ import java.util.List;
  */
 public class CrabRobotSystem implements EntitySystem {
     private final EntityManager entityManager;
+    private final GaitDriver gaitDriver;
+    // the crabs walking this update, to copy the gait clock back after the step.
+    private final List<CrabRobotComponent> walking = new ArrayList<>();
 
     public CrabRobotSystem(EntityManager entityManager) {
         this.entityManager = entityManager;
+        this.gaitDriver = new GaitDriver(entityManager);
     }
 
     /**
@@ -76,10 +84,16 @@ public class CrabRobotSystem implements EntitySystem {
             if( crab!=null ) updateCrab(crab,dt);
             list.addAll(e.getChildren());
         }
+
+        // every crab that is walking moves together.
+        gaitDriver.step(dt);
+        for(CrabRobotComponent crab : walking) crab.setGaitCycleTime(gaitDriver.getWalker(crab).getBody().getSteps());
+        walking.clear();
     }
 
     public void updateCrab(CrabRobotComponent crab,double dt) {
-        crab.setGaitCycleTime(crab.getGaitCycleTime() + dt);
+        // the gaits keep their own clock.
+        if(crab.modeSelector.get()<4) crab.setGaitCycleTime(crab.getGaitCycleTime() + dt);
 
         if(crab.getLegs()[0]==null) return;
 
@@ -99,9 +113,9 @@ public class CrabRobotSystem implements EntitySystem {
             case 1 -> updateSitDown(crab,dt);
             case 2 -> updateStandUp(crab,dt);
             case 3 -> updateOnlyBody(crab,dt);
-            case 4 -> updateRipple(crab,dt);
-            case 5 -> updateWave(crab,dt);
-            case 6 -> updateTripod(crab,dt);
+            case 4 -> updateGait(crab,GaitPattern.RIPPLE);
+            case 5 -> updateGait(crab,GaitPattern.WAVE);
+            case 6 -> updateGait(crab,GaitPattern.TRIPOD);
         }
     }
 
@@ -127,80 +141,29 @@ public class CrabRobotSystem implements EntitySystem {
     private void updateOnlyBody(CrabRobotComponent crab,double dt) {
     }
 
-    private void updateRipple(CrabRobotComponent crab,double dt) {
-        double gaitCycleTime = crab.getGaitCycleTime();
-        double step = (gaitCycleTime - Math.floor(gaitCycleTime));
-        int legToMove = ((int) Math.floor(gaitCycleTime) % CrabRobotComponent.NUM_LEGS);
-
-        //updateGaitTarget(dt, 1d/6d);
-
-        for (int i = 0; i < CrabRobotComponent.NUM_LEGS; ++i) {
-            if (i != legToMove) {
-                putFootDown(crab,i);
-            } else {
-                updateGaitForOneLeg(crab,i, step);
-            }
-        }
-    }
-
-    private void updateWave(CrabRobotComponent crab,double dt) {
-        double gaitCycleTime = crab.getGaitCycleTime();
-        //updateGaitTarget(dt, 2d/6d);
-
-        double gc1 = gaitCycleTime + 0.5f;
-        double gc2 = gaitCycleTime;
-
-        double x1 = gc1 - Math.floor(gc1);
-        double x2 = gc2 - Math.floor(gc2);
-        double step1 = Math.max(0, x1);
-        double step2 = Math.max(0, x2);
-        int leg1 = (int) Math.floor(gc1) % 3;
-        int leg2 = (int) Math.floor(gc2) % 3;
-
-        // 0   5
-        // 1 x 4
-        // 2   3
-        // order should be 0,3,1,5,2,4
-        int o1, o2;
-        o1 = switch (leg1) {
-            case 0 -> 0;
-            case 1 -> 1;
-            case 2 -> 2;
-            default -> 0;
-        };
-        o2 = switch (leg2) {
-            case 0 -> 3;
-            case 1 -> 5;
-            case 2 -> 4;
-            default -> 0;
-        };
-
-        updateGaitForOneLeg(crab,o1, step1);
-        updateGaitForOneLeg(crab,o2, step2);
-
-        // Put all feet down except the active leg(s).
-        for (int i = 0; i < CrabRobotComponent.NUM_LEGS; ++i) {
-            if (i != o1 && i != o2) {
-                putFootDown(crab,i);
-            }
+    /**
+     * Queue the crab for the next {@link GaitDriver#step(double)}.
+     */
+    private void updateGait(CrabRobotComponent crab,GaitPattern pattern) {
+        int n = CrabRobotComponent.NUM_LEGS;
+        Point3d [] lastPOC = new Point3d[n];
+        Point3d [] nextPOC = new Point3d[n];
+        Point3d [] targets = new Point3d[n];
+        for(int i=0;i<n;++i) {
+            lastPOC[i] = crab.getLastPOC(i);
+            nextPOC[i] = crab.getNextPOC(i);
+            targets[i] = crab.getTarget(i);
         }
-    }
-
-    private void updateTripod(CrabRobotComponent crab,double dt) {
-        double gaitCycleTime = crab.getGaitCycleTime();
-        //updateGaitTarget(dt, 0.5f);
+        EntityWalker walker = gaitDriver.getWalker(crab,crab.getLegs(),lastPOC,nextPOC,targets);
+        if(walker==null) return;
 
-        double step = (gaitCycleTime - Math.floor(gaitCycleTime));
-        int legToMove = ((int) Math.floor(gaitCycleTime) % 2);
-
-        // put all feet down except the active leg(s).
-        for (int i = 0; i < CrabRobotComponent.NUM_LEGS; ++i) {
-            if ((i % 2) != legToMove) {
-                putFootDown(crab,i);
-            } else {
-                updateGaitForOneLeg(crab,i, step);
-            }
-        }
+        GaitBody body = walker.getBody();
+        body.setPattern(pattern);
+        body.setStrideHeight(crab.strideHeight.get());
+        body.setSpeedScale(crab.speedScale.get());
+        body.setSteps(crab.getGaitCycleTime());
+        gaitDriver.queue(walker);
+        walking.add(crab);
     }
 
     private void putFootDown(CrabRobotComponent crab,int index) {
@@ -230,30 +193,6 @@ public class CrabRobotSystem implements EntitySystem {
         robotLeg.set(RobotComponent.END_EFFECTOR_TARGET_POSITION,p2);
     }
 
-    /**
-     * Update the gait for one leg.
-     * @param index the leg to update
-     * @param step 0 to 1, 0 is start of step, 1 is end of step
-     */
-    private void updateGaitForOneLeg(CrabRobotComponent crab,int index, double step) {
-        RobotComponent [] legs = crab.getLegs();
-        RobotComponent robotLeg = legs[index];
-        if(robotLeg==null) return;
-
-        // horizontal distance from foot to next point of contact.
-        Point3d start = crab.getLastPOC(index);
-        Point3d end = crab.getNextPOC(index);
-        Point3d mid = MathHelper.interpolate(start, end, step);
-
-        // add in the height of the step.
-        double stepAdj = (step <= 0.5f) ? step : 1 - step;
-        stepAdj = Math.sin(stepAdj * Math.PI);
-        mid.z = stepAdj * crab.strideHeight.get();
-
-        // tell the leg where to go.
-        setLegTargetPosition(crab,index,mid);
-    }
-
     public void setInitialPointOfContact(CrabRobotComponent crab,Entity limb,int index) {
         Entity foot = limb.findByPath(CrabRobotComponent.HIP+"/"+CrabRobotComponent.THIGH+"/"+CrabRobotComponent.CALF+"/"+CrabRobotComponent.FOOT);
         PoseComponent footPose = foot.getComponent(PoseComponent.class);
@@ -1,6 +1,5 @@
 package com.marginallyclever.robotoverlord.systems.robot.dog;
 
-import com.marginallyclever.convenience.helpers.MathHelper;
 import com.marginallyclever.convenience.helpers.MatrixHelper;
 import com.marginallyclever.robotoverlord.components.Component;
 import com.marginallyclever.robotoverlord.components.PoseComponent;
@@ -12,11 +11,16 @@ import com.marginallyclever.robotoverlord.parameters.swing.ViewElementButton;
 import com.marginallyclever.robotoverlord.parameters.swing.ComponentSwingViewFactory;
 import com.marginallyclever.robotoverlord.systems.EntitySystem;
 import com.marginallyclever.robotoverlord.systems.EntitySystemUtils;
+import com.marginallyclever.robotoverlord.systems.robot.gait.EntityWalker;
+import com.marginallyclever.robotoverlord.systems.robot.gait.GaitBody;
+import com.marginallyclever.robotoverlord.systems.robot.gait.GaitDriver;
+import com.marginallyclever.robotoverlord.systems.robot.gait.GaitPattern;
 
 import javax.swing.*;
 import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -28,9 +32,13 @@ import java.util.List;
  */
 public class DogRobotSystem implements EntitySystem {
     private final EntityManager entityManager;
+    private final GaitDriver gaitDriver;
+    // the dogs walking this update, to copy the gait clock back after the step.
+    private final List<DogRobotComponent> walking = new ArrayList<>();
 
     public DogRobotSystem(EntityManager entityManager) {
         this.entityManager = entityManager;
+        this.gaitDriver = new GaitDriver(entityManager);
     }
 
     /**
@@ -78,12 +86,18 @@ public class DogRobotSystem implements EntitySystem {
             if( dog!=null ) updateDog(dog,dt);
             list.addAll(e.getChildren());
         }
+
+        // every dog that is walking moves together.
+        gaitDriver.step(dt);
+        for(DogRobotComponent dog : walking) dog.setGaitCycleTime(gaitDriver.getWalker(dog).getBody().getSteps());
+        walking.clear();
     }
 
 
 
     public void updateDog(DogRobotComponent dog,double dt) {
-        dog.setGaitCycleTime(dog.getGaitCycleTime()+dt);
+        // the gaits keep their own clock.
+        if(dog.modeSelector.get()<4) dog.setGaitCycleTime(dog.getGaitCycleTime()+dt);
 
         updateBasedOnMode(dog,dt);
     }
@@ -101,9 +115,9 @@ public class DogRobotSystem implements EntitySystem {
             case 1 -> updateSitDown(dog,dt);
             case 2 -> updateStandUp(dog,dt);
             case 3 -> updateOnlyBody(dog,dt);
-            case 4 -> updateRipple(dog,dt);
-            case 5 -> updateWave(dog,dt);
-            case 6 -> updateTripod(dog,dt);
+            case 4 -> updateGait(dog,GaitPattern.RIPPLE);
+            case 5 -> updateGait(dog,GaitPattern.WAVE);
+            case 6 -> updateGait(dog,GaitPattern.TRIPOD);
         }
     }
 
@@ -129,77 +143,29 @@ public class DogRobotSystem implements EntitySystem {
     private void updateOnlyBody(DogRobotComponent dog,double dt) {
     }
 
-    private void updateRipple(DogRobotComponent dog,double dt) {
-        double gaitCycleTime = dog.getGaitCycleTime();
-        double step = (gaitCycleTime - Math.floor(gaitCycleTime));
-        int legToMove = ((int) Math.floor(gaitCycleTime) % DogRobotComponent.NUM_LEGS);
-
-        //updateGaitTarget(dt, 1d/6d);
-
-        for (int i = 0; i < DogRobotComponent.NUM_LEGS; ++i) {
-            if (i != legToMove) {
-                putFootDown(dog,i);
-            } else {
-                updateGaitForOneLeg(dog,i, step);
-            }
-        }
-    }
-
-    private void updateWave(DogRobotComponent dog,double dt) {
-        double gaitCycleTime = dog.getGaitCycleTime();
-        //updateGaitTarget(dt, 2d/6d);
-
-        double gc1 = gaitCycleTime + 0.5f;
-        double gc2 = gaitCycleTime;
-
-        double x1 = gc1 - Math.floor(gc1);
-        double x2 = gc2 - Math.floor(gc2);
-        double step1 = Math.max(0, x1);
-        double step2 = Math.max(0, x2);
-        int leg1 = (int) Math.floor(gc1) % 2;
-        int leg2 = (int) Math.floor(gc2) % 2;
-
-        // 0   3
-        // 1 x 2
-        // order should be 0,3,1,2
-        int o1, o2;
-        o1 = switch (leg1) {
-            case 0 -> 0;
-            case 1 -> 1;
-            default -> 0;
-        };
-        o2 = switch (leg2) {
-            case 0 -> 2;
-            case 1 -> 3;
-            default -> 0;
-        };
-
-        updateGaitForOneLeg(dog,o1, step1);
-        updateGaitForOneLeg(dog,o2, step2);
-
-        // Put all feet down except the active leg(s).
-        for (int i = 0; i < DogRobotComponent.NUM_LEGS; ++i) {
-            if (i != o1 && i != o2) {
-                putFootDown(dog,i);
-            }
+    /**
+     * Queue the dog for the next {@link GaitDriver#step(double)}.
+     */
+    private void updateGait(DogRobotComponent dog,GaitPattern pattern) {
+        int n = DogRobotComponent.NUM_LEGS;
+        Point3d [] lastPOC = new Point3d[n];
+        Point3d [] nextPOC = new Point3d[n];
+        Point3d [] targets = new Point3d[n];
+        for(int i=0;i<n;++i) {
+            lastPOC[i] = dog.getLastPOC(i);
+            nextPOC[i] = dog.getNextPOC(i);
+            targets[i] = dog.getTarget(i);
         }
-    }
-
-    private void updateTripod(DogRobotComponent dog,double dt) {
-        double gaitCycleTime = dog.getGaitCycleTime();
-        //updateGaitTarget(dt, 0.5f);
+        EntityWalker walker = gaitDriver.getWalker(dog,dog.getLegs(),lastPOC,nextPOC,targets);
+        if(walker==null) return;
 
-        double step = (gaitCycleTime - Math.floor(gaitCycleTime));
-        int legToMove = ((int) Math.floor(gaitCycleTime) % 2);
-
-        // put all feet down except the active leg(s).
-        for (int i = 0; i < DogRobotComponent.NUM_LEGS; ++i) {
-            if ((i % 2) != legToMove) {
-                putFootDown(dog,i);
-            } else {
-                updateGaitForOneLeg(dog,i, step);
-            }
-        }
+        GaitBody body = walker.getBody();
+        body.setPattern(pattern);
+        body.setStrideHeight(dog.strideHeight.get());
+        body.setSpeedScale(dog.speedScale.get());
+        body.setSteps(dog.getGaitCycleTime());
+        gaitDriver.queue(walker);
+        walking.add(dog);
     }
 
     private void putFootDown(DogRobotComponent dog,int index) {
@@ -229,30 +195,6 @@ public class DogRobotSystem implements EntitySystem {
         robotLeg.set(RobotComponent.END_EFFECTOR_TARGET_POSITION,p2);
     }
 
-    /**
-     * Update the gait for one leg.
-     * @param index the leg to update
-     * @param step 0 to 1, 0 is start of step, 1 is end of step
-     */
-    private void updateGaitForOneLeg(DogRobotComponent dog,int index, double step) {
-        RobotComponent [] legs = dog.getLegs();
-        RobotComponent robotLeg = legs[index];
-        if(robotLeg==null) return;
-
-        // horizontal distance from foot to next point of contact.
-        Point3d start = dog.getLastPOC(index);
-        Point3d end = dog.getNextPOC(index);
-        Point3d mid = MathHelper.interpolate(start, end, step);
-
-        // add in the height of the step.
-        double stepAdj = (step <= 0.5f) ? step : 1 - step;
-        stepAdj = Math.sin(stepAdj * Math.PI);
-        mid.z = stepAdj * dog.strideHeight.get();
-
-        // tell the leg where to go.
-        setLegTargetPosition(dog,index,mid);
-    }
-
     public void setInitialPointOfContact(DogRobotComponent dog,Entity limb,int index) {
         Entity hip = limb.findByPath(DogRobotComponent.HIP);
         PoseComponent hipPose = hip.getComponent(PoseComponent.class);
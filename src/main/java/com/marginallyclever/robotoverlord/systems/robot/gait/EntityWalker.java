@@ -0,0 +1,114 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+import com.marginallyclever.robotoverlord.components.PoseComponent;
+import com.marginallyclever.robotoverlord.components.RobotComponent;
+import com.marginallyclever.robotoverlord.entity.Entity;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import java.util.Arrays;
+
+/**
+ * <p>Connects a walking robot made of entities to a {@link GaitBody}.  The legs, their poses and their kinematics
+ * are found once, when the walker is made.</p>
+ * <p>Call {@link #pull()} before {@link GaitEngine#step(double)} to copy the scene into the body, and {@link #push()}
+ * after to copy the answer back.</p>
+ */
+public class EntityWalker {
+    private final Entity entity;
+    private final PoseComponent bodyPose;
+    private final RobotComponent [] legs;
+    private final PoseComponent [] legPoses;
+    private final GaitLeg [] gaitLegs;
+    private final Point3d [] lastPOC;
+    private final Point3d [] nextPOC;
+    private final Point3d [] targets;
+    private final GaitBody body;
+    private final Matrix4d pulled = new Matrix4d();
+    private final Matrix4d legWorld = new Matrix4d();
+    private final Point3d local = new Point3d();
+
+    /**
+     * @param entity the body of the robot.  It must have a {@link PoseComponent}.
+     * @param legs the legs, each the base of a chain of bones.  Each must have a {@link PoseComponent}.
+     * @param lastPOC where each foot stands now, in world space.  Updated by {@link #push()}.
+     * @param nextPOC where each foot will stand next, in world space.  Updated by {@link #push()}.
+     * @param targets where each foot is going, in world space.  Updated by {@link #push()}.
+     */
+    public EntityWalker(Entity entity,RobotComponent [] legs,Point3d [] lastPOC,Point3d [] nextPOC,Point3d [] targets) {
+        this.entity = entity;
+        this.bodyPose = entity.getComponent(PoseComponent.class);
+        if(bodyPose==null) throw new IllegalArgumentException(entity.getName()+" has no pose.");
+        this.legs = legs.clone();
+        this.lastPOC = lastPOC;
+        this.nextPOC = nextPOC;
+        this.targets = targets;
+
+        Matrix4d world = bodyPose.getWorld();
+        Matrix4d inverse = new Matrix4d(world);
+        inverse.invert();
+        body = new GaitBody(world);
+        legPoses = new PoseComponent[legs.length];
+        gaitLegs = new GaitLeg[legs.length];
+        for(int i=0;i<legs.length;++i) {
+            legPoses[i] = legs[i].getEntity().getComponent(PoseComponent.class);
+            if(legPoses[i]==null) throw new IllegalArgumentException("leg "+i+" has no pose.");
+            Matrix4d mount = legPoses[i].getWorld();
+            mount.mul(inverse,mount);
+            gaitLegs[i] = new GaitLeg(legs[i].getKinematicModel(),mount,lastPOC[i],world,legs[i].getAllJointValues());
+            body.addLeg(gaitLegs[i]);
+        }
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    public GaitBody getBody() {
+        return body;
+    }
+
+    /**
+     * @return true if this walker was made for these legs.
+     */
+    public boolean hasLegs(RobotComponent [] list) {
+        return Arrays.equals(legs,list);
+    }
+
+    /**
+     * Copy the pose of the body, the footholds and the joint values of the legs into the {@link GaitBody}.  A foot
+     * in the air keeps the footholds it was given when it was lifted.
+     */
+    public void pull() {
+        bodyPose.getWorld(pulled);
+        body.setPose(pulled);
+        for(int i=0;i<legs.length;++i) {
+            GaitLeg leg = gaitLegs[i];
+            if(!leg.swinging) {
+                leg.lastFoothold.set(lastPOC[i]);
+                leg.nextFoothold.set(nextPOC[i]);
+            }
+            legs[i].getAllJointValues(leg.joints);
+        }
+    }
+
+    /**
+     * Copy the answer of the {@link GaitEngine} back into the scene.
+     */
+    public void push() {
+        if(!body.getPose().equals(pulled)) bodyPose.setWorld(body.getPose());
+        for(int i=0;i<legs.length;++i) {
+            GaitLeg leg = gaitLegs[i];
+            lastPOC[i].set(leg.getLastFoothold());
+            nextPOC[i].set(leg.getNextFoothold());
+            targets[i].set(leg.getTarget());
+            if(leg.getJoints().length>0) legs[i].setAllJointValues(leg.getJoints());
+
+            // the leg is a robot arm.  all end effector positions are relative to the base of the arm.
+            legPoses[i].getWorld(legWorld);
+            legWorld.invert();
+            legWorld.transform(leg.getTarget(),local);
+            legs[i].set(RobotComponent.END_EFFECTOR_TARGET_POSITION,local);
+        }
+    }
+}
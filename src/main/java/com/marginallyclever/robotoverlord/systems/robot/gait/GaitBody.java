@@ -0,0 +1,93 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>One walking robot in a {@link GaitEngine}: the pose of its body, its legs and how it should walk.</p>
+ * <p>The legs are found once, when the body is made.  Number them the way {@link GaitPattern} expects.</p>
+ */
+public class GaitBody {
+    final Matrix4d pose = new Matrix4d();
+    final List<GaitLeg> legs = new ArrayList<>();
+    final Vector3d velocity = new Vector3d();
+    GaitPattern pattern = GaitPattern.TRIPOD;
+    double strideHeight = 5;
+    double speedScale = 1;
+    double steps = 0;
+    // the height of the body above the feet on the ground, found on the first step.
+    double heightAboveGround = Double.NaN;
+
+    public GaitBody(Matrix4d pose) {
+        this.pose.set(pose);
+    }
+
+    public void addLeg(GaitLeg leg) {
+        legs.add(leg);
+    }
+
+    public List<GaitLeg> getLegs() {
+        return Collections.unmodifiableList(legs);
+    }
+
+    /**
+     * @return the pose of the body in world space.  The engine moves it when the robot walks or leans.
+     */
+    public Matrix4d getPose() {
+        return pose;
+    }
+
+    /**
+     * @param pose the pose of the body in world space.
+     */
+    public void setPose(Matrix4d pose) {
+        this.pose.set(pose);
+    }
+
+    /**
+     * @param velocity the speed and direction to walk in world space.  Only x and y are used.  Zero walks in place.
+     */
+    public void setVelocity(Vector3d velocity) {
+        this.velocity.set(velocity.x,velocity.y,0);
+    }
+
+    public Vector3d getVelocity() {
+        return velocity;
+    }
+
+    public void setPattern(GaitPattern pattern) {
+        this.pattern = pattern;
+    }
+
+    public GaitPattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @param strideHeight how high a foot lifts at the middle of a swing.
+     */
+    public void setStrideHeight(double strideHeight) {
+        this.strideHeight = strideHeight;
+    }
+
+    /**
+     * @param speedScale steps per second.
+     */
+    public void setSpeedScale(double speedScale) {
+        this.speedScale = speedScale;
+    }
+
+    /**
+     * @return the gait time in steps.  Every swing takes one step.
+     */
+    public double getSteps() {
+        return steps;
+    }
+
+    public void setSteps(double steps) {
+        this.steps = steps;
+    }
+}
@@ -0,0 +1,102 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+import com.marginallyclever.robotoverlord.components.Component;
+import com.marginallyclever.robotoverlord.components.RobotComponent;
+import com.marginallyclever.robotoverlord.entity.Entity;
+import com.marginallyclever.robotoverlord.entity.EntityManager;
+
+import javax.vecmath.Point3d;
+import java.util.*;
+
+/**
+ * <p>Walks the legged robots of one {@link com.marginallyclever.robotoverlord.systems.EntitySystem}.  Each robot
+ * gets an {@link EntityWalker} the first time it is seen, which is kept until its legs change.  Robots are
+ * {@link #queue(EntityWalker)}d during an update and then all of them are solved in one {@link #step(double)}.</p>
+ * <p>The ground is every shape in the scene that is not one of the robots.  The shapes are found again when the
+ * scene changes or a new robot is seen, and the top of the scene is found again every step.</p>
+ */
+public class GaitDriver {
+    private final GaitEngine engine = new GaitEngine();
+    private final SceneGroundQuery ground;
+    // walkers are thrown away when their robot is.
+    private final Map<Component,EntityWalker> walkers = new WeakHashMap<>();
+    private final List<EntityWalker> queued = new ArrayList<>();
+    private boolean groundChanged = true;
+
+    public GaitDriver(EntityManager entityManager) {
+        ground = new SceneGroundQuery(entityManager);
+        engine.setGround(ground);
+        entityManager.addListener((event)-> groundChanged = true);
+    }
+
+    public GaitEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @param robot the component that owns the legs.
+     * @param legs the legs of the robot.
+     * @param lastPOC where each foot stands now, in world space.
+     * @param nextPOC where each foot will stand next, in world space.
+     * @param targets where each foot is going, in world space.
+     * @return the walker for this robot, or null if a leg is missing.
+     */
+    public EntityWalker getWalker(Component robot,RobotComponent [] legs,Point3d [] lastPOC,Point3d [] nextPOC,Point3d [] targets) {
+        EntityWalker walker = walkers.get(robot);
+        if(walker!=null && walker.hasLegs(legs)) return walker;
+
+        for(RobotComponent leg : legs) {
+            if(leg==null || leg.getEntity()==null) return null;
+        }
+        walker = new EntityWalker(robot.getEntity(),legs,lastPOC,nextPOC,targets);
+        walkers.put(robot,walker);
+        groundChanged = true;
+        return walker;
+    }
+
+    /**
+     * @return the walker already made for this robot, or null.
+     */
+    public EntityWalker getWalker(Component robot) {
+        return walkers.get(robot);
+    }
+
+    /**
+     * Forget the walker of a robot, so that the next {@link #getWalker} starts over from the pose of the robot.
+     */
+    public void forget(Component robot) {
+        walkers.remove(robot);
+    }
+
+    /**
+     * Add a robot to the next {@link #step(double)}.
+     */
+    public void queue(EntityWalker walker) {
+        queued.add(walker);
+    }
+
+    /**
+     * Walk every queued robot, then empty the queue.
+     * @param dt seconds.
+     */
+    public void step(double dt) {
+        if(queued.isEmpty()) return;
+        if(groundChanged) {
+            groundChanged = false;
+            List<Entity> robots = new ArrayList<>();
+            for(EntityWalker walker : walkers.values()) robots.add(walker.getEntity());
+            ground.refresh(robots);
+        } else {
+            ground.updateBounds();
+        }
+
+        engine.clear();
+        for(EntityWalker walker : queued) {
+            walker.pull();
+            engine.add(walker.getBody());
+        }
+        engine.step(dt);
+        for(EntityWalker walker : queued) walker.push();
+        queued.clear();
+    }
+}
@@ -0,0 +1,322 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+import com.marginallyclever.ro3.workspace.DHChainModel;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>{@link GaitEngine} walks any number of legged robots.  Each {@link #step(double)} has two passes.</p>
+ * <ol>
+ *     <li>For every {@link GaitBody} the gait clock moves forward and each {@link GaitLeg} gets a target.  A leg on
+ *     the ground stays on its foothold.  A leg that starts to swing picks its next foothold: where it rests when
+ *     standing still, moved ahead by the walking speed, then dropped onto the ground found by the
+ *     {@link GroundQuery}.  A swinging leg follows an arc from one foothold to the next.</li>
+ *     <li>The joints of every leg of every body are solved together, a few rounds of damped least squares per leg,
+ *     starting from the joint values of the step before.</li>
+ * </ol>
+ * <p>A leg is only lifted when the feet left on the ground still surround the body by at least the stability
+ * margin.  Otherwise the gait clock waits while the body leans toward the middle of those feet.  With fewer than
+ * three feet on the ground there is no area to keep, as in a trot, so nothing is checked.</p>
+ * <p>The engine does not touch the scene.  It is up to the caller to copy poses in and joint values out.</p>
+ */
+public class GaitEngine {
+    public static final int DEFAULT_ITERATIONS = 8;
+    // the size of a finite difference step, in joint units.
+    private static final double DELTA = 1e-3;
+    private static final double DAMPING = 0.05;
+
+    private final List<GaitBody> bodies = new ArrayList<>();
+    private GroundQuery ground = GroundQuery.FLAT;
+    private double stabilityMargin = 0;
+    private double swaySpeed = 10;
+    private int iterations = DEFAULT_ITERATIONS;
+    private double tolerance = 0.01;
+
+    // scratch space, reused by every step.
+    private final Matrix4d legWorld = new Matrix4d();
+    private final Point3d foot = new Point3d();
+    private final Point3d moved = new Point3d();
+    private final List<GaitLeg> active = new ArrayList<>();
+    private double [] stanceX = new double[0];
+    private double [] stanceY = new double[0];
+    private double [][] jacobian = new double[3][0];
+    private final double [] error = new double[3];
+    private final double [] y = new double[3];
+    private final double [][] a = new double[3][3];
+
+    public void add(GaitBody body) {
+        bodies.add(body);
+    }
+
+    public void remove(GaitBody body) {
+        bodies.remove(body);
+    }
+
+    public void clear() {
+        bodies.clear();
+    }
+
+    public List<GaitBody> getBodies() {
+        return Collections.unmodifiableList(bodies);
+    }
+
+    public void setGround(GroundQuery ground) {
+        this.ground = ground;
+    }
+
+    /**
+     * @param margin the closest the middle of the body may come to the edge of the feet on the ground.
+     */
+    public void setStabilityMargin(double margin) {
+        this.stabilityMargin = margin;
+    }
+
+    /**
+     * @param swaySpeed how fast the body leans over its feet, in units of distance per second.
+     */
+    public void setSwaySpeed(double swaySpeed) {
+        this.swaySpeed = swaySpeed;
+    }
+
+    /**
+     * @param iterations the most rounds of inverse kinematics per leg per step.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * @param tolerance how close a foot must be to its target to stop solving.
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Move every robot forward in time.
+     * @param dt seconds.
+     */
+    public void step(double dt) {
+        for(GaitBody body : bodies) plan(body,dt);
+        solveAll();
+    }
+
+    private void plan(GaitBody body,double dt) {
+        int n = body.legs.size();
+        if(n==0) return;
+        if(Double.isNaN(body.heightAboveGround)) {
+            body.heightAboveGround = body.pose.m23 - getStanceHeight(body);
+        }
+
+        double next = body.steps + dt*body.speedScale;
+        boolean lifting = false;
+        for(int i=0;i<n;++i) {
+            if(!body.legs.get(i).swinging && body.pattern.getSwing(i,n,next)>=0) lifting = true;
+        }
+        if(lifting && !isStable(body,next)) {
+            // wait for the body to be over its feet.  If it cannot lean any closer, go anyway.
+            if(sway(body,next,dt)) return;
+        }
+
+        body.steps = next;
+        body.pose.m03 += body.velocity.x*dt;
+        body.pose.m13 += body.velocity.y*dt;
+
+        for(int i=0;i<n;++i) {
+            GaitLeg leg = body.legs.get(i);
+            double s = body.pattern.getSwing(i,n,next);
+            if(s>=0) {
+                if(!leg.swinging) {
+                    leg.swinging = true;
+                    planFoothold(body,leg);
+                }
+                leg.target.interpolate(leg.lastFoothold,leg.nextFoothold,s);
+                leg.target.z += Math.sin(s*Math.PI) * body.strideHeight;
+            } else {
+                if(leg.swinging) {
+                    leg.swinging = false;
+                    leg.lastFoothold.set(leg.nextFoothold);
+                }
+                leg.target.set(leg.lastFoothold);
+            }
+        }
+
+        if(body.velocity.x!=0 || body.velocity.y!=0) {
+            body.pose.m23 = getStanceHeight(body) + body.heightAboveGround;
+        }
+    }
+
+    /**
+     * @return the average height of the feet on the ground.
+     */
+    private double getStanceHeight(GaitBody body) {
+        double sum = 0;
+        int count = 0;
+        for(GaitLeg leg : body.legs) {
+            if(leg.swinging) continue;
+            sum += leg.lastFoothold.z;
+            count++;
+        }
+        return count==0 ? 0 : sum/count;
+    }
+
+    /**
+     * Rest position moved ahead by the distance the body travels during the swing and half the stance that
+     * follows, so that the foot passes under its rest position in the middle of the stance.
+     */
+    private void planFoothold(GaitBody body,GaitLeg leg) {
+        double cycle = body.pattern.getCycleLength(body.legs.size());
+        double secondsPerStep = (body.speedScale>0) ? 1.0/body.speedScale : 0;
+        double lead = secondsPerStep * (1 + (cycle-1)/2);
+        body.pose.transform(leg.neutral,moved);
+        moved.x += body.velocity.x*lead;
+        moved.y += body.velocity.y*lead;
+        double h = ground.getHeight(moved.x,moved.y);
+        moved.z = Double.isNaN(h) ? leg.lastFoothold.z : h;
+        leg.nextFoothold.set(moved);
+    }
+
+    /**
+     * Collect the footholds that are on the ground at a gait time.
+     * @return the number of feet.
+     */
+    private int getStance(GaitBody body,double steps) {
+        int n = body.legs.size();
+        if(stanceX.length<n) {
+            stanceX = new double[n];
+            stanceY = new double[n];
+        }
+        int count = 0;
+        for(int i=0;i<n;++i) {
+            if(body.pattern.getSwing(i,n,steps)>=0) continue;
+            GaitLeg leg = body.legs.get(i);
+            Point3d p = leg.swinging ? leg.nextFoothold : leg.lastFoothold;
+            stanceX[count] = p.x;
+            stanceY[count] = p.y;
+            count++;
+        }
+        return count;
+    }
+
+    private boolean isStable(GaitBody body,double steps) {
+        int count = getStance(body,steps);
+        if(count<3) return true;
+        return SupportPolygon.getMargin(stanceX,stanceY,count,body.pose.m03,body.pose.m13) >= stabilityMargin-1e-9;
+    }
+
+    /**
+     * Lean the body toward the middle of the feet that will stay on the ground.
+     * @return false if the body is already there.
+     */
+    private boolean sway(GaitBody body,double steps,double dt) {
+        int count = getStance(body,steps);
+        if(count==0) return false;
+        double cx = 0, cy = 0;
+        for(int i=0;i<count;++i) {
+            cx += stanceX[i];
+            cy += stanceY[i];
+        }
+        cx = cx/count - body.pose.m03;
+        cy = cy/count - body.pose.m13;
+        double d = Math.sqrt(cx*cx + cy*cy);
+        if(d<1e-6) return false;
+        double f = Math.min(1,swaySpeed*dt/d);
+        body.pose.m03 += cx*f;
+        body.pose.m13 += cy*f;
+        return true;
+    }
+
+    /**
+     * Solve every leg of every body.  Each round visits all legs before the next round starts.
+     */
+    private void solveAll() {
+        active.clear();
+        for(GaitBody body : bodies) {
+            for(GaitLeg leg : body.legs) {
+                if(leg.model.getNumJoints()==0) continue;
+                legWorld.mul(body.pose,leg.mount);
+                legWorld.invert();
+                legWorld.transform(leg.target,leg.localTarget);
+                active.add(leg);
+            }
+        }
+        for(int round=0;round<iterations && !active.isEmpty();++round) {
+            for(int i=active.size()-1;i>=0;--i) {
+                if(!solveOnce(active.get(i))) continue;
+                // done.  Order does not matter, so fill the gap with the last leg.
+                GaitLeg last = active.remove(active.size()-1);
+                if(i<active.size()) active.set(i,last);
+            }
+        }
+    }
+
+    /**
+     * One round of damped least squares.
+     * @return true if the foot is close enough.
+     */
+    private boolean solveOnce(GaitLeg leg) {
+        DHChainModel model = leg.model;
+        double [] q = leg.joints;
+        int nj = q.length;
+        if(jacobian[0].length<nj) jacobian = new double[3][nj];
+
+        model.getEndEffectorPosition(q,foot);
+        error[0] = leg.localTarget.x - foot.x;
+        error[1] = leg.localTarget.y - foot.y;
+        error[2] = leg.localTarget.z - foot.z;
+        if(error[0]*error[0] + error[1]*error[1] + error[2]*error[2] < tolerance*tolerance) return true;
+
+        for(int j=0;j<nj;++j) {
+            double old = q[j];
+            q[j] = old + DELTA;
+            model.getEndEffectorPosition(q,moved);
+            q[j] = old;
+            jacobian[0][j] = (moved.x-foot.x)/DELTA;
+            jacobian[1][j] = (moved.y-foot.y)/DELTA;
+            jacobian[2][j] = (moved.z-foot.z)/DELTA;
+        }
+
+        // (J J^T + damping^2 I) y = error, then the change is J^T y.
+        for(int r=0;r<3;++r) {
+            for(int c=0;c<3;++c) {
+                double sum = 0;
+                for(int j=0;j<nj;++j) sum += jacobian[r][j]*jacobian[c][j];
+                a[r][c] = sum + (r==c ? DAMPING*DAMPING : 0);
+            }
+        }
+        if(!solve3(a,error,y)) return true;
+        for(int j=0;j<nj;++j) {
+            double dq = jacobian[0][j]*y[0] + jacobian[1][j]*y[1] + jacobian[2][j]*y[2];
+            q[j] += dq;
+            if(model.isJointLimited(j)) {
+                q[j] = Math.max(model.getJointMin(j),Math.min(model.getJointMax(j),q[j]));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cramer's rule.
+     * @return false if m has no inverse.
+     */
+    private static boolean solve3(double [][] m,double [] b,double [] x) {
+        double det = m[0][0]*(m[1][1]*m[2][2]-m[1][2]*m[2][1])
+                   - m[0][1]*(m[1][0]*m[2][2]-m[1][2]*m[2][0])
+                   + m[0][2]*(m[1][0]*m[2][1]-m[1][1]*m[2][0]);
+        if(Math.abs(det)<1e-12) return false;
+        x[0] = (b[0]*(m[1][1]*m[2][2]-m[1][2]*m[2][1])
+              - m[0][1]*(b[1]*m[2][2]-m[1][2]*b[2])
+              + m[0][2]*(b[1]*m[2][1]-m[1][1]*b[2])) / det;
+        x[1] = (m[0][0]*(b[1]*m[2][2]-m[1][2]*b[2])
+              - b[0]*(m[1][0]*m[2][2]-m[1][2]*m[2][0])
+              + m[0][2]*(m[1][0]*b[2]-b[1]*m[2][0])) / det;
+        x[2] = (m[0][0]*(m[1][1]*b[2]-b[1]*m[2][1])
+              - m[0][1]*(m[1][0]*b[2]-b[1]*m[2][0])
+              + b[0]*(m[1][0]*m[2][1]-m[1][1]*m[2][0])) / det;
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+import com.marginallyclever.ro3.workspace.DHChainModel;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+
+/**
+ * <p>One leg of a {@link GaitBody}.  The leg is a small robot arm mounted on the body, with its foot as the end
+ * effector.</p>
+ * <p>Footholds and the target are in world space.  The {@link GaitEngine} moves the foot between footholds and
+ * finds the joint values that put the foot on the target.</p>
+ */
+public class GaitLeg {
+    final DHChainModel model;
+    final Matrix4d mount = new Matrix4d();
+    final Point3d neutral = new Point3d();
+    final double [] joints;
+    final Point3d lastFoothold = new Point3d();
+    final Point3d nextFoothold = new Point3d();
+    final Point3d target = new Point3d();
+    // the target relative to the mount, for the inverse kinematics.
+    final Point3d localTarget = new Point3d();
+    boolean swinging = false;
+
+    /**
+     * @param model the kinematics of the leg, relative to its mount.
+     * @param mount the pose of the base of the leg relative to the body.
+     * @param foot where the foot is now, in world space.  This is also the first foothold.
+     * @param body the pose of the body now, used to find where the foot rests when the robot stands still.
+     * @param joints the joint values now.
+     */
+    public GaitLeg(DHChainModel model,Matrix4d mount,Point3d foot,Matrix4d body,double [] joints) {
+        if(joints.length!=model.getNumJoints()) throw new IllegalArgumentException("joints must have "+model.getNumJoints()+" values.");
+        this.model = model.copy();
+        this.mount.set(mount);
+        this.joints = joints.clone();
+        lastFoothold.set(foot);
+        nextFoothold.set(foot);
+        target.set(foot);
+        Matrix4d inverse = new Matrix4d(body);
+        inverse.invert();
+        inverse.transform(foot,neutral);
+    }
+
+    /**
+     * @return the joint values found by the last {@link GaitEngine#step(double)}.  Do not change them.
+     */
+    public double [] getJoints() {
+        return joints;
+    }
+
+    /**
+     * @return where the foot is going, in world space.
+     */
+    public Point3d getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the foothold the foot last stood on, in world space.
+     */
+    public Point3d getLastFoothold() {
+        return lastFoothold;
+    }
+
+    /**
+     * @return the foothold the foot will stand on next, in world space.
+     */
+    public Point3d getNextFoothold() {
+        return nextFoothold;
+    }
+
+    public boolean isSwinging() {
+        return swinging;
+    }
+}
@@ -0,0 +1,66 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+/**
+ * <p>The order in which a walking robot lifts its legs.  Gait time is counted in steps: every swing takes one step,
+ * and one cycle of the pattern takes {@link #getCycleLength(int)} steps.</p>
+ * <p>Legs are numbered down one side of the body from front to back and then down the other side, the way
+ * {@link com.marginallyclever.robotoverlord.components.demo.DogRobotComponent} and
+ * {@link com.marginallyclever.robotoverlord.components.demo.CrabRobotComponent} number them.  A pattern works for
+ * any even number of legs.</p>
+ */
+public enum GaitPattern {
+    /**
+     * One leg at a time, in order.
+     */
+    RIPPLE,
+    /**
+     * One leg on each side at a time, half a step apart.
+     */
+    WAVE,
+    /**
+     * Every other leg at once.
+     */
+    TRIPOD;
+
+    /**
+     * @return the number of steps in one cycle.
+     */
+    public double getCycleLength(int numLegs) {
+        return switch(this) {
+            case RIPPLE -> numLegs;
+            case WAVE -> numLegs/2.0;
+            case TRIPOD -> 2;
+        };
+    }
+
+    /**
+     * @return the part of a cycle, 0...1, where the leg starts to swing.
+     */
+    public double getPhaseOffset(int leg,int numLegs) {
+        double cycle = getCycleLength(numLegs);
+        return switch(this) {
+            case RIPPLE -> leg/cycle;
+            case WAVE -> {
+                // the order of the old phase tables: the first side from front to back, and the other side starting
+                // with its first leg and then counting back from its last.  A six legged crab goes 0,3,1,5,2,4.
+                int half = numLegs/2;
+                yield (leg<half) ? (leg-0.5)/cycle : ((half-(leg-half))%half)/cycle;
+            }
+            case TRIPOD -> (leg%2)/cycle;
+        };
+    }
+
+    /**
+     * @param leg the leg.
+     * @param numLegs the number of legs.
+     * @param steps the gait time.
+     * @return how far the leg is through its swing, 0...1, or a negative number if the leg is on the ground.
+     */
+    public double getSwing(int leg,int numLegs,double steps) {
+        double cycle = getCycleLength(numLegs);
+        double phase = steps/cycle - getPhaseOffset(leg,numLegs);
+        phase -= Math.floor(phase);
+        double inCycle = phase*cycle;
+        return (inCycle<1) ? inCycle : -1;
+    }
+}
@@ -0,0 +1,18 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+/**
+ * Where the ground is, so that a {@link GaitEngine} can put feet on it.
+ */
+public interface GroundQuery {
+    /**
+     * Level ground at zero.
+     */
+    GroundQuery FLAT = (x,y)->0;
+
+    /**
+     * @param x world position
+     * @param y world position
+     * @return the height of the highest ground at x,y, or NaN if there is none.
+     */
+    double getHeight(double x,double y);
+}
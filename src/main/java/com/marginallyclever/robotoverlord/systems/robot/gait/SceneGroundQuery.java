@@ -0,0 +1,110 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+import com.marginallyclever.convenience.Ray;
+import com.marginallyclever.robotoverlord.RayHit;
+import com.marginallyclever.robotoverlord.components.PoseComponent;
+import com.marginallyclever.robotoverlord.components.ShapeComponent;
+import com.marginallyclever.robotoverlord.entity.Entity;
+import com.marginallyclever.robotoverlord.entity.EntityManager;
+import com.marginallyclever.robotoverlord.systems.render.mesh.AABB;
+import com.marginallyclever.robotoverlord.systems.render.mesh.Mesh;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import java.util.*;
+
+/**
+ * <p>Finds the ground by casting a ray straight down onto every {@link ShapeComponent} in the scene, the same test
+ * used by {@link com.marginallyclever.robotoverlord.systems.RayPickSystem}.  Each ray starts above the top of the
+ * scene, so the highest ground is found even when it is above the robot.</p>
+ * <p>The shapes are found by {@link #refresh(Collection)} and kept until the next refresh, so that each query does
+ * not walk the whole scene.  Shapes can move between refreshes, so call {@link #updateBounds()} before the
+ * queries of each step.</p>
+ */
+public class SceneGroundQuery implements GroundQuery {
+    // start the rays a little above the top of the scene, so they do not start on the highest face.
+    private static final double MARGIN = 1;
+    private static final Vector3d DOWN = new Vector3d(0,0,-1);
+
+    private final EntityManager entityManager;
+    private final List<ShapeComponent> shapes = new ArrayList<>();
+    private final Ray ray = new Ray(new Point3d(),DOWN);
+    private final Point3d origin = new Point3d();
+    private final Matrix4d world = new Matrix4d();
+    private double top = Double.NaN;
+
+    public SceneGroundQuery(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Find the shapes in the scene again.
+     * @param ignore shapes in these entities or their children are not ground.  Use this so that a robot does not
+     *               stand on itself.
+     */
+    public void refresh(Collection<Entity> ignore) {
+        shapes.clear();
+        Set<Entity> skip = new HashSet<>(ignore);
+        Queue<Entity> toTest = new LinkedList<>(entityManager.getEntities());
+        while(!toTest.isEmpty()) {
+            Entity entity = toTest.remove();
+            if(skip.contains(entity)) continue;
+            toTest.addAll(entity.getChildren());
+
+            ShapeComponent shape = entity.getComponent(ShapeComponent.class);
+            if(shape==null) continue;
+            Mesh mesh = shape.getModel();
+            if(mesh==null || mesh.getNumVertices()==0) continue;
+            // procedural shapes do not find their own bounds.
+            mesh.updateCuboid();
+            shapes.add(shape);
+        }
+        updateBounds();
+    }
+
+    /**
+     * Find the top of the shapes found by the last {@link #refresh(Collection)}, where they are now.
+     */
+    public void updateBounds() {
+        top = Double.NaN;
+        for(ShapeComponent shape : shapes) {
+            Entity entity = shape.getEntity();
+            if(entity==null) continue;
+            PoseComponent pose = entity.getComponent(PoseComponent.class);
+            if(pose==null) continue;
+            pose.getWorld(world);
+
+            // the highest corner of the box, without making the corners.
+            AABB box = shape.getModel().getBoundingBox();
+            Point3d a = box.getBoundsBottom();
+            Point3d b = box.getBoundsTop();
+            double z = world.m23
+                    + Math.max(world.m20*a.x,world.m20*b.x)
+                    + Math.max(world.m21*a.y,world.m21*b.y)
+                    + Math.max(world.m22*a.z,world.m22*b.z);
+            if(!(top>=z)) top = z;
+        }
+    }
+
+    /**
+     * @return the top of the scene found by the last {@link #updateBounds()}, or NaN if there are no shapes.
+     */
+    public double getTop() {
+        return top;
+    }
+
+    @Override
+    public double getHeight(double x,double y) {
+        if(Double.isNaN(top)) return Double.NaN;
+        double start = top + MARGIN;
+        origin.set(x,y,start);
+        ray.setOrigin(origin);
+        double nearest = Double.MAX_VALUE;
+        for(ShapeComponent shape : shapes) {
+            RayHit hit = shape.intersect(ray);
+            if(hit!=null && hit.distance>=0) nearest = Math.min(nearest,hit.distance);
+        }
+        return nearest==Double.MAX_VALUE ? Double.NaN : start-nearest;
+    }
+}
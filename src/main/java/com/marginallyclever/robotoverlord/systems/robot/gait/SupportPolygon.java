@@ -0,0 +1,58 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The area on the ground surrounded by the feet of a walking robot, seen from above.
+ */
+final class SupportPolygon {
+    private SupportPolygon() {}
+
+    /**
+     * @param xs the feet
+     * @param ys the feet
+     * @param count the number of feet to use.
+     * @param px the point to test, usually the middle of the body.
+     * @param py the point to test
+     * @return the distance from the point to the nearest edge of the convex hull of the feet.  Positive inside,
+     * negative outside.  Negative infinity if the feet are all in a line.
+     */
+    static double getMargin(double [] xs,double [] ys,int count,double px,double py) {
+        Integer [] order = new Integer[count];
+        for(int i=0;i<count;++i) order[i] = i;
+        Arrays.sort(order,Comparator.<Integer>comparingDouble(i->xs[i]).thenComparingDouble(i->ys[i]));
+
+        // Andrew's monotone chain, counter-clockwise.
+        int [] hull = new int[2*count];
+        int k = 0;
+        for(int i=0;i<count;++i) {
+            while(k>=2 && cross(xs,ys,hull[k-2],hull[k-1],order[i])<=0) k--;
+            hull[k++] = order[i];
+        }
+        for(int i=count-2, lower=k+1;i>=0;--i) {
+            while(k>=lower && cross(xs,ys,hull[k-2],hull[k-1],order[i])<=0) k--;
+            hull[k++] = order[i];
+        }
+        // the first point is repeated at the end.
+        int size = k-1;
+        if(size<3) return Double.NEGATIVE_INFINITY;
+
+        double margin = Double.POSITIVE_INFINITY;
+        for(int i=0;i<size;++i) {
+            int a = hull[i];
+            int b = hull[i+1];
+            double ex = xs[b]-xs[a];
+            double ey = ys[b]-ys[a];
+            double len = Math.sqrt(ex*ex + ey*ey);
+            // left of a counter-clockwise edge is inside.
+            double d = (ex*(py-ys[a]) - ey*(px-xs[a])) / len;
+            margin = Math.min(margin,d);
+        }
+        return margin;
+    }
+
+    private static double cross(double [] xs,double [] ys,int o,int a,int b) {
+        return (xs[a]-xs[o])*(ys[b]-ys[o]) - (ys[a]-ys[o])*(xs[b]-xs[o]);
+    }
+}
@@ -4,10 +4,10 @@ import com.marginallyclever.robotoverlord.components.Component;
 import com.marginallyclever.robotoverlord.components.PoseComponent;
 import com.marginallyclever.robotoverlord.components.RobotComponent;
 import com.marginallyclever.robotoverlord.components.RobotGripperComponent;
+import com.marginallyclever.robotoverlord.components.program.CompiledProgram;
 import com.marginallyclever.robotoverlord.components.program.ProgramComponent;
 import com.marginallyclever.robotoverlord.components.program.ProgramEventComponent;
 import com.marginallyclever.robotoverlord.components.program.ProgramPathComponent;
-import com.marginallyclever.robotoverlord.components.program.ProgramStepComponent;
 import com.marginallyclever.robotoverlord.entity.Entity;
 import com.marginallyclever.robotoverlord.entity.EntityManager;
 import com.marginallyclever.robotoverlord.parameters.swing.ViewElementButton;
@@ -18,16 +18,45 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.vecmath.Matrix4d;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 @Deprecated
 public class ProgramExecutorSystem  implements EntitySystem {
     private static final Logger logger = LoggerFactory.getLogger(ProgramExecutorSystem.class);
     private final EntityManager entityManager;
+    // compiled programs are thrown away when the scene changes.
+    private final Map<ProgramComponent,Run> runs = new WeakHashMap<>();
+    private long sceneVersion = 0;
+    // every ProgramComponent in the scene, found again after the scene changes.  null when it must be found again.
+    private List<ProgramComponent> programs = null;
+    // the value of ProgramComponent.getAttachments() when programs was found.
+    private long attachments;
+
+    /**
+     * A compiled program and where the robot is in it.
+     */
+    private static class Run {
+        final CompiledProgram code;
+        final RobotGripperComponent gripper;
+        final long sceneVersion;
+        int programCounter;
+
+        Run(CompiledProgram code,RobotGripperComponent gripper,long sceneVersion) {
+            this.code = code;
+            this.gripper = gripper;
+            this.sceneVersion = sceneVersion;
+        }
+    }
 
     public ProgramExecutorSystem(EntityManager entityManager) {
         this.entityManager = entityManager;
+        entityManager.addListener((event)-> {
+            sceneVersion++;
+            programs = null;
+        });
     }
 
     @Override
@@ -56,15 +85,31 @@ public class ProgramExecutorSystem  implements EntitySystem {
      */
     @Override
     public void update(double dt) {
-        List<Entity> list = new LinkedList<>(entityManager.getEntities());
-        while(!list.isEmpty()) {
-            Entity e = list.remove(0);
-            list.addAll(e.getChildren());
-            ProgramComponent found = e.getComponent(ProgramComponent.class);
-            if( found!=null ) updateProgram(found,dt);
+        List<ProgramComponent> list = getPrograms();
+        for(int i=0;i<list.size();++i) {
+            ProgramComponent program = list.get(i);
+            // skip components that were removed from their entity.
+            Entity e = program.getEntity();
+            if( e!=null && e.getComponent(ProgramComponent.class)==program ) updateProgram(program,dt);
         }
     }
 
+    private List<ProgramComponent> getPrograms() {
+        long now = ProgramComponent.getAttachments();
+        if(programs==null || attachments!=now) {
+            attachments = now;
+            programs = new ArrayList<>();
+            List<Entity> list = new ArrayList<>(entityManager.getEntities());
+            for(int i=0;i<list.size();++i) {
+                Entity e = list.get(i);
+                list.addAll(e.getChildren());
+                ProgramComponent found = e.getComponent(ProgramComponent.class);
+                if( found!=null ) programs.add(found);
+            }
+        }
+        return programs;
+    }
+
     private void updateProgram(ProgramComponent program, double dt) {
         if( !program.getRunning() ) return;
 
@@ -73,38 +118,30 @@ public class ProgramExecutorSystem  implements EntitySystem {
         if( robot == null ) return;
 
         // must have program to run.
-        Entity programRoot = entityManager.findEntityByUniqueID(program.programEntity.get());
-        if(programRoot==null) return;
-
-        Entity programStep = getCurrentProgramStep(program);
-        if(programStep == null) {
-            programStep = getFirstProgramStep(programRoot);
-            if(programStep != null) {
-                pushStack(robot, program, programStep);
-            }
-        }
-        if(programStep == null) {
+        Run run = getRun(program,robot);
+        if(run==null) return;
+
+        if(run.code.isEmpty()) {
             // program is empty.
             program.setRunning(false);
             return;
         }
-        // TODO check if programStep is a child of programRoot?
         int mode = program.mode.get();
 
-        boolean done = executeStep(robot,program,programStep,dt);
+        boolean done = executeInstruction(robot,run,run.code.get(run.programCounter),dt);
         if(done) {
-            Entity nextStep = getNextStep(robot,program,programStep,programRoot);
-            if(nextStep==null) {
+            int next = run.programCounter+1;
+            if(next==run.code.size()) {
                 // no more steps to run.
                 if (mode == ProgramComponent.RUN_LOOP) {
                     // go back to start
-                    nextStep = programRoot.getChildren().get(0);
-                } else if(mode == ProgramComponent.RUN_TO_END) {
-                    program.setRunning(false);
+                    next = 0;
+                } else {
+                    if(mode == ProgramComponent.RUN_TO_END) program.setRunning(false);
+                    next = -1;
                 }
             }
-
-            program.stepEntity.set(nextStep==null ? null : nextStep.getUniqueID());
+            setProgramCounter(program,run,next);
         }
 
         if( mode == ProgramComponent.RUN_STEP ) {
@@ -114,96 +151,63 @@ public class ProgramExecutorSystem  implements EntitySystem {
     }
 
     /**
-     * Get the current step in the program.
-     * @param program the program to run.
-     * @return the current step in the program or null.
-     */
-    private Entity getCurrentProgramStep(ProgramComponent program) {
-        // find step to run.  if no step, assume program start.
-        return entityManager.findEntityByUniqueID(program.stepEntity.get());
-    }
-
-    private Entity getFirstProgramStep(Entity programRoot) {
-        List<Entity> children = programRoot.getChildren();
-        if(children.isEmpty()) return null;
-        return programRoot.getChildren().get(0);
-    }
-
-    /**
-     * a program is a tree of entities.  walk the tree one step.
-     * @param programStep the current step in the program tree.
-     * @param programRoot the root of the program tree
-     * @return the next step in the program or null.
+     * Find the compiled program and the program counter of a {@link ProgramComponent}.  The program is compiled
+     * again when it starts and when the scene has changed since it was compiled.
+     * @return the run, or null if there is no program.
      */
-    public Entity getNextStep(RobotComponent robot,ProgramComponent program,Entity programStep, Entity programRoot) {
-        Entity nextStep=null;
-        // we've just executed programStep, now what?
-        if(!programStep.getChildren().isEmpty()) {
-            // go to first child
-            nextStep = programStep.getChildren().get(0);
-        }
-        if(nextStep==null) {
-            // no children, go to next sibling
-            nextStep = programStep.getNextSibling();
-        }
-        if (nextStep != null) {
-            pushStack(robot,program,nextStep);
-            return nextStep;
-        }
-
-        // no next sibling, pop the stack
-        while(true) {
-            popStack(program,programStep);
-            Entity parent = programStep.getParent();
-
-            if( parent==null ) return null;
-            if( parent == programRoot ) return null;
-
-            // go to parent's next sibling
-            nextStep = parent.getNextSibling();
-            if (nextStep != null) {
-                return nextStep;
+    private Run getRun(ProgramComponent program,RobotComponent robot) {
+        Run run = runs.get(program);
+        String stepID = program.stepEntity.get();
+        boolean stale = run==null
+                || run.sceneVersion!=sceneVersion
+                || stepID==null
+                || !run.code.getRoot().getUniqueID().equals(program.programEntity.get());
+        if(stale) {
+            Entity programRoot = entityManager.findEntityByUniqueID(program.programEntity.get());
+            if(programRoot==null) {
+                runs.remove(program);
+                return null;
             }
-
-            // parent has no next sibling, keep poppin'
-            programStep = parent;
+            run = new Run(CompiledProgram.compile(programRoot),
+                    robot.getEntity().findFirstComponentRecursive(RobotGripperComponent.class),
+                    sceneVersion);
+            runs.put(program,run);
+            int found = run.code.indexOf(stepID);
+            run.programCounter = Math.max(found,0);
+            if(found<0 && !run.code.isEmpty()) setProgramCounter(program,run,0);
+        } else if(!stepID.equals(run.code.get(run.programCounter).step().getUniqueID())) {
+            // someone else moved the step.
+            int found = run.code.indexOf(stepID);
+            setProgramCounter(program,run,Math.max(found,0));
         }
+        return run;
     }
 
-    private void pushStack(RobotComponent robot, ProgramComponent program, Entity programStep) {
-        ProgramStepComponent step = programStep.getComponent(ProgramStepComponent.class);
-        if(step!=null) program.pushStack(step);
-    }
-
-    private void popStack(ProgramComponent program, Entity programStep) {
-        ProgramStepComponent step = programStep.getComponent(ProgramStepComponent.class);
-        if(step!=null) program.popStack();
+    private void setProgramCounter(ProgramComponent program,Run run,int index) {
+        run.programCounter = Math.max(index,0);
+        program.stepEntity.set(index<0 ? null : run.code.get(index).step().getUniqueID());
     }
 
     /**
-     * Execute the current step in the program.
+     * Execute one step of a compiled program.
      * @param robot the robot to move.
-     * @param program the program that owns the step.
-     * @param programStep the step to execute.
+     * @param run the program and the state of the robot.
+     * @param instruction the step to execute.
      * @param dt the time step in seconds.
      * @return true if the step is finished.
      */
-    private boolean executeStep(RobotComponent robot, ProgramComponent program, Entity programStep, double dt) {
-        ProgramStepComponent step = programStep.getComponent(ProgramStepComponent.class);
-        Object stackTop = program.peekStack();
-
-        if(stackTop instanceof ProgramEventComponent event) {
-            return executeEvent(robot, program, event, programStep, dt);
+    private boolean executeInstruction(RobotComponent robot, Run run, CompiledProgram.Instruction instruction, double dt) {
+        if(instruction.action() instanceof ProgramEventComponent event) {
+            return executeEvent(run.gripper, event, dt);
         }
-        if(stackTop instanceof ProgramPathComponent path) {
-            return executePath(robot, program, path, programStep, dt);
+        if(instruction.action() instanceof ProgramPathComponent path) {
+            return executePath(robot, path, instruction.pose(), dt);
         }
         // TODO handle unrecognized component type.
         return true;
     }
 
-    private boolean executeEvent(RobotComponent robot, ProgramComponent program, ProgramEventComponent event, Entity programStep, double dt) {
-        RobotGripperComponent gripper = robot.getEntity().findFirstComponentRecursive(RobotGripperComponent.class);
+    private boolean executeEvent(RobotGripperComponent gripper, ProgramEventComponent event, double dt) {
         if(gripper==null) return true;  // no gripper, no action.
 
         switch (event.type.get()) {
@@ -222,13 +226,13 @@ public class ProgramExecutorSystem  implements EntitySystem {
     /**
      * A {@link ProgramPathComponent} is made of a series of {@link PoseComponent}s.
      * @param robot the robot to move.
-     * @param program the program that owns the path.
      * @param path the path to move.
+     * @param pathPose the pose to move to.
      * @param dt the time step in seconds.
      * @return true if the path is finished.
      */
-    private boolean executePath(RobotComponent robot, ProgramComponent program, ProgramPathComponent path, Entity programStep, double dt) {
-        PoseComponent pathPose = programStep.getComponent(PoseComponent.class);
+    private boolean executePath(RobotComponent robot, ProgramPathComponent path, PoseComponent pathPose, double dt) {
+        if(pathPose==null) return true;
 
         Matrix4d robotPose = robot.getEntity().getComponent(PoseComponent.class).getWorld();
         robotPose.invert();
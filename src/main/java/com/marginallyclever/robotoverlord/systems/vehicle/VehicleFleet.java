@@ -0,0 +1,385 @@
+package com.marginallyclever.robotoverlord.systems.vehicle;
+
+import com.marginallyclever.robotoverlord.components.vehicle.VehicleComponent;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * <p>{@link VehicleFleet} drives many vehicles on a flat floor without a scene.  The wheel layout and state of every
+ * vehicle are packed into arrays of primitives, one slot per vehicle, so thousands of vehicles can be stepped
+ * quickly.  The drive kinematics are the same as {@link VehicleSystem}.</p>
+ * <p>Each {@link #step(double)} moves every vehicle, in parallel chunks when the fleet is large.  Then, if
+ * collisions are on, vehicles are treated as circles and any two that overlap are pushed apart.  Pairs are found
+ * with a spatial hash grid, so only vehicles in neighbouring cells are compared.</p>
+ */
+public class VehicleFleet {
+    /**
+     * Vehicles moved by one task.
+     */
+    private static final int CHUNK_SIZE = 1024;
+    /**
+     * Below this many vehicles the work is done on one thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 4*CHUNK_SIZE;
+
+    private int size = 0;
+
+    // one per vehicle
+    private int [] type = new int[0];
+    private double [] x = new double[0];
+    private double [] y = new double[0];
+    private double [] heading = new double[0];
+    private double [] radius = new double[0];
+    private double [] forward = new double[0];
+    private double [] strafe = new double[0];
+    private double [] turn = new double[0];
+    private double [] wheelBase = new double[0];
+    private int [] wheelStart = new int[0];
+    private int [] wheelCount = new int[0];
+
+    // one per wheel
+    private int numWheels = 0;
+    private double [] wheelX = new double[0];
+    private double [] wheelY = new double[0];
+    private double [] wheelDiameter = new double[0];
+    private double [] wheelRPM = new double[0];
+
+    private boolean collisions = false;
+    private int separationIterations = 1;
+    private int numContacts = 0;
+
+    // broad phase, reused by every step.
+    private int [] cellX = new int[0];
+    private int [] cellY = new int[0];
+    private int [] cellHash = new int[0];
+    private int [] bucketStart = new int[0];
+    private int [] bucketOrder = new int[0];
+    private double [] pushX = new double[0];
+    private double [] pushY = new double[0];
+
+    /**
+     * @param wheelType one of the wheel types in {@link VehicleComponent}.
+     * @param x the position of the vehicle.
+     * @param y the position of the vehicle.
+     * @param heading the direction the vehicle faces, in radians counter-clockwise from +x.
+     * @param wheelX the position of each wheel relative to the middle of the vehicle.  +x is forward.
+     * @param wheelY the position of each wheel relative to the middle of the vehicle.  +y is left.
+     * @param wheelDiameter the diameter of each wheel.
+     * @return the index of the new vehicle.
+     */
+    public int add(int wheelType,double x,double y,double heading,double [] wheelX,double [] wheelY,double [] wheelDiameter) {
+        int n = wheelX.length;
+        if(wheelY.length!=n || wheelDiameter.length!=n) throw new IllegalArgumentException("wheel arrays must be the same length.");
+        if(size==type.length) growVehicles(Math.max(16,size*2));
+        if(numWheels+n>this.wheelX.length) growWheels(Math.max(Math.max(64,numWheels*2),numWheels+n));
+
+        int i = size++;
+        type[i] = wheelType;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.heading[i] = heading;
+        forward[i] = 0;
+        strafe[i] = 0;
+        turn[i] = 0;
+        wheelStart[i] = numWheels;
+        wheelCount[i] = n;
+
+        double r = 0;
+        for(int k=0;k<n;++k) {
+            this.wheelX[numWheels+k] = wheelX[k];
+            this.wheelY[numWheels+k] = wheelY[k];
+            this.wheelDiameter[numWheels+k] = wheelDiameter[k];
+            wheelRPM[numWheels+k] = 0;
+            r = Math.max(r,Math.hypot(wheelX[k],wheelY[k]) + wheelDiameter[k]/2);
+        }
+        radius[i] = r;
+        // the first wheel is the front and the last wheel is the back.
+        wheelBase[i] = (n<2) ? 0 : Math.hypot(wheelX[n-1]-wheelX[0],wheelY[n-1]-wheelY[0]);
+        numWheels += n;
+        return i;
+    }
+
+    private void growVehicles(int capacity) {
+        type = Arrays.copyOf(type,capacity);
+        x = Arrays.copyOf(x,capacity);
+        y = Arrays.copyOf(y,capacity);
+        heading = Arrays.copyOf(heading,capacity);
+        radius = Arrays.copyOf(radius,capacity);
+        forward = Arrays.copyOf(forward,capacity);
+        strafe = Arrays.copyOf(strafe,capacity);
+        turn = Arrays.copyOf(turn,capacity);
+        wheelBase = Arrays.copyOf(wheelBase,capacity);
+        wheelStart = Arrays.copyOf(wheelStart,capacity);
+        wheelCount = Arrays.copyOf(wheelCount,capacity);
+    }
+
+    private void growWheels(int capacity) {
+        wheelX = Arrays.copyOf(wheelX,capacity);
+        wheelY = Arrays.copyOf(wheelY,capacity);
+        wheelDiameter = Arrays.copyOf(wheelDiameter,capacity);
+        wheelRPM = Arrays.copyOf(wheelRPM,capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        numWheels = 0;
+    }
+
+    /**
+     * Same units as {@link VehicleComponent}.
+     * @param index the vehicle.
+     * @param forward cm/s
+     * @param strafe cm/s
+     * @param turn degrees per second, or the steering angle in degrees for {@link VehicleComponent#WHEEL_NORMAL}.
+     */
+    public void setVelocity(int index,double forward,double strafe,double turn) {
+        this.forward[index] = forward;
+        this.strafe[index] = strafe;
+        this.turn[index] = turn;
+    }
+
+    public void setPose(int index,double x,double y,double heading) {
+        this.x[index] = x;
+        this.y[index] = y;
+        this.heading[index] = heading;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    /**
+     * @return radians counter-clockwise from +x.
+     */
+    public double getHeading(int index) {
+        return heading[index];
+    }
+
+    /**
+     * @return the radius of the circle around the vehicle used for collisions.
+     */
+    public double getRadius(int index) {
+        return radius[index];
+    }
+
+    public int getNumWheels(int index) {
+        return wheelCount[index];
+    }
+
+    /**
+     * @return the speed of one wheel found by the last {@link #step(double)}.
+     */
+    public double getWheelRPM(int index,int wheel) {
+        return wheelRPM[wheelStart[index]+wheel];
+    }
+
+    /**
+     * @param collisions true to push apart vehicles that overlap.
+     */
+    public void setCollisions(boolean collisions) {
+        this.collisions = collisions;
+    }
+
+    /**
+     * @param iterations the number of times overlapping vehicles are pushed apart each step.  More is slower but
+     *                   settles crowds better.
+     */
+    public void setSeparationIterations(int iterations) {
+        this.separationIterations = iterations;
+    }
+
+    /**
+     * @return the number of overlapping pairs found in the last {@link #step(double)}.
+     */
+    public int getNumContacts() {
+        return numContacts;
+    }
+
+    /**
+     * Move every vehicle forward in time.
+     * @param dt seconds.
+     */
+    public void step(double dt) {
+        int chunks = (size+CHUNK_SIZE-1)/CHUNK_SIZE;
+        IntStream range = IntStream.range(0,chunks);
+        if(size >= PARALLEL_THRESHOLD) range = range.parallel();
+        range.forEach(c -> {
+            int end = Math.min(size,(c+1)*CHUNK_SIZE);
+            for(int i=c*CHUNK_SIZE;i<end;++i) integrate(i,dt);
+        });
+
+        numContacts = 0;
+        if(collisions) {
+            for(int i=0;i<separationIterations;++i) numContacts += separate();
+        }
+    }
+
+    /**
+     * Set the wheel speeds of one vehicle and move it.  Only touches the slots of that vehicle.
+     */
+    private void integrate(int i,double dt) {
+        double f = forward[i];
+        double s = strafe[i];
+        double w;
+        int start = wheelStart[i];
+        int n = wheelCount[i];
+
+        switch(type[i]) {
+            case VehicleComponent.WHEEL_DIFFERENTIAL -> {
+                // wheel 0 is left and wheel 1 is right.
+                w = Math.toRadians(turn[i]);
+                s = 0;
+                if(n>=2) {
+                    double d0 = Math.hypot(wheelX[start],wheelY[start]);
+                    double d1 = Math.hypot(wheelX[start+1],wheelY[start+1]);
+                    wheelRPM[start  ] = getRPMFromWheelVelocity(f + w*d0,wheelDiameter[start  ]);
+                    wheelRPM[start+1] = getRPMFromWheelVelocity(f - w*d1,wheelDiameter[start+1]);
+                }
+            }
+            case VehicleComponent.WHEEL_OMNI -> {
+                // wheels evenly spaced around the middle.
+                w = Math.toRadians(turn[i]);
+                for(int k=0;k<n;++k) {
+                    int j = start+k;
+                    double angle = 2.0*Math.PI*k/n;
+                    double d = Math.hypot(wheelX[j],wheelY[j]);
+                    double vWheel = -f*Math.sin(angle) + s*Math.cos(angle) + d*w;
+                    wheelRPM[j] = getRPMFromWheelVelocity(-vWheel,wheelDiameter[j]);
+                }
+            }
+            case VehicleComponent.WHEEL_MECANUM -> {
+                w = Math.toRadians(turn[i]);
+                for(int k=0;k<n;++k) {
+                    int j = start+k;
+                    int orientation = (k%2==0) ? 1 : -1;
+                    double reach = Math.abs(wheelX[j]) + Math.abs(wheelY[j]);
+                    double vWheel = f + orientation*s + ((k<2) ? -1 : 1)*reach*w;
+                    wheelRPM[j] = getRPMFromWheelVelocity(vWheel,wheelDiameter[j]);
+                }
+            }
+            default -> {
+                // front wheel steering.  turn is the angle of the front wheels.
+                s = 0;
+                double steer = Math.toRadians(turn[i]);
+                w = (wheelBase[i]>0) ? f*Math.tan(steer)/wheelBase[i] : 0;
+                for(int j=start;j<start+n;++j) wheelRPM[j] = getRPMFromWheelVelocity(f,wheelDiameter[j]);
+            }
+        }
+
+        // turn first, then move along the new heading.
+        double h = heading[i] + w*dt;
+        heading[i] = h;
+        double c = Math.cos(h);
+        double sn = Math.sin(h);
+        x[i] += (c*f - sn*s)*dt;
+        y[i] += (sn*f + c*s)*dt;
+    }
+
+    /**
+     * @param linearVelocityPerSecond the linear velocity of the wheel in units per second
+     * @param wheelDiameter the diameter of the wheel in units
+     * @return the revolutions per minute of the wheel
+     */
+    static double getRPMFromWheelVelocity(double linearVelocityPerSecond, double wheelDiameter) {
+        return (linearVelocityPerSecond / (Math.PI * wheelDiameter)) * 60.0;
+    }
+
+    /**
+     * Push apart every pair of vehicles that overlap.  Each vehicle of a pair moves half the overlap.
+     * @return the number of pairs.
+     */
+    private int separate() {
+        if(size<2) return 0;
+        double maxRadius = 0;
+        for(int i=0;i<size;++i) maxRadius = Math.max(maxRadius,radius[i]);
+        if(maxRadius<=0) return 0;
+        // any two vehicles that touch are in the same or neighbouring cells.
+        double cellSize = 2*maxRadius;
+
+        int tableSize = Integer.highestOneBit(size*2-1)<<1;
+        int mask = tableSize-1;
+        if(cellX.length<size) {
+            cellX = new int[type.length];
+            cellY = new int[type.length];
+            cellHash = new int[type.length];
+            bucketOrder = new int[type.length];
+            pushX = new double[type.length];
+            pushY = new double[type.length];
+        }
+        if(bucketStart.length<tableSize+1) bucketStart = new int[tableSize+1];
+        Arrays.fill(bucketStart,0,tableSize+1,0);
+
+        // counting sort by cell.
+        for(int i=0;i<size;++i) {
+            cellX[i] = (int)Math.floor(x[i]/cellSize);
+            cellY[i] = (int)Math.floor(y[i]/cellSize);
+            cellHash[i] = hash(cellX[i],cellY[i]) & mask;
+            bucketStart[cellHash[i]+1]++;
+        }
+        for(int b=0;b<tableSize;++b) bucketStart[b+1] += bucketStart[b];
+        int [] fill = Arrays.copyOf(bucketStart,tableSize);
+        for(int i=0;i<size;++i) bucketOrder[fill[cellHash[i]]++] = i;
+
+        Arrays.fill(pushX,0,size,0);
+        Arrays.fill(pushY,0,size,0);
+        int pairs = 0;
+        for(int i=0;i<size;++i) {
+            for(int dy=-1;dy<=1;++dy) {
+                for(int dx=-1;dx<=1;++dx) {
+                    int cx = cellX[i]+dx;
+                    int cy = cellY[i]+dy;
+                    int b = hash(cx,cy) & mask;
+                    for(int k=bucketStart[b];k<bucketStart[b+1];++k) {
+                        int j = bucketOrder[k];
+                        // each pair once, and skip other cells that share this bucket.
+                        if(j<=i || cellX[j]!=cx || cellY[j]!=cy) continue;
+                        if(push(i,j)) pairs++;
+                    }
+                }
+            }
+        }
+        for(int i=0;i<size;++i) {
+            x[i] += pushX[i];
+            y[i] += pushY[i];
+        }
+        return pairs;
+    }
+
+    private boolean push(int i,int j) {
+        double r = radius[i]+radius[j];
+        double ex = x[j]-x[i];
+        double ey = y[j]-y[i];
+        double d2 = ex*ex + ey*ey;
+        if(d2>=r*r) return false;
+
+        double d = Math.sqrt(d2);
+        double nx, ny;
+        if(d<1e-9) {
+            // on top of each other.  Any direction will do, as long as it is always the same.
+            nx = 1;
+            ny = 0;
+        } else {
+            nx = ex/d;
+            ny = ey/d;
+        }
+        double half = (r-d)/2;
+        pushX[i] -= nx*half;
+        pushY[i] -= ny*half;
+        pushX[j] += nx*half;
+        pushY[j] += ny*half;
+        return true;
+    }
+
+    private static int hash(int cx,int cy) {
+        return (cx*73856093) ^ (cy*19349663);
+    }
+}
@@ -18,6 +18,7 @@ import com.marginallyclever.robotoverlord.systems.EntitySystemUtils;
 import javax.swing.*;
 import javax.vecmath.Matrix4d;
 import javax.vecmath.Vector3d;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -29,9 +30,75 @@ import java.util.List;
  */
 public class VehicleSystem implements EntitySystem {
     private final EntityManager entityManager;
+    private boolean fleetMode = false;
+    private final VehicleFleet fleet = new VehicleFleet();
+    // the vehicles packed into the fleet, in the same order.
+    private final List<FleetMember> members = new ArrayList<>();
+    private long sceneVersion = 0;
+    private long packedVersion = -1;
+    private final Matrix4d scratch = new Matrix4d();
+
+    /**
+     * A vehicle in the fleet and the parts of the scene it drives.
+     */
+    private static class FleetMember {
+        final VehicleComponent car;
+        final PoseComponent pose;
+        // the pose of the car when it was packed or last moved by hand, without the translation.
+        final Matrix4d rotation = new Matrix4d();
+        double heading;
+        double z;
+        // the world pose of the car after the last update, to notice when it is moved by hand.
+        final Matrix4d written = new Matrix4d();
+        final MotorComponent [] drives;
+        final ServoComponent [] steers;
+
+        FleetMember(VehicleComponent car,PoseComponent pose,MotorComponent [] drives,ServoComponent [] steers) {
+            this.car = car;
+            this.pose = pose;
+            this.drives = drives;
+            this.steers = steers;
+        }
+
+        /**
+         * Start from a new world pose.
+         */
+        void setWorld(Matrix4d world) {
+            written.set(world);
+            heading = Math.atan2(world.m10, world.m00);
+            z = world.m23;
+            rotation.set(world);
+            rotation.m03 = 0;
+            rotation.m13 = 0;
+            rotation.m23 = 0;
+        }
+    }
 
     public VehicleSystem(EntityManager entityManager) {
         this.entityManager = entityManager;
+        entityManager.addListener((event)-> sceneVersion++);
+    }
+
+    /**
+     * <p>In fleet mode every vehicle is packed into one {@link VehicleFleet} and stepped together, instead of
+     * looking up its wheels and motors every update.  The fleet is packed again when the scene changes.</p>
+     * <p>A vehicle moved by hand while fleet mode is on carries on from where it was put.</p>
+     * @param fleetMode true to turn on fleet mode.
+     */
+    public void setFleetMode(boolean fleetMode) {
+        this.fleetMode = fleetMode;
+        packedVersion = -1;
+    }
+
+    public boolean getFleetMode() {
+        return fleetMode;
+    }
+
+    /**
+     * @return the fleet used in fleet mode.  Use it to turn on collisions.
+     */
+    public VehicleFleet getFleet() {
+        return fleet;
     }
 
     /**
@@ -78,6 +145,11 @@ public class VehicleSystem implements EntitySystem {
      */
     @Override
     public void update(double dt) {
+        if(fleetMode) {
+            updateFleet(dt);
+            return;
+        }
+
         List<Entity> list = new LinkedList<>(entityManager.getEntities());
         while (!list.isEmpty()) {
             Entity e = list.remove(0);
@@ -88,6 +160,116 @@ public class VehicleSystem implements EntitySystem {
         }
     }
 
+    private void updateFleet(double dt) {
+        if(packedVersion!=sceneVersion) packFleet();
+
+        for(int i=0;i<members.size();++i) {
+            FleetMember member = members.get(i);
+            member.pose.getWorld(scratch);
+            if(!scratch.equals(member.written)) {
+                member.setWorld(scratch);
+                fleet.setPose(i, scratch.m03, scratch.m13, member.heading);
+            }
+
+            VehicleComponent car = member.car;
+            if(car.getEnabled()) {
+                fleet.setVelocity(i, car.forwardVelocity.get(), car.strafeVelocity.get(), car.turnVelocity.get());
+            } else {
+                fleet.setVelocity(i, 0, 0, 0);
+            }
+        }
+
+        fleet.step(dt);
+
+        for(int i=0;i<members.size();++i) {
+            FleetMember member = members.get(i);
+            scratch.rotZ(fleet.getHeading(i) - member.heading);
+            scratch.mul(member.rotation);
+            scratch.m03 = fleet.getX(i);
+            scratch.m13 = fleet.getY(i);
+            scratch.m23 = member.z;
+            member.pose.setWorld(scratch);
+            // setWorld rounds the pose through Euler angles, so remember what it became.
+            member.pose.getWorld(member.written);
+
+            if(!member.car.getEnabled()) continue;
+            int type = member.car.wheelType.get();
+            for(int w=0;w<member.drives.length;++w) {
+                MotorComponent drive = member.drives[w];
+                if(drive!=null) {
+                    double rpm = fleet.getWheelRPM(i,w);
+                    if(type==VehicleComponent.WHEEL_OMNI || type==VehicleComponent.WHEEL_MECANUM) drive.setCurrentRPM(rpm);
+                    else drive.setDesiredRPM(rpm);
+                }
+                if(type==VehicleComponent.WHEEL_NORMAL && member.steers[w]!=null) member.steers[w].desiredAngle.set(member.car.turnVelocity.get());
+            }
+        }
+    }
+
+    /**
+     * Find every vehicle with wheels and put it in the fleet.
+     */
+    private void packFleet() {
+        packedVersion = sceneVersion;
+        fleet.clear();
+        members.clear();
+
+        List<Entity> list = new ArrayList<>(entityManager.getEntities());
+        for(int i=0;i<list.size();++i) {
+            Entity e = list.get(i);
+            list.addAll(e.getChildren());
+            VehicleComponent car = e.getComponent(VehicleComponent.class);
+            if(car!=null) packCar(car);
+        }
+    }
+
+    private void packCar(VehicleComponent car) {
+        PoseComponent carPose = car.getEntity().getComponent(PoseComponent.class);
+        if(carPose==null) return;
+
+        List<Double> xs = new ArrayList<>();
+        List<Double> ys = new ArrayList<>();
+        List<Double> diameters = new ArrayList<>();
+        List<MotorComponent> drives = new ArrayList<>();
+        List<ServoComponent> steers = new ArrayList<>();
+        for (ReferenceParameter wheelRef : car.wheels) {
+            if(wheelRef.get()==null || wheelRef.get().isEmpty()) continue;
+            Entity wheelEntity = entityManager.findEntityByUniqueID(wheelRef.get());
+            if(wheelEntity==null) continue;
+            WheelComponent wheel = wheelEntity.getComponent(WheelComponent.class);
+            PoseComponent wheelPose = wheelEntity.getComponent(PoseComponent.class);
+            if(wheel==null || wheelPose==null) continue;
+
+            Vector3d local = MatrixHelper.getPosition(wheelPose.getLocal());
+            xs.add(local.x);
+            ys.add(local.y);
+            diameters.add(wheel.diameter.get());
+            drives.add(findComponent(wheel.drive.get(),MotorComponent.class));
+            steers.add(findComponent(wheel.steer.get(),ServoComponent.class));
+        }
+        if(xs.isEmpty()) return;  // nothing to do
+
+        FleetMember member = new FleetMember(car, carPose,
+                drives.toArray(new MotorComponent[0]), steers.toArray(new ServoComponent[0]));
+        Matrix4d world = carPose.getWorld();
+        member.setWorld(world);
+        fleet.add(car.wheelType.get(), world.m03, world.m13, member.heading,
+                toArray(xs), toArray(ys), toArray(diameters));
+        members.add(member);
+    }
+
+    private <T extends Component> T findComponent(String uniqueID,Class<T> type) {
+        if(uniqueID==null || uniqueID.isEmpty()) return null;
+        Entity entity = entityManager.findEntityByUniqueID(uniqueID);
+        return (entity==null) ? null : entity.getComponent(type);
+    }
+
+    private static double [] toArray(List<Double> list) {
+        double [] result = new double[list.size()];
+        for(int i=0;i<result.length;++i) result[i] = list.get(i);
+        return result;
+    }
+
     private void updateCar(VehicleComponent car, double dt) {
         if(!car.getEnabled()) return;
         if(car.wheels.isEmpty()) return;  // nothing to do
@@ -191,7 +191,7 @@ public class SelectionTool extends MouseAdapter implements EditorTool {
         if(rayHit == null) return null;
 
         setPickPoint(ray,rayHit);
-        return rayHit.target.getEntity();
+        return rayHit.getEntity();
     }
 
     private void createPickPoint() {
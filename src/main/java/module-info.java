@@ -20,6 +20,8 @@ module com.marginallyclever.robotoverlord {
 	requires com.formdev.flatlaf;
 	requires com.github.weisj.jsvg;
 	requires org.reflections;
+	// only to compile the class index processor.
+	requires static java.compiler;
 	
 	requires vecmath;
 	requires jsch;
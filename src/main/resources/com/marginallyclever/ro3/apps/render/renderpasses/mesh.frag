@@ -4,6 +4,7 @@ out vec4 finalColor;
 
 in VS_OUT {
     vec4 fragmentColor;
+    vec4 instanceColor;
     vec3 normalVector;
     vec3 fragmentPosition;
     vec2 textureCoord;
@@ -53,7 +54,7 @@ float ShadowCalculation(vec4 fragPosLightSpace,vec3 normal,vec3 lightDir) {
 }
 
 void main() {
-    vec4 diffuseColor = objectColor;
+    vec4 diffuseColor = objectColor * fs_in.instanceColor;
     if(useVertexColor) diffuseColor *= fs_in.fragmentColor;
     if(useTexture) diffuseColor *= texture(diffuseTexture, fs_in.textureCoord);
 
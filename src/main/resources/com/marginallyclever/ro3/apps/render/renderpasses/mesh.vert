@@ -4,10 +4,12 @@ layout(location = 0) in vec3 aPosition;
 layout(location = 1) in vec3 aNormal;
 layout(location = 2) in vec4 aColor;
 layout(location = 3) in vec2 aTexture;
+// per instance
+layout(location = 4) in mat4 aModelMatrix;  // uses locations 4-7
+layout(location = 8) in vec4 aInstanceColor;
 
 uniform mat4 projectionMatrix;
 uniform mat4 viewMatrix;
-uniform mat4 modelMatrix;
 
 uniform mat4 lightSpaceMatrix;
 uniform mat4 lightViewMatrix;
@@ -15,6 +17,7 @@ uniform mat4 lightProjectionMatrix;
 
 out VS_OUT {
     vec4 fragmentColor;
+    vec4 instanceColor;
     vec3 normalVector;
     vec3 fragmentPosition;
     vec2 textureCoord;
@@ -22,11 +25,12 @@ out VS_OUT {
 } vs_out;
 
 void main() {
-    vec3 worldPose = vec3(modelMatrix * vec4(aPosition, 1.0));
+    vec3 worldPose = vec3(aModelMatrix * vec4(aPosition, 1.0));
     gl_Position = projectionMatrix * viewMatrix * vec4(worldPose,1);
 
     vs_out.fragmentColor = aColor;
-    vs_out.normalVector = transpose(inverse(mat3(modelMatrix))) * aNormal;
+    vs_out.instanceColor = aInstanceColor;
+    vs_out.normalVector = transpose(inverse(mat3(aModelMatrix))) * aNormal;
     vs_out.fragmentPosition = worldPose;
     vs_out.textureCoord = aTexture;
     //vs_out.fragPosLightSpace = lightSpaceMatrix * vec4(worldPose,1);
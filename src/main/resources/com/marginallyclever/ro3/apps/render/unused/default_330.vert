@@ -4,10 +4,12 @@ layout(location = 0) in vec3 aPosition;
 layout(location = 1) in vec3 aNormal;
 layout(location = 2) in vec4 aColor;
 layout(location = 3) in vec2 aTexture;
+layout(location = 4) in mat4 aModelMatrix;  // per instance, when useInstancing is set.
 
 uniform mat4 projectionMatrix;
 uniform mat4 viewMatrix;
 uniform mat4 modelMatrix;
+uniform int useInstancing;
 
 out vec4 fragmentColor;
 out vec3 normalVector;
@@ -15,11 +17,12 @@ out vec3 fragmentPosition;
 out vec2 textureCoord;
 
 void main() {
-    vec4 worldPose = modelMatrix * vec4(aPosition, 1.0);
+    mat4 model = (useInstancing==1) ? aModelMatrix : modelMatrix;
+    vec4 worldPose = model * vec4(aPosition, 1.0);
     gl_Position = projectionMatrix * viewMatrix * worldPose;
 
     fragmentColor = aColor;
-    normalVector = mat3(transpose(inverse(modelMatrix))) * aNormal;
+    normalVector = mat3(transpose(inverse(model))) * aNormal;
     fragmentPosition = vec3(worldPose);
     textureCoord = aTexture;
 }
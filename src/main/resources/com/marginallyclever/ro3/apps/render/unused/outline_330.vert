@@ -4,15 +4,18 @@ layout(location = 0) in vec3 aPosition;
 layout(location = 1) in vec3 aNormal;
 layout(location = 2) in vec4 aColor;
 layout(location = 3) in vec2 aTexture;
+layout(location = 4) in mat4 aModelMatrix;  // per instance, when useInstancing is set.
 
 uniform mat4 projectionMatrix;
 uniform mat4 viewMatrix;
 uniform mat4 modelMatrix;
+uniform int useInstancing;
 
 uniform float outlineSize;
 
 void main() {
+    mat4 model = (useInstancing==1) ? aModelMatrix : modelMatrix;
     vec3 offsetPosition = aPosition + aNormal * outlineSize;
-    vec4 worldPose = modelMatrix * vec4(offsetPosition, 1.0);
+    vec4 worldPose = model * vec4(offsetPosition, 1.0);
     gl_Position = projectionMatrix * viewMatrix * worldPose;
 }
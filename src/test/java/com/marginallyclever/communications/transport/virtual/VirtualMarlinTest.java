@@ -0,0 +1,230 @@
+package com.marginallyclever.communications.transport.virtual;
+
+import com.marginallyclever.communications.session.SessionLayerEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class VirtualMarlinTest {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualMarlinTest.class);
+
+    private final List<String> heard = new ArrayList<>();
+    private final VirtualMarlin marlin = new VirtualMarlin("XYZ", heard::add);
+
+    private static String numbered(long n, String command) {
+        String line = "N" + n + " " + command;
+        return line + "*" + VirtualMarlin.getChecksum(line);
+    }
+
+    @Test
+    public void okAndM114() {
+        marlin.receive(numbered(1, "G0 X10 Y20"));
+        marlin.receive("M114");
+        Assertions.assertEquals(List.of("ok", "X:10 Y:20 Z:0 Count X:0 Y:0 Z:0", "ok"), heard);
+        marlin.advance(1);
+        heard.clear();
+        marlin.receive(numbered(2, "M114"));
+        Assertions.assertEquals(List.of("X:10 Y:20 Z:0 Count X:1000 Y:2000 Z:0", "ok"), heard);
+        Assertions.assertEquals(2, marlin.getLastLine());
+    }
+
+    @Test
+    public void badChecksumAsksForResend() {
+        marlin.receive(numbered(1, "G0 X1"));
+        heard.clear();
+        marlin.receive("N2 G0 X2*0");
+        Assertions.assertEquals(List.of("Error:checksum mismatch, Last Line: 1", "Resend: 2", "ok"), heard);
+        heard.clear();
+        marlin.receive(numbered(3, "G0 X3"));
+        Assertions.assertEquals(List.of("Error:Line Number is not Last Line Number+1, Last Line: 1", "Resend: 2", "ok"), heard);
+        Assertions.assertEquals(2, marlin.getResendsRequested());
+        Assertions.assertEquals(1, marlin.getPosition()[0]);
+    }
+
+    /**
+     * A line with a character over 127 has a checksum over 127.  Marlin reads it unsigned, but some senders print
+     * the same byte signed.
+     */
+    @Test
+    public void checksumOver127() {
+        String line = "N1 M117 \u00e9";
+        int checksum = VirtualMarlin.getChecksum(line);
+        Assertions.assertTrue(checksum >= 128, "checksum " + checksum);
+        marlin.receive(line + "*" + checksum);
+        Assertions.assertEquals(1, marlin.getLastLine());
+
+        line = "N2 M117 \u00e9";
+        marlin.receive(line + "*" + (byte) VirtualMarlin.getChecksum(line));
+        Assertions.assertEquals(2, marlin.getLastLine());
+        Assertions.assertEquals(0, marlin.getResendsRequested());
+    }
+
+    @Test
+    public void fullPlannerHoldsBackOk() {
+        marlin.setPlannerDepth(2);
+        marlin.setSegmentTime(1);
+        marlin.receive("G0 X1");
+        marlin.receive("G0 X2");
+        marlin.receive("G0 X3");
+        Assertions.assertEquals(List.of("ok", "ok"), heard);
+        marlin.advance(2.5);
+        // the third move waited one second for room in the planner, then was busy for less than two.
+        Assertions.assertEquals(List.of("ok", "ok", "ok"), heard);
+
+        marlin.receive("G0 X4");
+        marlin.receive("G0 X5");
+        marlin.advance(0.4);
+        Assertions.assertEquals(List.of("ok", "ok", "ok", "ok"), heard);
+        marlin.setBusyInterval(0.25);
+        marlin.receive("G0 X6");
+        heard.clear();
+        marlin.advance(0.3);
+        // X3 finished at 3s, X5 went into the planner and X6 began to wait.
+        Assertions.assertEquals(List.of("ok"), heard);
+        marlin.advance(0.1);
+        Assertions.assertEquals(List.of("ok", VirtualMarlin.STR_BUSY), heard);
+    }
+
+    @Test
+    public void m400WaitsForMoves() {
+        marlin.setSegmentTime(0.5);
+        marlin.receive("G1 X1 F60");
+        marlin.receive("M400");
+        Assertions.assertEquals(List.of("ok"), heard);
+        marlin.advance(0.9);
+        Assertions.assertEquals(List.of("ok"), heard);
+        marlin.advance(0.2);
+        Assertions.assertEquals(List.of("ok", "ok"), heard);
+        Assertions.assertTrue(marlin.isIdle());
+    }
+
+    @Test
+    public void overflowIsLost() {
+        marlin.setCommandQueueDepth(1);
+        marlin.setPlannerDepth(1);
+        marlin.setSegmentTime(1);
+        marlin.receive(numbered(1, "G0 X1"));
+        marlin.receive(numbered(2, "G0 X2"));
+        marlin.receive(numbered(3, "G0 X3"));
+        Assertions.assertEquals(1, marlin.getLinesLost());
+        marlin.advance(1);
+        heard.clear();
+        marlin.receive(numbered(4, "G0 X4"));
+        Assertions.assertEquals("Resend: 3", heard.get(1));
+    }
+
+    @Test
+    public void m112Kills() {
+        marlin.receive("G0 X1");
+        marlin.receive("M112");
+        Assertions.assertTrue(marlin.isKilled());
+        heard.clear();
+        marlin.receive("G0 X2");
+        Assertions.assertTrue(heard.isEmpty());
+        marlin.reset();
+        Assertions.assertFalse(marlin.isKilled());
+        Assertions.assertEquals(0, marlin.getPosition()[0]);
+    }
+
+    @Test
+    public void onlyTheCommandWordKills() {
+        marlin.receive("M1120");
+        marlin.receive("G0 X1 ; M112");
+        marlin.receive(numbered(1, "M1120"));
+        Assertions.assertFalse(marlin.isKilled());
+        marlin.receive(numbered(2, "M112"));
+        Assertions.assertTrue(marlin.isKilled());
+    }
+
+    /**
+     * The output is called without the lock held, so it can wait for another thread that uses the controller.
+     */
+    @Test
+    public void outputMayWaitOnAnotherThread() throws Exception {
+        List<String> said = new ArrayList<>();
+        VirtualMarlin[] self = new VirtualMarlin[1];
+        self[0] = new VirtualMarlin("XYZ", line -> {
+            said.add(line);
+            Thread other = new Thread(() -> self[0].getClock());
+            other.start();
+            try {
+                other.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Assertions.assertFalse(other.isAlive());
+        });
+        self[0].receive("G0 X1");
+        self[0].receive("M114");
+        Assertions.assertEquals(List.of("ok", "X:1 Y:0 Z:0 Count X:0 Y:0 Z:0", "ok"), said);
+    }
+
+    /**
+     * Stream many numbered lines the way MarlinPresentation does: no more unanswered lines than the controller can
+     * queue, and start again from the line in any "Resend".  Some lines are sent with a bad checksum the first time.
+     */
+    @Test
+    public void streamWithErrors() {
+        final int total = 20000;
+        Set<Integer> corrupt = Set.of(7, 500, 501, 9999, total);
+        Set<Integer> corrupted = new java.util.HashSet<>();
+        marlin.setSegmentTime(0.001);
+
+        int credits = marlin.getCommandQueueDepth();
+        int next = 1;
+        int heardSoFar = 0;
+        long start = System.nanoTime();
+        while (next <= total || !marlin.isIdle()) {
+            while (credits > 0 && next <= total) {
+                String line = numbered(next, "G1 X" + next);
+                if (corrupt.contains(next) && corrupted.add(next)) line = line.substring(0, line.indexOf('*')) + "*0";
+                credits--;
+                next++;
+                marlin.receive(line);
+            }
+            for (; heardSoFar < heard.size(); ++heardSoFar) {
+                String s = heard.get(heardSoFar);
+                if (s.startsWith(VirtualMarlin.STR_OK)) credits++;
+                else if (s.startsWith(VirtualMarlin.STR_RESEND)) next = Integer.parseInt(s.substring(VirtualMarlin.STR_RESEND.length()));
+            }
+            if (credits == 0 || next > total) marlin.advance(0.001);
+        }
+        double seconds = (System.nanoTime() - start) * 1e-9;
+        logger.info("{} lines in {}s, {} lines/s", total, seconds, total / seconds);
+
+        Assertions.assertEquals(total, marlin.getLastLine());
+        Assertions.assertEquals(total, marlin.getSegmentsFinished());
+        Assertions.assertEquals(total, marlin.getPosition()[0]);
+        Assertions.assertTrue(marlin.getResendsRequested() >= corrupt.size());
+        Assertions.assertEquals(0, marlin.getLinesLost());
+    }
+
+    @Test
+    public void session() throws Exception {
+        VirtualTransportLayer layer = new VirtualTransportLayer();
+        layer.setTimeScale(0);
+        VirtualMarlinSession session = (VirtualMarlinSession) layer.openConnection("test");
+        Assertions.assertNotNull(session);
+        Assertions.assertTrue(session.isOpen());
+        // let the "start" from opening the connection go by first.
+        SwingUtilities.invokeAndWait(() -> {});
+
+        List<String> received = new ArrayList<>();
+        session.addListener(evt -> {
+            if (evt.flag == SessionLayerEvent.DATA_AVAILABLE) received.add(((String) evt.data).trim());
+        });
+        session.sendMessage("G0 X5\nM1");
+        session.sendMessage("14\n");
+        SwingUtilities.invokeAndWait(() -> {});
+        Assertions.assertEquals(List.of("ok", "X:5 Y:0 Z:0 U:0 V:0 W:0 Count X:0 Y:0 Z:0 U:0 V:0 W:0", "ok"), received);
+
+        session.closeConnection();
+        Assertions.assertFalse(session.isOpen());
+    }
+}
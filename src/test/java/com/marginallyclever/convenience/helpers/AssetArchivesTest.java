@@ -0,0 +1,103 @@
+package com.marginallyclever.convenience.helpers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class AssetArchivesTest {
+    private final List<File> files = new ArrayList<>();
+
+    @AfterEach
+    public void cleanup() {
+        AssetArchives.closeAll();
+        AssetArchives.setMaxOpen(AssetArchives.DEFAULT_MAX_OPEN);
+        for(File f : files) f.delete();
+    }
+
+    private File createZip(byte[] stored, byte[] deflated) throws IOException {
+        File f = File.createTempFile("assets", ".zip");
+        files.add(f);
+        try(ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(f))) {
+            ZipEntry entry = new ZipEntry("scene/stored.bin");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            CRC32 crc = new CRC32();
+            crc.update(stored);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(stored);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("scene/deflated.txt"));
+            zip.write(deflated);
+            zip.closeEntry();
+        }
+        return f;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(1234).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void readStoredAndDeflatedEntries() throws IOException {
+        byte[] stored = randomBytes(100000);
+        byte[] deflated = "hello world ".repeat(5000).getBytes(StandardCharsets.UTF_8);
+        File zip = createZip(stored, deflated);
+
+        try(InputStream in = FileHelper.open(zip.getAbsolutePath() + ":scene/stored.bin")) {
+            Assertions.assertArrayEquals(stored, in.readAllBytes());
+        }
+        try(InputStream in = FileHelper.open(zip.getAbsolutePath() + ":scene/deflated.txt")) {
+            Assertions.assertArrayEquals(deflated, in.readAllBytes());
+        }
+        // both reads used the same open archive.
+        Assertions.assertEquals(1, AssetArchives.getOpenCount());
+        Assertions.assertThrows(FileNotFoundException.class, () -> FileHelper.open(zip.getAbsolutePath() + ":missing.txt"));
+    }
+
+    @Test
+    public void leastRecentlyUsedArchivesAreClosed() throws IOException {
+        AssetArchives.setMaxOpen(2);
+        File a = createZip(randomBytes(10), randomBytes(10));
+        File b = createZip(randomBytes(10), randomBytes(10));
+        File c = createZip(randomBytes(10), randomBytes(10));
+
+        AssetArchive archiveA = AssetArchives.get(a.getAbsolutePath());
+        // a stream opened before the archive is closed can still be read.
+        InputStream stillOpen = archiveA.open("scene/deflated.txt");
+        AssetArchives.get(b.getAbsolutePath());
+        AssetArchives.get(c.getAbsolutePath());
+        Assertions.assertEquals(2, AssetArchives.getOpenCount());
+        Assertions.assertFalse(archiveA.isOpen());
+        Assertions.assertEquals(10, stillOpen.readAllBytes().length);
+        stillOpen.close();
+
+        Assertions.assertNotSame(archiveA, AssetArchives.get(a.getAbsolutePath()));
+    }
+
+    @Test
+    public void archiveClosesAfterTheLastStream() throws IOException {
+        File zip = createZip(randomBytes(10), randomBytes(10));
+        AssetArchive archive = AssetArchives.get(zip.getAbsolutePath());
+        InputStream in = archive.open("scene/stored.bin");
+        archive.close();
+        // still readable until the stream is closed.
+        Assertions.assertNotNull(archive.getEntry("scene/deflated.txt"));
+        Assertions.assertEquals(10, in.readAllBytes().length);
+        in.close();
+        Assertions.assertNull(archive.getEntry("scene/deflated.txt"));
+        Assertions.assertThrows(IOException.class, () -> archive.open("scene/deflated.txt"));
+    }
+}
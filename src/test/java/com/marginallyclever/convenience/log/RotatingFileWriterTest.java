@@ -0,0 +1,44 @@
+package com.marginallyclever.convenience.log;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class RotatingFileWriterTest {
+    /**
+     * Rotation is decided by bytes on disk, not characters.
+     */
+    @Test
+    public void testRotatesByEncodedSize() throws IOException {
+        Path dir = Files.createTempDirectory("rfw");
+        Path path = dir.resolve("spill.txt");
+        // five characters, fifteen bytes.
+        String line = "日本語日本";
+        int lineBytes = line.getBytes(StandardCharsets.UTF_8).length + System.lineSeparator().length();
+
+        RotatingFileWriter writer = new RotatingFileWriter(path, lineBytes*2, 2);
+        writer.write(line);
+        writer.write(line);
+        writer.flush();
+        Assertions.assertEquals(lineBytes*2, Files.size(path));
+        Assertions.assertFalse(Files.exists(dir.resolve("spill.txt.1")));
+
+        // the limit has been reached, so the next line starts a new file.
+        writer.write(line);
+        writer.close();
+        Assertions.assertEquals(lineBytes, Files.size(path));
+        Assertions.assertEquals(lineBytes*2, Files.size(dir.resolve("spill.txt.1")));
+    }
+
+    @Test
+    public void testSharedWriterIsOnePerFile() throws IOException {
+        Path dir = Files.createTempDirectory("rfw");
+        RotatingFileWriter a = RotatingFileWriter.getShared(dir.resolve("a.txt"));
+        Assertions.assertSame(a, RotatingFileWriter.getShared(dir.resolve("a.txt")));
+        Assertions.assertNotSame(a, RotatingFileWriter.getShared(dir.resolve("b.txt")));
+    }
+}
@@ -0,0 +1,99 @@
+package com.marginallyclever.convenience.swing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BoundedListModelTest {
+    @Test
+    public void testOfferIsQueuedUntilFlush() {
+        BoundedListModel<String> model = new BoundedListModel<>(5,100);
+        model.offer("a");
+        model.offer("b");
+        Assertions.assertEquals(0, model.getSize());
+        model.flush();
+        Assertions.assertEquals(2, model.getSize());
+        Assertions.assertEquals("a", model.getElementAt(0));
+        Assertions.assertEquals("b", model.getElementAt(1));
+    }
+
+    @Test
+    public void testOldestAreEvictedToSpill() {
+        BoundedListModel<Integer> model = new BoundedListModel<>(3,100);
+        List<Integer> spilled = new ArrayList<>();
+        model.setSpill(spilled::add);
+        for(int i=0;i<5;++i) model.offer(i);
+        model.flush();
+        Assertions.assertEquals(3, model.getSize());
+        Assertions.assertEquals(2, (int)model.getElementAt(0));
+        Assertions.assertEquals(4, (int)model.getElementAt(2));
+        Assertions.assertEquals(List.of(0,1), spilled);
+
+        model.offer(5);
+        model.flush();
+        Assertions.assertEquals(3, (int)model.getElementAt(0));
+        Assertions.assertEquals(5, (int)model.getElementAt(2));
+        Assertions.assertEquals(List.of(0,1,2), spilled);
+        Assertions.assertEquals(6, model.getTotalAdded());
+    }
+
+    @Test
+    public void testBatchLargerThanCapacityEvictsRetainedFirst() {
+        BoundedListModel<Integer> model = new BoundedListModel<>(3,100);
+        List<Integer> spilled = new ArrayList<>();
+        model.setSpill(spilled::add);
+        model.offer(0);
+        model.offer(1);
+        model.flush();
+        for(int i=2;i<7;++i) model.offer(i);
+        model.flush();
+        Assertions.assertEquals(List.of(0,1,2,3), spilled);
+        Assertions.assertEquals(3, model.getSize());
+        Assertions.assertEquals(4, (int)model.getElementAt(0));
+        Assertions.assertEquals(6, (int)model.getElementAt(2));
+    }
+
+    @Test
+    public void testStoppedModelStillEvicts() throws InterruptedException, InvocationTargetException {
+        BoundedListModel<Integer> model = new BoundedListModel<>(3,100);
+        List<Integer> spilled = new ArrayList<>();
+        model.setSpill(spilled::add);
+        // never started, as when the list is hidden.
+        for(int i=0;i<10;++i) model.offer(i);
+        // let the posted flush run.
+        SwingUtilities.invokeAndWait(()->{});
+        Assertions.assertEquals(3, model.getSize());
+        Assertions.assertEquals(List.of(0,1,2,3,4,5,6), spilled);
+        Assertions.assertEquals(10, model.getTotalAdded());
+    }
+
+    @Test
+    public void testFind() {
+        BoundedListModel<String> model = new BoundedListModel<>(10,100);
+        model.offer("G0 X10");
+        model.offer("ok");
+        model.offer("g1 x20");
+        model.offer("ok");
+        model.flush();
+        Assertions.assertEquals(0, model.find("g",0,true));
+        Assertions.assertEquals(2, model.find("G1",0,true));
+        Assertions.assertEquals(3, model.find("OK",3,true));
+        Assertions.assertEquals(1, model.find("OK",2,false));
+        Assertions.assertEquals(-1, model.find("M114",0,true));
+    }
+
+    @Test
+    public void testClear() {
+        BoundedListModel<String> model = new BoundedListModel<>(2,100);
+        model.offer("a");
+        model.flush();
+        model.offer("b");
+        model.clear();
+        model.flush();
+        Assertions.assertEquals(0, model.getSize());
+    }
+}
@@ -0,0 +1,120 @@
+package com.marginallyclever.ro3.apps;
+
+import com.marginallyclever.ro3.apps.commands.MemoryEstimate;
+import com.marginallyclever.ro3.apps.commands.MoveNode;
+import com.marginallyclever.ro3.apps.commands.MovePose;
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.vecmath.Matrix4d;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BoundedUndoManagerTest {
+    private static class SizedEdit extends AbstractUndoableEdit implements MemoryEstimate {
+        private final long size;
+
+        SizedEdit(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public long getMemoryEstimate() {
+            return size;
+        }
+    }
+
+    @Test
+    public void testOldestEditsAreDiscardedFirst() {
+        BoundedUndoManager manager = new BoundedUndoManager(1000);
+        SizedEdit first = new SizedEdit(400);
+        manager.addEdit(first);
+        manager.addEdit(new SizedEdit(400));
+        Assertions.assertEquals(800, manager.getMemoryUsed());
+
+        manager.addEdit(new SizedEdit(400));
+        Assertions.assertEquals(800, manager.getMemoryUsed());
+        Assertions.assertFalse(first.canUndo());
+
+        // the newest edit is kept even if it is over the budget by itself.
+        manager.addEdit(new SizedEdit(5000));
+        Assertions.assertEquals(5000, manager.getMemoryUsed());
+        Assertions.assertTrue(manager.canUndo());
+
+        manager.setMemoryBudget(10000);
+        Assertions.assertEquals(10000, manager.getMemoryBudget());
+    }
+
+    @Test
+    public void testEachMoveIsOneUndoStep() {
+        Pose pose = new Pose();
+        Matrix4d a = new Matrix4d();
+        a.setIdentity();
+        Matrix4d b = new Matrix4d(a);
+        b.m03 = 1;
+        Matrix4d c = new Matrix4d(a);
+        c.m03 = 2;
+
+        BoundedUndoManager manager = new BoundedUndoManager(100000);
+        manager.addEdit(new MovePose(List.of(pose), List.of(a), List.of(b)));
+        manager.addEdit(new MovePose(List.of(pose), List.of(b), List.of(c)));
+        Assertions.assertEquals(2, pose.getLocal().m03, 1e-9);
+
+        manager.undo();
+        Assertions.assertEquals(1, pose.getLocal().m03, 1e-9);
+        manager.undo();
+        Assertions.assertEquals(0, pose.getLocal().m03, 1e-9);
+        Assertions.assertFalse(manager.canUndo());
+
+        manager.redo();
+        Assertions.assertEquals(1, pose.getLocal().m03, 1e-9);
+    }
+
+    @Test
+    public void testUndoReparentRestoresSiblingOrder() {
+        Node oldParent = new Node("old");
+        Node a = new Node("a");
+        Node b = new Node("b");
+        Node c = new Node("c");
+        Node d = new Node("d");
+        oldParent.addChild(a);
+        oldParent.addChild(b);
+        oldParent.addChild(c);
+        oldParent.addChild(d);
+        Node newParent = new Node("new");
+
+        BoundedUndoManager manager = new BoundedUndoManager(100000);
+        MoveNode edit = new MoveNode(new ArrayList<>(List.of(d, b)), newParent, -1);
+        manager.addEdit(edit);
+        Assertions.assertEquals(List.of(a, c), oldParent.getChildren());
+        Assertions.assertEquals(List.of(d, b), newParent.getChildren());
+        Assertions.assertTrue(manager.getMemoryUsed() > 0);
+
+        manager.undo();
+        Assertions.assertEquals(List.of(a, b, c, d), oldParent.getChildren());
+        Assertions.assertTrue(newParent.getChildren().isEmpty());
+
+        manager.redo();
+        Assertions.assertEquals(List.of(d, b), newParent.getChildren());
+    }
+
+    @Test
+    public void testMemoryUsedFollowsUndoRedoAndDiscard() {
+        BoundedUndoManager manager = new BoundedUndoManager(1000);
+        manager.addEdit(new SizedEdit(100));
+        manager.addEdit(new SizedEdit(200));
+        manager.addEdit(new SizedEdit(300));
+        Assertions.assertEquals(600, manager.getMemoryUsed());
+
+        // a new edit after an undo drops the edit that could have been redone.
+        manager.undo();
+        manager.addEdit(new SizedEdit(50));
+        Assertions.assertEquals(350, manager.getMemoryUsed());
+
+        manager.discardAllEdits();
+        Assertions.assertEquals(0, manager.getMemoryUsed());
+    }
+}
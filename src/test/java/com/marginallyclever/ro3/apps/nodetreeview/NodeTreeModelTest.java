@@ -0,0 +1,108 @@
+package com.marginallyclever.ro3.apps.nodetreeview;
+
+import com.marginallyclever.ro3.node.Node;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NodeTreeModelTest {
+    private Node buildScene() {
+        Node scene = new Node("Scene");
+        for(int i=0;i<3;++i) {
+            Node a = new Node("a"+i);
+            scene.addChild(a);
+            for(int j=0;j<3;++j) {
+                a.addChild(new Node("b"+j));
+            }
+        }
+        return scene;
+    }
+
+    @Test
+    public void testBranchesAreCreatedLazily() {
+        Node scene = buildScene();
+        NodeTreeModel model = new NodeTreeModel(scene);
+        Node a0 = scene.getChildren().get(0);
+        Node b0 = a0.getChildren().get(0);
+        Assertions.assertNull(model.getBranch(a0));
+        Assertions.assertFalse(model.isLeaf(model.getRoot()));
+        Assertions.assertNull(model.getBranch(a0));
+
+        Assertions.assertEquals(3, model.getChildCount(model.getRoot()));
+        Assertions.assertNotNull(model.getBranch(a0));
+        Assertions.assertNull(model.getBranch(b0));
+
+        NodeTreeBranch branch = model.findOrCreateBranch(b0);
+        Assertions.assertNotNull(branch);
+        Assertions.assertSame(b0, branch.getNode());
+        Assertions.assertSame(model.getBranch(a0), branch.getParent());
+    }
+
+    @Test
+    public void testChangesAreBatched() {
+        Node scene = buildScene();
+        NodeTreeModel model = new NodeTreeModel(scene);
+        model.getChildCount(model.getRoot());
+
+        List<TreeModelEvent> inserted = new ArrayList<>();
+        List<TreeModelEvent> removed = new ArrayList<>();
+        model.addTreeModelListener(new TreeModelListener() {
+            @Override
+            public void treeNodesChanged(TreeModelEvent e) {}
+
+            @Override
+            public void treeNodesInserted(TreeModelEvent e) {
+                inserted.add(e);
+            }
+
+            @Override
+            public void treeNodesRemoved(TreeModelEvent e) {
+                removed.add(e);
+            }
+
+            @Override
+            public void treeStructureChanged(TreeModelEvent e) {}
+        });
+
+        Node a1 = scene.getChildren().get(1);
+        for(int i=0;i<10;++i) {
+            scene.addChild(new Node("c"+i));
+            model.childrenChanged(scene);
+        }
+        model.childrenChanged(scene);
+        scene.removeChild(a1);
+        model.flush();
+
+        Assertions.assertEquals(1, inserted.size());
+        Assertions.assertEquals(10, inserted.get(0).getChildIndices().length);
+        Assertions.assertEquals(1, removed.size());
+        Assertions.assertEquals(1, removed.get(0).getChildIndices()[0]);
+        Assertions.assertEquals(12, model.getChildCount(model.getRoot()));
+        Assertions.assertNull(model.getBranch(a1));
+    }
+
+    @Test
+    public void testMoveBetweenParents() {
+        Node scene = buildScene();
+        NodeTreeModel model = new NodeTreeModel(scene);
+        Node a0 = scene.getChildren().get(0);
+        Node a2 = scene.getChildren().get(2);
+        Node b0 = a0.getChildren().get(0);
+        model.findOrCreateBranch(b0);
+        model.findOrCreateBranch(a2.getChildren().get(0));
+
+        a0.removeChild(b0);
+        a2.addChild(b0);
+        model.childrenChanged(a2);
+        model.childrenChanged(a0);
+        model.flush();
+
+        Assertions.assertEquals(2, model.getChildCount(model.getBranch(a0)));
+        Assertions.assertEquals(4, model.getChildCount(model.getBranch(a2)));
+        Assertions.assertSame(model.getBranch(a2), model.getBranch(b0).getParent());
+    }
+}
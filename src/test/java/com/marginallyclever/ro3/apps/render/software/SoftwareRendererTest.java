@@ -0,0 +1,122 @@
+package com.marginallyclever.ro3.apps.render.software;
+
+import com.marginallyclever.ro3.mesh.Mesh;
+import com.marginallyclever.ro3.mesh.shapes.Box;
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.Camera;
+import com.marginallyclever.ro3.node.nodes.Material;
+import com.marginallyclever.ro3.node.nodes.MeshInstance;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Vector3d;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class SoftwareRendererTest {
+    private static final int SIZE = 64;
+    private SoftwareRenderer renderer;
+    private Node scene;
+    private Camera camera;
+
+    @BeforeEach
+    public void setup() {
+        renderer = new SoftwareRenderer(SIZE,SIZE);
+        scene = new Node("Scene");
+        // looking down the -z axis at the origin.
+        camera = new Camera();
+        camera.setPosition(new Vector3d(0,0,50));
+    }
+
+    private Pose addBox(Color color,Vector3d position) {
+        Pose group = new Pose("group");
+        group.setPosition(position);
+        Material material = new Material();
+        material.setDiffuseColor(color);
+        material.setLit(false);
+        MeshInstance meshInstance = new MeshInstance();
+        meshInstance.setMesh(new Box(10,10,10));
+        group.addChild(material);
+        group.addChild(meshInstance);
+        scene.addChild(group);
+        return group;
+    }
+
+    private int countNotBackground(BufferedImage image) {
+        int background = renderer.getBackgroundColor().getRGB();
+        int count=0;
+        for(int y=0;y<image.getHeight();++y) {
+            for(int x=0;x<image.getWidth();++x) {
+                if(image.getRGB(x,y)!=background) count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void emptySceneIsBackground() {
+        BufferedImage image = renderer.render(scene,camera);
+        Assertions.assertEquals(SIZE,image.getWidth());
+        Assertions.assertEquals(SIZE,image.getHeight());
+        Assertions.assertEquals(0,countNotBackground(image));
+    }
+
+    @Test
+    public void boxIsDrawnInTheMiddle() {
+        addBox(Color.RED,new Vector3d());
+        BufferedImage image = renderer.render(scene,camera);
+        Assertions.assertEquals(Color.RED.getRGB(),image.getRGB(SIZE/2,SIZE/2));
+        Assertions.assertEquals(renderer.getBackgroundColor().getRGB(),image.getRGB(0,0));
+    }
+
+    @Test
+    public void nearBoxHidesFarBox() {
+        // added first so that drawing order is not what decides.
+        addBox(Color.BLUE,new Vector3d(0,0,-20));
+        addBox(Color.RED,new Vector3d(0,0,0));
+        BufferedImage image = renderer.render(scene,camera);
+        Assertions.assertEquals(Color.RED.getRGB(),image.getRGB(SIZE/2,SIZE/2));
+    }
+
+    @Test
+    public void boxBehindCameraIsNotDrawn() {
+        addBox(Color.RED,new Vector3d(0,0,100));
+        Assertions.assertEquals(0,countNotBackground(renderer.render(scene,camera)));
+    }
+
+    @Test
+    public void frameFindsTheScene() {
+        addBox(Color.RED,new Vector3d(500,300,-40));
+        Assertions.assertEquals(0,countNotBackground(renderer.render(scene,camera)));
+
+        SoftwareRenderer.frame(scene,camera,1);
+        int count = countNotBackground(renderer.render(scene,camera));
+        Assertions.assertTrue(count > SIZE*SIZE/10, "box should fill a good part of the image, was "+count);
+    }
+
+    @Test
+    public void snapshotDoesNotFollowTheScene() {
+        Pose box = addBox(Color.RED,new Vector3d());
+        SoftwareRenderer.Snapshot snapshot = renderer.capture(scene,camera);
+        Assertions.assertEquals(1,snapshot.size());
+        scene.removeChild(box);
+        Assertions.assertEquals(Color.RED.getRGB(),renderer.render(snapshot).getRGB(SIZE/2,SIZE/2));
+        Assertions.assertEquals(0,countNotBackground(renderer.render(scene,camera)));
+    }
+
+    @Test
+    public void changedMeshIsDrawnAgain() {
+        Pose box = addBox(Color.RED,new Vector3d());
+        Assertions.assertEquals(Color.RED.getRGB(),renderer.render(scene,camera).getRGB(SIZE/2,SIZE/2));
+
+        // same number of vertexes, all moved out of view.
+        Mesh mesh = box.findFirstChild(MeshInstance.class).getMesh();
+        for(int i=0;i<mesh.getNumVertices();++i) {
+            Vector3d v = mesh.getVertex(i);
+            mesh.setVertex(i,v.x+1000,v.y,v.z);
+        }
+        Assertions.assertEquals(0,countNotBackground(renderer.render(scene,camera)));
+    }
+}
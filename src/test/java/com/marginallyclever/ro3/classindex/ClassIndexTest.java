@@ -0,0 +1,45 @@
+package com.marginallyclever.ro3.classindex;
+
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.Camera;
+import com.marginallyclever.ro3.node.nodes.MeshInstance;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import com.marginallyclever.ro3.view.View;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reflections.Reflections;
+import org.reflections.scanners.Scanners;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ClassIndexTest {
+    /**
+     * The index written at compile time must find the same classes as a scan of the classpath.
+     */
+    @Test
+    public void sameAsReflections() {
+        Reflections reflections = new Reflections("com.marginallyclever");
+        Set<Class<?>> nodes = new HashSet<>(reflections.getSubTypesOf(Node.class));
+        // the test classpath may hold test nodes that were not indexed with the main code.
+        nodes.removeIf(c -> c.getProtectionDomain().getCodeSource()!=Node.class.getProtectionDomain().getCodeSource());
+        Assertions.assertEquals(nodes, new HashSet<>(ClassIndex.getSubTypesOf(Node.class)));
+
+        Set<Class<?>> views = new HashSet<>(new Reflections("com.marginallyclever", Scanners.TypesAnnotated).getTypesAnnotatedWith(View.class));
+        views.removeIf(c -> c.getProtectionDomain().getCodeSource()!=Node.class.getProtectionDomain().getCodeSource());
+        Assertions.assertEquals(views, new HashSet<>(ClassIndex.getViews()));
+    }
+
+    @Test
+    public void subTypes() {
+        List<Class<? extends Pose>> poses = ClassIndex.getSubTypesOf(Pose.class);
+        Assertions.assertTrue(poses.contains(Camera.class));
+        Assertions.assertTrue(poses.contains(MeshInstance.class));
+        Assertions.assertFalse(poses.contains(Pose.class));
+        // cached.
+        Assertions.assertSame(poses, ClassIndex.getSubTypesOf(Pose.class));
+        // only nodes are indexed.
+        Assertions.assertTrue(ClassIndex.getSubTypesOf(String.class).isEmpty());
+    }
+}
@@ -0,0 +1,61 @@
+package com.marginallyclever.ro3.mesh;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InstanceBufferTest {
+    private static List<int[]> getDirtyRanges(InstanceBuffer buffer) {
+        List<int[]> list = new ArrayList<>();
+        buffer.forEachDirtyRange((first,last)->list.add(new int[]{first,last}));
+        return list;
+    }
+
+    @Test
+    public void testFillingEverythingIsOneRange() {
+        int count = InstanceBuffer.CHUNK_SIZE*100;
+        InstanceBuffer buffer = new InstanceBuffer();
+        buffer.setCount(count);
+        Matrix4d m = new Matrix4d();
+        m.setIdentity();
+        for(int i=0;i<count;++i) buffer.setInstance(i,m,1,1,1,1);
+        Assertions.assertEquals(1,getDirtyRanges(buffer).size());
+        Assertions.assertArrayEquals(new int[]{0,count},getDirtyRanges(buffer).get(0));
+    }
+
+    @Test
+    public void testUnchangedValuesAreNotDirty() {
+        InstanceBuffer buffer = new InstanceBuffer();
+        buffer.setCount(3);
+        Matrix4d m = new Matrix4d();
+        // the buffer starts as zeros, so a zero matrix and color change nothing.
+        buffer.setInstance(1,m,0,0,0,0);
+        Assertions.assertTrue(getDirtyRanges(buffer).isEmpty());
+
+        m.m03 = 5;
+        buffer.setInstance(1,m,0,0,0,0);
+        buffer.setInstance(2,m,0,0,0,0);
+        List<int[]> ranges = getDirtyRanges(buffer);
+        Assertions.assertEquals(1,ranges.size());
+        Assertions.assertArrayEquals(new int[]{0,3},ranges.get(0));
+    }
+
+    @Test
+    public void testOnlyTouchedChunksAreDirty() {
+        int count = InstanceBuffer.CHUNK_SIZE*100;
+        InstanceBuffer buffer = new InstanceBuffer();
+        buffer.setCount(count);
+        Matrix4d m = new Matrix4d();
+        m.setIdentity();
+        buffer.setInstance(0,m,1,1,1,1);
+        buffer.setInstance(count-1,m,1,1,1,1);
+
+        List<int[]> ranges = getDirtyRanges(buffer);
+        Assertions.assertEquals(2,ranges.size());
+        Assertions.assertArrayEquals(new int[]{0,InstanceBuffer.CHUNK_SIZE},ranges.get(0));
+        Assertions.assertArrayEquals(new int[]{count-InstanceBuffer.CHUNK_SIZE,count},ranges.get(1));
+    }
+}
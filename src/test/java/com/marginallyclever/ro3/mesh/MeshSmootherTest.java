@@ -0,0 +1,100 @@
+package com.marginallyclever.ro3.mesh;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class MeshSmootherTest {
+    /**
+     * The original O(n^2) smoothing, kept here to check that the new one gives the same answers.
+     */
+    private static void referenceSmooth(float [] v, float [] n, float vertexEpsilon, float normalEpsilon) {
+        float vertexEpsilonSquared = vertexEpsilon * vertexEpsilon;
+        float normalEpsilonSquared = normalEpsilon * normalEpsilon;
+        int numFaces = v.length/3;
+        ArrayList<Integer> indexList = new ArrayList<>();
+        boolean [] skip = new boolean[numFaces];
+        for(int i=0;i<numFaces;++i) {
+            if(skip[i]) continue;
+            float p1x = v[i*3], p1y = v[i*3+1], p1z = v[i*3+2];
+            float n1x = n[i*3], n1y = n[i*3+1], n1z = n[i*3+2];
+            indexList.clear();
+            indexList.add(i);
+            for(int j=i+1;j<numFaces;++j) {
+                if(skip[j]) continue;
+                float dx = v[j*3]-p1x, dy = v[j*3+1]-p1y, dz = v[j*3+2]-p1z;
+                if(dx*dx+dy*dy+dz*dz <= vertexEpsilonSquared) {
+                    float ex = n[j*3]-n1x, ey = n[j*3+1]-n1y, ez = n[j*3+2]-n1z;
+                    if(ex*ex+ey*ey+ez*ez <= normalEpsilonSquared) indexList.add(j);
+                }
+            }
+            if(indexList.size()>1) {
+                n1x=0; n1y=0; n1z=0;
+                for(int k : indexList) {
+                    n1x += n[k*3];
+                    n1y += n[k*3+1];
+                    n1z += n[k*3+2];
+                }
+                float len = (float)Math.sqrt(n1x*n1x+n1y*n1y+n1z*n1z);
+                n1x /= len; n1y /= len; n1z /= len;
+                for(int k : indexList) {
+                    skip[k]=true;
+                    n[k*3] = n1x;
+                    n[k*3+1] = n1y;
+                    n[k*3+2] = n1z;
+                }
+            }
+        }
+    }
+
+    /**
+     * Random vertices snapped to a coarse lattice plus a little noise, so that many are close together.
+     */
+    private static float [][] randomMesh(int count, long seed) {
+        Random r = new Random(seed);
+        float [] v = new float[count*3];
+        float [] n = new float[count*3];
+        for(int i=0;i<count;++i) {
+            for(int a=0;a<3;++a) {
+                v[i*3+a] = r.nextInt(8) * 0.5f - 2 + (float)r.nextGaussian() * 0.005f;
+            }
+            double x = r.nextGaussian(), y = r.nextGaussian(), z = r.nextGaussian();
+            double len = Math.sqrt(x*x+y*y+z*z);
+            n[i*3  ] = (float)(x/len);
+            n[i*3+1] = (float)(y/len);
+            n[i*3+2] = (float)(z/len);
+        }
+        return new float[][]{v,n};
+    }
+
+    private void compare(int count, long seed, float vertexEpsilon, float normalEpsilon) {
+        float [][] mesh = randomMesh(count,seed);
+        float [] expected = mesh[1].clone();
+        float [] actual = mesh[1].clone();
+        referenceSmooth(mesh[0],expected,vertexEpsilon,normalEpsilon);
+        MeshSmoother.smoothNormals(mesh[0],actual,vertexEpsilon,normalEpsilon);
+        for(int i=0;i<expected.length;++i) {
+            Assertions.assertEquals(Float.floatToIntBits(expected[i]),Float.floatToIntBits(actual[i]),"index "+i);
+        }
+    }
+
+    @Test
+    public void testSameAsOriginalOnSmallMeshes() {
+        for(long seed=0;seed<20;++seed) {
+            compare(600,seed,0.01f,1.5f);
+            compare(600,seed,0.02f,0.5f);
+        }
+    }
+
+    @Test
+    public void testZeroEpsilon() {
+        compare(600,7,0,2);
+    }
+
+    @Test
+    public void testSameAsOriginalInParallel() {
+        compare(25000,42,0.01f,1.0f);
+    }
+}
@@ -0,0 +1,79 @@
+package com.marginallyclever.ro3.mesh.load;
+
+import com.marginallyclever.ro3.mesh.Mesh;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class Load3MFTest {
+    private static final String MODEL = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<model units=\"millimeter\" xmlns=\"http://schemas.microsoft.com/3dmanufacturing/core/2015/02\""
+            + " xmlns:m=\"http://schemas.microsoft.com/3dmanufacturing/material/2015/02\">\n"
+            + "<resources>\n"
+            + "<m:colorgroup id=\"1\"><m:color color=\"#FF0000\"/><m:color color=\"#00FF0080\"/></m:colorgroup>\n"
+            + "<object id=\"2\" type=\"model\" pid=\"1\" pindex=\"0\"><mesh>\n"
+            + "<vertices><vertex x=\"0\" y=\"0\" z=\"0\"/><vertex x=\"10\" y=\"0\" z=\"0\"/><vertex x=\"0\" y=\"10\" z=\"0\"/></vertices>\n"
+            + "<triangles><triangle v1=\"0\" v2=\"1\" v3=\"2\"/><triangle v1=\"0\" v2=\"2\" v3=\"1\" pid=\"1\" p1=\"1\"/></triangles>\n"
+            + "</mesh></object>\n"
+            + "<object id=\"3\"><components><component objectid=\"2\" transform=\"1 0 0 0 1 0 0 0 1 100 0 0\"/></components></object>\n"
+            + "</resources>\n"
+            + "<build><item objectid=\"2\"/><item objectid=\"3\" transform=\"0 1 0 -1 0 0 0 0 1 0 0 5\"/></build>\n"
+            + "</model>\n";
+
+    private static BufferedInputStream zip(String model) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            zip.write("<Types/>".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("3D/3dmodel.model"));
+            zip.write(model.getBytes(StandardCharsets.UTF_8));
+        }
+        return new BufferedInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void loadBuildItemsAndComponents() throws Exception {
+        Mesh mesh = new Mesh();
+        new Load3MF().load(zip(MODEL), mesh);
+
+        // two triangles for each build item.
+        Assertions.assertEquals(12, mesh.getNumVertices());
+        // millimeters are scaled by 0.1.
+        Assertions.assertEquals(1.0f, mesh.vertexArray.get(3), 1e-6);
+        // second item: moved 10 along x by the component, then turned 90 degrees and moved 0.5 up.
+        Assertions.assertEquals(0.0f, mesh.vertexArray.get(18), 1e-6);
+        Assertions.assertEquals(10.0f, mesh.vertexArray.get(19), 1e-6);
+        Assertions.assertEquals(0.5f, mesh.vertexArray.get(20), 1e-6);
+    }
+
+    @Test
+    public void triangleColorsOverrideObjectColor() throws Exception {
+        Mesh mesh = new Mesh();
+        new Load3MF().load(zip(MODEL), mesh);
+
+        // first triangle uses the object color
+        Assertions.assertEquals(1.0f, mesh.colorArray.get(0), 1e-6);
+        Assertions.assertEquals(0.0f, mesh.colorArray.get(1), 1e-6);
+        // second triangle picks its own color, with alpha.
+        Assertions.assertEquals(0.0f, mesh.colorArray.get(12), 1e-6);
+        Assertions.assertEquals(1.0f, mesh.colorArray.get(13), 1e-6);
+        Assertions.assertEquals(128/255.0f, mesh.colorArray.get(15), 1e-6);
+    }
+
+    @Test
+    public void missingModelThrows() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("readme.txt"));
+        }
+        Assertions.assertThrows(Exception.class, () -> new Load3MF().load(
+                new BufferedInputStream(new ByteArrayInputStream(out.toByteArray())), new Mesh()));
+    }
+}
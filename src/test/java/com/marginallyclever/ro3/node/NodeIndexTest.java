@@ -0,0 +1,100 @@
+package com.marginallyclever.ro3.node;
+
+import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.node.nodes.Motor;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+public class NodeIndexTest {
+    @BeforeEach
+    public void setup() {
+        Registry.start();
+    }
+
+    @Test
+    public void findsNodesAfterChanges() {
+        Node scene = new Node("Scene");
+        Pose a = new Pose("a");
+        Pose b = new Pose("b");
+        Node c = new Node("c");
+        scene.addChild(a);
+        a.addChild(b);
+        // the first lookup builds the index.
+        Assertions.assertSame(b,scene.findNodeByID(b.getNodeID(),Pose.class));
+        Assertions.assertSame(b,scene.get("a/b"));
+
+        // attach
+        b.addChild(c);
+        Assertions.assertSame(c,scene.get("a/b/c"));
+        Assertions.assertSame(c,scene.findNodeByID(c.getNodeID().toString(),Node.class));
+        Assertions.assertNull(scene.findNodeByID(c.getNodeID(),Pose.class));
+        Assertions.assertNull(b.findNodeByID(a.getNodeID(),Pose.class));
+
+        // rename
+        b.setName("d");
+        Assertions.assertNull(scene.get("a/b"));
+        Assertions.assertSame(c,scene.get("a/d/c"));
+
+        // new IDs
+        UUID old = c.getNodeID();
+        scene.witnessProtection();
+        Assertions.assertNull(scene.findNodeByID(old,Node.class));
+        Assertions.assertSame(c,scene.findNodeByID(c.getNodeID(),Node.class));
+
+        // detach
+        a.removeChild(b);
+        Assertions.assertNull(scene.findNodeByID(c.getNodeID(),Node.class));
+        Assertions.assertNull(scene.get("a/d"));
+        Assertions.assertSame(c,b.findChild("c"));
+        Assertions.assertEquals(1,scene.findAllByType(Pose.class).size());
+        Assertions.assertEquals(2,scene.findAllByType(Node.class).size());
+        Assertions.assertNull(scene.findNodeByID("not a uuid",Node.class));
+    }
+
+    @Test
+    public void firstSiblingWithANameWins() {
+        Node scene = new Node("Scene");
+        Node first = new Node("x");
+        Node second = new Node("x");
+        scene.addChild(first);
+        Assertions.assertSame(first,scene.findChild("x"));
+        scene.addChild(0,second);
+        Assertions.assertSame(second,scene.findChild("x"));
+        scene.removeChild(second);
+        Assertions.assertSame(first,scene.findChild("x"));
+    }
+
+    @Test
+    public void oldReferencesResolveAfterLoad() {
+        // version 0 files refer to other nodes by ID.  Here the motor comes before its hinge.
+        String hingeID = UUID.randomUUID().toString();
+        JSONObject motor = new JSONObject();
+        motor.put("type","Motor");
+        motor.put("name","motor");
+        motor.put("nodeID",UUID.randomUUID().toString());
+        motor.put("children",new JSONArray());
+        motor.put("hinge",hingeID);
+        JSONObject hinge = new JSONObject();
+        hinge.put("type","HingeJoint");
+        hinge.put("name","hinge");
+        hinge.put("nodeID",hingeID);
+        hinge.put("children",new JSONArray());
+        JSONObject root = new JSONObject();
+        root.put("type","Node");
+        root.put("name","Scene");
+        root.put("nodeID",UUID.randomUUID().toString());
+        root.put("children",new JSONArray().put(motor).put(hinge));
+
+        Node scene = new Node();
+        scene.fromJSON(root);
+        Motor loaded = (Motor)scene.findChild("motor");
+        Assertions.assertNotNull(loaded.getHinge());
+        Assertions.assertSame(scene.findChild("hinge"),loaded.getHinge());
+    }
+}
@@ -0,0 +1,133 @@
+package com.marginallyclever.ro3.node;
+
+import com.marginallyclever.ro3.node.nodes.Pose;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class SceneSnapshotTest {
+    private static Matrix4d translation(double x,double y,double z) {
+        Matrix4d m = new Matrix4d();
+        m.setIdentity();
+        m.m03 = x;
+        m.m13 = y;
+        m.m23 = z;
+        return m;
+    }
+
+    @Test
+    public void unchangedSceneKeepsItsSnapshot() {
+        Node scene = new Node("Scene");
+        scene.addChild(new Pose("a"));
+        SceneChanges changes = new SceneChanges();
+
+        SceneSnapshot first = changes.commit(scene);
+        Assertions.assertEquals(1,first.getVersion());
+        Assertions.assertSame(first,changes.commit(scene));
+        Assertions.assertEquals(1,changes.getVersion());
+    }
+
+    @Test
+    public void movingAPoseSharesTheRest() {
+        Node scene = new Node("Scene");
+        Pose a = new Pose("a");
+        Pose b = new Pose("b");
+        Pose c = new Pose("c");
+        scene.addChild(a);
+        scene.addChild(b);
+        b.addChild(c);
+        SceneChanges changes = new SceneChanges();
+        SceneSnapshot before = changes.commit(scene);
+
+        b.setLocal(translation(1,2,3));
+        SceneSnapshot after = changes.commit(scene);
+
+        Assertions.assertEquals(before.getVersion()+1,after.getVersion());
+        Assertions.assertSame(before.find(a),after.find(a));
+        Assertions.assertNotSame(before.find(c),after.find(c));
+        // the child moved with its parent.
+        Assertions.assertEquals(2,after.find(c).getWorld().m13,1e-9);
+        // the old snapshot did not.
+        Assertions.assertEquals(0,before.find(c).getWorld().m13,1e-9);
+        Assertions.assertEquals(3,after.findAll(Pose.class).size());
+    }
+
+    @Test
+    public void submittedChangesWaitForCommit() throws Exception {
+        Node scene = new Node("Scene");
+        SceneChanges changes = new SceneChanges();
+        changes.commit(scene);
+
+        Pose added = new Pose("added");
+        CompletableFuture<SceneSnapshot> done = changes.submit(()->scene.addChild(added));
+        CompletableFuture<SceneSnapshot> failed = changes.submit(()->{ throw new IllegalStateException(); });
+        Assertions.assertFalse(done.isDone());
+        Assertions.assertTrue(scene.getChildren().isEmpty());
+
+        SceneSnapshot snapshot = changes.commit(scene);
+        Assertions.assertSame(snapshot,done.get());
+        Assertions.assertNotNull(snapshot.find(added));
+        Assertions.assertTrue(failed.isCompletedExceptionally());
+    }
+
+    @Test
+    public void childrenCanChangeWhileIterating() {
+        Node scene = new Node("Scene");
+        scene.addChild(new Node("a"));
+        scene.addChild(new Node("b"));
+
+        List<Node> children = scene.getChildren();
+        Assertions.assertThrows(UnsupportedOperationException.class,()->children.add(new Node()));
+        for(Node child : children) {
+            scene.addChild(new Node(child.getName()+"2"));
+        }
+        Assertions.assertEquals(2,children.size());
+        Assertions.assertEquals(4,scene.getChildren().size());
+    }
+
+    @Test
+    public void publishedChildrenNeverChange() {
+        Node scene = new Node("Scene");
+        for(int i=0;i<10;++i) scene.addChild(new Node("n"+i));
+        List<Node> ten = scene.getChildren();
+        for(int i=10;i<1000;++i) scene.addChild(new Node("n"+i));
+        Node first = new Node("first");
+        scene.addChild(0,first);
+        scene.removeChild(scene.getChildren().get(5));
+
+        Assertions.assertEquals(10,ten.size());
+        for(int i=0;i<10;++i) Assertions.assertEquals("n"+i,ten.get(i).getName());
+        Assertions.assertThrows(IndexOutOfBoundsException.class,()->ten.get(10));
+
+        List<Node> all = scene.getChildren();
+        Assertions.assertEquals(1000,all.size());
+        Assertions.assertSame(first,all.get(0));
+        Assertions.assertEquals("n3",all.get(4).getName());
+        Assertions.assertEquals("n5",all.get(5).getName());
+        Assertions.assertEquals("n999",all.get(999).getName());
+    }
+
+    @Test
+    public void snapshotOfAnotherSceneIsNotReused() {
+        Node scene = new Node("Scene");
+        Pose a = new Pose("a");
+        scene.addChild(a);
+        SceneChanges changes = new SceneChanges();
+        SceneSnapshot committed = changes.commit(scene);
+        Assertions.assertSame(committed,changes.getSnapshot(scene));
+
+        Node other = new Node("Other");
+        SceneSnapshot snapshot = changes.getSnapshot(other);
+        Assertions.assertSame(other,snapshot.getRoot().getNode());
+        Assertions.assertNull(snapshot.find(a));
+
+        Matrix4d world = new Matrix4d();
+        committed.find(a).getWorld(world);
+        Assertions.assertTrue(translation(0,0,0).equals(world));
+        committed.getRoot().getWorld(world);
+        Assertions.assertTrue(translation(0,0,0).equals(world));
+    }
+}
@@ -0,0 +1,161 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.HingeJoint;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MotionRecorderTest {
+    private static final int FRAMES = 1000;
+    private static final int INTERVAL = 16;
+
+    private final double [] times = new double[FRAMES];
+    private final double [][] angles = new double[FRAMES][2];
+    private final double [] x = new double[FRAMES];
+
+    /**
+     * A top Pose with two hinges and a Pose under it that should not be recorded.
+     */
+    private Node buildScene() {
+        Node scene = new Node("Scene");
+        Pose base = new Pose("base");
+        scene.addChild(base);
+        base.addChild(new HingeJoint("j0"));
+        base.addChild(new HingeJoint("j1"));
+        base.addChild(new Pose("arm"));
+        return scene;
+    }
+
+    private File record(Node scene) throws IOException {
+        File file = File.createTempFile("motion",".ro3m");
+        file.deleteOnExit();
+        HingeJoint j0 = (HingeJoint)scene.get("base/j0");
+        HingeJoint j1 = (HingeJoint)scene.get("base/j1");
+        Pose base = (Pose)scene.get("base");
+        try(MotionRecorder recorder = new MotionRecorder(scene,new FileOutputStream(file),INTERVAL)) {
+            Assertions.assertEquals(3,recorder.getChannelCount());
+            for(int i=0;i<FRAMES;++i) {
+                // a few frames share a time, to check that seeking finds the last of them.
+                times[i] = (i/2)*0.01;
+                j0.setAngle(Math.sin(i*0.1)*90);
+                j0.setVelocity(i);
+                // j1 only moves sometimes.
+                if(i%7==0) j1.setAngle(i);
+                if(i%10==0) {
+                    Matrix4d m = new Matrix4d();
+                    m.rotZ(i*0.01);
+                    m.setTranslation(new Vector3d(i,0,0));
+                    base.setLocal(m);
+                }
+                angles[i][0] = j0.getAngle();
+                angles[i][1] = j1.getAngle();
+                x[i] = base.getLocal().m03;
+                recorder.record(times[i]);
+            }
+            Assertions.assertEquals(FRAMES,recorder.getFrameCount());
+        }
+        return file;
+    }
+
+    private void assertFrame(MotionPlayer player,int i) {
+        Assertions.assertEquals(i,player.getFrame());
+        Assertions.assertEquals(times[i],player.getTime());
+        double [] hinge = new double[3];
+        player.getValues(1,hinge);
+        Assertions.assertEquals(angles[i][0],hinge[0]);
+        Assertions.assertEquals(i,hinge[1]);
+        player.getValues(2,hinge);
+        Assertions.assertEquals(angles[i][1],hinge[0]);
+        double [] pose = new double[12];
+        player.getValues(0,pose);
+        Assertions.assertEquals(x[i],pose[3]);
+    }
+
+    @Test
+    public void testSeekAndStep() throws IOException {
+        File file = record(buildScene());
+        try(MotionPlayer player = new MotionPlayer(file)) {
+            Assertions.assertEquals(3,player.getChannelCount());
+            Assertions.assertEquals("base",player.getChannelPath(0));
+            Assertions.assertEquals("base/j0",player.getChannelPath(1));
+            Assertions.assertEquals(FRAMES,player.getFrameCount());
+            Assertions.assertEquals(times[0],player.getStartTime());
+            Assertions.assertEquals(times[FRAMES-1],player.getEndTime());
+
+            assertFrame(player,0);
+            for(int i=1;i<FRAMES;++i) {
+                Assertions.assertTrue(player.next());
+                assertFrame(player,i);
+            }
+            Assertions.assertFalse(player.next());
+
+            Random random = new Random(42);
+            for(int k=0;k<200;++k) {
+                double t = times[random.nextInt(FRAMES)];
+                player.seek(t);
+                int expected = FRAMES-1;
+                while(times[expected]>t) expected--;
+                assertFrame(player,expected);
+            }
+
+            player.seek(-1);
+            assertFrame(player,0);
+            player.seek(1e6);
+            assertFrame(player,FRAMES-1);
+
+            player.seekFrame(INTERVAL*3+5);
+            assertFrame(player,INTERVAL*3+5);
+        }
+    }
+
+    @Test
+    public void testApply() throws IOException {
+        File file = record(buildScene());
+        Node copy = buildScene();
+        try(MotionPlayer player = new MotionPlayer(file)) {
+            Assertions.assertEquals(3,player.bind(copy));
+            player.seekFrame(123);
+            player.apply();
+        }
+        Assertions.assertEquals(angles[123][0],((HingeJoint)copy.get("base/j0")).getAngle());
+        Assertions.assertEquals(angles[123][1],((HingeJoint)copy.get("base/j1")).getAngle());
+        Assertions.assertEquals(x[123],((Pose)copy.get("base")).getLocal().m03);
+    }
+
+    @Test
+    public void testUnfinishedRecording() throws IOException {
+        File file = record(buildScene());
+        byte [] bytes = Files.readAllBytes(file.toPath());
+        long indexOffset = ByteBuffer.wrap(bytes,bytes.length-MotionFormat.TRAILER_SIZE,8).getLong();
+        // cut the last frame short, the way a crash might.
+        Files.write(file.toPath(),Arrays.copyOf(bytes,(int)indexOffset-2));
+
+        try(MotionPlayer player = new MotionPlayer(file)) {
+            Assertions.assertEquals(FRAMES-1,player.getFrameCount());
+            Assertions.assertEquals(times[FRAMES-2],player.getEndTime());
+            player.seek(times[500]);
+            assertFrame(player,501);
+        }
+    }
+
+    @Test
+    public void testTimeMustNotGoBack() throws IOException {
+        File file = File.createTempFile("motion",".ro3m");
+        file.deleteOnExit();
+        try(MotionRecorder recorder = new MotionRecorder(buildScene(),file)) {
+            recorder.record(1);
+            Assertions.assertThrows(IllegalArgumentException.class,()->recorder.record(0.5));
+        }
+    }
+}
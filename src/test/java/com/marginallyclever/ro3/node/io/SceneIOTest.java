@@ -0,0 +1,193 @@
+package com.marginallyclever.ro3.node.io;
+
+import com.marginallyclever.convenience.helpers.AssetArchives;
+import com.marginallyclever.convenience.helpers.AssetResolver;
+import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Objects;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class SceneIOTest {
+    @BeforeEach
+    public void setup() {
+        Registry.start();
+    }
+
+    /**
+     * Remembers how many children it had when its own fields were read.
+     */
+    private static class CountingNode extends Node {
+        int childrenWhenRead = -1;
+
+        public CountingNode() {
+            super("Scene");
+        }
+
+        @Override
+        public void fromJSON(JSONObject from) {
+            super.fromJSON(from);
+            childrenWhenRead = getChildren().size();
+        }
+    }
+
+    private Node buildScene() {
+        Node scene = new Node("Scene");
+        for(int i=0;i<4;++i) {
+            Pose a = new Pose("a"+i);
+            Matrix4d m = new Matrix4d();
+            m.rotZ(i*0.1);
+            m.setTranslation(new Vector3d(i,2*i,-i));
+            a.setLocal(m);
+            scene.addChild(a);
+            for(int j=0;j<3;++j) {
+                a.addChild(new Node("b"+j));
+            }
+        }
+        return scene;
+    }
+
+    @Test
+    public void testJSONRoundTrip() throws IOException {
+        Node scene = buildScene();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SceneJSONWriter().write(scene, out);
+
+        Node loaded = new Node("Scene");
+        new SceneJSONReader().readInto(new ByteArrayInputStream(out.toByteArray()), loaded);
+        Assertions.assertEquals(scene.toJSON().toString(), loaded.toJSON().toString());
+    }
+
+    @Test
+    public void testLegacyJSON() throws IOException {
+        Node scene = buildScene();
+        byte[] legacy = scene.toJSON().toString().getBytes();
+
+        Node loaded = new Node("Scene");
+        new SceneJSONReader().readInto(new ByteArrayInputStream(legacy), loaded);
+        Assertions.assertEquals(scene.toJSON().toString(), loaded.toJSON().toString());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        Node scene = buildScene();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SceneBinaryWriter().write(scene, out);
+        byte[] bytes = out.toByteArray();
+        Assertions.assertTrue(SceneBinaryReader.isBinaryScene(bytes));
+        Assertions.assertTrue(bytes.length < scene.toJSON().toString().length());
+
+        Node loaded = new SceneBinaryReader().read(new ByteArrayInputStream(bytes));
+        Assertions.assertEquals(scene.toJSON().toString(), loaded.toJSON().toString());
+    }
+
+    @Test
+    public void testFieldsAreReadAfterChildren() throws IOException {
+        Node scene = buildScene();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SceneJSONWriter().write(scene, out);
+        CountingNode loaded = new CountingNode();
+        new SceneJSONReader().readInto(new ByteArrayInputStream(out.toByteArray()), loaded);
+        Assertions.assertEquals(4, loaded.childrenWhenRead);
+
+        out.reset();
+        new SceneBinaryWriter().write(scene, out);
+        loaded = new CountingNode();
+        new SceneBinaryReader().readInto(new ByteArrayInputStream(out.toByteArray()), loaded);
+        Assertions.assertEquals(4, loaded.childrenWhenRead);
+    }
+
+    @Test
+    public void testToJSONWithoutChildren() {
+        Node scene = buildScene();
+        Assertions.assertFalse(scene.toJSON(false).has("children"));
+        Assertions.assertTrue(scene.toJSON(false).has("name"));
+        Assertions.assertEquals(4, scene.toJSON(true).getJSONArray("children").length());
+    }
+
+    @Test
+    public void testAssetsAreFoundInsideTheZip() throws IOException {
+        Node scene = buildScene();
+        File zip = File.createTempFile("scene", ".zip");
+        try {
+            try(ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+                out.putNextEntry(new ZipEntry("scene/scene.ro"));
+                new SceneJSONWriter().write(scene, out);
+                out.closeEntry();
+                out.putNextEntry(new ZipEntry("scene/mesh.obj"));
+                out.write("v 0 0 0".getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+            String oldCWD = System.getProperty("user.dir");
+            AssetResolver resolver = SceneIO.getAssetResolver(zip);
+            Assertions.assertEquals(zip.getAbsolutePath()+":scene/mesh.obj", resolver.resolve("mesh.obj"));
+            Assertions.assertEquals("missing.obj", resolver.resolve("missing.obj"));
+
+            Node loaded = SceneIO.load(zip);
+            Assertions.assertEquals(scene.toJSON().toString(), loaded.toJSON().toString());
+            Assertions.assertEquals(oldCWD, System.getProperty("user.dir"));
+        } finally {
+            AssetArchives.closeAll();
+            zip.delete();
+        }
+    }
+
+    @Test
+    public void testParallelWriteMatchesSerial() throws IOException {
+        Node scene = buildScene();
+        ByteArrayOutputStream serial = new ByteArrayOutputStream();
+        new SceneJSONWriter().write(scene, serial);
+
+        for(int window=1;window<=5;++window) {
+            SceneJSONWriter writer = new SceneJSONWriter();
+            writer.setParallel(true);
+            writer.setWindow(window);
+            ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+            writer.write(scene, parallel);
+            Assertions.assertArrayEquals(serial.toByteArray(), parallel.toByteArray(), "window "+window);
+        }
+    }
+
+    /**
+     * Fails part way through a save.
+     */
+    private static class BrokenNode extends Node {
+        @Override
+        public JSONObject toJSON(boolean withChildren) {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    @Test
+    public void testFailedSaveKeepsTheOldFile() throws IOException {
+        File folder = Files.createTempDirectory("scene").toFile();
+        try {
+            for(String name : new String[]{"scene.ro", "scene."+SceneIO.BINARY_EXTENSION}) {
+                File file = new File(folder, name);
+                SceneIO.save(buildScene(), file);
+                byte[] before = Files.readAllBytes(file.toPath());
+
+                Node broken = buildScene();
+                broken.getChildren().get(2).addChild(new BrokenNode());
+                Assertions.assertThrows(IllegalStateException.class, () -> SceneIO.save(broken, file));
+                Assertions.assertArrayEquals(before, Files.readAllBytes(file.toPath()), name);
+            }
+            // no temporary files are left behind.
+            Assertions.assertEquals(2, Objects.requireNonNull(folder.listFiles()).length);
+        } finally {
+            for(File f : Objects.requireNonNull(folder.listFiles())) f.delete();
+            folder.delete();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.marginallyclever.ro3.node.nodes.marlinrobotarm;
+
+import com.marginallyclever.ro3.Registry;
+import com.marginallyclever.ro3.apps.actions.LoadScene;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import java.io.File;
+import java.util.Random;
+
+public class MarlinRobotArmModelTest {
+    private static final double EPSILON = 1e-6;
+
+    @BeforeEach
+    public void setup() {
+        Registry.start();
+    }
+
+    private MarlinRobotArm build6AxisArm() throws Exception {
+        var load = new LoadScene(null,null);
+        File file = new File("src/test/resources/com/marginallyclever/ro3/apps/node/nodes/marlinrobotarm/Sixi3-5.RO");
+        load.commitLoad(file);
+        return (MarlinRobotArm) Registry.getScene().get("./Sixi3/MarlinRobotArm");
+    }
+
+    private double [] randomJoints(MarlinRobotArmModel model,Random random) {
+        double [] joints = new double[model.getNumJoints()];
+        for(int i=0;i<joints.length;++i) {
+            double min = model.getJointMin(i);
+            double max = model.getJointMax(i);
+            joints[i] = min + random.nextDouble() * (max-min);
+        }
+        return joints;
+    }
+
+    /**
+     * @return the end effector of the arm relative to the nearest {@link Pose} above the arm.
+     */
+    private Point3d getEndEffectorInArm(MarlinRobotArm arm) {
+        Matrix4d world = arm.getEndEffector().getWorld();
+        Pose parent = arm.findParent(Pose.class);
+        if(parent!=null) {
+            Matrix4d inverse = parent.getWorld();
+            inverse.invert();
+            world.mul(inverse,world);
+        }
+        return new Point3d(world.m03,world.m13,world.m23);
+    }
+
+    @Test
+    public void matchesTheArm() throws Exception {
+        MarlinRobotArm arm = build6AxisArm();
+        MarlinRobotArmModel model = new MarlinRobotArmModel(arm);
+        Assertions.assertEquals(arm.getNumJoints(),model.getNumJoints());
+
+        double [] before = arm.getAllJointAngles();
+        Random random = new Random(1234);
+        Point3d p = new Point3d();
+        for(int n=0;n<20;++n) {
+            double [] joints = randomJoints(model,random);
+            Assertions.assertTrue(model.getEndEffectorPosition(joints,p));
+            // the model does not move the arm.
+            Assertions.assertArrayEquals(before,arm.getAllJointAngles());
+
+            arm.setAllJointAngles(joints);
+            Point3d expected = getEndEffectorInArm(arm);
+            Assertions.assertEquals(0,expected.distance(p),EPSILON,"pose "+n);
+            arm.setAllJointAngles(before);
+        }
+    }
+
+    @Test
+    public void chainEndsAtTheEndEffector() throws Exception {
+        MarlinRobotArmModel model = new MarlinRobotArmModel(build6AxisArm());
+        Point3d [] chain = new Point3d[model.getNumChainPositions()];
+        for(int i=0;i<chain.length;++i) chain[i] = new Point3d();
+        // the base, at least one hinge, and the end effector.
+        Assertions.assertTrue(chain.length>2);
+
+        double [] joints = randomJoints(model,new Random(5678));
+        Point3d p = new Point3d();
+        Assertions.assertTrue(model.getChainPositions(joints,chain));
+        Assertions.assertTrue(model.getEndEffectorPosition(joints,p));
+        Assertions.assertEquals(0,chain[0].distance(new Point3d()),EPSILON);
+        Assertions.assertEquals(0,chain[chain.length-1].distance(p),EPSILON);
+    }
+
+    @Test
+    public void copyGivesTheSameAnswer() throws Exception {
+        MarlinRobotArmModel model = new MarlinRobotArmModel(build6AxisArm());
+        MarlinRobotArmModel copy = model.copy();
+        Assertions.assertNotSame(model,copy);
+        Assertions.assertEquals(model.getNumJoints(),copy.getNumJoints());
+
+        double [] joints = randomJoints(model,new Random(42));
+        Point3d a = new Point3d();
+        Point3d b = new Point3d();
+        Assertions.assertTrue(model.getEndEffectorPosition(joints,a));
+        Assertions.assertTrue(copy.getEndEffectorPosition(joints,b));
+        Assertions.assertEquals(0,a.distance(b),EPSILON);
+    }
+
+    @Test
+    public void armWithoutEndEffectorIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class,()->new MarlinRobotArmModel(new MarlinRobotArm()));
+    }
+}
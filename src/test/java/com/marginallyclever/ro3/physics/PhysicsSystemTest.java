@@ -0,0 +1,163 @@
+package com.marginallyclever.ro3.physics;
+
+import com.marginallyclever.convenience.helpers.MatrixHelper;
+import com.marginallyclever.ro3.node.Node;
+import com.marginallyclever.ro3.node.nodes.RigidBody3D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+
+public class PhysicsSystemTest {
+    private static void run(PhysicsSystem physics, Node scene, double seconds) {
+        double dt = 1.0/60.0;
+        for(double t=0;t<seconds;t+=dt) {
+            physics.update(scene,dt);
+        }
+    }
+
+    private static PhysicsSystem createWithGravity() {
+        PhysicsSystem physics = new PhysicsSystem();
+        physics.setGravity(new Vector3d(0,0,PhysicsSystem.EARTH_GRAVITY));
+        physics.setGroundPlane(true);
+        return physics;
+    }
+
+    @Test
+    public void gravityAndGroundAreOffByDefault() {
+        PhysicsSystem physics = new PhysicsSystem();
+        Assertions.assertEquals(0, physics.getGravity().length(), 1e-9);
+        Assertions.assertFalse(physics.hasGroundPlane());
+
+        Node scene = new Node("Scene");
+        RigidBody3D box = new RigidBody3D();
+        box.setPosition(new Vector3d(0,0,50));
+        scene.addChild(box);
+        run(physics, scene, 1);
+        Assertions.assertEquals(50, box.getPosition().z, 1e-6);
+        physics.reset();
+    }
+
+    @Test
+    public void boxFallsAndRestsOnGround() {
+        PhysicsSystem physics = createWithGravity();
+        Node scene = new Node("Scene");
+        RigidBody3D box = new RigidBody3D();
+        box.setPosition(new Vector3d(0,0,50));
+        scene.addChild(box);
+
+        run(physics, scene, 0.25);
+        Assertions.assertTrue(box.getPosition().z < 50);
+
+        run(physics, scene, 3);
+        // a 10cm box resting on z=0 has its center at z=5.
+        Assertions.assertEquals(5, box.getPosition().z, 1.0);
+        physics.reset();
+    }
+
+    @Test
+    public void kinematicBodyIsNotMovedByGravity() {
+        PhysicsSystem physics = createWithGravity();
+        Node scene = new Node("Scene");
+        RigidBody3D body = new RigidBody3D();
+        body.setKinematic(true);
+        body.setPosition(new Vector3d(0,0,50));
+        scene.addChild(body);
+
+        run(physics, scene, 1);
+        Assertions.assertEquals(50, body.getPosition().z, 1e-9);
+        physics.reset();
+    }
+
+    @Test
+    public void bodiesFollowTheScene() {
+        PhysicsSystem physics = new PhysicsSystem();
+        Node scene = new Node("Scene");
+        Node group = new Node("group");
+        group.addChild(new RigidBody3D("a"));
+        group.addChild(new RigidBody3D("b"));
+        physics.update(scene, 0);
+        Assertions.assertEquals(0, physics.getBodyCount());
+
+        // nested bodies are found when their parent is attached.
+        scene.addChild(group);
+        physics.update(scene, 0);
+        Assertions.assertEquals(2, physics.getBodyCount());
+
+        scene.removeChild(group);
+        physics.update(scene, 0);
+        Assertions.assertEquals(0, physics.getBodyCount());
+
+        // a new scene replaces all bodies.
+        Node scene2 = new Node("Scene");
+        scene2.addChild(new RigidBody3D());
+        physics.update(scene2, 0);
+        Assertions.assertEquals(1, physics.getBodyCount());
+        physics.reset();
+    }
+
+    @Test
+    public void conveyorCarriesBoxes() {
+        PhysicsSystem physics = createWithGravity();
+        Node scene = new Node("Scene");
+        RigidBody3D belt = new RigidBody3D("belt");
+        belt.setKinematic(true);
+        belt.setSize(new Vector3d(200,40,10));
+        belt.setPosition(new Vector3d(0,0,5));
+        belt.setSurfaceVelocity(new Vector3d(50,0,0));
+        scene.addChild(belt);
+
+        RigidBody3D box = new RigidBody3D("box");
+        box.setPosition(new Vector3d(-50,0,15.5));
+        scene.addChild(box);
+
+        run(physics, scene, 1);
+        // the belt does not move, the box is carried along +x and stays on top.
+        Assertions.assertEquals(0, belt.getPosition().x, 1e-9);
+        Assertions.assertTrue(box.getPosition().x > -40, "box x=" + box.getPosition().x);
+        Assertions.assertEquals(0, box.getPosition().y, 1.0);
+        Assertions.assertEquals(15, box.getPosition().z, 1.0);
+        physics.reset();
+    }
+
+    @Test
+    public void otherScenesAreIgnoredAndResetStopsListening() {
+        PhysicsSystem physics = new PhysicsSystem();
+        Node scene = new Node("Scene");
+        physics.update(scene, 0);
+
+        // a tree that is not the simulated scene is not queued.
+        Node other = new Node("other");
+        other.addChild(new RigidBody3D());
+        physics.update(scene, 0);
+        Assertions.assertEquals(0, physics.getBodyCount());
+
+        // many changes without an update do not pile up.
+        for(int i=0;i<PhysicsSystem.MAX_PENDING*2;++i) {
+            scene.addChild(new RigidBody3D());
+        }
+        physics.update(scene, 0);
+        Assertions.assertEquals(PhysicsSystem.MAX_PENDING*2, physics.getBodyCount());
+
+        physics.reset();
+        scene.addChild(new RigidBody3D());
+        Assertions.assertEquals(0, physics.getBodyCount());
+    }
+
+    @Test
+    public void invertAffine() {
+        Matrix4d m = MatrixHelper.createIdentityMatrix4();
+        m.rotZ(0.3);
+        Matrix4d r = new Matrix4d();
+        r.rotX(-1.1);
+        m.mul(r);
+        m.setScale(2);
+        m.setTranslation(new Vector3d(1,-2,3));
+
+        Matrix4d expected = new Matrix4d(m);
+        expected.invert();
+        PhysicsSystem.invertAffine(m);
+        Assertions.assertTrue(expected.epsilonEquals(m,1e-9));
+    }
+}
@@ -0,0 +1,105 @@
+package com.marginallyclever.ro3.texture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TextureFactoryTest {
+    private final List<File> files = new ArrayList<>();
+
+    @AfterEach
+    public void cleanup() {
+        for(File f : files) f.delete();
+    }
+
+    private File createImage(int size,int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(size,size,BufferedImage.TYPE_INT_ARGB);
+        for(int y=0;y<size;++y) {
+            for(int x=0;x<size;++x) {
+                image.setRGB(x,y,rgb);
+            }
+        }
+        File f = File.createTempFile("texture",".png");
+        files.add(f);
+        ImageIO.write(image,"png",f);
+        return f;
+    }
+
+    @Test
+    public void loadIsHashedBySource() throws IOException {
+        TextureFactory factory = new TextureFactory();
+        File f = createImage(16,0xFF00FF00);
+        TextureWithMetadata a = factory.load(f.getAbsolutePath());
+        Assertions.assertNotNull(a);
+        Assertions.assertSame(a,factory.load(f.getAbsolutePath()));
+        Assertions.assertEquals(1,factory.getPool().getList().size());
+        // the size is known before the image is decoded.
+        Assertions.assertEquals(16,a.getWidth());
+        Assertions.assertEquals(16,a.getHeight());
+        Assertions.assertEquals(0xFF00FF00,a.getImage().getRGB(3,4));
+    }
+
+    @Test
+    public void sameContentsShareOneImage() throws IOException {
+        TextureFactory factory = new TextureFactory();
+        File f1 = createImage(16,0xFFFF0000);
+        File f2 = new File(f1.getParentFile(),"copy-"+f1.getName());
+        Files.copy(f1.toPath(),f2.toPath());
+        files.add(f2);
+
+        TextureWithMetadata a = factory.load(f1.getAbsolutePath());
+        TextureWithMetadata b = factory.load(f2.getAbsolutePath());
+        Assertions.assertNotSame(a,b);
+        Assertions.assertEquals(a.getContentKey(),b.getContentKey());
+        Assertions.assertSame(a.getImage(),b.getImage());
+        Assertions.assertEquals(2,factory.getAllSourcesForExport().size());
+    }
+
+    @Test
+    public void cacheStaysInBudget() throws IOException {
+        TextureFactory factory = new TextureFactory();
+        long oneImage = 64*64*4;
+        factory.setMemoryBudget(oneImage+1);
+        TextureWithMetadata a = factory.load(createImage(64,0xFF0000FF).getAbsolutePath());
+        TextureWithMetadata b = factory.load(createImage(64,0xFFFFFFFF).getAbsolutePath());
+        Assertions.assertNotNull(a.getImage());
+        Assertions.assertNotNull(b.getImage());
+        Assertions.assertEquals(oneImage,factory.getMemoryUsed());
+        // dropped images are decoded again.
+        Assertions.assertEquals(0xFF0000FF,a.getImage().getRGB(0,0));
+        Assertions.assertEquals(oneImage,factory.getMemoryUsed());
+    }
+
+    @Test
+    public void notAnImage() throws IOException {
+        TextureFactory factory = new TextureFactory();
+        File f = File.createTempFile("texture",".png");
+        files.add(f);
+        Files.writeString(f.toPath(),"not an image");
+        Assertions.assertNull(factory.load(f.getAbsolutePath()));
+        Assertions.assertTrue(factory.getPool().getList().isEmpty());
+    }
+
+    @Test
+    public void thumbnailIsScaledAndKept() throws Exception {
+        TextureFactory factory = new TextureFactory();
+        File f = createImage(256,0xFFFF0000);
+        TextureWithMetadata t = factory.load(f.getAbsolutePath());
+        BufferedImage small = t.getThumbnail(64).get(5,TimeUnit.SECONDS);
+        Assertions.assertEquals(64,small.getWidth());
+        Assertions.assertEquals(64,small.getHeight());
+        Assertions.assertEquals(0xFFFF0000,small.getRGB(32,32));
+        // the second request does not decode again.
+        Assertions.assertTrue(t.getThumbnail(64).isDone());
+        Assertions.assertSame(small,t.getThumbnail(64).get());
+    }
+}
@@ -0,0 +1,148 @@
+package com.marginallyclever.ro3.workcell;
+
+import com.marginallyclever.convenience.Cylinder;
+import com.marginallyclever.convenience.helpers.IntersectionHelper;
+import com.marginallyclever.ro3.workspace.DHChainModel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.util.List;
+
+public class WorkcellSchedulerTest {
+    private static final double [] AT_OTHER = {0,0};
+    private static final double [] UP = {90,0};
+    private static final double [] AWAY = {150,0};
+
+    /**
+     * Two links of length 1 that turn around Z.
+     */
+    private static DHChainModel createModel() {
+        DHChainModel model = new DHChainModel();
+        model.addLink(0,1,0,0,true,-180,180);
+        model.addLink(0,1,0,0,true,-180,180);
+        return model;
+    }
+
+    /**
+     * Two arms 2.5 apart on the X axis, facing each other.  At {@link #AT_OTHER} they reach into each other.
+     */
+    private static WorkcellArm createArm(String name,boolean right,double [] home) {
+        Matrix4d base = new Matrix4d();
+        base.setIdentity();
+        if(right) {
+            base.rotZ(Math.PI);
+            base.setTranslation(new Vector3d(2.5,0,0));
+        }
+        return new WorkcellArm(name,createModel(),base,0.1,90,home);
+    }
+
+    private static boolean touching(WorkcellArm a,double [] qa,WorkcellArm b,double [] qb) {
+        Cylinder [] ca = new Cylinder[a.getNumCapsules()];
+        Cylinder [] cb = new Cylinder[b.getNumCapsules()];
+        for(int i=0;i<ca.length;++i) ca[i] = new Cylinder();
+        for(int i=0;i<cb.length;++i) cb[i] = new Cylinder();
+        a.getCapsules(qa,ca);
+        b.getCapsules(qb,cb);
+        for(Cylinder c0 : ca) {
+            for(Cylinder c1 : cb) {
+                if(IntersectionHelper.cylinderCylinder(c0,c1)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check much more often than the scheduler did.
+     */
+    private static void assertNeverTouch(WorkcellSchedule schedule) {
+        double [] qa = new double[2];
+        double [] qb = new double[2];
+        double end = schedule.getCycleTime()+1;
+        for(double t=0;t<=end;t+=0.002) {
+            schedule.getJoints(0,t,qa);
+            schedule.getJoints(1,t,qb);
+            Assertions.assertFalse(touching(schedule.getArm(0),qa,schedule.getArm(1),qb),"touching at "+t);
+        }
+    }
+
+    @Test
+    public void testArmsReallyCollide() {
+        WorkcellArm a = createArm("a",false,UP);
+        WorkcellArm b = createArm("b",true,UP);
+        Assertions.assertTrue(touching(a,AT_OTHER,b,AT_OTHER));
+        Assertions.assertFalse(touching(a,UP,b,UP));
+        Assertions.assertFalse(touching(a,AT_OTHER,b,UP));
+    }
+
+    @Test
+    public void testWaitInsteadOfColliding() {
+        WorkcellArm a = createArm("a",false,UP);
+        a.addTask(AT_OTHER,UP);
+        WorkcellArm b = createArm("b",true,UP);
+        b.addTask(AT_OTHER,UP);
+
+        WorkcellScheduler scheduler = new WorkcellScheduler();
+        scheduler.setTimeStep(0.01);
+        WorkcellSchedule schedule = scheduler.plan(List.of(a,b));
+
+        Assertions.assertEquals(0,schedule.getWaitTime(0));
+        Assertions.assertEquals(2,schedule.getEndTime(0),1e-9);
+        Assertions.assertTrue(schedule.getWaitTime(1)>0);
+        // some overlap is still allowed, so it is better than one after the other.
+        Assertions.assertTrue(schedule.getCycleTime()>2);
+        Assertions.assertTrue(schedule.getCycleTime()<4);
+        assertNeverTouch(schedule);
+    }
+
+    @Test
+    public void testSameAnswerEveryTime() {
+        WorkcellSchedule [] results = new WorkcellSchedule[2];
+        for(int k=0;k<2;++k) {
+            WorkcellArm a = createArm("a",false,UP);
+            a.addTask(AT_OTHER,UP);
+            WorkcellArm b = createArm("b",true,UP);
+            b.addTask(AT_OTHER,UP);
+            b.addTask(AWAY,UP);
+            results[k] = new WorkcellScheduler().plan(List.of(a,b));
+        }
+        for(int arm=0;arm<2;++arm) {
+            List<WorkcellSchedule.Move> m0 = results[0].getMoves(arm);
+            List<WorkcellSchedule.Move> m1 = results[1].getMoves(arm);
+            Assertions.assertEquals(m0.size(),m1.size());
+            for(int i=0;i<m0.size();++i) {
+                Assertions.assertEquals(m0.get(i).start(),m1.get(i).start());
+                Assertions.assertEquals(m0.get(i).end(),m1.get(i).end());
+            }
+        }
+    }
+
+    @Test
+    public void testReorderTasks() {
+        WorkcellScheduler scheduler = new WorkcellScheduler();
+        scheduler.setTimeStep(0.01);
+        double [] cycle = new double[2];
+        for(int k=0;k<2;++k) {
+            WorkcellArm a = createArm("a",false,UP);
+            a.addTask(AT_OTHER,UP);
+            WorkcellArm b = createArm("b",true,UP);
+            b.addTask(AT_OTHER,UP);
+            b.addTask(AWAY,UP);
+            scheduler.setReorderTasks(k==1);
+            WorkcellSchedule schedule = scheduler.plan(List.of(a,b));
+            assertNeverTouch(schedule);
+            cycle[k] = schedule.getCycleTime();
+            Assertions.assertEquals(k==1 ? List.of(1,0) : List.of(0,1),schedule.getTaskOrder(1));
+        }
+        Assertions.assertTrue(cycle[1]<cycle[0]);
+    }
+
+    @Test
+    public void testBlockedAtHome() {
+        WorkcellArm a = createArm("a",false,UP);
+        a.addTask(AT_OTHER,UP);
+        WorkcellArm b = createArm("b",true,AT_OTHER);
+        Assertions.assertThrows(IllegalStateException.class,()->new WorkcellScheduler().plan(List.of(a,b)));
+    }
+}
@@ -0,0 +1,224 @@
+package com.marginallyclever.ro3.workspace;
+
+import com.marginallyclever.ro3.node.nodes.DHParameter;
+import com.marginallyclever.ro3.node.nodes.Pose;
+import com.marginallyclever.robotoverlord.components.DHComponent;
+import com.marginallyclever.robotoverlord.components.PoseComponent;
+import com.marginallyclever.robotoverlord.entity.Entity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class DHBatchKinematicsTest {
+    // d, r, alpha, theta, min, max of six revolute joints and one prismatic joint.
+    private static final double [][] LINKS = {
+            {10, 0, 90, 0,-170,170},
+            { 0,30,  0,90, -90, 90},
+            { 0,25,  0, 0,-150,150},
+            { 5, 0,-90, 0,-180,180},
+            {20, 0, 90, 0,-120,120},
+            { 0, 2,-30,15,   0, 50},
+            { 4, 0,  0, 0,-180,180},
+    };
+    private static final int PRISMATIC = 5;
+
+    private static Matrix4d getBase() {
+        Matrix4d base = new Matrix4d();
+        base.rotZ(0.3);
+        base.setTranslation(new Vector3d(1,2,3));
+        return base;
+    }
+
+    private static Matrix4d getTool() {
+        Matrix4d tool = new Matrix4d();
+        tool.rotX(-0.7);
+        tool.setTranslation(new Vector3d(0,0,6));
+        return tool;
+    }
+
+    /**
+     * Six revolute joints and one prismatic joint, with a base and tool that are not the identity.
+     */
+    private static DHChainModel createArm() {
+        DHChainModel arm = new DHChainModel();
+        for(int i=0;i<LINKS.length;++i) {
+            double [] link = LINKS[i];
+            arm.addLink(link[0],link[1],link[2],link[3],i!=PRISMATIC,link[4],link[5]);
+        }
+        arm.setBase(getBase());
+        arm.setTool(getTool());
+        return arm;
+    }
+
+    /**
+     * The same arm as {@link #createArm()}, one {@link Entity} with a {@link DHComponent} per link.
+     * @param joints filled with the {@link DHComponent} of each link.
+     * @return the tool entity.
+     */
+    private static Entity createLegacyArm(List<DHComponent> joints) {
+        Entity base = new Entity("base");
+        base.getComponent(PoseComponent.class).setLocalMatrix4(getBase());
+        Entity parent = base;
+        for(int i=0;i<LINKS.length;++i) {
+            double [] link = LINKS[i];
+            Entity child = new Entity("link"+i);
+            parent.addEntity(child);
+            DHComponent dh = new DHComponent();
+            child.addComponent(dh);
+            dh.set(link[0],link[1],link[2],link[3],link[5],link[4],i!=PRISMATIC);
+            joints.add(dh);
+            parent = child;
+        }
+        Entity tool = new Entity("tool");
+        parent.addEntity(tool);
+        tool.getComponent(PoseComponent.class).setLocalMatrix4(getTool());
+        return tool;
+    }
+
+    /**
+     * The same arm as {@link #createArm()}, one {@link Pose} per link.  Each {@link DHParameter} sets the local of
+     * the {@link Pose} next to it.
+     * @param joints filled with the {@link DHParameter} of each link.
+     * @return the tool pose.
+     */
+    private static Pose createPoseArm(List<DHParameter> joints) {
+        Pose base = new Pose("base");
+        base.setLocal(getBase());
+        Pose parent = base;
+        for(int i=0;i<LINKS.length;++i) {
+            double [] link = LINKS[i];
+            DHParameter dh = new DHParameter();
+            Pose child = new Pose("link"+i);
+            parent.addChild(dh);
+            parent.addChild(child);
+            dh.setD(link[0]);
+            dh.setR(link[1]);
+            dh.setAlpha(link[2]);
+            dh.setTheta(link[3]);
+            dh.toPose();
+            joints.add(dh);
+            parent = child;
+        }
+        Pose tool = new Pose("tool");
+        tool.setLocal(getTool());
+        parent.addChild(tool);
+        return tool;
+    }
+
+    /**
+     * @return count random joint states, one sample per column.
+     */
+    private static double [] randomJoints(DHChainModel arm,int stride,int count,Random random) {
+        int n = arm.getNumJoints();
+        double [] joints = new double[n*stride];
+        for(int j=0;j<n;++j) {
+            for(int s=0;s<count;++s) {
+                double lo = arm.getJointMin(j);
+                double hi = arm.getJointMax(j);
+                joints[j*stride+s] = lo + (hi-lo)*random.nextDouble();
+            }
+        }
+        return joints;
+    }
+
+    private static void assertPoseEquals(Matrix4d expected,Matrix4d actual,int sample) {
+        for(int row=0;row<4;++row) {
+            for(int col=0;col<4;++col) {
+                Assertions.assertEquals(expected.getElement(row,col),actual.getElement(row,col),1e-9,
+                        "sample "+sample+" element "+row+","+col);
+            }
+        }
+    }
+
+    @Test
+    public void matchesOneJointAtATime() {
+        DHChainModel arm = createArm();
+        DHBatchKinematics batch = arm.getBatch();
+        int n = arm.getNumJoints();
+        Assertions.assertEquals(n,batch.getNumJoints());
+
+        // stride bigger than count, to check that nothing past count is touched.
+        int count = 1000;
+        int stride = 1003;
+        double [] joints = randomJoints(arm,stride,count,new Random(1234));
+        double [] poses = new double[DHBatchKinematics.POSE_SIZE*stride];
+        poses[stride-1] = 42;
+
+        batch.solve(joints,poses,stride,count);
+        Assertions.assertEquals(42,poses[stride-1]);
+
+        double [] q = new double[n];
+        Matrix4d expected = new Matrix4d();
+        Matrix4d actual = new Matrix4d();
+        for(int s=0;s<count;++s) {
+            for(int j=0;j<n;++j) q[j] = joints[j*stride+s];
+            arm.getEndEffectorPose(q,expected);
+            DHBatchKinematics.getPose(poses,stride,s,actual);
+            assertPoseEquals(expected,actual,s);
+        }
+    }
+
+    @Test
+    public void matchesLegacyDHComponents() {
+        DHChainModel arm = createArm();
+        DHBatchKinematics batch = arm.getBatch();
+        List<DHComponent> links = new ArrayList<>();
+        Entity tool = createLegacyArm(links);
+
+        int count = 100;
+        double [] joints = randomJoints(arm,count,count,new Random(5678));
+        double [] poses = new double[DHBatchKinematics.POSE_SIZE*count];
+        batch.solve(joints,poses,count,count);
+
+        Matrix4d actual = new Matrix4d();
+        for(int s=0;s<count;++s) {
+            for(int j=0;j<links.size();++j) {
+                double v = joints[j*count+s];
+                if(j==PRISMATIC) links.get(j).setD(v);
+                else links.get(j).setTheta(v);
+            }
+            DHBatchKinematics.getPose(poses,count,s,actual);
+            assertPoseEquals(tool.getComponent(PoseComponent.class).getWorld(),actual,s);
+        }
+    }
+
+    @Test
+    public void matchesPoseChain() {
+        DHChainModel arm = createArm();
+        DHBatchKinematics batch = arm.getBatch();
+        List<DHParameter> links = new ArrayList<>();
+        Pose tool = createPoseArm(links);
+
+        int count = 100;
+        double [] joints = randomJoints(arm,count,count,new Random(9012));
+        double [] poses = new double[DHBatchKinematics.POSE_SIZE*count];
+        batch.solve(joints,poses,count,count);
+
+        Matrix4d actual = new Matrix4d();
+        for(int s=0;s<count;++s) {
+            for(int j=0;j<links.size();++j) {
+                DHParameter link = links.get(j);
+                double v = joints[j*count+s];
+                if(j==PRISMATIC) link.setD(v);
+                else link.setTheta(v);
+                link.toPose();
+            }
+            DHBatchKinematics.getPose(poses,count,s,actual);
+            assertPoseEquals(tool.getWorld(),actual,s);
+        }
+    }
+
+    @Test
+    public void badSizes() {
+        DHBatchKinematics batch = createArm().getBatch();
+        int n = batch.getNumJoints();
+        Assertions.assertThrows(IllegalArgumentException.class,()->batch.solve(new double[n*10],new double[DHBatchKinematics.POSE_SIZE*10],10,11));
+        Assertions.assertThrows(IllegalArgumentException.class,()->batch.solve(new double[n*10-1],new double[DHBatchKinematics.POSE_SIZE*10],10,10));
+        Assertions.assertThrows(IllegalArgumentException.class,()->batch.solve(new double[n*10],new double[DHBatchKinematics.POSE_SIZE*10-1],10,10));
+    }
+}
@@ -0,0 +1,125 @@
+package com.marginallyclever.ro3.workspace;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Point3d;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class WorkspaceAnalyzerTest {
+    /**
+     * Three slides along x, y, and z.  The joints are the position.
+     */
+    private static class Gantry implements InverseKinematics {
+        @Override public int getNumJoints() { return 3; }
+        @Override public double getJointMin(int index) { return 0; }
+        @Override public double getJointMax(int index) { return 10; }
+
+        @Override
+        public boolean solve(Point3d target, double[] joints) {
+            joints[0] = target.x;
+            joints[1] = target.y;
+            joints[2] = target.z;
+            return true;
+        }
+
+        @Override public Gantry copy() { return new Gantry(); }
+    }
+
+    /**
+     * A turntable and two links of length 1, so it can reach a sphere of radius 2.
+     */
+    private static DHChainModel createArm() {
+        DHChainModel arm = new DHChainModel();
+        arm.addLink(0,0,90,0,true,-170,170);
+        arm.addLink(0,1,0,0,true,-90,90);
+        arm.addLink(0,1,0,0,true,-150,150);
+        return arm;
+    }
+
+    @Test
+    public void gantryReachesItsTravel() {
+        WorkspaceAnalyzer analyzer = new WorkspaceAnalyzer(new Gantry());
+        WorkspaceGrid grid = analyzer.solveGrid(new Point3d(-2,-2,-2),new Point3d(12,12,12),1);
+
+        Assertions.assertEquals(15,grid.getSizeX());
+        // voxel centers from 0.5 to 9.5 are inside the travel.
+        Assertions.assertEquals(1000,grid.getReachableCount());
+        Assertions.assertEquals(1000,grid.getReachableVolume(),1e-9);
+
+        int center = grid.getIndex(new Point3d(5.2,5.2,5.2));
+        Assertions.assertTrue(grid.isReachable(center));
+        Assertions.assertEquals(0.9,grid.getJointLimitMargin(center),0.01);
+        // moving the end effector moves the joints one for one.
+        Assertions.assertEquals(1,grid.getManipulability(center),1e-3);
+
+        Assertions.assertFalse(grid.isReachable(grid.getIndex(new Point3d(-1,5,5))));
+        Assertions.assertFalse(grid.isReachable(grid.getIndex(new Point3d(5,5,11))));
+    }
+
+    @Test
+    public void armStaysInsideItsReach() {
+        WorkspaceAnalyzer analyzer = new WorkspaceAnalyzer(createArm());
+        analyzer.setSamples(20000);
+
+        Point3d min = new Point3d();
+        Point3d max = new Point3d();
+        Assertions.assertTrue(analyzer.findBounds(min,max));
+        Assertions.assertTrue(max.x<=2+1e-9 && min.x>=-2-1e-9);
+        Assertions.assertTrue(max.x>1.5);
+
+        double voxelSize = 0.25;
+        WorkspaceGrid grid = analyzer.sampleJointSpace(min,max,voxelSize);
+        Assertions.assertTrue(grid.getReachableCount()>0);
+        Assertions.assertTrue(grid.getMaxManipulability()>0);
+
+        Point3d p = new Point3d();
+        double slack = voxelSize*Math.sqrt(3)/2;
+        for(int i=0;i<grid.getNumVoxels();++i) {
+            if(!grid.isReachable(i)) continue;
+            grid.getCenter(i,p);
+            double r = Math.sqrt(p.x*p.x+p.y*p.y+p.z*p.z);
+            Assertions.assertTrue(r<=2+slack,"voxel "+i+" is out of reach at "+r);
+        }
+    }
+
+    @Test
+    public void sameSeedGivesSameGrid() {
+        WorkspaceAnalyzer analyzer = new WorkspaceAnalyzer(createArm());
+        analyzer.setSamples(5000);
+        analyzer.setSeed(42);
+        Point3d min = new Point3d(-2,-2,-2);
+        Point3d max = new Point3d(2,2,2);
+        WorkspaceGrid a = analyzer.sampleJointSpace(min,max,0.5);
+        WorkspaceGrid b = analyzer.sampleJointSpace(min,max,0.5);
+        for(int i=0;i<a.getNumVoxels();++i) {
+            Assertions.assertEquals(a.getHits(i),b.getHits(i));
+            Assertions.assertEquals(a.getManipulability(i),b.getManipulability(i));
+        }
+    }
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        WorkspaceAnalyzer analyzer = new WorkspaceAnalyzer(createArm());
+        analyzer.setSamples(5000);
+        WorkspaceGrid before = analyzer.sampleJointSpace(new Point3d(-2,-2,-2),new Point3d(2,2,2),0.5);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        before.save(out);
+        WorkspaceGrid after = WorkspaceGrid.load(new ByteArrayInputStream(out.toByteArray()));
+
+        Assertions.assertEquals(before.getSizeX(),after.getSizeX());
+        Assertions.assertEquals(before.getVoxelSize(),after.getVoxelSize());
+        Assertions.assertEquals(before.getOrigin().x,after.getOrigin().x);
+        Assertions.assertEquals(before.getMaxManipulability(),after.getMaxManipulability());
+        for(int i=0;i<before.getNumVoxels();++i) {
+            Assertions.assertEquals(before.getHits(i),after.getHits(i));
+            Assertions.assertEquals(before.getJointLimitMargin(i),after.getJointLimitMargin(i));
+            Assertions.assertEquals(before.getManipulability(i),after.getManipulability(i));
+        }
+
+        Assertions.assertThrows(IOException.class,()->WorkspaceGrid.load(new ByteArrayInputStream(new byte[10])));
+    }
+}
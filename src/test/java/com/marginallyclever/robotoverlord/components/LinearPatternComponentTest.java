@@ -0,0 +1,155 @@
+package com.marginallyclever.robotoverlord.components;
+
+import com.marginallyclever.convenience.Ray;
+import com.marginallyclever.robotoverlord.RayHit;
+import com.marginallyclever.robotoverlord.components.shapes.Box;
+import com.marginallyclever.robotoverlord.entity.Entity;
+import com.marginallyclever.robotoverlord.entity.EntityManager;
+import com.marginallyclever.robotoverlord.systems.render.mesh.AABB;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import java.util.Map;
+
+public class LinearPatternComponentTest {
+    /**
+     * A unit box at the origin and a pattern of copies stepping along +x.
+     */
+    private static LinearPatternComponent makePattern(double spacing,int quantity) {
+        Entity root = new Entity("root");
+        Entity source = new Entity("source");
+        source.addComponent(new Box());
+        root.addEntity(source);
+
+        Entity patternEntity = new Entity("pattern");
+        LinearPatternComponent pattern = new LinearPatternComponent();
+        patternEntity.addComponent(pattern);
+        root.addEntity(patternEntity);
+
+        pattern.source.set(source.getUniqueID());
+        pattern.measure.set(spacing);
+        pattern.quantity.set(quantity);
+        return pattern;
+    }
+
+    @Test
+    public void testInstanceTransforms() {
+        LinearPatternComponent pattern = makePattern(2,5);
+        Entity source = pattern.getSource();
+        Assertions.assertNotNull(source);
+        source.getComponent(PoseComponent.class).setPosition(new Vector3d(1,0,0));
+
+        // turn the pattern so that its x axis points along world y.
+        Matrix4d turn = new Matrix4d();
+        turn.rotZ(Math.PI/2);
+        pattern.getEntity().getComponent(PoseComponent.class).setLocalMatrix4(turn);
+
+        Matrix4d m = new Matrix4d();
+        pattern.getInstanceTransform(0,m);
+        Assertions.assertTrue(m.epsilonEquals(source.getComponent(PoseComponent.class).getWorld(),1e-9));
+        pattern.getInstanceTransform(3,m);
+        Assertions.assertEquals(1,m.m03,1e-9);
+        Assertions.assertEquals(6,m.m13,1e-9);
+        Assertions.assertEquals(0,m.m23,1e-9);
+
+        // the same copies, given as the distance from the first to the last.
+        pattern.spacingType.set(LinearPatternComponent.DISTANCE);
+        pattern.measure.set(8.0);
+        pattern.getInstanceTransform(3,m);
+        Assertions.assertEquals(6,m.m13,1e-9);
+    }
+
+    @Test
+    public void testPickFindsTheNearestCopy() {
+        LinearPatternComponent pattern = makePattern(3,4);
+        pattern.getModel().updateCuboid();
+
+        // copies at x=3,6,9.  The source at x=0 is found through its own shape.
+        Ray ray = new Ray(new Point3d(20,0,0),new Vector3d(-1,0,0));
+        RayHit hit = pattern.intersect(ray);
+        Assertions.assertNotNull(hit);
+        Assertions.assertEquals(3,hit.index);
+        Assertions.assertSame(pattern,hit.pattern);
+        Assertions.assertSame(pattern.getEntity(),hit.getEntity());
+        Assertions.assertSame(pattern.getSource(),hit.target.getEntity());
+        Assertions.assertEquals(10.5,hit.distance,1e-6);
+
+        // from the other side, the source is in the way but is not a copy.
+        hit = pattern.intersect(new Ray(new Point3d(-20,0,0),new Vector3d(1,0,0)));
+        Assertions.assertNotNull(hit);
+        Assertions.assertEquals(1,hit.index);
+
+        Assertions.assertNull(pattern.intersect(new Ray(new Point3d(20,0,0),new Vector3d(-1,0,0),10)));
+        Assertions.assertNull(pattern.intersect(new Ray(new Point3d(20,2,0),new Vector3d(-1,0,0))));
+    }
+
+    @Test
+    public void testCollisionFindsTheCopy() {
+        LinearPatternComponent pattern = makePattern(3,4);
+        pattern.getModel().updateCuboid();
+
+        AABB box = new AABB();
+        box.setBounds(new Point3d(0.5,0.5,0.5),new Point3d(-0.5,-0.5,-0.5));
+        Matrix4d m = new Matrix4d();
+        m.setIdentity();
+        m.setTranslation(new Vector3d(6.7,0.2,0));
+        box.setPose(m);
+        Assertions.assertEquals(2,pattern.findCollision(box));
+
+        m.setTranslation(new Vector3d(4.5,0,0));
+        box.setPose(m);
+        Assertions.assertEquals(-1,pattern.findCollision(box));
+    }
+
+    @Test
+    public void testMissingSourceIsRememberedUntilTheReferencesChange() {
+        LinearPatternComponent pattern = makePattern(2,3);
+        Entity root = pattern.getEntity().getRoot();
+        Entity late = new Entity("late");
+        pattern.source.set(late.getUniqueID());
+        Assertions.assertNull(pattern.getSource());
+
+        // not searched for again.
+        root.addEntity(late);
+        Assertions.assertNull(pattern.getSource());
+
+        pattern.updateReferences(Map.of());
+        Assertions.assertSame(late,pattern.getSource());
+
+        Entity other = new Entity("other");
+        pattern.source.set(other.getUniqueID());
+        Assertions.assertNull(pattern.getSource());
+        root.addEntity(other);
+        pattern.setSource(other);
+        Assertions.assertSame(other,pattern.getSource());
+    }
+
+    @Test
+    public void testMissingSourceIsFoundAfterTheSceneChanges() {
+        EntityManager entityManager = new EntityManager();
+        Entity patternEntity = new Entity("pattern");
+        LinearPatternComponent pattern = new LinearPatternComponent();
+        patternEntity.addComponent(pattern);
+        entityManager.addEntityToParent(patternEntity,entityManager.getRoot());
+
+        Entity late = new Entity("late");
+        pattern.source.set(late.getUniqueID());
+        Assertions.assertNull(pattern.getSource());
+        entityManager.addEntityToParent(late,entityManager.getRoot());
+        Assertions.assertSame(late,pattern.getSource());
+    }
+
+    @Test
+    public void testSourceInAnotherSceneIsDropped() {
+        LinearPatternComponent pattern = makePattern(2,3);
+        Entity source = pattern.getSource();
+        Assertions.assertNotNull(source);
+
+        source.getParent().removeEntity(source);
+        new Entity("elsewhere").addEntity(source);
+        Assertions.assertNull(pattern.getSource());
+    }
+}
@@ -33,4 +33,30 @@ public class MotorComponentTest {
         Assertions.assertEquals(a, b);
         Assertions.assertEquals(before.gearRatio.get(), after.gearRatio.get());
     }
+
+    /**
+     * The baked table gives the same torque as interpolating the curve by hand.
+     */
+    @Test
+    public void torqueTable() {
+        MotorComponent mc = new DCMotorComponent();
+        mc.setTorqueAtRPM(0,16);
+        mc.setTorqueAtRPM(30,16);
+        mc.setTorqueAtRPM(60,15);
+        mc.setTorqueAtRPM(90,12);
+        mc.setTorqueAtRPM(180,6);
+        mc.setTorqueAtRPM(240,1.8);
+
+        Assertions.assertEquals(16,mc.getTorqueAtRpm(0));
+        Assertions.assertEquals(15,mc.getTorqueAtRpm(60));
+        Assertions.assertEquals(15.5,mc.getTorqueAtRpm(45),1e-9);
+        Assertions.assertEquals(9,mc.getTorqueAtRpm(135),1e-9);
+        Assertions.assertEquals(1.8,mc.getTorqueAtRpm(240),1e-9);
+        Assertions.assertEquals(0,mc.getTorqueAtRpm(241));
+        Assertions.assertEquals(mc.getTorqueAtRpm(135),mc.getTorqueAtRpm(-135));
+
+        // changing the curve bakes a new table.
+        mc.getTorqueCurve().put(120.0,0.0);
+        Assertions.assertEquals(6,mc.getTorqueAtRpm(105),1e-9);
+    }
 }
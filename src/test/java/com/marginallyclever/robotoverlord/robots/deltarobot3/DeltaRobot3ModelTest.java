@@ -0,0 +1,69 @@
+package com.marginallyclever.robotoverlord.robots.deltarobot3;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+public class DeltaRobot3ModelTest {
+    private static final double EPSILON = 1e-6;
+
+    /**
+     * Put each bicep at the solved angle and check that every forearm reaches its wrist.
+     */
+    private void assertReaches(Point3d target, double[] joints) {
+        for(int i=0;i<DeltaRobot3.NUM_ARMS;++i) {
+            double v = Math.PI*2.0 * ((double)i/DeltaRobot3.NUM_ARMS - 1.0/(DeltaRobot3.NUM_ARMS*2.0));
+            DeltaRobot3Arm arm = new DeltaRobot3Arm(new Vector3d(Math.cos(v),Math.sin(v),0));
+            arm.rebuildShoulder();
+            arm.angle = joints[i];
+            arm.updateElbowFromAngle();
+            arm.updateWrist(new Vector3d(target));
+
+            Vector3d forearm = new Vector3d();
+            forearm.sub(arm.wrist,arm.elbow);
+            Assertions.assertEquals(DeltaRobot3.FOREARM_LENGTH,forearm.length(),EPSILON,"arm "+i);
+        }
+    }
+
+    @Test
+    public void solvedAnglesReachTheTarget() {
+        DeltaRobot3Model model = new DeltaRobot3Model(-180,180);
+        Assertions.assertEquals(DeltaRobot3.NUM_ARMS,model.getNumJoints());
+        Point3d [] targets = {
+                new Point3d(0,0,0),
+                new Point3d(2,-1,3),
+                new Point3d(-3,2,-2),
+        };
+        double [] joints = new double[model.getNumJoints()];
+        for(Point3d target : targets) {
+            Assertions.assertTrue(model.solve(target,joints),target.toString());
+            assertReaches(target,joints);
+        }
+    }
+
+    @Test
+    public void unreachableTargetFails() {
+        DeltaRobot3Model model = new DeltaRobot3Model(-180,180);
+        double [] joints = new double[model.getNumJoints()];
+        Assertions.assertFalse(model.solve(new Point3d(0,0,-50),joints));
+        Assertions.assertFalse(model.solve(new Point3d(50,0,0),joints));
+    }
+
+    @Test
+    public void copyGivesTheSameAnswer() {
+        DeltaRobot3Model model = new DeltaRobot3Model(-90,45);
+        DeltaRobot3Model copy = model.copy();
+        Assertions.assertNotSame(model,copy);
+        Assertions.assertEquals(-90,copy.getJointMin(0));
+        Assertions.assertEquals(45,copy.getJointMax(2));
+
+        Point3d target = new Point3d(1,1,1);
+        double [] a = new double[model.getNumJoints()];
+        double [] b = new double[copy.getNumJoints()];
+        Assertions.assertTrue(model.solve(target,a));
+        Assertions.assertTrue(copy.solve(target,b));
+        Assertions.assertArrayEquals(a,b);
+    }
+}
@@ -0,0 +1,84 @@
+package com.marginallyclever.robotoverlord.robots.stewartplatform.linear;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Point3d;
+
+public class LinearStewartPlatformModelTest {
+    private static final double EPSILON = 1e-6;
+    private static final double ARM_LENGTH = 15.0362;
+    private static final double BASE_Z = 7.8383;
+    private static final double SLIDE_TRAVEL = 10;
+
+    private final Point3d [] pBase = new Point3d[6];
+    private final Point3d [] pEE = new Point3d[6];
+
+    /**
+     * The same layout as {@link LinearStewartPlatformCore} with its default sizes.
+     */
+    private LinearStewartPlatformModel build() {
+        int [] indexes = {0,5,2,1,4,3};
+        for(int i=0;i<6;i+=2) {
+            double r = Math.toRadians(120.0*i/2.0);
+            double c = Math.cos(r);
+            double s = Math.sin(r);
+            pBase[indexes[i  ]] = new Point3d(6.0968*c - 1.6*s, 6.0968*s + 1.6*c, 0);
+            pBase[indexes[i+1]] = new Point3d(6.0968*c + 1.6*s, 6.0968*s - 1.6*c, 0);
+
+            r = Math.toRadians(60.0+120.0*i/2.0);
+            c = Math.cos(r);
+            s = Math.sin(r);
+            pEE[i  ] = new Point3d(3.6742*c + 0.75*s, 3.6742*s - 0.75*c, -2.4);
+            pEE[i+1] = new Point3d(3.6742*c - 0.75*s, 3.6742*s + 0.75*c, -2.4);
+        }
+        return new LinearStewartPlatformModel(pBase,pEE,ARM_LENGTH,BASE_Z,SLIDE_TRAVEL);
+    }
+
+    @Test
+    public void solvedSlidesReachTheTarget() {
+        LinearStewartPlatformModel model = build();
+        Assertions.assertEquals(6,model.getNumJoints());
+        Assertions.assertEquals(0,model.getJointMin(0));
+        Assertions.assertEquals(SLIDE_TRAVEL,model.getJointMax(0));
+
+        Point3d [] targets = {
+                new Point3d(0,0,20),
+                new Point3d(1,-1,21),
+                new Point3d(-2,0.5,19),
+        };
+        double [] joints = new double[6];
+        for(Point3d target : targets) {
+            Assertions.assertTrue(model.solve(target,joints),target.toString());
+            for(int i=0;i<6;++i) {
+                // the top of the slide is one arm length from the ball joint on the top plate.
+                Point3d slide = new Point3d(pBase[i].x,pBase[i].y,pBase[i].z+joints[i]+BASE_Z);
+                Point3d ball = new Point3d();
+                ball.add(pEE[i],target);
+                Assertions.assertEquals(ARM_LENGTH,slide.distance(ball),EPSILON,"arm "+i);
+            }
+        }
+    }
+
+    @Test
+    public void unreachableTargetFails() {
+        LinearStewartPlatformModel model = build();
+        double [] joints = new double[6];
+        Assertions.assertFalse(model.solve(new Point3d(40,0,20),joints));
+    }
+
+    @Test
+    public void copyGivesTheSameAnswer() {
+        LinearStewartPlatformModel model = build();
+        LinearStewartPlatformModel copy = model.copy();
+        // changing the points given to the model does not change the model.
+        pBase[0].set(100,100,100);
+
+        Point3d target = new Point3d(0.5,0.5,20);
+        double [] a = new double[6];
+        double [] b = new double[6];
+        Assertions.assertTrue(model.solve(target,a));
+        Assertions.assertTrue(copy.solve(target,b));
+        Assertions.assertArrayEquals(a,b);
+    }
+}
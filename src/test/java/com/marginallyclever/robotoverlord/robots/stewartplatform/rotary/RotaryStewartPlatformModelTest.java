@@ -0,0 +1,91 @@
+package com.marginallyclever.robotoverlord.robots.stewartplatform.rotary;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+public class RotaryStewartPlatformModelTest {
+    private static final double EPSILON = 1e-6;
+    private static final double BICEP_LENGTH = 5;
+    private static final double ARM_LENGTH = 16.75;
+
+    private final Point3d [] pShoulder = new Point3d[6];
+    private final Point3d [] pEE = new Point3d[6];
+
+    /**
+     * The same layout as {@link RotaryStewartPlatform} with its default sizes.
+     */
+    private RotaryStewartPlatformModel build() {
+        int [] indexes = {0,5,2,1,4,3};
+        for(int i=0;i<6;i+=2) {
+            double r = Math.toRadians(120.0*i/2.0);
+            double c = Math.cos(r);
+            double s = Math.sin(r);
+            pShoulder[indexes[i  ]] = new Point3d(8.093*c - 2.15*s, 8.093*s + 2.15*c, 6.61);
+            pShoulder[indexes[i+1]] = new Point3d(8.093*c + 2.15*s, 8.093*s - 2.15*c, 6.61);
+            pEE[indexes[i  ]] = new Point3d(7.635*c - 0.553*s, 7.635*s + 0.553*c, -0.87);
+            pEE[indexes[i+1]] = new Point3d(7.635*c + 0.553*s, 7.635*s - 0.553*c, -0.87);
+        }
+        return new RotaryStewartPlatformModel(pShoulder,pEE,BICEP_LENGTH,ARM_LENGTH,-90,90);
+    }
+
+    /**
+     * Each bicep turns in the plane facing the same way as the platform finds its elbows.
+     */
+    private Point3d getElbow(int i,double degrees) {
+        int k = ((i+5)%6)/2+1;
+        double angle = Math.toRadians(k*120.0);
+        Vector3d ortho = new Vector3d(-Math.sin(angle),Math.cos(angle),0);
+        double a = Math.toRadians(degrees);
+        Point3d elbow = new Point3d(pShoulder[i]);
+        elbow.scaleAdd(BICEP_LENGTH*Math.cos(a),ortho,elbow);
+        elbow.z += BICEP_LENGTH*Math.sin(a);
+        return elbow;
+    }
+
+    @Test
+    public void solvedBicepsReachTheTarget() {
+        RotaryStewartPlatformModel model = build();
+        Assertions.assertEquals(6,model.getNumJoints());
+
+        Point3d [] targets = {
+                new Point3d(0,0,22),
+                new Point3d(1,-1,21),
+                new Point3d(-0.5,1.5,23),
+        };
+        double [] joints = new double[6];
+        for(Point3d target : targets) {
+            Assertions.assertTrue(model.solve(target,joints),target.toString());
+            for(int i=0;i<6;++i) {
+                Point3d ball = new Point3d();
+                ball.add(pEE[i],target);
+                Assertions.assertEquals(ARM_LENGTH,getElbow(i,joints[i]).distance(ball),EPSILON,"arm "+i);
+            }
+        }
+    }
+
+    @Test
+    public void unreachableTargetFails() {
+        RotaryStewartPlatformModel model = build();
+        double [] joints = new double[6];
+        Assertions.assertFalse(model.solve(new Point3d(0,0,60),joints));
+        Assertions.assertFalse(model.solve(new Point3d(30,0,20),joints));
+    }
+
+    @Test
+    public void copyGivesTheSameAnswer() {
+        RotaryStewartPlatformModel model = build();
+        RotaryStewartPlatformModel copy = model.copy();
+        Assertions.assertEquals(-90,copy.getJointMin(3));
+        Assertions.assertEquals(90,copy.getJointMax(3));
+
+        Point3d target = new Point3d(1,-1,21);
+        double [] a = new double[6];
+        double [] b = new double[6];
+        Assertions.assertTrue(model.solve(target,a));
+        Assertions.assertTrue(copy.solve(target,b));
+        Assertions.assertArrayEquals(a,b);
+    }
+}
@@ -76,4 +76,169 @@ public class MotorSystemTest {
         ms.updateMotor(mc,1.0);  // seconds
         Assertions.assertEquals(90,mc.currentAngle.get(),1e-3);
     }
+
+    /**
+     * A light servo with a stiff gain and a big time step lands on the target instead of overshooting more on
+     * every step.
+     */
+    @Test
+    public void testStiffServoIsStable() {
+        EntityManager em = new EntityManager();
+        MotorSystem ms = new MotorSystem(em);
+        ServoComponent sc = MotorFactory.createDefaultServo();
+        sc.rotorInertia.set(1e-4);
+        sc.kP.set(50.0);
+        em.getRoot().addComponent(sc);
+
+        sc.desiredAngle.set(90.0);
+        for(int i=0;i<20;++i) {
+            ms.update(0.2);
+            Assertions.assertTrue(sc.currentAngle.get()<=90.0+1e-9);
+        }
+        Assertions.assertEquals(90.0,sc.currentAngle.get(),1e-6);
+    }
+
+    /**
+     * An unpowered motor coasts to a stop.  Friction slows it down but never turns it backwards, even with a big
+     * time step.
+     */
+    @Test
+    public void testFrictionStopsMotor() {
+        EntityManager em = new EntityManager();
+        MotorSystem ms = new MotorSystem(em);
+        MotorComponent mc = new DCMotorComponent();
+        mc.coulombFriction.set(2.0);
+        mc.setCurrentRPM(60);
+        mc.setDesiredRPM(60);
+
+        double last = mc.getCurrentRPM();
+        for(int i=0;i<1000;++i) {
+            ms.updateMotor(mc,0.1);
+            Assertions.assertTrue(mc.getCurrentRPM()>=0);
+            Assertions.assertTrue(mc.getCurrentRPM()<=last);
+            last = mc.getCurrentRPM();
+        }
+        Assertions.assertEquals(0,mc.getCurrentRPM());
+
+        mc.coulombFriction.set(0.0);
+        mc.viscousFriction.set(100.0);
+        mc.setCurrentRPM(60);
+        ms.updateMotor(mc,10);
+        Assertions.assertTrue(mc.getCurrentRPM()>0 && mc.getCurrentRPM()<60);
+    }
+
+    /**
+     * A motor that carries another motor has twice the inertia, so it speeds up half as fast.
+     */
+    @Test
+    public void testCarriedMotorIsLoad() {
+        EntityManager em = new EntityManager();
+        MotorSystem ms = new MotorSystem(em);
+
+        Entity base = new Entity("base");
+        em.addEntityToParent(base,em.getRoot());
+        MotorComponent a = MotorFactory.createDefaultMotor();
+        base.addComponent(a);
+        Entity link = new Entity("link");
+        em.addEntityToParent(link,base);
+        a.addConnection(link);
+        Entity elbow = new Entity("elbow");
+        em.addEntityToParent(elbow,link);
+        MotorComponent b = MotorFactory.createDefaultMotor();
+        elbow.addComponent(b);
+
+        Entity alone = new Entity("alone");
+        em.addEntityToParent(alone,em.getRoot());
+        MotorComponent c = MotorFactory.createDefaultMotor();
+        alone.addComponent(c);
+
+        a.setDesiredRPM(100);
+        c.setDesiredRPM(100);
+        ms.update(0.1);
+        Assertions.assertTrue(c.getCurrentRPM()>0);
+        Assertions.assertEquals(c.getCurrentRPM()/2,a.getCurrentRPM(),1e-9);
+    }
+
+    /**
+     * When a carried motor speeds up, the motor that carries it is pushed the other way.  With no torque of its
+     * own, the carrying motor keeps the angular momentum of the chain at zero.
+     */
+    @Test
+    public void testReactionTorque() {
+        EntityManager em = new EntityManager();
+        MotorSystem ms = new MotorSystem(em);
+
+        Entity base = new Entity("base");
+        em.addEntityToParent(base,em.getRoot());
+        MotorComponent a = new DCMotorComponent();
+        base.addComponent(a);
+        Entity link = new Entity("link");
+        em.addEntityToParent(link,base);
+        a.addConnection(link);
+        Entity elbow = new Entity("elbow");
+        em.addEntityToParent(elbow,link);
+        MotorComponent b = MotorFactory.createDefaultMotor();
+        elbow.addComponent(b);
+
+        b.setDesiredRPM(100);
+        ms.update(0.1);
+        Assertions.assertTrue(b.getCurrentRPM()>0);
+        Assertions.assertEquals(-b.getCurrentRPM()/2,a.getCurrentRPM(),1e-9);
+    }
+
+    /**
+     * A motor with no inertia reaches the desired speed at once, or the speed where its torque and friction balance.
+     */
+    @Test
+    public void testMasslessMotor() {
+        EntityManager em = new EntityManager();
+        MotorSystem ms = new MotorSystem(em);
+        MotorComponent mc = MotorFactory.createDefaultMotor();
+        mc.rotorInertia.set(0.0);
+        mc.setDesiredRPM(100);
+        ms.updateMotor(mc,0.1);
+        Assertions.assertEquals(100,mc.getCurrentRPM());
+
+        // 16 units of torque against 10 units per radian/s.
+        mc.setCurrentRPM(0);
+        mc.viscousFriction.set(10.0);
+        ms.updateMotor(mc,0.1);
+        Assertions.assertEquals(1.6*60/(2*Math.PI),mc.getCurrentRPM(),1e-9);
+
+        // too much friction to turn at all.
+        mc.setCurrentRPM(0);
+        mc.viscousFriction.set(0.0);
+        mc.coulombFriction.set(20.0);
+        ms.updateMotor(mc,0.1);
+        Assertions.assertEquals(0,mc.getCurrentRPM());
+    }
+
+    /**
+     * Connecting a motor to another after the first update is noticed even though the scene does not announce it.
+     */
+    @Test
+    public void testNewConnectionIsNoticed() {
+        EntityManager em = new EntityManager();
+        MotorSystem ms = new MotorSystem(em);
+
+        Entity base = new Entity("base");
+        em.addEntityToParent(base,em.getRoot());
+        MotorComponent a = MotorFactory.createDefaultMotor();
+        base.addComponent(a);
+        Entity link = new Entity("link");
+        em.addEntityToParent(link,base);
+        Entity elbow = new Entity("elbow");
+        em.addEntityToParent(elbow,link);
+        MotorComponent b = MotorFactory.createDefaultMotor();
+        elbow.addComponent(b);
+
+        ms.update(0.1);
+        a.addConnection(link);
+        a.setDesiredRPM(100);
+        b.setDesiredRPM(100);
+        ms.update(0.1);
+        // equal motors pushing equally: all of the torque of a is spent holding the link against b.
+        Assertions.assertTrue(b.getCurrentRPM()>0);
+        Assertions.assertEquals(0,a.getCurrentRPM(),1e-9);
+    }
 }
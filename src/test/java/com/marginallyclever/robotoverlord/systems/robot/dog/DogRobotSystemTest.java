@@ -0,0 +1,43 @@
+package com.marginallyclever.robotoverlord.systems.robot.dog;
+
+import com.marginallyclever.robotoverlord.components.PoseComponent;
+import com.marginallyclever.robotoverlord.components.demo.DogRobotComponent;
+import com.marginallyclever.robotoverlord.components.shapes.Box;
+import com.marginallyclever.robotoverlord.entity.Entity;
+import com.marginallyclever.robotoverlord.entity.EntityManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Vector3d;
+
+public class DogRobotSystemTest {
+    private static final double STEP_TOP = 2;
+
+    @Test
+    public void footholdsLandOnABox() {
+        EntityManager entityManager = new EntityManager();
+        DogRobotSystem system = new DogRobotSystem(entityManager);
+
+        // a step wider than the dog, slid under it.  Every foot the dog lifts should come down on top.
+        Entity step = new Entity("step");
+        entityManager.addEntityToParent(step,entityManager.getRoot());
+        step.addComponent(new Box(100,100,STEP_TOP));
+        step.getComponent(PoseComponent.class).setPosition(new Vector3d(0,0,STEP_TOP/2));
+
+        Entity entity = new Entity("dog");
+        entityManager.addEntityToParent(entity,entityManager.getRoot());
+        entity.addComponent(new PoseComponent());
+        DogRobotComponent dog = new DogRobotComponent();
+        entity.addComponent(dog);
+        // builds the legs, with the feet at z=0.
+        new EditDogPanel(entity,entityManager,system);
+
+        dog.modeSelector.set(4);
+        for(int i=0;i<400;++i) system.update(0.03);
+
+        // every leg has taken a step, so none is left inside the box.
+        for(int i=0;i<DogRobotComponent.NUM_LEGS;++i) {
+            Assertions.assertEquals(STEP_TOP,dog.getNextPOC(i).z,1e-6,"leg "+i);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.marginallyclever.robotoverlord.systems.robot.gait;
+
+import com.marginallyclever.ro3.workspace.DHChainModel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+public class GaitEngineTest {
+    // hip up 30 degrees, knee straight down.  The foot is 4 below the hip.
+    private static final double [] STANCE = {0,30,-120};
+
+    /**
+     * Hip yaw, thigh and calf.
+     */
+    private static DHChainModel makeLegModel() {
+        DHChainModel model = new DHChainModel();
+        model.addLink(0,2,90,0,true,-90,90);
+        model.addLink(0,6,0,0,true,-180,180);
+        model.addLink(0,7,0,0,true,-180,180);
+        return model;
+    }
+
+    /**
+     * Legs evenly spaced around the body, numbered counter-clockwise, with every foot on the ground at z=0.
+     */
+    static GaitBody makeBody(int numLegs,double x,double y) {
+        DHChainModel model = makeLegModel();
+        Point3d local = new Point3d();
+        model.getEndEffectorPosition(STANCE,local);
+
+        Matrix4d pose = new Matrix4d();
+        pose.setIdentity();
+        pose.setTranslation(new Vector3d(x,y,-local.z));
+        GaitBody body = new GaitBody(pose);
+        for(int i=0;i<numLegs;++i) {
+            double angle = 2*Math.PI*(i+0.5)/numLegs;
+            Matrix4d mount = new Matrix4d();
+            mount.rotZ(angle);
+            mount.setTranslation(new Vector3d(4*Math.cos(angle),4*Math.sin(angle),0));
+            Matrix4d legWorld = new Matrix4d();
+            legWorld.mul(pose,mount);
+            Point3d foot = new Point3d(local);
+            legWorld.transform(foot);
+            body.addLeg(new GaitLeg(model,mount,foot,pose,STANCE));
+        }
+        return body;
+    }
+
+    private static Point3d getFoot(GaitBody body,GaitLeg leg) {
+        Point3d foot = new Point3d();
+        leg.model.getEndEffectorPosition(leg.getJoints(),foot);
+        Matrix4d legWorld = new Matrix4d();
+        legWorld.mul(body.getPose(),leg.mount);
+        legWorld.transform(foot);
+        return foot;
+    }
+
+    @Test
+    public void testPatternsMatchOldGaits() {
+        for(double t=0.125;t<12;t+=0.25) {
+            double step = t-Math.floor(t);
+            int ripple = (int)Math.floor(t) % 6;
+            int tripod = (int)Math.floor(t) % 2;
+            for(int i=0;i<6;++i) {
+                Assertions.assertEquals(i==ripple ? step : -1, GaitPattern.RIPPLE.getSwing(i,6,t),1e-9);
+                Assertions.assertEquals(i%2==tripod ? step : -1, GaitPattern.TRIPOD.getSwing(i,6,t),1e-9);
+            }
+            assertOldWave(t,new int[]{3,5,4});
+            assertOldWave(t,new int[]{2,3});
+        }
+    }
+
+    /**
+     * The wave gait of the old crab and dog systems lifted one leg on each side, half a step apart.
+     * @param otherSide the legs of the second side in the order they were lifted.
+     */
+    private void assertOldWave(double t,int [] otherSide) {
+        int half = otherSide.length;
+        int numLegs = half*2;
+        double t1 = t+0.5;
+        int leg1 = (int)Math.floor(t1) % half;
+        int leg2 = otherSide[(int)Math.floor(t) % half];
+        for(int i=0;i<numLegs;++i) {
+            double expected = (i==leg1) ? t1-Math.floor(t1) : (i==leg2) ? t-Math.floor(t) : -1;
+            Assertions.assertEquals(expected, GaitPattern.WAVE.getSwing(i,numLegs,t),1e-9);
+        }
+    }
+
+    @Test
+    public void testSupportPolygonMargin() {
+        double [] xs = {-1,1,1,-1};
+        double [] ys = {-1,-1,1,1};
+        Assertions.assertEquals(1,SupportPolygon.getMargin(xs,ys,4,0,0),1e-9);
+        Assertions.assertEquals(0.5,SupportPolygon.getMargin(xs,ys,4,0.5,0),1e-9);
+        Assertions.assertEquals(-1,SupportPolygon.getMargin(xs,ys,4,2,0),1e-9);
+        // a triangle, with the middle of the square on its long edge.
+        Assertions.assertEquals(0,SupportPolygon.getMargin(xs,ys,3,0,0),1e-9);
+
+        double [] line = {0,1,2};
+        Assertions.assertEquals(Double.NEGATIVE_INFINITY,SupportPolygon.getMargin(line,line,3,0,0));
+    }
+
+    @Test
+    public void testFeetStayPutWhenTheBodyMoves() {
+        GaitBody body = makeBody(6,0,0);
+        GaitEngine engine = new GaitEngine();
+        engine.setIterations(50);
+        engine.setTolerance(1e-4);
+        engine.add(body);
+
+        Point3d [] before = new Point3d[6];
+        for(int i=0;i<6;++i) before[i] = new Point3d(body.getLegs().get(i).getLastFoothold());
+        body.getPose().m03 += 0.5;
+        body.getPose().m13 -= 0.3;
+        engine.step(0);
+
+        for(int i=0;i<6;++i) {
+            GaitLeg leg = body.getLegs().get(i);
+            Assertions.assertEquals(0,before[i].distance(leg.getTarget()),1e-9);
+            Assertions.assertEquals(0,before[i].distance(getFoot(body,leg)),1e-3);
+        }
+    }
+
+    @Test
+    public void testFootholdsFollowTheGround() {
+        GaitBody body = makeBody(6,0,0);
+        body.setVelocity(new Vector3d(2,0,0));
+        GaitEngine engine = new GaitEngine();
+        engine.setGround((x,y)->0.2*x);
+        engine.add(body);
+
+        for(int i=0;i<200;++i) engine.step(0.05);
+
+        Assertions.assertEquals(20,body.getPose().m03,1e-6);
+        double sum = 0;
+        int count = 0;
+        for(GaitLeg leg : body.getLegs()) {
+            Point3d p = leg.getLastFoothold();
+            Assertions.assertEquals(0.2*p.x,p.z,1e-9);
+            if(leg.isSwinging()) continue;
+            sum += p.z;
+            count++;
+        }
+        // the body keeps its height over the feet on the ground.
+        Assertions.assertEquals(sum/count+4,body.getPose().m23,1e-6);
+    }
+
+    @Test
+    public void testSwayBeforeLifting() {
+        GaitBody body = makeBody(4,0,0);
+        body.setPattern(GaitPattern.RIPPLE);
+        GaitEngine engine = new GaitEngine();
+        engine.setStabilityMargin(0.5);
+        engine.add(body);
+
+        // lifting leg 0 leaves a triangle with the body on its edge, so the body leans first.
+        engine.step(0.1);
+        Assertions.assertEquals(0,body.getSteps());
+        Assertions.assertFalse(body.getLegs().get(0).isSwinging());
+        Assertions.assertTrue(body.getPose().m03<0);
+        Assertions.assertTrue(body.getPose().m13<0);
+
+        for(int i=0;i<100 && body.getSteps()==0;++i) engine.step(0.1);
+        Assertions.assertTrue(body.getLegs().get(0).isSwinging());
+
+        double [] xs = new double[3];
+        double [] ys = new double[3];
+        for(int i=1;i<4;++i) {
+            xs[i-1] = body.getLegs().get(i).getLastFoothold().x;
+            ys[i-1] = body.getLegs().get(i).getLastFoothold().y;
+        }
+        Assertions.assertTrue(SupportPolygon.getMargin(xs,ys,3,body.getPose().m03,body.getPose().m13)>=0.5-1e-9);
+    }
+}
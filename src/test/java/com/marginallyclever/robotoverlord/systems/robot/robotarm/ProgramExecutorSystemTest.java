@@ -1,17 +1,47 @@
 package com.marginallyclever.robotoverlord.systems.robot.robotarm;
 
+import com.marginallyclever.robotoverlord.components.PoseComponent;
+import com.marginallyclever.robotoverlord.components.program.CompiledProgram;
 import com.marginallyclever.robotoverlord.components.program.ProgramComponent;
+import com.marginallyclever.robotoverlord.components.program.ProgramPathComponent;
 import com.marginallyclever.robotoverlord.components.RobotComponent;
 import com.marginallyclever.robotoverlord.entity.Entity;
 import com.marginallyclever.robotoverlord.entity.EntityManager;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ProgramExecutorSystemTest {
     @Test
     public void testWalkATree() {
         EntityManager entityManager = new EntityManager();
-        // build a program tree
+        Entity programRoot = buildProgram(entityManager);
+
+        CompiledProgram compiled = CompiledProgram.compile(programRoot);
+        // 10 children, 3 below each, and 3 more below the first grandchild.
+        Assertions.assertEquals(43,compiled.size());
+        Assertions.assertSame(programRoot,compiled.getRoot());
+        Assertions.assertEquals("Program-0",compiled.get(0).step().getName());
+        Assertions.assertEquals("Program-0-0",compiled.get(1).step().getName());
+        Assertions.assertEquals("Program-0-0-0",compiled.get(2).step().getName());
+        Assertions.assertEquals("Program-0-1",compiled.get(5).step().getName());
+        Assertions.assertEquals("Program-9-2",compiled.get(42).step().getName());
+
+        TreeWalkingInterpreter interpreter = new TreeWalkingInterpreter();
+        Entity programStep = programRoot.getChildren().get(0);
+        int i;
+        for(i=0;i<100;++i) {
+            Entity nextStep = interpreter.getNextStep(programStep,programRoot);
+            if(nextStep==null) break;
+            programStep = nextStep;
+        }
+        Assertions.assertEquals(42,i);
+        Assertions.assertEquals(0,interpreter.getStackDepth());
+    }
+
+    private Entity buildProgram(EntityManager entityManager) {
         Entity programRoot = new Entity("Program");
         entityManager.addEntityToParent(programRoot,entityManager.getRoot());
         addChildrenToNode(entityManager,programRoot,10);
@@ -19,34 +49,116 @@ public class ProgramExecutorSystemTest {
             addChildrenToNode(entityManager,child,3);
         });
         addChildrenToNode(entityManager,programRoot.getChildren().get(0).getChildren().get(0),3);
+        return programRoot;
+    }
+
+    /**
+     * @return every step below the root in the order the old {@link TreeWalkingInterpreter} visits them.
+     */
+    private List<Entity> walk(Entity programRoot) {
+        TreeWalkingInterpreter interpreter = new TreeWalkingInterpreter();
+        List<Entity> visited = new ArrayList<>();
+        Entity programStep = programRoot.getChildren().get(0);
+        while(programStep!=null) {
+            visited.add(programStep);
+            programStep = interpreter.getNextStep(programStep,programRoot);
+        }
+        return visited;
+    }
+
+    @Test
+    public void testCompiledProgramMatchesTheTree() {
+        EntityManager entityManager = new EntityManager();
+        Entity programRoot = buildProgram(entityManager);
+        ProgramPathComponent path = new ProgramPathComponent();
+        programRoot.getChildren().get(1).addComponent(path);
+
+        List<Entity> visited = walk(programRoot);
+        CompiledProgram compiled = CompiledProgram.compile(programRoot);
+
+        Assertions.assertEquals(visited.size(),compiled.size());
+        for(int i=0;i<visited.size();++i) {
+            CompiledProgram.Instruction instruction = compiled.get(i);
+            Assertions.assertSame(visited.get(i),instruction.step());
+            Assertions.assertSame(visited.get(i).getComponent(PoseComponent.class),instruction.pose());
+            Assertions.assertEquals(i,compiled.indexOf(instruction.step().getUniqueID()));
+        }
+        // the path and the poses below it are moved by the path.
+        Entity pathStep = programRoot.getChildren().get(1);
+        int start = compiled.indexOf(pathStep.getUniqueID());
+        for(int i=0;i<4;++i) {
+            Assertions.assertSame(path,compiled.get(start+i).action());
+        }
+        Assertions.assertNull(compiled.get(start+4).action());
+    }
 
-        // add a robot
+    @Test
+    public void testRunToEndVisitsEveryStep() {
+        EntityManager entityManager = new EntityManager();
+        Entity programRoot = buildProgram(entityManager);
         Entity myRobot = new Entity("My Robot");
         entityManager.addEntityToParent(myRobot,entityManager.getRoot());
-        RobotComponent robot = new RobotComponent();
         ProgramComponent program = new ProgramComponent();
-        myRobot.addComponent(robot);
+        myRobot.addComponent(new RobotComponent());
         myRobot.addComponent(program);
-        // assign program to robot
         program.programEntity.set(programRoot.getUniqueID());
+        program.mode.set(ProgramComponent.RUN_TO_END);
 
-        // run the program
         ProgramExecutorSystem executor = new ProgramExecutorSystem(entityManager);
-        Entity programStep = programRoot.getChildren().get(0);
-        int i;
-        for(i=0;i<100;++i) {
-            System.out.print("Step "+i);
-            if(programStep!=null) {
-                System.out.println(" "+programStep.getName());
-            } else {
-                System.out.println(" null");
-            }
-            Entity nextStep = executor.getNextStep(robot,program,programStep,programRoot);
-            if(nextStep==null) break;
-            programStep = nextStep;
+        List<Entity> expected = walk(programRoot);
+
+        program.setRunning(true);
+        List<String> visited = new ArrayList<>();
+        for(int i=0;i<100 && program.getRunning();++i) {
+            executor.update(0.03);
+            visited.add(program.stepEntity.get());
         }
-        Assertions.assertEquals(42,i);
-        Assertions.assertEquals(0,program.getStackDepth());
+        Assertions.assertFalse(program.getRunning());
+        Assertions.assertEquals(expected.size(),visited.size());
+        // after each tick the program points at the next step, and at nothing after the last.
+        for(int i=1;i<expected.size();++i) {
+            Assertions.assertEquals(expected.get(i).getUniqueID(),visited.get(i-1));
+        }
+        Assertions.assertNull(visited.get(visited.size()-1));
+    }
+
+    @Test
+    public void testProgramsAreFoundAgainAfterTheSceneChanges() {
+        EntityManager entityManager = new EntityManager();
+        Entity programRoot = buildProgram(entityManager);
+        ProgramExecutorSystem executor = new ProgramExecutorSystem(entityManager);
+        executor.update(0.03);
+
+        // a robot added after the first update is found.
+        Entity myRobot = new Entity("My Robot");
+        ProgramComponent program = new ProgramComponent();
+        myRobot.addComponent(new RobotComponent());
+        myRobot.addComponent(program);
+        program.programEntity.set(programRoot.getUniqueID());
+        program.mode.set(ProgramComponent.RUN_LOOP);
+        entityManager.addEntityToParent(myRobot,entityManager.getRoot());
+        program.setRunning(true);
+        executor.update(0.03);
+        Assertions.assertEquals(programRoot.getChildren().get(0).getChildren().get(0).getUniqueID(),program.stepEntity.get());
+
+        // a program added to a robot already in the scene is found, without showing it in the UI.
+        Entity otherRobot = new Entity("Other Robot");
+        otherRobot.addComponent(new RobotComponent());
+        entityManager.addEntityToParent(otherRobot,entityManager.getRoot());
+        executor.update(0.03);
+        ProgramComponent other = new ProgramComponent();
+        other.programEntity.set(programRoot.getUniqueID());
+        other.mode.set(ProgramComponent.RUN_LOOP);
+        otherRobot.addComponent(other);
+        other.setRunning(true);
+        executor.update(0.03);
+        Assertions.assertEquals(programRoot.getChildren().get(0).getChildren().get(0).getUniqueID(),other.stepEntity.get());
+
+        // a program removed from its robot does not run.
+        myRobot.removeComponent(program);
+        String step = program.stepEntity.get();
+        executor.update(0.03);
+        Assertions.assertEquals(step,program.stepEntity.get());
     }
 
     private void addChildrenToNode(EntityManager manager,Entity node,int count) {
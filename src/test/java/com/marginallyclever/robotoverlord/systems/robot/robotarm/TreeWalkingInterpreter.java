@@ -0,0 +1,70 @@
+package com.marginallyclever.robotoverlord.systems.robot.robotarm;
+
+import com.marginallyclever.robotoverlord.components.program.ProgramStepComponent;
+import com.marginallyclever.robotoverlord.entity.Entity;
+
+import java.util.Stack;
+
+/**
+ * The tree-walking interpreter that {@link ProgramExecutorSystem} used before programs were compiled.  It walks the
+ * program tree one step at a time and keeps a stack of the {@link ProgramStepComponent}s it has entered.  Kept as the
+ * reference for {@link com.marginallyclever.robotoverlord.components.program.CompiledProgram}.
+ */
+class TreeWalkingInterpreter {
+    private final Stack<Object> stack = new Stack<>();
+
+    /**
+     * a program is a tree of entities.  walk the tree one step.
+     * @param programStep the current step in the program tree.
+     * @param programRoot the root of the program tree
+     * @return the next step in the program or null.
+     */
+    public Entity getNextStep(Entity programStep, Entity programRoot) {
+        Entity nextStep=null;
+        // we've just executed programStep, now what?
+        if(!programStep.getChildren().isEmpty()) {
+            // go to first child
+            nextStep = programStep.getChildren().get(0);
+        }
+        if(nextStep==null) {
+            // no children, go to next sibling
+            nextStep = programStep.getNextSibling();
+        }
+        if (nextStep != null) {
+            pushStack(nextStep);
+            return nextStep;
+        }
+
+        // no next sibling, pop the stack
+        while(true) {
+            popStack(programStep);
+            Entity parent = programStep.getParent();
+
+            if( parent==null ) return null;
+            if( parent == programRoot ) return null;
+
+            // go to parent's next sibling
+            nextStep = parent.getNextSibling();
+            if (nextStep != null) {
+                return nextStep;
+            }
+
+            // parent has no next sibling, keep poppin'
+            programStep = parent;
+        }
+    }
+
+    private void pushStack(Entity programStep) {
+        ProgramStepComponent step = programStep.getComponent(ProgramStepComponent.class);
+        if(step!=null) stack.push(step);
+    }
+
+    private void popStack(Entity programStep) {
+        ProgramStepComponent step = programStep.getComponent(ProgramStepComponent.class);
+        if(step!=null) stack.pop();
+    }
+
+    public int getStackDepth() {
+        return stack.size();
+    }
+}
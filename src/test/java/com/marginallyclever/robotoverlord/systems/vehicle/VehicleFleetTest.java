@@ -0,0 +1,141 @@
+package com.marginallyclever.robotoverlord.systems.vehicle;
+
+import com.marginallyclever.robotoverlord.components.vehicle.VehicleComponent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class VehicleFleetTest {
+    private static final double [] TANK_X = {0,0};
+    private static final double [] TANK_Y = {5,-5};
+    private static final double [] TANK_D = {4,4};
+
+    private static final double [] CAR_X = {10,10,-10,-10};
+    private static final double [] CAR_Y = {5,-5,5,-5};
+    private static final double [] CAR_D = {4,4,4,4};
+
+    @Test
+    public void testDifferentialDrivesInACircle() {
+        VehicleFleet fleet = new VehicleFleet();
+        int i = fleet.add(VehicleComponent.WHEEL_DIFFERENTIAL,3,4,0,TANK_X,TANK_Y,TANK_D);
+        fleet.setVelocity(i,10,7,20);
+
+        // 20 degrees per second for 18 seconds is one full turn.
+        double dt = 1.0/30.0;
+        for(int k=0;k<540;++k) fleet.step(dt);
+
+        Assertions.assertEquals(3,fleet.getX(i),1e-9);
+        Assertions.assertEquals(4,fleet.getY(i),1e-9);
+        Assertions.assertEquals(2*Math.PI,fleet.getHeading(i),1e-9);
+
+        double w = Math.toRadians(20);
+        Assertions.assertEquals((10+w*5)/(Math.PI*4)*60,fleet.getWheelRPM(i,0),1e-9);
+        Assertions.assertEquals((10-w*5)/(Math.PI*4)*60,fleet.getWheelRPM(i,1),1e-9);
+    }
+
+    @Test
+    public void testMecanumStrafes() {
+        VehicleFleet fleet = new VehicleFleet();
+        int i = fleet.add(VehicleComponent.WHEEL_MECANUM,0,0,Math.PI/2,CAR_X,CAR_Y,CAR_D);
+        fleet.setVelocity(i,0,5,0);
+        for(int k=0;k<10;++k) fleet.step(0.1);
+
+        // facing +y, so left is -x.
+        Assertions.assertEquals(-5,fleet.getX(i),1e-9);
+        Assertions.assertEquals(0,fleet.getY(i),1e-9);
+        for(int k=0;k<4;++k) {
+            double expected = (k%2==0 ? 5 : -5)/(Math.PI*4)*60;
+            Assertions.assertEquals(expected,fleet.getWheelRPM(i,k),1e-9);
+        }
+    }
+
+    @Test
+    public void testFrontWheelSteering() {
+        VehicleFleet fleet = new VehicleFleet();
+        int i = fleet.add(VehicleComponent.WHEEL_NORMAL,0,0,0,CAR_X,CAR_Y,CAR_D);
+        fleet.setVelocity(i,10,0,15);
+        fleet.step(1);
+
+        // the wheel base is the distance from the first wheel to the last.
+        double rateOfTurn = 10*Math.tan(Math.toRadians(15))/Math.hypot(20,10);
+        Assertions.assertEquals(rateOfTurn,fleet.getHeading(i),1e-9);
+        Assertions.assertEquals(10*Math.cos(rateOfTurn),fleet.getX(i),1e-9);
+        Assertions.assertEquals(10*Math.sin(rateOfTurn),fleet.getY(i),1e-9);
+    }
+
+    @Test
+    public void testBroadPhaseFindsEveryContact() {
+        Random random = new Random(1234);
+        VehicleFleet fleet = new VehicleFleet();
+        fleet.setCollisions(true);
+        int n = 2000;
+        for(int k=0;k<n;++k) {
+            fleet.add(VehicleComponent.WHEEL_DIFFERENTIAL,random.nextDouble()*1000-500,random.nextDouble()*1000-500,0,TANK_X,TANK_Y,TANK_D);
+        }
+
+        int expected = 0;
+        for(int a=0;a<n;++a) {
+            for(int b=a+1;b<n;++b) {
+                double r = fleet.getRadius(a)+fleet.getRadius(b);
+                if(Math.hypot(fleet.getX(a)-fleet.getX(b),fleet.getY(a)-fleet.getY(b))<r) expected++;
+            }
+        }
+        Assertions.assertTrue(expected>0);
+
+        fleet.step(0);
+        Assertions.assertEquals(expected,fleet.getNumContacts());
+    }
+
+    @Test
+    public void testCollisionsPushApart() {
+        VehicleFleet fleet = new VehicleFleet();
+        fleet.setCollisions(true);
+        int a = fleet.add(VehicleComponent.WHEEL_DIFFERENTIAL,0,0,0,TANK_X,TANK_Y,TANK_D);
+        int b = fleet.add(VehicleComponent.WHEEL_DIFFERENTIAL,10,0,Math.PI,TANK_X,TANK_Y,TANK_D);
+        // drive at each other.
+        fleet.setVelocity(a,10,0,0);
+        fleet.setVelocity(b,10,0,0);
+        fleet.step(0.1);
+
+        double r = fleet.getRadius(a)+fleet.getRadius(b);
+        Assertions.assertEquals(1,fleet.getNumContacts());
+        Assertions.assertEquals(r,fleet.getX(b)-fleet.getX(a),1e-9);
+        Assertions.assertEquals(5,(fleet.getX(a)+fleet.getX(b))/2,1e-9);
+    }
+
+    @Test
+    public void testLargeFleetMatchesOneAtATime() {
+        Random random = new Random(5678);
+        VehicleFleet fleet = new VehicleFleet();
+        int n = 20000;
+        double [][] params = new double[n][];
+        for(int k=0;k<n;++k) {
+            int type = random.nextInt(4);
+            params[k] = new double[] {type,random.nextDouble()*100,random.nextDouble()*100,random.nextDouble()*6,
+                    random.nextDouble()*20-10,random.nextDouble()*20-10,random.nextDouble()*60-30};
+            addFromParams(fleet,params[k]);
+        }
+        for(int k=0;k<10;++k) fleet.step(1.0/60.0);
+
+        for(int k=0;k<n;k+=997) {
+            VehicleFleet one = new VehicleFleet();
+            addFromParams(one,params[k]);
+            for(int s=0;s<10;++s) one.step(1.0/60.0);
+            Assertions.assertEquals(one.getX(0),fleet.getX(k));
+            Assertions.assertEquals(one.getY(0),fleet.getY(k));
+            Assertions.assertEquals(one.getHeading(0),fleet.getHeading(k));
+            for(int w=0;w<one.getNumWheels(0);++w) {
+                Assertions.assertEquals(one.getWheelRPM(0,w),fleet.getWheelRPM(k,w));
+            }
+        }
+    }
+
+    private void addFromParams(VehicleFleet fleet,double [] p) {
+        int type = (int)p[0];
+        int i = (type==VehicleComponent.WHEEL_DIFFERENTIAL)
+                ? fleet.add(type,p[1],p[2],p[3],TANK_X,TANK_Y,TANK_D)
+                : fleet.add(type,p[1],p[2],p[3],CAR_X,CAR_Y,CAR_D);
+        fleet.setVelocity(i,p[4],p[5],p[6]);
+    }
+}
@@ -10,6 +10,8 @@ import com.marginallyclever.robotoverlord.systems.EntitySystem;
 import com.marginallyclever.robotoverlord.systems.motor.MotorSystem;
 import org.junit.jupiter.api.*;
 
+import javax.vecmath.Vector3d;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -107,6 +109,68 @@ public class VehicleSystemTest {
         testShared(car);
     }
 
+    /**
+     * fleet mode drives a tank to the same place as one vehicle at a time.
+     */
+    @Test
+    public void driveTankInFleetMode() {
+        Entity carEntity = VehicleFactory.buildTank(entityManager);
+        VehicleComponent car = carEntity.getComponent(VehicleComponent.class);
+        entityManager.addEntityToParent(carEntity, entityManager.getRoot());
+
+        EntityManager fleetManager = new EntityManager();
+        VehicleSystem fleetSystem = new VehicleSystem(fleetManager);
+        fleetSystem.setFleetMode(true);
+        Entity fleetEntity = VehicleFactory.buildTank(fleetManager);
+        VehicleComponent fleetCar = fleetEntity.getComponent(VehicleComponent.class);
+        fleetManager.addEntityToParent(fleetEntity, fleetManager.getRoot());
+
+        for(VehicleComponent c : new VehicleComponent[]{car,fleetCar}) {
+            c.forwardVelocity.set(10.0);
+            c.turnVelocity.set(20.0);
+        }
+
+        double dt=1.0/30.0;
+        for(int i=0;i<30;++i) {
+            vehicleSystem.update(dt);
+            fleetSystem.update(dt);
+        }
+
+        Vector3d expected = carEntity.getComponent(PoseComponent.class).getPosition();
+        Vector3d actual = fleetEntity.getComponent(PoseComponent.class).getPosition();
+        Assertions.assertNotEquals(0.0,actual.x);
+        Assertions.assertEquals(expected.x,actual.x,1e-6);
+        Assertions.assertEquals(expected.y,actual.y,1e-6);
+        Assertions.assertEquals(expected.z,actual.z,1e-6);
+        Assertions.assertEquals(carEntity.getComponent(PoseComponent.class).getRotation().z,
+                fleetEntity.getComponent(PoseComponent.class).getRotation().z,1e-6);
+    }
+
+    /**
+     * a vehicle moved by hand in fleet mode carries on from where it was put.
+     */
+    @Test
+    public void moveByHandInFleetMode() {
+        Entity carEntity = VehicleFactory.buildTank(entityManager);
+        VehicleComponent car = carEntity.getComponent(VehicleComponent.class);
+        entityManager.addEntityToParent(carEntity, entityManager.getRoot());
+        vehicleSystem.setFleetMode(true);
+        car.forwardVelocity.set(10.0);
+
+        double dt=1.0/30.0;
+        for(int i=0;i<10;++i) vehicleSystem.update(dt);
+
+        PoseComponent pose = carEntity.getComponent(PoseComponent.class);
+        double z = pose.getPosition().z;
+        pose.setPosition(new Vector3d(100,50,z));
+        vehicleSystem.update(dt);
+
+        Vector3d p = pose.getPosition();
+        Assertions.assertEquals(100+10*dt,p.x,1e-6);
+        Assertions.assertEquals(50,p.y,1e-6);
+        Assertions.assertEquals(z,p.z,1e-6);
+    }
+
     private void testShared(VehicleComponent car) {
         // drive forward
         car.forwardVelocity.set(10.0);